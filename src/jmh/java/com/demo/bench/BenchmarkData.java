@@ -0,0 +1,110 @@
+package com.demo.bench;
+
+import com.demo.model.dynamic.DynamicCondition;
+import com.demo.model.dynamic.DynamicPlanid;
+import com.demo.model.dynamic.DynamicThreshold;
+import com.demo.model.dynamic.DynamicThresholdId;
+import com.demo.service.DynamicService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// City-scale dynamic-control rows shared by the benchmarks: every program has eight sub-conditions combined by
+// a nested expression, thresholds over two cctvs and directions, and TCs with plan rows around the day.
+final class BenchmarkData {
+    static final int SUB_CONDITIONS = 8;
+    static final String EXPRESSION = "(1 && (2 || 3)) || (4 && !5) || ((6 or 7) and 8)";
+    static final String TIME_LABEL = "平日0600-0900,平日1100-1300,平日1600-1900,平日2200-0600,假日1000-1400,假日1800-2200";
+    static final String[] PLAN_TIMES = {"0000-0600", "0600-0900", "0900-1600", "1600-1900", "1900-2200", "2200-0000"};
+
+    private BenchmarkData() {
+    }
+
+    // service outside Spring: system clock, config swaps announced to nobody
+    static DynamicService dynamicService() {
+        DynamicService service = new DynamicService();
+        ReflectionTestUtils.setField(service, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(service, "eventPublisher", (ApplicationEventPublisher) event -> {});
+        return service;
+    }
+
+    static String programId(int index) {
+        return String.valueOf(20000 + index);
+    }
+
+    // consecutiveMatches large enough that no benchmark ever triggers a program
+    static List<DynamicCondition> conditions(int programs) {
+        List<DynamicCondition> conditions = new ArrayList<>(programs);
+        for (int i = 0; i < programs; i++) {
+            conditions.add(DynamicCondition.builder()
+                    .programId(programId(i))
+                    .conditionExpression(EXPRESSION)
+                    .consecutiveMatches(Integer.MAX_VALUE)
+                    .build());
+        }
+        return conditions;
+    }
+
+    static List<DynamicThreshold> thresholds(int programs) {
+        List<DynamicThreshold> thresholds = new ArrayList<>(programs * SUB_CONDITIONS);
+        for (int i = 0; i < programs; i++) {
+            for (int sub = 1; sub <= SUB_CONDITIONS; sub++) {
+                thresholds.add(DynamicThreshold.builder()
+                        .id(DynamicThresholdId.builder().programId(programId(i)).subId(sub).build())
+                        .timeLabel(TIME_LABEL)
+                        .cctvId("C" + i + "-" + sub + "A, C" + i + "-" + sub + "B")
+                        .timeInterval(5)
+                        .carflowDirection("ALL, A-B")
+                        .comparisonOperator(sub % 2 == 0 ? ">=" : "<")
+                        .thresholdValue(100 + sub)
+                        .build());
+            }
+        }
+        return thresholds;
+    }
+
+    static List<DynamicPlanid> planIds(int programs, int tcsPerProgram) {
+        List<DynamicPlanid> planIds = new ArrayList<>();
+        long id = 0;
+        for (int i = 0; i < programs; i++) {
+            for (int tc = 0; tc < tcsPerProgram; tc++) {
+                String tcId = "TC" + i + "-" + tc;
+                for (int slot = 0; slot < PLAN_TIMES.length; slot++) {
+                    for (String day : new String[]{"平日", "假日"}) {
+                        planIds.add(DynamicPlanid.builder()
+                                .id(++id)
+                                .programId(programId(i))
+                                .tcId(tcId)
+                                .day(day)
+                                .time(PLAN_TIMES[slot])
+                                .planId(slot + 1)
+                                .build());
+                    }
+                }
+            }
+        }
+        return planIds;
+    }
+
+    // repository answering from memory by method name, so the benchmark measures the service and not a mock
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) return answer.apply(args);
+
+            return switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> type.getSimpleName() + " stub";
+                default -> throw new UnsupportedOperationException(method.getName());
+            };
+        });
+    }
+}
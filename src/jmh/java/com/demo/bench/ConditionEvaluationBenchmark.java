@@ -0,0 +1,100 @@
+package com.demo.bench;
+
+import com.demo.dto.ConditionDto;
+import com.demo.manager.DynamicControlManager;
+import com.demo.service.DynamicService;
+import com.demo.util.CompiledCondition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per-tick cost of deciding whether programs match: the compiled expressions over a result mask alone, and the
+// whole checkConditionMatch path with its compare-and-set of the match state and timer, once over every program.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionEvaluationBenchmark {
+    private static final LocalTime START = LocalTime.of(6, 0);
+    private static final LocalTime END = LocalTime.of(9, 0);
+    private static final long INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    @Param({"100", "500", "2000"})
+    private int programs;
+
+    // share of sub-conditions currently above their threshold
+    @Param({"0.5"})
+    private double matchRatio;
+
+    private DynamicService dynamicService;
+    private DynamicControlManager dynamicControlManager;
+    private List<String> programIds;
+    private CompiledCondition[] compiled;
+    private long[] masks;           // per program: results of its sub-conditions
+    private int[] tickSubIds;       // per program: sub-condition reporting in checkConditionMatchAll
+    private boolean[] tickResults;
+    private int seed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dynamicService = BenchmarkData.dynamicService();
+        dynamicService.createTrafficAndThresholdMap(BenchmarkData.thresholds(programs));
+        dynamicService.createConditionMap(BenchmarkData.conditions(programs));
+
+        dynamicControlManager = new DynamicControlManager();
+        ReflectionTestUtils.setField(dynamicControlManager, "dynamicService", dynamicService);
+        ReflectionTestUtils.setField(dynamicControlManager, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(dynamicControlManager, "meterRegistry", new SimpleMeterRegistry());
+
+        programIds = new ArrayList<>(dynamicService.getConditionMap().keySet());
+        compiled = dynamicService.getConditionMap().values().stream()
+                .map(ConditionDto::getCompiledCondition)
+                .toArray(CompiledCondition[]::new);
+        masks = new long[compiled.length];
+        tickSubIds = new int[compiled.length];
+        tickResults = new boolean[compiled.length];
+    }
+
+    // a different set of matching sub-conditions each iteration, so branches are not learned once
+    @Setup(Level.Iteration)
+    public void shuffleMatches() {
+        Random random = new Random(seed++);
+        for (int i = 0; i < compiled.length; i++) {
+            long mask = 0;
+            for (int subId : compiled[i].getSubIds()) {
+                if (random.nextDouble() < matchRatio) mask |= compiled[i].bitOf(subId);
+            }
+            masks[i] = mask;
+            tickSubIds[i] = random.nextInt(BenchmarkData.SUB_CONDITIONS) + 1;
+            tickResults[i] = random.nextDouble() < matchRatio;
+        }
+    }
+
+    @Benchmark
+    public int evaluateAll() {
+        int matched = 0;
+        for (int i = 0; i < compiled.length; i++) {
+            if (compiled[i].evaluate(masks[i])) matched++;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public void checkConditionMatchAll(Blackhole blackhole) {
+        for (int i = 0; i < programIds.size(); i++) {
+            dynamicControlManager.checkConditionMatch(programIds.get(i), tickSubIds[i], tickResults[i],
+                    START, END, true, INTERVAL_MILLIS);
+        }
+        blackhole.consume(dynamicControlManager.getTriggerCount());
+    }
+}
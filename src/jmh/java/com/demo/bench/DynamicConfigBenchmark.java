@@ -0,0 +1,48 @@
+package com.demo.bench;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.model.dynamic.DynamicCondition;
+import com.demo.model.dynamic.DynamicThreshold;
+import com.demo.service.DynamicService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of turning dynamic_threshold rows into the live config: a reload over an unchanged config, which
+// carries the running periods and thresholds over, and a cold build of a detached config including conditions.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DynamicConfigBenchmark {
+    @Param({"100", "500", "2000"})
+    private int programs;
+
+    private DynamicService dynamicService;
+    private List<DynamicCondition> conditions;
+    private List<DynamicThreshold> thresholds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        conditions = BenchmarkData.conditions(programs);
+        thresholds = BenchmarkData.thresholds(programs);
+
+        dynamicService = BenchmarkData.dynamicService();
+        dynamicService.createTrafficAndThresholdMap(thresholds);
+        dynamicService.createConditionMap(conditions);
+    }
+
+    @Benchmark
+    public DynamicConfigSnapshot createTrafficAndThresholdMap() {
+        dynamicService.createTrafficAndThresholdMap(thresholds);
+        return dynamicService.getConfig();
+    }
+
+    @Benchmark
+    public DynamicConfigSnapshot buildDetachedConfig() {
+        return dynamicService.buildDetachedConfig(conditions, thresholds);
+    }
+}
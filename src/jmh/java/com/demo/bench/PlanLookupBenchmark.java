@@ -0,0 +1,86 @@
+package com.demo.bench;
+
+import com.demo.model.dynamic.DynamicPlanid;
+import com.demo.repository.dynamic.DynamicParametersRepository;
+import com.demo.repository.dynamic.DynamicPlanidRepository;
+import com.demo.service.DynamicPlanCache;
+import com.demo.service.DynamicService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// TC→plan resolution of one program as a trigger does it: parsing the "HHmm-HHmm" rows on every call when the
+// plan cache is off, and the pre-built minute index when it is on; plus the period check every monitor tick runs.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanLookupBenchmark {
+    private static final int PROGRAMS = 500;
+
+    @Param({"10", "50"})
+    private int tcsPerProgram;
+
+    private DynamicService rowService;
+    private DynamicService cachedService;
+    private String programId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<DynamicPlanid> planIds = BenchmarkData.planIds(PROGRAMS, tcsPerProgram);
+        Map<String, List<DynamicPlanid>> byProgramAndDay = planIds.stream()
+                .collect(Collectors.groupingBy(entry -> entry.getProgramId() + entry.getDay()));
+
+        DynamicPlanidRepository planidRepository = BenchmarkData.repository(DynamicPlanidRepository.class, Map.of(
+                "findByProgramIdAndDay", args -> byProgramAndDay.getOrDefault((String) args[0] + args[1], List.of()),
+                "findAll", args -> planIds));
+        DynamicParametersRepository parametersRepository = BenchmarkData.repository(DynamicParametersRepository.class,
+                Map.<String, Function<Object[], Object>>of("findAll", args -> List.of()));
+
+        rowService = service(new DynamicPlanCache(), planidRepository);    // enabled is false outside Spring
+
+        DynamicPlanCache cache = new DynamicPlanCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "dynamicPlanidRepository", planidRepository);
+        ReflectionTestUtils.setField(cache, "dynamicParametersRepository", parametersRepository);
+        cache.refresh();
+        cachedService = service(cache, planidRepository);
+
+        programId = BenchmarkData.programId(PROGRAMS / 2);
+    }
+
+    private static DynamicService service(DynamicPlanCache cache, DynamicPlanidRepository planidRepository) {
+        DynamicService service = BenchmarkData.dynamicService();
+        ReflectionTestUtils.setField(service, "dynamicPlanCache", cache);
+        ReflectionTestUtils.setField(service, "dynamicPlanidRepository", planidRepository);
+        return service;
+    }
+
+    @Benchmark
+    public Map<String, Integer> getAllDynamicPlanIdsFromRows() {
+        return rowService.getAllDynamicPlanIds(programId, true);
+    }
+
+    @Benchmark
+    public Map<String, Integer> getAllDynamicPlanIdsFromCache() {
+        return cachedService.getAllDynamicPlanIds(programId, true);
+    }
+
+    @Benchmark
+    public Boolean isInTrafficPeriod() {
+        return rowService.isInTrafficPeriod(LocalTime.of(6, 0), LocalTime.of(9, 0));
+    }
+
+    @Benchmark
+    public Boolean isInTrafficPeriodCrossMidnight() {
+        return rowService.isInTrafficPeriod(LocalTime.of(22, 0), LocalTime.of(6, 0));
+    }
+}
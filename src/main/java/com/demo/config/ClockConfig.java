@@ -0,0 +1,28 @@
+package com.demo.config;
+
+import com.demo.util.SimulationClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Time source of the dynamic-control subsystem. In simulation mode it is a virtual clock that only the
+// simulation moves, starting at dynamic.simulation.start (ISO local date-time) or now.
+@Configuration
+public class ClockConfig {
+    @Bean
+    public Clock clock(@Value("${dynamic.simulation.enabled:false}") boolean simulation,
+                       @Value("${dynamic.simulation.start:}") String start) {
+        if (!simulation) {
+            return Clock.systemDefaultZone();
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        Instant startAt = start.isBlank() ? Instant.now() : LocalDateTime.parse(start).atZone(zone).toInstant();
+        return new SimulationClock(startAt, zone);
+    }
+}
@@ -4,22 +4,41 @@ import com.demo.util.CustomLocalDateTimeDeserializer;
 import com.demo.util.CustomLocalDateTimeSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Configuration
 public class JacksonConfig {
     @Bean
+    @Primary
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(dateTimeModule());
+        return mapper;
+    }
 
+    // binary (CBOR) counterpart for compact MQTT payloads, same (de)serializers as JSON
+    @Bean(name = "cborMapper")
+    public CBORMapper cborMapper() {
+        CBORMapper mapper = new CBORMapper();
+        mapper.registerModule(dateTimeModule());
+        return mapper;
+    }
+
+    private SimpleModule dateTimeModule() {
         SimpleModule module = new SimpleModule();
         module.addDeserializer(LocalDateTime.class, new CustomLocalDateTimeDeserializer());
         module.addSerializer(LocalDateTime.class, new CustomLocalDateTimeSerializer());
-
-        mapper.registerModule(module);
-        return mapper;
+        // plain dates as ISO yyyy-MM-dd, e.g. backtest ranges
+        module.addDeserializer(LocalDate.class, LocalDateDeserializer.INSTANCE);
+        module.addSerializer(LocalDate.class, LocalDateSerializer.INSTANCE);
+        return module;
     }
 }
@@ -1,9 +1,16 @@
 package com.demo.controller;
 
+import com.demo.dto.BacktestRequestDto;
+import com.demo.dto.SimulationRequestDto;
 import com.demo.enums.AuthDefine;
 import com.demo.exception.CustomException;
+import com.demo.manager.PeriodWarmupManager;
+import com.demo.manager.TrafficMonitorScheduler;
 import com.demo.model.dynamic.DynamicThreshold;
+import com.demo.service.BacktestService;
 import com.demo.service.DynamicService;
+import com.demo.service.DynamicSimulationService;
+import com.demo.service.DynamicTraceService;
 import com.demo.service.JwtTokenService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,6 +30,21 @@ public class DynamicController {
     @Autowired
     private JwtTokenService jwtTokenService;
 
+    @Autowired
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+
+    @Autowired
+    private BacktestService backtestService;
+
+    @Autowired
+    private DynamicSimulationService dynamicSimulationService;
+
+    @Autowired
+    private DynamicTraceService dynamicTraceService;
+
+    @Autowired
+    private PeriodWarmupManager periodWarmupManager;
+
     @GetMapping("/v1/dynamic-thresholds")
     public ResponseEntity<Object> getAllDynamicThreshold(HttpServletRequest request) {
         if (jwtTokenService.needsAuthentication(request)) {
@@ -42,4 +64,80 @@ public class DynamicController {
 
         return ResponseEntity.ok(dynamicService.updateDynamicThreshold(updateData));
     }
+
+    // active traffic-period monitors and when each one fires next
+    @GetMapping("/v1/dynamic-monitors")
+    public ResponseEntity<Object> getActiveMonitors(HttpServletRequest request) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(trafficMonitorScheduler.getActiveMonitors());
+    }
+
+    // replays stored car flow through the current or candidate thresholds/conditions
+    @PostMapping("/v1/dynamic-backtests")
+    public ResponseEntity<Object> runBacktest(
+            HttpServletRequest request,
+            @RequestBody BacktestRequestDto backtestRequest) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(backtestService.run(backtestRequest));
+    }
+
+    // simulation mode only: runs the dynamic-control loop over a virtual time range as fast as possible
+    @PostMapping("/v1/dynamic-simulations")
+    public ResponseEntity<Object> runSimulation(
+            HttpServletRequest request,
+            @RequestBody SimulationRequestDto simulationRequest) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(dynamicSimulationService.run(simulationRequest.getFrom(), simulationRequest.getTo()));
+    }
+
+    // timelines of the latest triggers, newest first
+    @GetMapping("/v1/dynamic-traces")
+    public ResponseEntity<Object> getRecentTraces(
+            HttpServletRequest request,
+            @RequestParam(required = false) String programId,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(dynamicTraceService.getRecentTraces(programId, limit));
+    }
+
+    @GetMapping("/v1/dynamic-traces/{traceId}")
+    public ResponseEntity<Object> getTrace(HttpServletRequest request, @PathVariable String traceId) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(dynamicTraceService.getTrace(traceId));
+    }
+
+    // latest period-start warm-up per program: how many TCs had parameters, a live link and a known state
+    @GetMapping("/v1/dynamic-warmups")
+    public ResponseEntity<Object> getWarmupReports(HttpServletRequest request) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(periodWarmupManager.getReports());
+    }
+
+    // lock-free snapshot of every program's match state: sub-condition result bits, consecutive count, last trigger
+    @GetMapping("/v1/dynamic-match-states")
+    public ResponseEntity<Object> getMatchStates(HttpServletRequest request) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(dynamicService.getMatchStates());
+    }
 }
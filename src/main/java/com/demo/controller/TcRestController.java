@@ -3,6 +3,7 @@ package com.demo.controller;
 import com.demo.enums.AuthDefine;
 import com.demo.exception.CustomException;
 import com.demo.dto.TcMessageLogDto;
+import com.demo.manager.ControllerStateCrawler;
 import com.demo.service.JwtTokenService;
 import com.demo.service.TcService;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -28,6 +29,9 @@ public class TcRestController {
     @Autowired
     private JwtTokenService jwtTokenService;
 
+    @Autowired
+    private ControllerStateCrawler controllerStateCrawler;
+
     @GetMapping("/v1/tc/message-logs")
     public Page<TcMessageLogDto> getTCMessageLog(
             HttpServletRequest request,
@@ -58,4 +62,13 @@ public class TcRestController {
 
         return ResponseEntity.ok(tcService.getTCInfo());
     }
+
+    @GetMapping("/v1/tc/states")
+    public ResponseEntity<Object> getTCStates(HttpServletRequest request) {
+        if (jwtTokenService.needsAuthentication(request)) {
+            throw new CustomException(AuthDefine.InvalidToken.getDescription(), HttpStatus.UNAUTHORIZED);
+        }
+
+        return ResponseEntity.ok(controllerStateCrawler.getSnapshots());
+    }
 }
@@ -0,0 +1,22 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BacktestReportDto {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Integer days;
+    private Long rowsLoaded;
+    private Integer seriesLoaded;   // cctv totals and segments kept in memory
+    private Long loadMillis;
+    private Long simulateMillis;
+    private List<BacktestResultDto> results;
+}
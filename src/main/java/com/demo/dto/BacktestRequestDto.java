@@ -0,0 +1,21 @@
+package com.demo.dto;
+
+import com.demo.model.dynamic.DynamicCondition;
+import com.demo.model.dynamic.DynamicThreshold;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BacktestRequestDto {
+    private LocalDate startDate;
+    private LocalDate endDate;          // inclusive
+    private List<String> programIds;    // empty for every program with a condition
+    private List<DynamicCondition> conditions;  // candidate rows, replace the stored row of the same program
+    private List<DynamicThreshold> thresholds;  // candidate rows, replace the stored row of the same programId-subId
+}
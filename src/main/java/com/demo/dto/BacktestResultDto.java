@@ -0,0 +1,18 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BacktestResultDto {
+    private String programId;
+    private Integer evaluations;    // monitor ticks that checked the condition
+    private Integer triggers;
+    private List<LocalDateTime> triggerTimes;
+}
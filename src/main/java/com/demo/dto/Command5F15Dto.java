@@ -0,0 +1,26 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 5F15 command, also carries the 5F14 (minGreen, maxGreen...) part of each sub phase
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Command5F15Dto implements TcCommandDto {
+    private String deviceId;
+    private Integer planId;
+    private Integer direct;
+    private String phaseOrder;
+    private Integer subPhaseCount;
+    private Integer cycleTime;
+    private Integer offset;
+    @Builder.Default
+    private List<CommandSubPhaseDto> subPhases = new ArrayList<>();
+}
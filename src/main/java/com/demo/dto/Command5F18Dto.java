@@ -0,0 +1,15 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Command5F18Dto implements TcCommandDto {
+    private String deviceId;
+    private Integer planId;
+}
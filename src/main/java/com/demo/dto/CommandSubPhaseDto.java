@@ -0,0 +1,21 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CommandSubPhaseDto {
+    private Integer subPhaseId;
+    private Integer green;
+    private Integer yellow;
+    private Integer allRed;
+    private Integer pedGreenFlash;
+    private Integer pedRed;
+    private Integer minGreen;
+    private Integer maxGreen;
+}
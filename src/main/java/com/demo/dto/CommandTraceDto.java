@@ -0,0 +1,18 @@
+package com.demo.dto;
+
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommandTraceDto {
+    private String command;             // e.g. 5F15
+    private String description;
+    private Long offsetMillis;          // sent this long after the trigger started
+    private Long millis;                // round trip, verification wait included
+    private Long verifyWaitMillis;      // waiting for 5FC0 or 5FC4/5FC5, null for commands without a report
+    private Boolean success;
+    private String message;
+}
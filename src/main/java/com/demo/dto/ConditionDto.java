@@ -1,9 +1,9 @@
 package com.demo.dto;
 
+import com.demo.util.CompiledCondition;
 import lombok.*;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Builder(toBuilder = true)
 @Setter
@@ -13,7 +13,6 @@ public class ConditionDto {
     private final String conditionExpression;
     private final Integer consecutiveMatches;   // should match this many times
     @Builder.Default
-    private AtomicInteger consecutiveCounts = new AtomicInteger(0); // record the real count of matches
-    @Builder.Default
-    private AtomicLong lastTriggeredTime = new AtomicLong(0);
+    private AtomicReference<ProgramMatchState> matchState = new AtomicReference<>(ProgramMatchState.INITIAL);  // replaced by CAS every tick
+    private volatile CompiledCondition compiledCondition;  // rebuilt whenever conditions or thresholds reload
 }
@@ -0,0 +1,48 @@
+package com.demo.dto;
+
+import com.demo.util.MinuteOfDayIndex;
+import lombok.Getter;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One version of the dynamic-control configuration. Never modified after construction, a reload builds the
+// next version and swaps it in, so readers always see conditions, thresholds and periods from the same load.
+@Getter
+public class DynamicConfigSnapshot {
+    public static final DynamicConfigSnapshot EMPTY = new DynamicConfigSnapshot(0, Map.of(), Map.of(), Map.of());
+
+    private final long version;
+    private final Map<String, ConditionDto> conditionMap;               // programId
+    private final Map<String, ThresholdDto> thresholdMap;               // programId-subId
+    private final Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap; // weekday:true or weekend:false
+    private final Map<Boolean, MinuteOfDayIndex<TrafficPeriodDto>> trafficPeriodIndex;
+
+    public DynamicConfigSnapshot(long version,
+                                 Map<String, ConditionDto> conditionMap,
+                                 Map<String, ThresholdDto> thresholdMap,
+                                 Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap) {
+        this.version = version;
+        this.conditionMap = Map.copyOf(conditionMap);
+        this.thresholdMap = Map.copyOf(thresholdMap);
+
+        Map<Boolean, List<TrafficPeriodDto>> periods = new HashMap<>();
+        Map<Boolean, MinuteOfDayIndex<TrafficPeriodDto>> index = new HashMap<>();
+        trafficPeriodsMap.forEach((isWeekday, list) -> {
+            periods.put(isWeekday, List.copyOf(list));
+            MinuteOfDayIndex.Builder<TrafficPeriodDto> builder = MinuteOfDayIndex.builder();
+            list.forEach(period -> builder.add(period.getStartTime(), period.getEndTime(), period));
+            index.put(isWeekday, builder.build());
+        });
+        this.trafficPeriodsMap = Map.copyOf(periods);
+        this.trafficPeriodIndex = Map.copyOf(index);
+    }
+
+    // periods of the day type that cover the given time
+    public List<TrafficPeriodDto> getActiveTrafficPeriods(boolean isWeekday, LocalTime time) {
+        MinuteOfDayIndex<TrafficPeriodDto> index = trafficPeriodIndex.get(isWeekday);
+        return index == null ? List.of() : index.at(time);
+    }
+}
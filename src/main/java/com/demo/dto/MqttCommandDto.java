@@ -0,0 +1,28 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.*;
+
+// MQTT command envelope, e.g. {"messageId":"5F10","value":{"deviceId":"TC001",...}}
+// messageId selects the concrete value type, so the payload is bound in one pass
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MqttCommandDto {
+    private String messageId;
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXTERNAL_PROPERTY, property = "messageId")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = Command5F10Dto.class, names = {"5F10", "5f10"}),
+            @JsonSubTypes.Type(value = Command5F15Dto.class, names = {"5F15", "5f15"}),
+            @JsonSubTypes.Type(value = Command5F18Dto.class, names = {"5F18", "5f18"}),
+            @JsonSubTypes.Type(value = Command5F40Dto.class, names = {"5F40", "5f40"}),
+            @JsonSubTypes.Type(value = Command5F45Dto.class, names = {"5F45", "5f45"})
+    })
+    private TcCommandDto value;
+}
@@ -0,0 +1,15 @@
+package com.demo.dto;
+
+import lombok.*;
+
+// MQTT result envelope published back to the TC topic, value is one of Result0F80Dto, Result0F81Dto, Result5FC0Dto
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class MqttResultDto {
+    private String messageTime;
+    private String messageId;
+    private Object value;
+}
@@ -0,0 +1,44 @@
+package com.demo.dto;
+
+import com.demo.util.CompiledCondition;
+import lombok.*;
+
+// Evaluation state of one program as one immutable value: the latest result of every sub-condition, the
+// condition's value over them, the consecutive count and the last trigger time. Each monitor tick computes the
+// next value from the current one and installs it by compare-and-set, so programs are evaluated without locks,
+// a tick never sees half of another, and a snapshot for monitoring is a single read.
+@Builder(toBuilder = true)
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ProgramMatchState {
+    public static final ProgramMatchState INITIAL = new ProgramMatchState(0L, false, 0, 0L, 0L, false);
+
+    private final long results;             // bit i: i-th sub id of the compiled condition matched on its last tick
+    private final boolean matched;          // condition over results at the last tick
+    private final int consecutiveCount;     // ticks the condition matched in a row
+    private final long lastTriggeredTime;   // epoch millis of the last trigger, 0 before any
+    private final long ticks;               // evaluations since the condition was loaded
+    private final boolean triggered;        // the last tick started dynamic control
+
+    // state after a sub-condition reported its result: the condition is re-evaluated, counted, and triggers when
+    // it matched consecutiveMatches times in a row and the last trigger is at least cooldownMillis ago
+    public ProgramMatchState next(long bit, boolean result, CompiledCondition condition, int consecutiveMatches,
+                                  long now, long cooldownMillis) {
+        long nextResults = result ? results | bit : results & ~bit;
+        boolean nextMatched = condition.evaluate(nextResults);
+        int count = nextMatched ? consecutiveCount + 1 : 0;
+        boolean trigger = nextMatched && count == consecutiveMatches && now - lastTriggeredTime >= cooldownMillis;
+
+        return new ProgramMatchState(nextResults, nextMatched, trigger ? 0 : count,
+                trigger ? now : lastTriggeredTime, ticks + 1, trigger);
+    }
+
+    // the sub-condition's period ended, its last result no longer counts
+    public ProgramMatchState withoutResult(long bit) {
+        return toBuilder().results(results & ~bit).triggered(false).build();
+    }
+
+    public boolean isMatch(long bit) {
+        return (results & bit) != 0;
+    }
+}
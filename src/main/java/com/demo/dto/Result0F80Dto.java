@@ -0,0 +1,15 @@
+package com.demo.dto;
+
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class Result0F80Dto {
+    private String deviceId;
+    private String commandId;
+    private Integer status;
+    private String resData;
+}
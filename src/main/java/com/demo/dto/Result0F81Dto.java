@@ -0,0 +1,17 @@
+package com.demo.dto;
+
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class Result0F81Dto {
+    private String deviceId;
+    private String commandId;
+    private Integer status;
+    private String errorCode;
+    private String parameterNumber;
+    private String resData;
+}
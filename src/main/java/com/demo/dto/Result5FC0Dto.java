@@ -0,0 +1,16 @@
+package com.demo.dto;
+
+import lombok.*;
+
+@Builder(toBuilder = true)
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class Result5FC0Dto {
+    private String deviceId;
+    private Integer controlStrategy;
+    private Integer effectTime;
+    private Integer status;
+    private String resData;
+}
@@ -0,0 +1,20 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimulationReportDto {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Integer periodEvents;   // period starts and ends
+    private Integer monitorTicks;
+    private Long triggers;
+    private Long wallMillis;
+    private Double speedup;         // virtual time / wall time
+}
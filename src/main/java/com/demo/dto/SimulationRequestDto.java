@@ -0,0 +1,15 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimulationRequestDto {
+    private LocalDateTime from;     // virtual start, yyyy-MM-dd HH:mm:ss
+    private LocalDateTime to;
+}
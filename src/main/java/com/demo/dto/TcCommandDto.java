@@ -0,0 +1,6 @@
+package com.demo.dto;
+
+// common view of the "value" part of an MQTT command, bound by MqttCommandDto
+public interface TcCommandDto {
+    String getDeviceId();
+}
@@ -0,0 +1,27 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+// plan content decoded from 5FC4 (min/max green, yellow...) and 5FC5 (green, cycle time...)
+@Builder(toBuilder = true)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class TcPlanStateDto {
+    private Integer planId;
+    private Integer direct;
+    private String phaseOrder;
+    private Integer subPhaseCount;
+    private Integer cycleTime;
+    private Integer offset;
+    private List<Integer> green;
+    private List<Integer> minGreen;
+    private List<Integer> maxGreen;
+    private List<Integer> yellow;
+    private List<Integer> allRed;
+    private List<Integer> pedGreenFlash;
+    private List<Integer> pedRed;
+}
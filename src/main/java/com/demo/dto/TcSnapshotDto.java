@@ -0,0 +1,27 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+// state of one TC as last read by the controller state crawler, every part stamped with the time it was read
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TcSnapshotDto {
+    private String deviceId;
+    private Integer controlStrategy;
+    private Integer effectTime;
+    private LocalDateTime strategyAt;           // 5FC0 received
+    // key: planId, from 5FC4/5FC5
+    @Builder.Default
+    private Map<Integer, TcPlanStateDto> plans = new TreeMap<>();
+    @Builder.Default
+    private Map<Integer, LocalDateTime> planAt = new TreeMap<>();
+    private LocalDateTime crawledAt;            // last pass over this TC finished
+    private String lastError;                   // first part the last pass could not read, null when complete
+}
@@ -0,0 +1,22 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// latest known state of one TC, published on the retained state topic when it changes
+@Builder(toBuilder = true)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class TcStateDto {
+    private String deviceId;
+    private Boolean connected;
+    private Integer controlStrategy;
+    private Integer effectTime;
+    // key: planId, from 5FC4/5FC5
+    @Builder.Default
+    private Map<Integer, TcPlanStateDto> plans = new TreeMap<>();
+}
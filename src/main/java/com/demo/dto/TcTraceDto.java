@@ -0,0 +1,18 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TcTraceDto {
+    private String tcId;
+    private Integer planId;
+    private String result;
+    private Long totalMillis;
+    private List<CommandTraceDto> commands;
+}
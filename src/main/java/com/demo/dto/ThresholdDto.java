@@ -1,5 +1,6 @@
 package com.demo.dto;
 
+import com.demo.enums.ComparisonOperator;
 import lombok.*;
 
 import java.util.List;
@@ -14,6 +15,7 @@ public class ThresholdDto {
     private final Integer timeInterval;
     private final List<String> carflowDirectionList;
     private final String comparisonOperator;
+    private final ComparisonOperator operator;     // parsed comparisonOperator
     private final Integer thresholdValue;
-    private Boolean isMatch;
+    private final Integer forecastHorizonMinutes;  // null or 0: observed flow only
 }
@@ -0,0 +1,23 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrafficMonitorDto {
+    private String key;     // programId-subId-HHmm-HHmm of the period
+    private String programId;
+    private Integer subId;
+    private Long intervalMillis;
+    private LocalDateTime startedAt;
+    private LocalDateTime lastRunAt;
+    private LocalDateTime nextFireTime;
+    private Long runs;
+    private Long skipped;   // ticks dropped because the previous one was still running or workers were full
+    private Boolean running;
+}
@@ -0,0 +1,25 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TriggerTraceDto {
+    private String traceId;
+    private String programId;
+    private String mode;                    // direct or staged
+    private LocalDateTime startedAt;
+    private Double carflowFetchMillis;      // last car-flow fetch of the program before the trigger
+    private Double conditionEvalMillis;     // evaluation that turned the condition true
+    private Long reactionMillis;            // condition true until the first command was sent
+    private Long totalMillis;
+    private Integer applied;
+    private Integer total;
+    private List<TcTraceDto> tcs;
+}
@@ -0,0 +1,24 @@
+package com.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class WarmupReportDto {
+    private String programId;
+    private LocalDateTime startedAt;
+    private Long elapsedMillis;
+    private Integer total;              // TCs of the program at the period start
+    private Integer parametersLoaded;   // target plan has dynamic parameters
+    private Integer connected;          // link up and dynamic control enabled
+    private Integer strategyKnown;      // fresh 5FC0 in ControllerStateCache
+    private Integer planKnown;          // fresh 5FC4/5FC5 of plan 0 in ControllerStateCache
+    private Integer ready;              // all of the above
+    private List<String> notReady;      // tcId: first missing part
+}
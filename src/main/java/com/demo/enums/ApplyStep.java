@@ -0,0 +1,24 @@
+package com.demo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// apply sequence of a dynamic plan on one TC, in execution order
+@Getter
+@AllArgsConstructor
+public enum ApplyStep {
+    SET_STRATEGY("5F10", "set dynamic control strategy"),
+    VERIFY_STRATEGY("5F40", "verify control strategy"),
+    WRITE_PARAMETERS("5F15", "write plan parameters"),
+    VERIFY_PARAMETERS("5F45", "verify plan parameters"),
+    ACTIVATE_PLAN("5F18", "activate plan");
+
+    private final String command;
+    private final String description;
+
+    // null after the last step
+    public ApplyStep next() {
+        ApplyStep[] steps = values();
+        return ordinal() + 1 < steps.length ? steps[ordinal() + 1] : null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.demo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// threshold comparison, resolved once from DynamicThreshold.comparisonOperator
+@Getter
+@AllArgsConstructor
+public enum ComparisonOperator {
+    GT(">", "gt"), GE(">=", "ge"), LT("<", "lt"), LE("<=", "le"), EQ("==", "eq"), NE("!=", "ne");
+
+    private final String symbol;
+    private final String alias;
+
+    public boolean test(double value, double threshold) {
+        return switch (this) {
+            case GT -> value > threshold;
+            case GE -> value >= threshold;
+            case LT -> value < threshold;
+            case LE -> value <= threshold;
+            case EQ -> value == threshold;
+            case NE -> value != threshold;
+        };
+    }
+
+    // null when the symbol is not supported
+    public static ComparisonOperator fromSymbol(String symbol) {
+        if (symbol == null) return null;
+
+        String s = symbol.strip();
+        if (s.equals("=")) return EQ;
+        for (ComparisonOperator operator : values()) {
+            if (operator.symbol.equals(s) || operator.alias.equalsIgnoreCase(s)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+}
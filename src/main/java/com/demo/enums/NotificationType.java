@@ -0,0 +1,15 @@
+package com.demo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// events of the same type inside one dispatch window are merged into a single summary
+@Getter
+@AllArgsConstructor
+public enum NotificationType {
+    TC_DISCONNECTED("%d TC connections removed"),
+    DYNAMIC_APPLIED("Dynamic control applied successfully for %d TCs"),
+    SYSTEM("%d system notifications");
+
+    private final String summaryFormat;
+}
@@ -0,0 +1,19 @@
+package com.demo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// outcome of applying one program's dynamic plan to one TC
+@Getter
+@AllArgsConstructor
+public enum TcApplyResult {
+    APPLIED("applied"),
+    VERIFIED("verified, not activated"),
+    ROLLED_BACK("rolled back to TOD"),
+    NOT_CONNECTED("not connected"),
+    NOT_ENABLED("not enabled"),
+    FAILED("failed"),
+    TIMEOUT("deadline exceeded");
+
+    private final String description;
+}
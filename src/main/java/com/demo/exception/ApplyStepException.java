@@ -0,0 +1,15 @@
+package com.demo.exception;
+
+import com.demo.enums.ApplyStep;
+import lombok.Getter;
+
+// failed apply step, resumeFrom is where a retry has to start again
+@Getter
+public class ApplyStepException extends DynamicException {
+    private final ApplyStep resumeFrom;
+
+    public ApplyStepException(String message, ApplyStep resumeFrom) {
+        super(message);
+        this.resumeFrom = resumeFrom;
+    }
+}
@@ -1,6 +1,7 @@
 package com.demo.itsproject;
 
-import com.demo.notification.DiscordNotifier;
+import com.demo.enums.NotificationType;
+import com.demo.notification.NotificationDispatcher;
 import com.demo.service.MqttClientService;
 import com.demo.service.SocketService;
 import org.slf4j.*;
@@ -26,7 +27,7 @@ public class ApplicationStartupRunner implements CommandLineRunner {
     private SocketService socketService;
 
     @Autowired
-    private DiscordNotifier discordNotifier;
+    private NotificationDispatcher notificationDispatcher;
 
     @Override
     public void run(String... args) {
@@ -34,7 +35,7 @@ public class ApplicationStartupRunner implements CommandLineRunner {
             ZonedDateTime currentTime = ZonedDateTime.now();
             String notify = "System started successfully at " + currentTime.format(formatter);
             log.info(notify);
-            discordNotifier.sendMessage(notify);
+            notificationDispatcher.dispatch(NotificationType.SYSTEM, null, notify);
 
             mqttClientService.connect();
             socketService.socketConnect();
@@ -0,0 +1,116 @@
+package com.demo.manager;
+
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Last control strategy (5FC0) and plan content (5FC4/5FC5) each TC reported, so a trigger can skip writing
+// parameters the controller already runs. Entries expire after a TTL, are dropped when the connection is
+// re-established and when a write to the same part is sent, because the TC may then hold anything.
+@Component
+public class ControllerStateCache {
+    @Value("${tc.state-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tc.state-cache.ttl-ms:600000}")
+    private long ttlMillis;
+
+    private final Map<String, DeviceEntry> entries = new ConcurrentHashMap<>();
+
+    public void on5FC0(String deviceId, JSONObject value) {
+        entry(deviceId).strategy = new Stamped(value, System.currentTimeMillis());
+    }
+
+    public void on5FC4(String deviceId, JSONObject value) {
+        entry(deviceId).plan5FC4 = new Stamped(value, System.currentTimeMillis());
+    }
+
+    public void on5FC5(String deviceId, JSONObject value) {
+        entry(deviceId).plan5FC5 = new Stamped(value, System.currentTimeMillis());
+    }
+
+    public void invalidate(String deviceId) {
+        entries.remove(deviceId);
+    }
+
+    // a 5F10 was sent, the reported strategy no longer holds
+    public void invalidateStrategy(String deviceId) {
+        DeviceEntry entry = entries.get(deviceId);
+        if (entry != null) entry.strategy = null;
+    }
+
+    // a 5F14/5F15 was sent, the reported plan content no longer holds
+    public void invalidatePlan(String deviceId) {
+        DeviceEntry entry = entries.get(deviceId);
+        if (entry != null) {
+            entry.plan5FC4 = null;
+            entry.plan5FC5 = null;
+        }
+    }
+
+    public JSONObject getStrategy(String deviceId) {
+        DeviceEntry entry = entries.get(deviceId);
+        return entry == null ? null : fresh(entry.strategy);
+    }
+
+    // {5FC4, 5FC5} of the plan, null unless both are known, fresh and describe planId
+    public JSONObject[] getPlan(String deviceId, int planId) {
+        DeviceEntry entry = entries.get(deviceId);
+        if (entry == null) return null;
+
+        JSONObject value5FC4 = fresh(entry.plan5FC4);
+        JSONObject value5FC5 = fresh(entry.plan5FC5);
+        if (value5FC4 == null || value5FC5 == null
+                || value5FC4.optInt("planId", -1) != planId
+                || value5FC5.optInt("planId", -1) != planId) {
+            return null;
+        }
+        return new JSONObject[]{value5FC4, value5FC5};
+    }
+
+    // 5FC0 received at or after the given time, regardless of TTL, null until one arrives
+    public JSONObject getStrategySince(String deviceId, long sinceMillis) {
+        DeviceEntry entry = entries.get(deviceId);
+        return entry == null ? null : since(entry.strategy, sinceMillis);
+    }
+
+    // {5FC4, 5FC5} of the plan received at or after the given time, null until both arrived
+    public JSONObject[] getPlanSince(String deviceId, int planId, long sinceMillis) {
+        DeviceEntry entry = entries.get(deviceId);
+        if (entry == null) return null;
+
+        JSONObject value5FC4 = since(entry.plan5FC4, sinceMillis);
+        JSONObject value5FC5 = since(entry.plan5FC5, sinceMillis);
+        if (value5FC4 == null || value5FC5 == null
+                || value5FC4.optInt("planId", -1) != planId
+                || value5FC5.optInt("planId", -1) != planId) {
+            return null;
+        }
+        return new JSONObject[]{value5FC4, value5FC5};
+    }
+
+    private DeviceEntry entry(String deviceId) {
+        return entries.computeIfAbsent(deviceId, k -> new DeviceEntry());
+    }
+
+    private JSONObject fresh(Stamped stamped) {
+        if (!enabled || stamped == null) return null;
+        return System.currentTimeMillis() - stamped.at <= ttlMillis ? stamped.value : null;
+    }
+
+    private static JSONObject since(Stamped stamped, long sinceMillis) {
+        return stamped != null && stamped.at >= sinceMillis ? stamped.value : null;
+    }
+
+    private record Stamped(JSONObject value, long at) {
+    }
+
+    private static class DeviceEntry {
+        private volatile Stamped strategy;
+        private volatile Stamped plan5FC4;
+        private volatile Stamped plan5FC5;
+    }
+}
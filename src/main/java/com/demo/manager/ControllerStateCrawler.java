@@ -0,0 +1,311 @@
+package com.demo.manager;
+
+import com.demo.dto.Command5F40Dto;
+import com.demo.dto.Command5F45Dto;
+import com.demo.dto.TcPlanStateDto;
+import com.demo.dto.TcSnapshotDto;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.DynamicPlanCache;
+import com.demo.service.SocketService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Reads the strategy (5F40) and every relevant plan (5F45, plan 0 and the TC's dynamic plan ids) of each connected
+// TC in the background, after a connection comes up and on a fixed interval, and keeps the decoded, timestamped
+// result per TC. The replies also refresh ControllerStateCache. Queries go out on a few threads at a fixed rate
+// and hold back while a dynamic trigger is commanding controllers; every query holds the TC's TcExchangeLock until
+// its report is taken, so a trigger verifying the same TC never sees the crawler's report or the other way round.
+@Service
+public class ControllerStateCrawler {
+    private static final Logger log = LoggerFactory.getLogger(ControllerStateCrawler.class);
+
+    @Value("${tc.crawler.enabled:false}")
+    private boolean enabled;
+
+    // TCs read at the same time
+    @Value("${tc.crawler.concurrency:2}")
+    private int concurrency;
+
+    // queries sent per second over all TCs, 0 for no limit
+    @Value("${tc.crawler.rate-per-second:2.0}")
+    private double ratePerSecond;
+
+    // how long a query waits for the TC's report
+    @Value("${tc.crawler.read-timeout-ms:5000}")
+    private long readTimeoutMillis;
+
+    // a fresh connection is busy with its first exchanges, read it a little later
+    @Value("${tc.crawler.after-connect-delay-ms:10000}")
+    private long afterConnectDelayMillis;
+
+    // pause between checks while a trigger is running
+    @Value("${tc.crawler.yield-ms:500}")
+    private long yieldMillis;
+
+    @Autowired
+    private TcInfoRepository tcInfoRepository;
+
+    @Autowired
+    private SocketService socketService;
+
+    @Autowired
+    private TcSendMessageManager tcSendMessageManager;
+
+    @Autowired
+    private TcReceiveMessageManager tcReceiveMessageManager;
+
+    @Autowired
+    private ControllerStateCache controllerStateCache;
+
+    @Autowired
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Autowired
+    private DynamicControlManager dynamicControlManager;
+
+    @Autowired
+    private TcExchangeLock tcExchangeLock;
+
+    @Autowired
+    private Clock clock;
+
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService timer;
+    private final AtomicBoolean passRunning = new AtomicBoolean(false);
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();              // tcId
+    private final Map<String, TcSnapshotDto> snapshots = new ConcurrentHashMap<>();   // tcId
+    private long nextSlotNanos;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "tc-crawler-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tc-crawler-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // one pass over every enabled and connected TC, only hands over; false when disabled or a pass is still running
+    public boolean crawlAll() {
+        if (!enabled || !passRunning.compareAndSet(false, true)) return false;
+
+        try {
+            List<CompletableFuture<Void>> crawls = new ArrayList<>();
+            for (TcInfo tc : tcInfoRepository.findByEnable((byte) 1)) {
+                if (!socketService.isHostConnected(tc.getIp())) continue;
+                crawls.add(CompletableFuture.runAsync(() -> crawl(tc.getTcId()), workers));
+            }
+
+            long begin = System.currentTimeMillis();
+            CompletableFuture.allOf(crawls.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> {
+                passRunning.set(false);
+                log.info("Controller state crawl of {} TCs finished in {} ms", crawls.size(), System.currentTimeMillis() - begin);
+            });
+            return true;
+        } catch (Exception e) {
+            passRunning.set(false);
+            log.error("Controller state crawl failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // called by the socket service once a TC is connected, connection events only know the ip
+    public void onConnected(String ip) {
+        if (!enabled) return;
+
+        timer.schedule(() -> {
+            try {
+                TcInfo tc = tcInfoRepository.findByIp(ip);
+                if (tc == null || !Byte.valueOf((byte) 1).equals(tc.getEnable()) || !socketService.isHostConnected(ip)) return;
+                workers.execute(() -> crawl(tc.getTcId()));
+            } catch (Exception e) {
+                log.error("Failed to schedule controller state crawl for {}: {}", ip, e.getMessage());
+            }
+        }, afterConnectDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // latest snapshot of every crawled TC
+    public List<TcSnapshotDto> getSnapshots() {
+        List<TcSnapshotDto> result = new ArrayList<>(snapshots.values());
+        result.sort(Comparator.comparing(TcSnapshotDto::getDeviceId));
+        return result;
+    }
+
+    public TcSnapshotDto getSnapshot(String tcId) {
+        return snapshots.get(tcId);
+    }
+
+    void crawl(String tc) {
+        if (!inFlight.add(tc)) return;     // already being read, after a reconnect during a pass
+
+        try {
+            TcSnapshotDto previous = snapshots.get(tc);
+            TcSnapshotDto snapshot = previous == null
+                    ? TcSnapshotDto.builder().deviceId(tc).build()
+                    : previous.toBuilder().plans(new TreeMap<>(previous.getPlans())).planAt(new TreeMap<>(previous.getPlanAt())).build();
+            String error = null;
+
+            JSONObject value5FC0 = readStrategy(tc);
+            if (value5FC0 != null) {
+                snapshot.setControlStrategy(value5FC0.optInt("ControlStrategy"));
+                snapshot.setEffectTime(value5FC0.optInt("EffectTime"));
+                snapshot.setStrategyAt(LocalDateTime.now(clock));
+            } else {
+                error = "no 5FC0";
+            }
+
+            for (int planId : planIdsOf(tc)) {
+                JSONObject[] plan = readPlan(tc, planId);
+                if (plan != null) {
+                    snapshot.getPlans().put(planId, decodePlan(planId, plan[0], plan[1]));
+                    snapshot.getPlanAt().put(planId, LocalDateTime.now(clock));
+                } else if (error == null) {
+                    error = "no 5FC4/5FC5 of plan " + planId;
+                }
+            }
+
+            snapshot.setCrawledAt(LocalDateTime.now(clock));
+            snapshot.setLastError(error);
+            snapshots.put(tc, snapshot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Controller state crawl of TC {} failed: {}", tc, e.getMessage());
+        } finally {
+            inFlight.remove(tc);
+        }
+    }
+
+    // the TC's dynamic plans, then plan 0 last: ControllerStateCache keeps one plan per TC, and a trigger's
+    // skip check asks for plan 0
+    List<Integer> planIdsOf(String tc) {
+        List<Integer> planIds = new ArrayList<>();
+        for (int planId : dynamicPlanCache.getPlanIdsOfTc(tc)) {
+            if (planId != 0) planIds.add(planId);
+        }
+        planIds.add(0);
+        return planIds;
+    }
+
+    // the raw copy is taken back out of the receive map before the TC is released, so a trigger verifying the
+    // same TC never mistakes it for the answer to its own query; null also when a trigger kept the TC busy
+    private JSONObject readStrategy(String tc) throws InterruptedException {
+        acquire();
+        if (!tcExchangeLock.tryLock(tc, readTimeoutMillis)) return null;
+        try {
+            long since = System.currentTimeMillis();
+            if (!tcSendMessageManager.handle5F40Message(Command5F40Dto.builder().deviceId(tc).build())) return null;
+
+            JSONObject value5FC0 = await(() -> controllerStateCache.getStrategySince(tc, since));
+            if (value5FC0 != null) tcReceiveMessageManager.getValueMap5FC0().remove(tc, value5FC0);
+            return value5FC0;
+        } finally {
+            tcExchangeLock.unlock(tc);
+        }
+    }
+
+    private JSONObject[] readPlan(String tc, int planId) throws InterruptedException {
+        acquire();
+        if (!tcExchangeLock.tryLock(tc, readTimeoutMillis)) return null;
+        try {
+            long since = System.currentTimeMillis();
+            if (!tcSendMessageManager.handle5F45Message(Command5F45Dto.builder().deviceId(tc).planId(planId).build())) return null;
+
+            JSONObject[] plan = await(() -> controllerStateCache.getPlanSince(tc, planId, since));
+            if (plan != null) {
+                tcReceiveMessageManager.getValueMap5FC4().remove(tc, plan[0]);
+                tcReceiveMessageManager.getValueMap5FC5().remove(tc, plan[1]);
+            }
+            return plan;
+        } finally {
+            tcExchangeLock.unlock(tc);
+        }
+    }
+
+    // waits for the next free query slot, then for any running trigger to finish; only to stay out of its way,
+    // a trigger starting right after this check is kept apart by the TC's exchange lock
+    private void acquire() throws InterruptedException {
+        if (ratePerSecond > 0) {
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(nextSlotNanos, now);
+                nextSlotNanos = slot + intervalNanos;
+                wait = slot - now;
+            }
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+        }
+
+        while (dynamicControlManager.isTriggerRunning()) {
+            Thread.sleep(yieldMillis);
+        }
+    }
+
+    private <T> T await(Supplier<T> read) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + readTimeoutMillis;
+        T value = read.get();
+        while (value == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            value = read.get();
+        }
+        return value;
+    }
+
+    static TcPlanStateDto decodePlan(int planId, JSONObject value5FC4, JSONObject value5FC5) {
+        return TcPlanStateDto.builder()
+                .planId(planId)
+                .direct(value5FC5.optInt("direct"))
+                .phaseOrder(value5FC5.optString("phaseOrder", null))
+                .subPhaseCount(value5FC5.optInt("subPhaseCount", value5FC4.optInt("subPhaseCount")))
+                .cycleTime(value5FC5.optInt("cycleTime"))
+                .offset(value5FC5.optInt("offset"))
+                .green(ints(value5FC5, "green"))
+                .minGreen(ints(value5FC4, "minGreen"))
+                .maxGreen(ints(value5FC4, "maxGreen"))
+                .yellow(ints(value5FC4, "yellow"))
+                .allRed(ints(value5FC4, "allRed"))
+                .pedGreenFlash(ints(value5FC4, "pedGreenFlash"))
+                .pedRed(ints(value5FC4, "pedRed"))
+                .build();
+    }
+
+    private static List<Integer> ints(JSONObject value, String key) {
+        JSONArray array = value.optJSONArray(key);
+        if (array == null) return List.of();
+
+        List<Integer> result = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) result.add(array.getInt(i));
+        return result;
+    }
+}
@@ -1,38 +1,41 @@
 package com.demo.manager;
 
+import com.demo.enums.ApplyStep;
+import com.demo.enums.ComparisonOperator;
 import com.demo.enums.ControlStrategy;
 import com.demo.enums.DynamicStatus;
+import com.demo.exception.ApplyStepException;
 import com.demo.exception.DynamicException;
 import com.demo.model.dynamic.DynamicParameters;
 import com.demo.model.its.TcInfo;
-import com.demo.dto.ConditionDto;
-import com.demo.dto.ThresholdDto;
-import com.demo.dto.TrafficPeriodDto;
-import com.demo.notification.DiscordNotifier;
+import com.demo.dto.*;
+import com.demo.enums.NotificationType;
+import com.demo.enums.TcApplyResult;
+import com.demo.notification.NotificationDispatcher;
 import com.demo.repository.its.TcInfoRepository;
 import com.demo.service.DynamicService;
+import com.demo.service.DynamicTraceService;
 import com.demo.service.SocketService;
+import com.demo.util.CompiledCondition;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class DynamicControlManager {
@@ -42,10 +45,45 @@ public class DynamicControlManager {
     private static final int effectTime = 5;
     private static final int testTimes = 1;
     private static final AtomicInteger testCnt = new AtomicInteger(0);
+    private static final String SUMMARY_TC_ID = "ALL";     // tc_id of the per-program summary log
 
     @Value("${app.debug:false}")
     private boolean debugMode;
 
+    @Value("${dynamic.trigger.parallelism:8}")
+    private int triggerParallelism;
+
+    @Value("${dynamic.trigger.deadline-ms:120000}")
+    private long triggerDeadlineMillis;
+
+    // push and verify on all TCs first, then activate them together
+    @Value("${dynamic.trigger.staged:false}")
+    private boolean stagedDeployment;
+
+    @Value("${dynamic.trigger.staged.max-failure-ratio:0.5}")
+    private double stagedMaxFailureRatio;
+
+    // failed steps allowed per TC before it is switched back to TOD
+    @Value("${dynamic.apply.max-failures:3}")
+    private int maxApplyFailures;
+
+    // how long 5F40/5F45 wait for the 5FC0 and 5FC4/5FC5 reports
+    @Value("${dynamic.apply.strategy-verify-timeout-ms:16000}")
+    private long strategyVerifyTimeoutMillis;
+
+    @Value("${dynamic.apply.parameters-verify-timeout-ms:16000}")
+    private long parametersVerifyTimeoutMillis;
+
+    private ThreadPoolExecutor triggerExecutor;
+    private final AtomicLong triggerCount = new AtomicLong();
+    private final AtomicInteger runningTriggers = new AtomicInteger();
+    private final Map<String, Long> lastFetchNanos = new ConcurrentHashMap<>();            // programId
+    private final Map<String, TriggerTrace.Cause> pendingCauses = new ConcurrentHashMap<>(); // programId
+
+    // domain time (periods, car-flow windows, cooldown); command timeouts stay on wall time
+    @Autowired
+    private Clock clock;
+
     @Autowired
     private TcReceiveMessageManager tcReceiveMessageManager;
 
@@ -62,14 +100,58 @@ public class DynamicControlManager {
     private SocketService socketService;
 
     @Autowired
-    private DiscordNotifier discordNotifier;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+
+    @Autowired
+    private ControllerStateCache controllerStateCache;
+
+    @Autowired
+    private TcExchangeLock tcExchangeLock;
+
+    @Autowired
+    private DynamicTraceService dynamicTraceService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        triggerExecutor = new ThreadPoolExecutor(triggerParallelism, triggerParallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "dynamic-trigger-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        triggerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        triggerExecutor.shutdownNow();
+    }
+
+    // dynamic triggers started since startup
+    public long getTriggerCount() {
+        return triggerCount.get();
+    }
 
-    @Async
+    // background TC queries hold back while a trigger is commanding controllers; TcExchangeLock keeps their
+    // exchanges with one TC apart, this only keeps them out of the way
+    public boolean isTriggerRunning() {
+        return runningTriggers.get() > 0;
+    }
+
+    // registers the period with the shared monitor scheduler, returns immediately
     public void startTrafficCalculation(TrafficPeriodDto period, Boolean isWeekday) {
         String program_id = period.getProgramId();
         int sub_id = period.getSubId();
 
-        ThresholdDto thresholdData = dynamicService.getThresholdMap().get(program_id + "-" + sub_id);
+        String thresholdKey = program_id + "-" + sub_id;
+        ThresholdDto thresholdData = dynamicService.getThresholdMap().get(thresholdKey);
 
         int timeInterval_minutes = thresholdData.getTimeInterval();
         long timeInterval_milliseconds = (long) timeInterval_minutes * 60 * 1000;
@@ -77,96 +159,151 @@ public class DynamicControlManager {
         LocalTime startTime = period.getStartTime();
         LocalTime endTime = period.getEndTime();
 
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> {
+        if (operatorOf(thresholdData) == null) {
+            log.warn("Unsupported comparison operator '{}' for {}-{}", thresholdData.getComparisonOperator(), program_id, sub_id);
+        }
+
+        trafficMonitorScheduler.schedule(period, timeInterval_milliseconds, () -> {
+            // a reload or API update may replace the threshold while the period runs, evaluate the live one
+            ThresholdDto threshold = dynamicService.getThresholdMap().getOrDefault(thresholdKey, thresholdData);
             try {
                 if (!dynamicService.isInTrafficPeriod(startTime, endTime)) {
+                    // the end timer normally gets there first, this catches a period left running past its end
                     log.info("Not in traffic period. Stopping monitoring...");
-                    // schedule end, reset match
-                    thresholdData.setIsMatch(false);
-                    period.getInSchedule().compareAndSet(true, false);
-
-                    scheduler.shutdownNow();
+                    stopTrafficCalculation(period);
                     return;
                 }
-                double totalCarFlow = calculateTotalCarFlow(thresholdData, timeInterval_minutes);
-
-                // e.g. "180.0 > 55", check if totalCarFlow match condition
-                String express = totalCarFlow + thresholdData.getComparisonOperator() + thresholdData.getThresholdValue();
-
-                if (evaluateCondition(express)) {
-                    thresholdData.setIsMatch(true);
+                long fetchBegin = System.nanoTime();
+                double totalCarFlow = calculateTotalCarFlow(threshold, timeInterval_minutes);
+                long fetchNanos = System.nanoTime() - fetchBegin;
+                meterRegistry.timer("dynamic.carflow.fetch", "program", program_id).record(fetchNanos, TimeUnit.NANOSECONDS);
+                lastFetchNanos.put(program_id, fetchNanos);
+
+                // e.g. 180.0 > 55, check if totalCarFlow match condition
+                ComparisonOperator operator = operatorOf(threshold);
+                int horizon = forecastHorizonOf(threshold);
+                boolean matched = false;
+                if (operator != null && operator.test(totalCarFlow, threshold.getThresholdValue())) {
+                    matched = true;
+                } else if (operator != null && horizon > 0) {
+                    // the observed flow is not there yet, match early if the forecast crosses the threshold
+                    Double predicted = forecastTotalCarFlow(threshold, timeInterval_minutes, horizon);
+                    if (predicted != null && operator.test(predicted, threshold.getThresholdValue())) {
+                        log.info("{} matched on forecast {} in {} min (observed {})", thresholdKey, predicted, horizon, totalCarFlow);
+                        matched = true;
+                    }
                 }
 
                 // Check if all sub-conditions are satisfied for the final result
-                checkConditionMatch(program_id, startTime, endTime, isWeekday, timeInterval_milliseconds);
+                checkConditionMatch(program_id, sub_id, matched, startTime, endTime, isWeekday, timeInterval_milliseconds);
 
             } catch (Exception e) {
                 log.error("Error in startTrafficCalculation: {}", e.getMessage());
             }
-        }, 0, timeInterval_milliseconds, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    // period end: stop the period's own monitor before releasing the period so it can be started again
+    public void stopTrafficCalculation(TrafficPeriodDto period) {
+        String program_id = period.getProgramId();
+        int sub_id = period.getSubId();
+
+        trafficMonitorScheduler.cancel(period);
+        // another period of the same sub-condition still monitoring it keeps reporting its result
+        ConditionDto condition = dynamicService.getConditionMap().get(program_id);
+        if (condition != null && condition.getCompiledCondition() != null && !trafficMonitorScheduler.isMonitored(program_id, sub_id)) {
+            long bit = condition.getCompiledCondition().bitOf(sub_id);
+            condition.getMatchState().updateAndGet(state -> state.withoutResult(bit));
+        }
+        period.getInSchedule().compareAndSet(true, false);
+    }
+
+    private static ComparisonOperator operatorOf(ThresholdDto thresholdData) {
+        return thresholdData.getOperator() != null
+                ? thresholdData.getOperator()
+                : ComparisonOperator.fromSymbol(thresholdData.getComparisonOperator());
+    }
+
+    // forecast matching is opt-in per threshold
+    private static int forecastHorizonOf(ThresholdDto thresholdData) {
+        Integer horizon = thresholdData.getForecastHorizonMinutes();
+        return horizon != null ? Math.max(0, horizon) : 0;
     }
 
     private double calculateTotalCarFlow(ThresholdDto thresholdData, int timeInterval_minutes) {
         double totalCarFlow = 0.0;
+        LocalDateTime now = LocalDateTime.now(clock);
         for (String cctv : thresholdData.getCctvList()) {
             List<String> carflowDirection = thresholdData.getCarflowDirectionList();
             for (String direction : carflowDirection) {
                 if (direction.equalsIgnoreCase("ALL")) {
-                    totalCarFlow += dynamicService.getTotalCarFlow(cctv, LocalDateTime.now(), timeInterval_minutes);
+                    totalCarFlow += dynamicService.getTotalCarFlow(cctv, now, timeInterval_minutes);
                 } else {
                     String[] pos = direction.split("-");  // e.g. "A-B"
                     String startPos = pos[0];
                     String endPos = pos[1];
 
-                    totalCarFlow += dynamicService.getSegmentCarFlow(cctv, LocalDateTime.now(), timeInterval_minutes, startPos, endPos);
+                    totalCarFlow += dynamicService.getSegmentCarFlow(cctv, now, timeInterval_minutes, startPos, endPos);
                 }
             }
         }
         return totalCarFlow;
     }
 
-    public static boolean evaluateCondition(String expression) {
-        ExpressionParser parser = new SpelExpressionParser();
-        Expression exp = parser.parseExpression(expression);
-        return Boolean.TRUE.equals(exp.getValue(Boolean.class));
+    // same sum as calculateTotalCarFlow for the window ending horizon minutes from now,
+    // null unless every cctv and direction can be forecast
+    private Double forecastTotalCarFlow(ThresholdDto thresholdData, int timeInterval_minutes, int horizon) {
+        double totalCarFlow = 0.0;
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (String cctv : thresholdData.getCctvList()) {
+            for (String direction : thresholdData.getCarflowDirectionList()) {
+                Double predicted;
+                if (direction.equalsIgnoreCase("ALL")) {
+                    predicted = dynamicService.getForecastTotalCarFlow(cctv, now, timeInterval_minutes, horizon);
+                } else {
+                    String[] pos = direction.split("-");  // e.g. "A-B"
+                    predicted = dynamicService.getForecastSegmentCarFlow(cctv, now, timeInterval_minutes, horizon, pos[0], pos[1]);
+                }
+                if (predicted == null) return null;
+                totalCarFlow += predicted;
+            }
+        }
+        return totalCarFlow;
     }
 
-    public void checkConditionMatch(String program_id, LocalTime startTime, LocalTime endTime, boolean isWeekday, long intervalMillis) {
+    // folds one sub-condition's tick result into the program's match state; the new state is computed from the
+    // current one and installed by CAS, retried when another sub-condition's tick got there first, so only the
+    // tick whose state says triggered applies dynamic control
+    public void checkConditionMatch(String program_id, int sub_id, boolean subMatched, LocalTime startTime, LocalTime endTime,
+                                    boolean isWeekday, long intervalMillis) {
         try {
             ConditionDto condition = dynamicService.getConditionMap().get(program_id);
 
-            // 1. replace || -> or, && -> and, e.g. (1 and (2 or 3))
-            String spelCondition = (condition.getConditionExpression())
-                    .replace("||", " or ").replace("&&", " and ");
-
-            Set<Map.Entry<String, ThresholdDto>> result = dynamicService.getThresholdMap().entrySet().stream()
-                    .filter(entry -> entry.getKey().startsWith(program_id))
-                    .collect(Collectors.toSet());
-
-            // 2. replace number with true/false, e.g. (true and (false or false))
-            for (Map.Entry<String, ThresholdDto> entry : result) {
-                spelCondition = spelCondition.replaceAll("\\b" + entry.getKey().split("-")[1] + "\\b", String.valueOf(entry.getValue().getIsMatch()));
+            // compiled once when conditions/thresholds are loaded, compile here only if it was never done
+            CompiledCondition compiled = condition.getCompiledCondition();
+            if (compiled == null) {
+                compiled = CompiledCondition.compile(program_id, condition.getConditionExpression(), dynamicService.getThresholdMap());
+                condition.setCompiledCondition(compiled);
             }
 
-            // 3. use SpEL parsing
-            if (evaluateCondition(spelCondition)) {
-                int newCount = condition.getConsecutiveCounts().incrementAndGet();  // thread safe plus one
-
-                if (newCount == condition.getConsecutiveMatches()) {
-                    long lastTime = condition.getLastTriggeredTime().get();
-                    long now = System.currentTimeMillis();
-
-                    if (now - lastTime >= intervalMillis) {
-                        if (condition.getLastTriggeredTime().compareAndSet(lastTime, now)) {
-                            // apply dynamic control
-                            condition.getConsecutiveCounts().set(0);    // reset
-                            dynamicTrigger(program_id, startTime, endTime, isWeekday);
-                        }
-                    }
-                }
-            } else {
-                condition.getConsecutiveCounts().set(0);    // reset, not consecutive match
+            long bit = compiled.bitOf(sub_id);
+            long now = clock.millis();
+            long evalBegin = System.nanoTime();
+            ProgramMatchState previous;
+            ProgramMatchState next;
+            do {
+                previous = condition.getMatchState().get();
+                next = previous.next(bit, subMatched, compiled, condition.getConsecutiveMatches(), now, intervalMillis);
+            } while (!condition.getMatchState().compareAndSet(previous, next));
+            long evalEnd = System.nanoTime();
+            meterRegistry.timer("dynamic.condition.evaluation", "program", program_id).record(evalEnd - evalBegin, TimeUnit.NANOSECONDS);
+
+            if (next.isTriggered()) {
+                // apply dynamic control
+                Long fetchNanos = lastFetchNanos.get(program_id);
+                pendingCauses.put(program_id, new TriggerTrace.Cause(
+                        fetchNanos == null ? null : fetchNanos / 1e6, (evalEnd - evalBegin) / 1e6, evalEnd));
+                dynamicTrigger(program_id, startTime, endTime, isWeekday);
             }
 
             if (debugMode && program_id.equals("21001")) {
@@ -180,89 +317,421 @@ public class DynamicControlManager {
         }
     }
 
+    // applies the program to all of its TCs concurrently (bounded by dynamic.trigger.parallelism), waits at most
+    // dynamic.trigger.deadline-ms for the whole program and writes one summary log next to the per-TC logs
     public void dynamicTrigger(String program_id, LocalTime startTime, LocalTime endTime, boolean isWeekday) {
+        triggerCount.incrementAndGet();
+        runningTriggers.incrementAndGet();
         try {
             Map<String, Integer> tcPlanMap = dynamicService.getAllDynamicPlanIds(program_id, isWeekday);
 
-            for (String tc : tcPlanMap.keySet()) {
-                int targetPlanId = tcPlanMap.get(tc);
+            if (debugMode && !tcPlanMap.isEmpty()) {
+                // for testing purposes every TC maps to the test device, apply it once
+                tcPlanMap = Map.of("TestDevice", tcPlanMap.values().iterator().next());
+            }
 
-                if (debugMode) {
-                    tc = "TestDevice";  // for testing purposes, use a test device
-                }
+            long begin = System.currentTimeMillis();
+            long deadline = begin + triggerDeadlineMillis;
+            Map<String, Long> elapsed = new ConcurrentHashMap<>();
+            TriggerTrace trace = new TriggerTrace(program_id, stagedDeployment ? "staged" : "direct",
+                    LocalDateTime.now(clock), pendingCauses.remove(program_id));
 
-                String host = tcInfoRepository.findByTcId(tc).getIp();
-                if (!socketService.isHostConnected(host)) {
-                    dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "socket is not connected");
-                    continue;
-                }
+            Map<String, TcApplyResult> results;
+            if (stagedDeployment) {
+                results = stagedTrigger(program_id, tcPlanMap, begin, deadline, elapsed, trace);
+            } else {
+                results = runPhase(program_id, tcPlanMap, deadline, elapsed,
+                        (tc, targetPlanId) -> applyToTc(program_id, tc, targetPlanId, deadline, trace));
 
-                Optional<TcInfo> tcOpt = tcInfoRepository.findById(tc);
-                TcInfo tcData = tcOpt.orElse(null);
-                if (tcData == null || tcData.getEnable().equals(Byte.valueOf("0"))) {
-                    dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "dynamic control not enabled for TC");
-                    continue;
-                }
+                saveTriggerSummary(program_id, "dynamic trigger summary: ", tcPlanMap.size(), results.values(),
+                        elapsed, System.currentTimeMillis() - begin, null);
+            }
+
+            finishTrace(trace, tcPlanMap, results, elapsed, System.currentTimeMillis() - begin);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Dynamic trigger for program {} interrupted", program_id);
+        } catch (Exception e) {
+            log.error("Error in dynamicTrigger: {}", e.getMessage());
+        } finally {
+            runningTriggers.decrementAndGet();
+        }
+    }
 
-                int retryCnt = 0;
-                int maxRetry = 3; // maximum retry attempts
-                boolean success = false;
+    // phase 1 pushes and verifies parameters on every TC, phase 2 activates all verified TCs together;
+    // the whole program goes back to TOD when more than dynamic.trigger.staged.max-failure-ratio of it failed
+    private Map<String, TcApplyResult> stagedTrigger(String program_id, Map<String, Integer> tcPlanMap, long begin, long deadline,
+                                                     Map<String, Long> elapsed, TriggerTrace trace) throws InterruptedException {
+        Map<String, TcApplyResult> results = new LinkedHashMap<>(runPhase(program_id, tcPlanMap, deadline, elapsed,
+                (tc, targetPlanId) -> prepareTc(program_id, tc, targetPlanId, deadline, trace)));
+
+        Map<String, Integer> verified = new LinkedHashMap<>();
+        results.forEach((tc, result) -> {
+            if (result == TcApplyResult.VERIFIED) verified.put(tc, tcPlanMap.get(tc));
+        });
+
+        Long activationSpread = null;
+        if (!tooManyFailures(tcPlanMap.size() - verified.size(), tcPlanMap.size())) {
+            // released only after every activation task is queued, so the 5F18s leave as close together as the pool allows
+            CountDownLatch gate = new CountDownLatch(1);
+            Map<String, Long> activatedAt = new ConcurrentHashMap<>();
+            Map<String, TcApplyResult> activation = runPhase(program_id, verified, deadline, elapsed, gate,
+                    (tc, targetPlanId) -> activateTc(program_id, tc, targetPlanId, gate, activatedAt, trace));
+            results.putAll(activation);
+
+            if (!activatedAt.isEmpty()) {
+                activationSpread = Collections.max(activatedAt.values()) - Collections.min(activatedAt.values());
+            }
+        }
 
-                while (!success && retryCnt < maxRetry) {
-                    try {
-                        triggerDynamicControl(program_id, tc, targetPlanId);
-                        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control success");
+        int failed = (int) results.values().stream().filter(r -> r != TcApplyResult.APPLIED).count();
+        if (tooManyFailures(failed, tcPlanMap.size())) {
+            log.warn("Program {} staged deployment failed on {} of {} TCs, rolling back to TOD", program_id, failed, tcPlanMap.size());
+            Map<String, Integer> rollback = new LinkedHashMap<>();
+            results.forEach((tc, result) -> {
+                if (result == TcApplyResult.VERIFIED || result == TcApplyResult.APPLIED) rollback.put(tc, tcPlanMap.get(tc));
+            });
+            // rollback gets its own deadline, it must not be skipped because the deployment ran out of time
+            long rollbackDeadline = System.currentTimeMillis() + triggerDeadlineMillis;
+            results.putAll(runPhase(program_id, rollback, rollbackDeadline, new ConcurrentHashMap<>(),
+                    (tc, targetPlanId) -> closeTc(program_id, tc, targetPlanId, trace)));
+        }
 
-                        String notify = "Dynamic control applied successfully for TC " + tc + " at " + LocalDateTime.now().format(formatter);
-                        discordNotifier.sendMessage(notify);
+        saveTriggerSummary(program_id, "staged trigger summary: ", tcPlanMap.size(), results.values(),
+                elapsed, System.currentTimeMillis() - begin, activationSpread);
+        return results;
+    }
 
-                        success = true;
-                        break;
-                    } catch (DynamicException e) {
-                        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "apply dynamic control failed: " + e.getMessage());
-                    }
-                    retryCnt++;
-                }
+    private boolean tooManyFailures(int failed, int total) {
+        return total > 0 && failed > total * stagedMaxFailureRatio;
+    }
+
+    private Map<String, TcApplyResult> runPhase(String program_id, Map<String, Integer> tcPlanMap, long deadline,
+                                                Map<String, Long> elapsed, TcTask task) throws InterruptedException {
+        return runPhase(program_id, tcPlanMap, deadline, elapsed, null, task);
+    }
 
-                if (!success) {
+    // runs one task per TC on the trigger pool and collects the results, TCs still running at the deadline are cancelled;
+    // each task holds its TC's exchange lock, so no background read's report is taken for the task's own
+    private Map<String, TcApplyResult> runPhase(String program_id, Map<String, Integer> tcPlanMap, long deadline,
+                                                Map<String, Long> elapsed, CountDownLatch releaseAfterSubmit,
+                                                TcTask task) throws InterruptedException {
+        Map<String, Future<TcApplyResult>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : tcPlanMap.entrySet()) {
+            String tc = entry.getKey();
+            int targetPlanId = entry.getValue();
+            futures.put(tc, triggerExecutor.submit(() -> {
+                long tcBegin = System.currentTimeMillis();
+                try {
+                    tcExchangeLock.lock(tc);
                     try {
-                        tryCloseDynamic(tc);    // apply dynamic control failed, close it
-                        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "5F10 disable dynamic control success");
-                    } catch (DynamicException e) {
-                        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "5F10 disable dynamic control failed: " + e.getMessage());
+                        return task.run(tc, targetPlanId);
+                    } finally {
+                        tcExchangeLock.unlock(tc);
                     }
+                } finally {
+                    elapsed.merge(tc, System.currentTimeMillis() - tcBegin, Long::sum);
                 }
+            }));
+        }
+        if (releaseAfterSubmit != null) releaseAfterSubmit.countDown();
 
-                Thread.sleep(100); // avoid too frequent requests
+        Map<String, TcApplyResult> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<TcApplyResult>> entry : futures.entrySet()) {
+            String tc = entry.getKey();
+            Future<TcApplyResult> future = entry.getValue();
+            TcApplyResult result;
+            try {
+                result = future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                result = TcApplyResult.TIMEOUT;
+                dynamicService.saveDynamicLog(program_id, tc, tcPlanMap.get(tc), DynamicStatus.FAILURE.getCode(), "apply dynamic control failed: program deadline exceeded");
+            } catch (ExecutionException e) {
+                result = TcApplyResult.FAILED;
+                log.error("Dynamic trigger for TC {} failed: {}", tc, e.getCause().getMessage());
             }
-        } catch (Exception e) {
-            log.error("Error in dynamicTrigger: {}", e.getMessage());
+            results.put(tc, result);
+        }
+        return results;
+    }
+
+    private TcApplyResult applyToTc(String program_id, String tc, int targetPlanId, long deadline, TriggerTrace trace) {
+        TcApplyResult ready = checkTc(program_id, tc, targetPlanId);
+        if (ready != null) return ready;
+
+        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control for TC");
+        ApplyProgress progress = new ApplyProgress(program_id, tc, targetPlanId, ApplyStep.SET_STRATEGY, trace);
+
+        if (runWithRetries(progress, ApplyStep.ACTIVATE_PLAN, deadline)) {
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control success");
+            notifyApplied(tc);
+            return TcApplyResult.APPLIED;
+        }
+
+        closeTc(program_id, tc, targetPlanId, trace);   // apply dynamic control failed, close it
+        return TcApplyResult.FAILED;
+    }
+
+    // staged phase 1: everything up to, but not including, the plan activation
+    private TcApplyResult prepareTc(String program_id, String tc, int targetPlanId, long deadline, TriggerTrace trace) {
+        TcApplyResult ready = checkTc(program_id, tc, targetPlanId);
+        if (ready != null) return ready;
+
+        dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control for TC");
+        ApplyProgress progress = new ApplyProgress(program_id, tc, targetPlanId, ApplyStep.SET_STRATEGY, trace);
+
+        if (runWithRetries(progress, ApplyStep.VERIFY_PARAMETERS, deadline)) {
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "dynamic parameters verified");
+            return TcApplyResult.VERIFIED;
+        }
+
+        closeTc(program_id, tc, targetPlanId, trace);
+        return TcApplyResult.FAILED;
+    }
+
+    // staged phase 2: waits for the gate, then activates the verified plan
+    private TcApplyResult activateTc(String program_id, String tc, int targetPlanId, CountDownLatch gate,
+                                     Map<String, Long> activatedAt, TriggerTrace trace) throws InterruptedException {
+        gate.await();
+        try {
+            runSteps(new ApplyProgress(program_id, tc, targetPlanId, ApplyStep.ACTIVATE_PLAN, trace), ApplyStep.ACTIVATE_PLAN);
+            activatedAt.put(tc, System.currentTimeMillis());
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control success");
+            notifyApplied(tc);
+            return TcApplyResult.APPLIED;
+        } catch (DynamicException e) {
+            closeTc(program_id, tc, targetPlanId, trace);
+            return TcApplyResult.FAILED;
         }
     }
 
-    private void triggerDynamicControl(String programId, String tcId, int targetPlanId) {
-        dynamicService.saveDynamicLog(programId, tcId, targetPlanId, DynamicStatus.SUCCESS.getCode(), "apply dynamic control for TC");
+    // null when the TC can be commanded
+    private TcApplyResult checkTc(String program_id, String tc, int targetPlanId) {
+        String host = tcInfoRepository.findByTcId(tc).getIp();
+        if (!socketService.isHostConnected(host)) {
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "socket is not connected");
+            return TcApplyResult.NOT_CONNECTED;
+        }
+
+        Optional<TcInfo> tcOpt = tcInfoRepository.findById(tc);
+        TcInfo tcData = tcOpt.orElse(null);
+        if (tcData == null || tcData.getEnable().equals(Byte.valueOf("0"))) {
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "dynamic control not enabled for TC");
+            return TcApplyResult.NOT_ENABLED;
+        }
+        return null;
+    }
 
+    private TcApplyResult closeTc(String program_id, String tc, int targetPlanId, TriggerTrace trace) {
+        long offset = trace.commandSent();
+        long begin = System.currentTimeMillis();
         try {
-            /* Apply a sequence of commands to TC devices to trigger dynamic control */
-            send5F10(tcId, ControlStrategy.Dynamic.getCode());  // enable dynamic control
-            send5F40(tcId, ControlStrategy.Dynamic.getCode());  // check if dynamic control is set correctly
+            tryCloseDynamic(tc);
+            traceCommand(trace, tc, "5F10", "switch back to TOD", offset, System.currentTimeMillis() - begin, null, true, null);
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.SUCCESS.getCode(), "5F10 disable dynamic control success");
+            return TcApplyResult.ROLLED_BACK;
+        } catch (DynamicException e) {
+            traceCommand(trace, tc, "5F10", "switch back to TOD", offset, System.currentTimeMillis() - begin, null, false, e.getMessage());
+            dynamicService.saveDynamicLog(program_id, tc, targetPlanId, DynamicStatus.FAILURE.getCode(), "5F10 disable dynamic control failed: " + e.getMessage());
+            return TcApplyResult.FAILED;
+        }
+    }
 
-            List<DynamicParameters> data = dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId(programId, tcId, targetPlanId);
-            if (data.isEmpty()) {
-                throw new DynamicException("Dynamic parameters not found for programId: " + programId + ", tcId: " + tcId + ", targetPlanId: " + targetPlanId);
+    private void traceCommand(TriggerTrace trace, String tc, String command, String description, long offsetMillis,
+                              long millis, Long verifyWaitMillis, boolean success, String message) {
+        meterRegistry.timer("dynamic.command", "command", command, "outcome", success ? "success" : "failure")
+                .record(millis, TimeUnit.MILLISECONDS);
+        trace.addCommand(tc, CommandTraceDto.builder()
+                .command(command)
+                .description(description)
+                .offsetMillis(offsetMillis)
+                .millis(millis)
+                .verifyWaitMillis(verifyWaitMillis)
+                .success(success)
+                .message(message)
+                .build());
+    }
+
+    // per-TC and per-program switch timers, then the trace goes to memory and dynamic_trace
+    private void finishTrace(TriggerTrace trace, Map<String, Integer> tcPlanMap, Map<String, TcApplyResult> results,
+                             Map<String, Long> elapsed, long totalMillis) {
+        String program_id = trace.getProgramId();
+        results.forEach((tc, result) -> {
+            Long millis = elapsed.get(tc);
+            if (millis != null) {
+                meterRegistry.timer("dynamic.switch.tc", "program", program_id, "result", result.name())
+                        .record(millis, TimeUnit.MILLISECONDS);
             }
+        });
+        meterRegistry.timer("dynamic.switch.program", "program", program_id, "mode", trace.getMode())
+                .record(totalMillis, TimeUnit.MILLISECONDS);
+
+        Long reactionMillis = trace.reactionMillis();
+        if (reactionMillis != null && trace.hasCause()) {
+            meterRegistry.timer("dynamic.trigger.reaction", "program", program_id).record(reactionMillis, TimeUnit.MILLISECONDS);
+        }
 
-            targetPlanId = 0;   // dynamic control can only be applied to plan ID 0
+        dynamicTraceService.record(trace.toDto(tcPlanMap, results, elapsed, totalMillis));
+    }
 
-            send5F15(tcId, targetPlanId, data);      // set target plan ID and relevant parameters
-            send5F45(tcId, targetPlanId, data);      // check if parameters is set correctly
-            send5F18(tcId, targetPlanId);            // enable target plan ID
-        } catch (Exception e) {
-            throw new DynamicException(e.getMessage());
+    private void notifyApplied(String tc) {
+        String notify = "Dynamic control applied successfully for TC " + tc + " at " + LocalDateTime.now(clock).format(formatter);
+        notificationDispatcher.dispatch(NotificationType.DYNAMIC_APPLIED, tc, notify);
+    }
+
+    private void saveTriggerSummary(String program_id, String prefix, int total, Collection<TcApplyResult> results,
+                                    Map<String, Long> elapsed, long elapsedMillis, Long activationSpreadMillis) {
+        Map<TcApplyResult, Integer> counts = new EnumMap<>(TcApplyResult.class);
+        results.forEach(result -> counts.merge(result, 1, Integer::sum));
+
+        StringBuilder message = new StringBuilder(prefix)
+                .append(counts.getOrDefault(TcApplyResult.APPLIED, 0)).append("/").append(total).append(" applied");
+        for (Map.Entry<TcApplyResult, Integer> entry : counts.entrySet()) {
+            if (entry.getKey() == TcApplyResult.APPLIED) continue;
+            message.append(", ").append(entry.getValue()).append(" ").append(entry.getKey().getDescription());
+        }
+        message.append(", elapsed ").append(elapsedMillis).append(" ms");
+        if (activationSpreadMillis != null) {
+            message.append(", activation spread ").append(activationSpreadMillis).append(" ms");
+        }
+        elapsed.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .ifPresent(slowest -> message.append(", slowest ").append(slowest.getKey()).append(" ").append(slowest.getValue()).append(" ms"));
+
+        String status = counts.getOrDefault(TcApplyResult.APPLIED, 0) == total
+                ? DynamicStatus.SUCCESS.getCode()
+                : DynamicStatus.FAILURE.getCode();
+        String text = message.length() > 255 ? message.substring(0, 255) : message.toString();
+
+        log.info("Program {} {}", program_id, text);
+        dynamicService.saveDynamicLog(program_id, SUMMARY_TC_ID, 0, status, text);
+    }
+
+    // retries resume from the step that failed instead of restarting the sequence, up to maxApplyFailures failures
+    private boolean runWithRetries(ApplyProgress progress, ApplyStep last, long deadline) {
+        while (progress.failures < maxApplyFailures && System.currentTimeMillis() < deadline) {
+            try {
+                runSteps(progress, last);
+                return true;
+            } catch (DynamicException e) {
+                progress.failures++;
+            }
+        }
+        return false;
+    }
+
+    // runs progress.next .. last, each outcome goes to DynamicLog; on failure progress.next is the resume point
+    private void runSteps(ApplyProgress progress, ApplyStep last) {
+        while (progress.next != null && progress.next.ordinal() <= last.ordinal()) {
+            ApplyStep step = progress.next;
+            if (step == ApplyStep.WRITE_PARAMETERS && planAlreadyLoaded(progress)) {
+                dynamicService.saveDynamicLog(progress.programId, progress.tcId, progress.targetPlanId, DynamicStatus.SUCCESS.getCode(),
+                        stepMessage(step, "skipped, controller already runs these parameters"));
+                progress.trace.addCommand(progress.tcId, CommandTraceDto.builder()
+                        .command(step.getCommand())
+                        .description(step.getDescription())
+                        .millis(0L)
+                        .success(true)
+                        .message("skipped, controller already runs these parameters")
+                        .build());
+                progress.next = ApplyStep.VERIFY_PARAMETERS.next();
+                continue;
+            }
+
+            long offset = progress.trace.commandSent();
+            long begin = System.currentTimeMillis();
+            Long verifyWaitMillis;
+            try {
+                verifyWaitMillis = executeStep(progress, step);
+            } catch (Exception e) {
+                ApplyStep resumeFrom = e instanceof ApplyStepException ase ? ase.getResumeFrom() : step;
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                progress.next = resumeFrom;
+
+                long millis = System.currentTimeMillis() - begin;
+                traceCommand(progress.trace, progress.tcId, step.getCommand(), step.getDescription(), offset, millis, null, false, e.getMessage());
+                dynamicService.saveDynamicLog(progress.programId, progress.tcId, progress.targetPlanId, DynamicStatus.FAILURE.getCode(),
+                        stepMessage(step, "failed after " + millis + " ms: " + e.getMessage()
+                                + (resumeFrom != step ? ", resume from " + resumeFrom.getCommand() : "")));
+                throw e instanceof DynamicException de ? de : new ApplyStepException(String.valueOf(e.getMessage()), resumeFrom);
+            }
+
+            long millis = System.currentTimeMillis() - begin;
+            traceCommand(progress.trace, progress.tcId, step.getCommand(), step.getDescription(), offset, millis, verifyWaitMillis, true, null);
+            dynamicService.saveDynamicLog(progress.programId, progress.tcId, progress.targetPlanId, DynamicStatus.SUCCESS.getCode(),
+                    stepMessage(step, "ok in " + millis + " ms"));
+            progress.next = step.next();
+        }
+    }
+
+    // returns how long the step waited for the TC's report, null for steps without one
+    private Long executeStep(ApplyProgress progress, ApplyStep step) throws InterruptedException {
+        String tcId = progress.tcId;
+        Long verifyWaitMillis = null;
+        switch (step) {
+            case SET_STRATEGY -> send5F10(tcId, ControlStrategy.Dynamic.getCode());    // enable dynamic control
+            case VERIFY_STRATEGY -> verifyWaitMillis = send5F40(tcId, ControlStrategy.Dynamic.getCode());  // check if dynamic control is set correctly
+            case WRITE_PARAMETERS -> send5F15(tcId, 0, progress.parameters(dynamicService));    // dynamic control can only be applied to plan ID 0
+            case VERIFY_PARAMETERS -> verifyWaitMillis = send5F45(tcId, 0, progress.parameters(dynamicService));   // check if parameters is set correctly
+            case ACTIVATE_PLAN -> send5F18(tcId, 0);    // enable target plan ID
+        }
+        return verifyWaitMillis;
+    }
+
+    // the last 5FC4/5FC5 the TC reported for plan 0 already match the target parameters
+    private boolean planAlreadyLoaded(ApplyProgress progress) {
+        JSONObject[] cached = controllerStateCache.getPlan(progress.tcId, 0);
+        if (cached == null) return false;
+
+        try {
+            return check5FC5(progress.parameters(dynamicService), cached[0], cached[1], 0, new StringBuilder());
+        } catch (DynamicException e) {
+            return false;   // no parameters, let the write step report it
+        }
+    }
+
+    private static String stepMessage(ApplyStep step, String outcome) {
+        String text = step.getCommand() + " " + step.getDescription() + " " + outcome;
+        return text.length() > 255 ? text.substring(0, 255) : text;
+    }
+
+    // where one TC is in its apply sequence, kept across retries
+    private static class ApplyProgress {
+        private final String programId;
+        private final String tcId;
+        private final int targetPlanId;
+        private final TriggerTrace trace;
+        private ApplyStep next;
+        private int failures;
+        private List<DynamicParameters> parameters;
+
+        ApplyProgress(String programId, String tcId, int targetPlanId, ApplyStep first, TriggerTrace trace) {
+            this.programId = programId;
+            this.tcId = tcId;
+            this.targetPlanId = targetPlanId;
+            this.next = first;
+            this.trace = trace;
+        }
+
+        // loaded once per apply, not per retry
+        List<DynamicParameters> parameters(DynamicService dynamicService) {
+            if (parameters == null) {
+                List<DynamicParameters> data = dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId(programId, tcId, targetPlanId);
+                if (data.isEmpty()) {
+                    throw new DynamicException("Dynamic parameters not found for programId: " + programId + ", tcId: " + tcId + ", targetPlanId: " + targetPlanId);
+                }
+                parameters = data;
+            }
+            return parameters;
         }
     }
 
+    @FunctionalInterface
+    private interface TcTask {
+        TcApplyResult run(String tc, int targetPlanId) throws Exception;
+    }
+
     private void tryCloseDynamic(String tcId) {
         try {
             send5F10(tcId, ControlStrategy.TOD.getCode());   // disable dynamic control, switch to TOD(Time-of-Day) strategy
@@ -272,98 +741,100 @@ public class DynamicControlManager {
     }
 
     private void send5F10(String deviceId, int controlStrategy) throws InterruptedException {
-        JSONObject value = new JSONObject();
-        value.put("deviceId", deviceId);
-        value.put("controlStrategy", controlStrategy);
-        value.put("effectTime", effectTime);
-
-        JSONObject obj = new JSONObject();
-        obj.put("value", value);
-        if (!tcSendMessageManager.handle5F10Message(obj)) {
+        Command5F10Dto command = Command5F10Dto.builder()
+                .deviceId(deviceId)
+                .controlStrategy(controlStrategy)
+                .effectTime(effectTime)
+                .build();
+
+        if (!tcSendMessageManager.handle5F10Message(command)) {
             throw new DynamicException("5F10 dynamic control setting failed");
         }
 
         Thread.sleep(100);
     }
 
-    private void send5F40(String deviceId, int controlStrategy) throws InterruptedException {
-        JSONObject value = new JSONObject();
-        value.put("deviceId", deviceId);
-
-        JSONObject obj = new JSONObject();
-        obj.put("value", value);
+    // returns the time spent waiting for 5FC0
+    private long send5F40(String deviceId, int controlStrategy) throws InterruptedException {
+        Command5F40Dto command = Command5F40Dto.builder()
+                .deviceId(deviceId)
+                .build();
 
-        if (!tcSendMessageManager.handle5F40Message(obj)) {
-            throw new DynamicException("5F40 dynamic control check failed");
+        long waited;
+        if (!tcSendMessageManager.handle5F40Message(command)) {
+            throw new ApplyStepException("5F40 dynamic control check failed", ApplyStep.VERIFY_STRATEGY);
         } else {
             // check 5FC0
             long startTime = System.currentTimeMillis();
             JSONObject value5FC0;
             do {
                 value5FC0 = tcReceiveMessageManager.getValueMap5FC0().get(deviceId);
-            } while (value5FC0 == null && (System.currentTimeMillis() - startTime < 16000));    // wait for 16 seconds
+                if (value5FC0 == null) Thread.sleep(20);
+            } while (value5FC0 == null && (System.currentTimeMillis() - startTime < strategyVerifyTimeoutMillis));
+            waited = System.currentTimeMillis() - startTime;
+            meterRegistry.timer("dynamic.verify.wait", "report", "5FC0", "outcome", value5FC0 == null ? "timeout" : "reported")
+                    .record(waited, TimeUnit.MILLISECONDS);
 
             if (value5FC0 == null) {
-                throw new DynamicException("5FC0 null failed");
+                throw new ApplyStepException("5FC0 null failed", ApplyStep.VERIFY_STRATEGY);     // ask again
             } else if (value5FC0.getInt("ControlStrategy") != controlStrategy || value5FC0.getInt("EffectTime") != effectTime) {
-                throw new DynamicException("5FC0 parameter mismatch failed");
+                tcReceiveMessageManager.getValueMap5FC0().remove(deviceId);
+                throw new ApplyStepException("5FC0 parameter mismatch failed", ApplyStep.SET_STRATEGY);  // set again
             }
             tcReceiveMessageManager.getValueMap5FC0().remove(deviceId);
         }
 
         Thread.sleep(100);
+        return waited;
     }
 
     private void send5F15(String deviceId, int targetPlanId, List<DynamicParameters> data) throws
             InterruptedException {
         DynamicParameters first = data.getFirst();  // get the first entry to extract common parameters
 
-        JSONObject value = new JSONObject();
-        value.put("deviceId", deviceId);
-        value.put("planId", targetPlanId);
-        value.put("direct", first.getDirect());
-        value.put("phaseOrder", first.getPhaseOrder());
-        value.put("subPhaseCount", data.size());
-        value.put("cycleTime", first.getCycleTime());
-        value.put("offset", first.getOffset());
-
-        JSONArray subPhases = new JSONArray();
+        List<CommandSubPhaseDto> subPhases = new ArrayList<>(data.size());
         for (DynamicParameters dp : data) {
-            JSONObject subPhaseObj = new JSONObject();
-            subPhaseObj.put("subPhaseId", dp.getId().getSubphaseId());
-            subPhaseObj.put("green", dp.getGreen());
-            subPhaseObj.put("yellow", dp.getYellow());
-            subPhaseObj.put("allRed", dp.getAllRed());
-            subPhaseObj.put("pedGreenFlash", dp.getPedGreenFlash());
-            subPhaseObj.put("pedRed", dp.getPedRed());
-            subPhaseObj.put("minGreen", dp.getMinGreen());
-            subPhaseObj.put("maxGreen", dp.getMaxGreen());
-
-            subPhases.put(subPhaseObj);
+            subPhases.add(CommandSubPhaseDto.builder()
+                    .subPhaseId(dp.getId().getSubphaseId())
+                    .green(dp.getGreen())
+                    .yellow(dp.getYellow())
+                    .allRed(dp.getAllRed())
+                    .pedGreenFlash(dp.getPedGreenFlash())
+                    .pedRed(dp.getPedRed())
+                    .minGreen(dp.getMinGreen())
+                    .maxGreen(dp.getMaxGreen())
+                    .build());
         }
 
-        value.put("subPhases", subPhases);
-
-        JSONObject obj = new JSONObject();
-        obj.put("value", value);
-        if (!tcSendMessageManager.handle5F15Message(obj)) {
+        Command5F15Dto command = Command5F15Dto.builder()
+                .deviceId(deviceId)
+                .planId(targetPlanId)
+                .direct(first.getDirect())
+                .phaseOrder(first.getPhaseOrder())
+                .subPhaseCount(data.size())
+                .cycleTime(first.getCycleTime())
+                .offset(first.getOffset())
+                .subPhases(subPhases)
+                .build();
+
+        if (!tcSendMessageManager.handle5F15Message(command)) {
             throw new DynamicException("5F15 dynamic parameters setting failed");
         }
 
         Thread.sleep(100);
     }
 
-    private void send5F45(String deviceId, int targetPlanId, List<DynamicParameters> data) throws
+    // returns the time spent waiting for 5FC4/5FC5
+    private long send5F45(String deviceId, int targetPlanId, List<DynamicParameters> data) throws
             InterruptedException {
-        JSONObject value = new JSONObject();
-        value.put("deviceId", deviceId);
-        value.put("planId", targetPlanId);
-
-        JSONObject obj = new JSONObject();
-        obj.put("value", value);
-
-        if (!tcSendMessageManager.handle5F45Message(obj)) {
-            throw new DynamicException("5F45 dynamic parameters check failed");
+        Command5F45Dto command = Command5F45Dto.builder()
+                .deviceId(deviceId)
+                .planId(targetPlanId)
+                .build();
+
+        long waited;
+        if (!tcSendMessageManager.handle5F45Message(command)) {
+            throw new ApplyStepException("5F45 dynamic parameters check failed", ApplyStep.VERIFY_PARAMETERS);
         } else {
             // check 5FC5
             long startTime = System.currentTimeMillis();
@@ -371,14 +842,20 @@ public class DynamicControlManager {
             do {
                 value5FC4 = tcReceiveMessageManager.getValueMap5FC4().get(deviceId);
                 value5FC5 = tcReceiveMessageManager.getValueMap5FC5().get(deviceId);
-            } while ((value5FC4 == null || value5FC5 == null) && (System.currentTimeMillis() - startTime < 16000));
+                if (value5FC4 == null || value5FC5 == null) Thread.sleep(20);
+            } while ((value5FC4 == null || value5FC5 == null) && (System.currentTimeMillis() - startTime < parametersVerifyTimeoutMillis));
+            waited = System.currentTimeMillis() - startTime;
+            meterRegistry.timer("dynamic.verify.wait", "report", "5FC5", "outcome", value5FC4 == null || value5FC5 == null ? "timeout" : "reported")
+                    .record(waited, TimeUnit.MILLISECONDS);
 
             StringBuilder errorLog = new StringBuilder();
 
             if (value5FC4 == null || value5FC5 == null) {
-                throw new DynamicException("5FC5 null failed");
+                throw new ApplyStepException("5FC5 null failed", ApplyStep.VERIFY_PARAMETERS);
             } else if (!check5FC5(data, value5FC4, value5FC5, targetPlanId, errorLog)) {
-                throw new DynamicException("5FC5 parameter mismatch failed, " + errorLog.toString());
+                tcReceiveMessageManager.getValueMap5FC4().remove(deviceId);
+                tcReceiveMessageManager.getValueMap5FC5().remove(deviceId);
+                throw new ApplyStepException("5FC5 parameter mismatch failed, " + errorLog.toString(), ApplyStep.WRITE_PARAMETERS);
             }
 
             tcReceiveMessageManager.getValueMap5FC4().remove(deviceId);
@@ -386,6 +863,7 @@ public class DynamicControlManager {
         }
 
         Thread.sleep(100);
+        return waited;
     }
 
     private boolean check5FC5(List<DynamicParameters> data, JSONObject value5FC4, JSONObject value5FC5,
@@ -448,13 +926,12 @@ public class DynamicControlManager {
     }
 
     private void send5F18(String deviceId, int targetPlanId) throws InterruptedException {
-        JSONObject value = new JSONObject();
-        value.put("deviceId", deviceId);
-        value.put("planId", targetPlanId);
+        Command5F18Dto command = Command5F18Dto.builder()
+                .deviceId(deviceId)
+                .planId(targetPlanId)
+                .build();
 
-        JSONObject obj = new JSONObject();
-        obj.put("value", value);
-        if (!tcSendMessageManager.handle5F18Message(obj)) {
+        if (!tcSendMessageManager.handle5F18Message(command)) {
             throw new DynamicException("5F18 enable target plan ID failed");
         }
 
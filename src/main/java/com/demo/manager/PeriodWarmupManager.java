@@ -0,0 +1,240 @@
+package com.demo.manager;
+
+import com.demo.dto.Command5F40Dto;
+import com.demo.dto.Command5F45Dto;
+import com.demo.dto.WarmupReportDto;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.DynamicPlanCache;
+import com.demo.service.DynamicService;
+import com.demo.service.SocketService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Optional warm-up when a traffic period starts: makes sure the plan cache holds the program's parameters,
+// checks every TC's link and reads its strategy (5F40) and plan 0 (5F44/5F45) in parallel. The reports land in
+// ControllerStateCache, so a later trigger skips writing parameters a TC already runs and failures show up
+// before the condition ever matches. 5F10 is always sent, its effect time runs from the moment it is received.
+// Each read holds the TC's TcExchangeLock, so it never takes a trigger's report nor hands the trigger its own.
+@Service
+public class PeriodWarmupManager {
+    private static final Logger log = LoggerFactory.getLogger(PeriodWarmupManager.class);
+
+    @Value("${dynamic.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dynamic.warmup.parallelism:8}")
+    private int parallelism;
+
+    // how long a read waits for the TC's report
+    @Value("${dynamic.warmup.read-timeout-ms:5000}")
+    private long readTimeoutMillis;
+
+    // sub-conditions of a program usually start together, warm the program up once
+    @Value("${dynamic.warmup.min-interval-ms:300000}")
+    private long minIntervalMillis;
+
+    @Autowired
+    private DynamicService dynamicService;
+
+    @Autowired
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Autowired
+    private TcInfoRepository tcInfoRepository;
+
+    @Autowired
+    private SocketService socketService;
+
+    @Autowired
+    private TcSendMessageManager tcSendMessageManager;
+
+    @Autowired
+    private TcReceiveMessageManager tcReceiveMessageManager;
+
+    @Autowired
+    private ControllerStateCache controllerStateCache;
+
+    @Autowired
+    private TcExchangeLock tcExchangeLock;
+
+    @Autowired
+    private Clock clock;
+
+    private ThreadPoolExecutor executor;
+    private final Map<String, Long> lastStarted = new ConcurrentHashMap<>();           // programId
+    private final Map<String, WarmupReportDto> reports = new ConcurrentHashMap<>();    // programId
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "dynamic-warmup-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // called when a period starts, only hands over; false when disabled or the program was warmed up recently
+    public boolean warmUp(String programId, boolean isWeekday) {
+        if (!enabled) return false;
+
+        long now = System.currentTimeMillis();
+        long started = lastStarted.merge(programId, now, (last, current) -> current - last < minIntervalMillis ? last : current);
+        if (started != now) return false;
+
+        LocalDateTime startedAt = LocalDateTime.now(clock);
+        CompletableFuture.supplyAsync(() -> {
+                    if (!dynamicPlanCache.isLoaded()) dynamicPlanCache.refresh();  // parameter lookups stay in memory
+                    return dynamicService.getAllDynamicPlanIds(programId, isWeekday);
+                }, executor)
+                .thenCompose(tcPlanMap -> {
+                    Map<String, CompletableFuture<TcWarmup>> checks = new LinkedHashMap<>();
+                    tcPlanMap.forEach((tc, planId) ->
+                            checks.put(tc, CompletableFuture.supplyAsync(() -> warmUpTc(programId, tc, planId), executor)));
+                    return CompletableFuture.allOf(checks.values().toArray(CompletableFuture[]::new)).thenApply(v -> checks);
+                })
+                .thenAccept(checks -> report(programId, startedAt, now, checks))
+                .exceptionally(e -> {
+                    log.error("Warm-up of program {} failed: {}", programId, e.getMessage());
+                    return null;
+                });
+        return true;
+    }
+
+    // latest warm-up of every program
+    public List<WarmupReportDto> getReports() {
+        List<WarmupReportDto> result = new ArrayList<>(reports.values());
+        result.sort(Comparator.comparing(WarmupReportDto::getProgramId));
+        return result;
+    }
+
+    private TcWarmup warmUpTc(String programId, String tc, int planId) {
+        boolean parameters = !dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId(programId, tc, planId).isEmpty();
+        try {
+            TcInfo tcInfo = tcInfoRepository.findByTcId(tc);
+            if (tcInfo == null || Byte.valueOf("0").equals(tcInfo.getEnable()) || !socketService.isHostConnected(tcInfo.getIp())) {
+                return new TcWarmup(parameters, false, false, false);
+            }
+
+            boolean strategy = controllerStateCache.getStrategy(tc) != null || readStrategy(tc);
+            boolean plan = controllerStateCache.getPlan(tc, 0) != null || readPlan(tc);    // dynamic control always runs plan 0
+            return new TcWarmup(parameters, true, strategy, plan);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TcWarmup(parameters, true, false, false);
+        } catch (Exception e) {
+            log.warn("Warm-up of TC {} failed: {}", tc, e.getMessage());
+            return new TcWarmup(parameters, true, false, false);
+        }
+    }
+
+    // the reply goes to ControllerStateCache; its raw copy is taken back out of the receive map before the TC
+    // is released, so a trigger verifying the same TC never mistakes it for the answer to its own query
+    private boolean readStrategy(String tc) throws InterruptedException {
+        if (!tcExchangeLock.tryLock(tc, readTimeoutMillis)) return false;
+        try {
+            if (!tcSendMessageManager.handle5F40Message(Command5F40Dto.builder().deviceId(tc).build())) return false;
+
+            JSONObject value5FC0 = await(() -> controllerStateCache.getStrategy(tc));
+            if (value5FC0 == null) return false;
+
+            tcReceiveMessageManager.getValueMap5FC0().remove(tc, value5FC0);
+            return true;
+        } finally {
+            tcExchangeLock.unlock(tc);
+        }
+    }
+
+    private boolean readPlan(String tc) throws InterruptedException {
+        if (!tcExchangeLock.tryLock(tc, readTimeoutMillis)) return false;
+        try {
+            if (!tcSendMessageManager.handle5F45Message(Command5F45Dto.builder().deviceId(tc).planId(0).build())) return false;
+
+            JSONObject[] plan = await(() -> controllerStateCache.getPlan(tc, 0));
+            if (plan == null) return false;
+
+            tcReceiveMessageManager.getValueMap5FC4().remove(tc, plan[0]);
+            tcReceiveMessageManager.getValueMap5FC5().remove(tc, plan[1]);
+            return true;
+        } finally {
+            tcExchangeLock.unlock(tc);
+        }
+    }
+
+    // the reply is decoded on the socket reader thread, shortly after the send returns
+    private <T> T await(Supplier<T> read) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + readTimeoutMillis;
+        T value = read.get();
+        while (value == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            value = read.get();
+        }
+        return value;
+    }
+
+    private void report(String programId, LocalDateTime startedAt, long begin, Map<String, CompletableFuture<TcWarmup>> checks) {
+        int parameters = 0, connected = 0, strategy = 0, plan = 0, ready = 0;
+        List<String> notReady = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<TcWarmup>> entry : checks.entrySet()) {
+            TcWarmup tc = entry.getValue().join();
+            if (tc.parameters) parameters++;
+            if (tc.connected) connected++;
+            if (tc.strategy) strategy++;
+            if (tc.plan) plan++;
+
+            String missing = tc.missing();
+            if (missing == null) {
+                ready++;
+            } else {
+                notReady.add(entry.getKey() + ": " + missing);
+            }
+        }
+
+        WarmupReportDto report = WarmupReportDto.builder()
+                .programId(programId)
+                .startedAt(startedAt)
+                .elapsedMillis(System.currentTimeMillis() - begin)
+                .total(checks.size())
+                .parametersLoaded(parameters)
+                .connected(connected)
+                .strategyKnown(strategy)
+                .planKnown(plan)
+                .ready(ready)
+                .notReady(notReady)
+                .build();
+        reports.put(programId, report);
+        log.info("Program {} warmed up in {} ms: {}/{} TCs ready, not ready {}", programId, report.getElapsedMillis(),
+                ready, checks.size(), notReady);
+    }
+
+    private record TcWarmup(boolean parameters, boolean connected, boolean strategy, boolean plan) {
+        String missing() {
+            if (!parameters) return "no dynamic parameters";
+            if (!connected) return "not connected or not enabled";
+            if (!strategy) return "no 5FC0";
+            if (!plan) return "no 5FC4/5FC5";
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.demo.manager;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// One lock per TC around query/report exchanges. TcReceiveMessageManager keeps the latest 5FC0/5FC4/5FC5 per
+// device only, so whoever sends a 5F40/5F45 and waits for the report must hold the TC until it has taken its
+// report out again, otherwise a trigger may verify against the crawler's or the warm-up's reply and vice versa.
+// Fair, so a trigger waiting for a TC goes before the next background read of it.
+@Component
+public class TcExchangeLock {
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();     // tcId
+
+    // dynamic triggers: waits as long as it takes, the program deadline interrupts it
+    public void lock(String tcId) throws InterruptedException {
+        lockOf(tcId).lockInterruptibly();
+    }
+
+    // background reads: false when the TC stayed busy for timeoutMillis
+    public boolean tryLock(String tcId, long timeoutMillis) throws InterruptedException {
+        return lockOf(tcId).tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void unlock(String tcId) {
+        lockOf(tcId).unlock();
+    }
+
+    public boolean isLocked(String tcId) {
+        ReentrantLock lock = locks.get(tcId);
+        return lock != null && lock.isLocked();
+    }
+
+    private ReentrantLock lockOf(String tcId) {
+        return locks.computeIfAbsent(tcId, id -> new ReentrantLock(true));
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.manager;
 
+import com.demo.dto.TcPlanStateDto;
 import com.demo.enums.MessageDefine;
 import com.demo.message.MessageHandler;
 
@@ -50,12 +51,19 @@ public class TcReceiveMessageManager {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private TcStatePublisher tcStatePublisher;
+
+    @Autowired
+    private ControllerStateCache controllerStateCache;
+
     @Async
     public void run(Socket socket) {
         log.info("TCReceiveMessageManager started for socket: {}", socket.getInetAddress().getHostAddress());
 
         String ip = socket.getInetAddress().getHostAddress();
         String deviceId = tcInfoRepository.findByIp(ip).getTcId();
+        controllerStateCache.invalidate(deviceId);     // new connection, whatever was cached may be outdated
 
         List<Integer> message = new ArrayList<>();      // hexadecimal
         List<String> msgstr = new ArrayList<>();        // hex string, more readable
@@ -284,6 +292,8 @@ public class TcReceiveMessageManager {
             //value.put("EffectTimeBitMap", toBitMap(effectTime));
 
             valueMap5FC0.put(deviceId, value);
+            controllerStateCache.on5FC0(deviceId, value);
+            tcStatePublisher.on5FC0(deviceId, controlStrategy, effectTime);
 
         } catch (Exception e) {
             log.error("Error handling 5FC0 message for device {}: {}", deviceId, e.getMessage(), e);
@@ -323,6 +333,17 @@ public class TcReceiveMessageManager {
             value.put("pedRed", new JSONArray(pedRed));
 
             valueMap5FC4.put(deviceId, value);
+            controllerStateCache.on5FC4(deviceId, value);
+            tcStatePublisher.on5FC4(deviceId, TcPlanStateDto.builder()
+                    .planId(planId)
+                    .subPhaseCount(subPhaseCount)
+                    .minGreen(minGreen)
+                    .maxGreen(maxGreen)
+                    .yellow(yellow)
+                    .allRed(allRed)
+                    .pedGreenFlash(pedGreenFlash)
+                    .pedRed(pedRed)
+                    .build());
 
         } catch (Exception e) {
             log.error("Error handling 5FC4 message for device {}: {}", deviceId, e.getMessage(), e);
@@ -355,6 +376,16 @@ public class TcReceiveMessageManager {
             value.put("offset", offset);
 
             valueMap5FC5.put(deviceId, value);
+            controllerStateCache.on5FC5(deviceId, value);
+            tcStatePublisher.on5FC5(deviceId, TcPlanStateDto.builder()
+                    .planId(planId)
+                    .direct(direct)
+                    .phaseOrder(String.format("%02x", phaseOrder))
+                    .subPhaseCount(subPhaseCount)
+                    .green(green)
+                    .cycleTime(cycleTime)
+                    .offset(offset)
+                    .build());
 
         } catch (Exception e) {
             log.error("Error handling 5FC5 message for device {}: {}", deviceId, e.getMessage(), e);
@@ -1,5 +1,6 @@
 package com.demo.manager;
 
+import com.demo.dto.*;
 import com.demo.enums.MessageDefine;
 import com.demo.enums.NakDefine;
 import com.demo.repository.its.TcInfoRepository;
@@ -7,7 +8,10 @@ import com.demo.message.*;
 import com.demo.service.MessageService;
 import com.demo.message.MessageGenerator;
 import com.demo.service.MqttClientService;
+import com.demo.service.MqttPayloadCodec;
 import com.demo.service.SocketService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,38 +56,61 @@ public class TcSendMessageManager {
     @Autowired
     private TcReceiveMessageManager tcReceiveMessageManager;
 
+    @Autowired
+    private ControllerStateCache controllerStateCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MqttPayloadCodec payloadCodec;
+
     @Async
-    public void run(String message) {
+    public void run(String topic, byte[] payload) {
+        String message = MqttPayloadCodec.describe(payload);
         log.info("TCReceiveMessageManager started for message: {}", message);
 
-        JSONObject obj = new JSONObject(message);
-        String messageId = obj.getString("messageId").toUpperCase();
-        messageService.saveMessageLog(obj, null, null, MessageDefine.mqtt_to_chtit.ordinal());
-
-        if (messageId.equals("5F10")) {
-            handle5F10Message(obj);
-        } else if (messageId.equals("5F15")) {
-            handle5F15Message(obj);
-        } else if (messageId.equals("5F18")) {
-            handle5F18Message(obj);
-        } else if (messageId.equals("5F40")) {
-            handle5F40Message(obj);
-        } else if (messageId.equals("5F45")) {
-            handle5F45Message(obj);
+        MqttCommandDto command;
+        try {
+            // bind envelope and typed value in one pass, messageId decides the value type, JSON or CBOR
+            command = payloadCodec.decode(payload, MqttCommandDto.class);
+        } catch (IOException e) {
+            log.warn("Unsupported or malformed MQTT command on {}: {}", topic, message, e);
+            return;
+        }
+
+        TcCommandDto value = command.getValue();
+        if (value == null) {
+            log.warn("MQTT command without value: {}", message);
+            return;
+        }
+
+        String messageId = command.getMessageId().toUpperCase();
+        messageService.saveMessageLog(value.getDeviceId(), messageId, toJson(value), null, null, MessageDefine.mqtt_to_chtit.ordinal());
+
+        switch (value) {
+            case Command5F10Dto cmd -> handle5F10Message(cmd);
+            case Command5F15Dto cmd -> handle5F15Message(cmd);
+            case Command5F18Dto cmd -> handle5F18Message(cmd);
+            case Command5F40Dto cmd -> handle5F40Message(cmd);
+            case Command5F45Dto cmd -> handle5F45Message(cmd);
+            default -> log.warn("Unhandled command type: {}", messageId);
         }
 
         // Other commands are handled but not shown
     }
 
-    public boolean handle5F10Message(JSONObject obj) {
-        String deviceId = obj.getJSONObject("value").getString("deviceId");
+    public boolean handle5F10Message(Command5F10Dto command) {
+        String deviceId = command.getDeviceId();
 
         try {
-            Message5F10 msg5F10 = (Message5F10) messageService.buildMessage(obj, "5f10");
+            Message5F10 msg5F10 = (Message5F10) messageService.buildMessage(command, "5f10");
 
             String successKey = "0f805f10";
             String failKey = "0f815f10";
 
+            controllerStateCache.invalidateStrategy(deviceId);
+
             return sendMessage(deviceId, "5f10", msg5F10, successKey, failKey);
 
         } catch (Exception e) {
@@ -93,12 +120,12 @@ public class TcSendMessageManager {
         return false;
     }
 
-    public boolean handle5F15Message(JSONObject obj) {
-        String deviceId = obj.getJSONObject("value").getString("deviceId");
+    public boolean handle5F15Message(Command5F15Dto command) {
+        String deviceId = command.getDeviceId();
 
         try {
-            Message5F14 msg5F14 = (Message5F14) messageService.buildMessage(obj, "5f14");
-            Message5F15 msg5F15 = (Message5F15) messageService.buildMessage(obj, "5f15");
+            Message5F14 msg5F14 = (Message5F14) messageService.buildMessage(command, "5f14");
+            Message5F15 msg5F15 = (Message5F15) messageService.buildMessage(command, "5f15");
 
             String successKey_14 = "0f805f14";
             String failKey_14 = "0f815f14";
@@ -106,6 +133,8 @@ public class TcSendMessageManager {
             String successKey_15 = "0f805f15";
             String failKey_15 = "0f815f15";
 
+            controllerStateCache.invalidatePlan(deviceId);
+
             if (sendMessage(deviceId, "5f14", msg5F14, successKey_14, failKey_14)) {
                 return sendMessage(deviceId, "5f15", msg5F15, successKey_15, failKey_15);
             }
@@ -117,11 +146,11 @@ public class TcSendMessageManager {
         return false;
     }
 
-    public boolean handle5F18Message(JSONObject obj) {
-        String deviceId = obj.getJSONObject("value").getString("deviceId");
+    public boolean handle5F18Message(Command5F18Dto command) {
+        String deviceId = command.getDeviceId();
 
         try {
-            Message5F18 msg5F18 = (Message5F18) messageService.buildMessage(obj, "5f18");
+            Message5F18 msg5F18 = (Message5F18) messageService.buildMessage(command, "5f18");
 
             String successKey = "0f805f18";
             String failKey = "0f815f18";
@@ -135,11 +164,11 @@ public class TcSendMessageManager {
         return false;
     }
 
-    public boolean handle5F40Message(JSONObject obj) {
-        String deviceId = obj.getJSONObject("value").getString("deviceId");
+    public boolean handle5F40Message(Command5F40Dto command) {
+        String deviceId = command.getDeviceId();
 
         try {
-            Message5F40 msg5F40 = (Message5F40) messageService.buildMessage(obj, "5f40");
+            Message5F40 msg5F40 = (Message5F40) messageService.buildMessage(command, "5f40");
 
             String successKey = "5fc0";
             String failKey = "";
@@ -153,13 +182,14 @@ public class TcSendMessageManager {
         return false;
     }
 
-    public boolean handle5F45Message(JSONObject obj) {
-        String deviceId = obj.getJSONObject("value").getString("deviceId");
-        int planId = obj.getJSONObject("value").getInt("planId");
+    public boolean handle5F45Message(Command5F45Dto command) {
+        String deviceId = command.getDeviceId();
 
         try {
-            Message5F44 msg5F44 = (Message5F44) messageService.buildMessage(obj, "5f44");
-            Message5F45 msg5F45 = (Message5F45) messageService.buildMessage(obj, "5f45");
+            int planId = command.getPlanId();
+
+            Message5F44 msg5F44 = (Message5F44) messageService.buildMessage(command, "5f44");
+            Message5F45 msg5F45 = (Message5F45) messageService.buildMessage(command, "5f45");
 
             String successKey_c4 = "5fc4" + String.format("%02d", planId);
             String successKey_c5 = "5fc5" + String.format("%02d", planId);
@@ -182,30 +212,20 @@ public class TcSendMessageManager {
             String messageTime = currentTime.format(formatter);
             String topic = topic_tc_publish_prefix + deviceId;
 
-            int ControlStrategy = message.get(9);
-            int EffectTime = message.get(10);
-
-            JSONObject returnData = new JSONObject();
-            returnData.put("messageTime", messageTime);
-
-            JSONObject value = new JSONObject();
-            value.put("deviceId", deviceId);
-            value.put("controlStrategy", ControlStrategy);
-            value.put("effectTime", EffectTime);
-            value.put("status", 1);
-
             StringBuilder resData = new StringBuilder();
             for (int i = 7; i < 11; i++) {
                 resData.append(String.format("%2s", Integer.toHexString(message.get(i))).replace(' ', '0'));
             }
 
-            value.put("resData", resData);
-            returnData.put("messageId", "5FC0");
+            Result5FC0Dto value = Result5FC0Dto.builder()
+                    .deviceId(deviceId)
+                    .controlStrategy(message.get(9))
+                    .effectTime(message.get(10))
+                    .status(1)
+                    .resData(resData.toString())
+                    .build();
 
-            returnData.put("value", value);
-
-            boolean success = mqttClientService.publish(1, false, topic, returnData.toString());
-            messageService.saveMessageLog(returnData, null, success ? null : "Publish success but return false", MessageDefine.chtit_to_mqtt.ordinal());
+            publishResult(topic, deviceId, "5FC0", messageTime, value);
 
         } catch (Exception e) {
             log.error("Failed to publish 5FC0 message", e);
@@ -226,22 +246,20 @@ public class TcSendMessageManager {
                 commandId = "5F15"; //	change 5F14 to 5F15
             }
 
-            JSONObject returnData = new JSONObject();
-            returnData.put("messageTime", messageTime);
-
-            JSONObject value = new JSONObject();
-            value.put("deviceId", deviceId);
-            value.put("commandId", commandId);
-            value.put("status", 1);
-
             if (msg7 == 0x0F && msg8 == 0x80) {
                 StringBuilder resData = new StringBuilder();
                 for (int i = 7; i < 11; i++) {
                     resData.append(String.format("%2s", Integer.toHexString(message.get(i))).replace(' ', '0'));
                 }
 
-                value.put("resData", resData);
-                returnData.put("messageId", "0F80");
+                Result0F80Dto value = Result0F80Dto.builder()
+                        .deviceId(deviceId)
+                        .commandId(commandId)
+                        .status(1)
+                        .resData(resData.toString())
+                        .build();
+
+                publishResult(topic, deviceId, "0F80", messageTime, value);
             } else if (msg7 == 0x0F && msg8 == 0x81) {
                 StringBuilder resData = new StringBuilder();
                 for (int i = 7; i < 13; i++) {
@@ -251,23 +269,44 @@ public class TcSendMessageManager {
                 String errorCode = resData.length() >= 10 ? resData.substring(8, 10) : "";
                 String paramNumber = resData.length() >= 12 ? resData.substring(10, 12) : "";
 
-                value.put("errorCode", errorCode);
-                value.put("parameterNumber", paramNumber);
-                value.put("resData", commandId.equals("5F15") ? "0F815F15" : resData);
+                Result0F81Dto value = Result0F81Dto.builder()
+                        .deviceId(deviceId)
+                        .commandId(commandId)
+                        .status(1)
+                        .errorCode(errorCode)
+                        .parameterNumber(paramNumber)
+                        .resData(commandId.equals("5F15") ? "0F815F15" : resData.toString())
+                        .build();
 
-                returnData.put("messageId", "0F81");
+                publishResult(topic, deviceId, "0F81", messageTime, value);
             }
 
-            returnData.put("value", value);
-
-            boolean success = mqttClientService.publish(1, false, topic, returnData.toString());
-            messageService.saveMessageLog(returnData, null, success ? null : "Publish success but return false", MessageDefine.chtit_to_mqtt.ordinal());
-
         } catch (Exception e) {
             log.error("Failed to publish 0F80 or 0F81 message", e);
         }
     }
 
+    private void publishResult(String topic, String deviceId, String messageId, String messageTime, Object value) throws IOException {
+        MqttResultDto returnData = MqttResultDto.builder()
+                .messageTime(messageTime)
+                .messageId(messageId)
+                .value(value)
+                .build();
+
+        boolean success = mqttClientService.publish(1, false, topic, payloadCodec.encode(topic, returnData));
+        messageService.saveMessageLog(deviceId, messageId, objectMapper.writeValueAsString(value), null,
+                success ? null : "Publish success but return false", MessageDefine.chtit_to_mqtt.ordinal());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize command value", e);
+            return null;
+        }
+    }
+
     public boolean sendMessage(String deviceId, String command, MessageObject msgobj, String successKey, String failKey) {
         String ip = tcInfoRepository.findByTcId(deviceId).getIp();
         try {
@@ -0,0 +1,183 @@
+package com.demo.manager;
+
+import com.demo.dto.TcPlanStateDto;
+import com.demo.dto.TcStateDto;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.MqttClientService;
+import com.demo.service.MqttPayloadCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+// Keeps the latest decoded state per TC and publishes it to a retained topic, only when it actually changed.
+// Publishing happens on a single daemon thread, started only when enabled, so socket reader threads never wait
+// for the broker.
+@Service
+public class TcStatePublisher {
+    private static final Logger log = LoggerFactory.getLogger(TcStatePublisher.class);
+
+    @Value("${mqtt.tc.state.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mqtt.tc.state.topic.prefix:tc/state/}")
+    private String topic_state_prefix;
+
+    // bursts within this interval are coalesced into one publish per device
+    @Value("${mqtt.tc.state.min-interval-ms:1000}")
+    private long minIntervalMillis;
+
+    @Autowired
+    private TcInfoRepository tcInfoRepository;
+
+    @Autowired
+    @Lazy
+    private MqttClientService mqttClientService;
+
+    @Autowired
+    private MqttPayloadCodec payloadCodec;
+
+    private final Map<String, DeviceState> stateMap = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;     // only while enabled
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tc-state-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void on5FC0(String deviceId, int controlStrategy, int effectTime) {
+        update(deviceId, state -> state.toBuilder()
+                .controlStrategy(controlStrategy)
+                .effectTime(effectTime)
+                .build());
+    }
+
+    public void on5FC4(String deviceId, TcPlanStateDto part) {
+        update(deviceId, state -> withPlan(state, part.getPlanId(), plan -> plan.toBuilder()
+                .subPhaseCount(part.getSubPhaseCount())
+                .minGreen(part.getMinGreen())
+                .maxGreen(part.getMaxGreen())
+                .yellow(part.getYellow())
+                .allRed(part.getAllRed())
+                .pedGreenFlash(part.getPedGreenFlash())
+                .pedRed(part.getPedRed())
+                .build()));
+    }
+
+    public void on5FC5(String deviceId, TcPlanStateDto part) {
+        update(deviceId, state -> withPlan(state, part.getPlanId(), plan -> plan.toBuilder()
+                .direct(part.getDirect())
+                .phaseOrder(part.getPhaseOrder())
+                .subPhaseCount(part.getSubPhaseCount())
+                .cycleTime(part.getCycleTime())
+                .offset(part.getOffset())
+                .green(part.getGreen())
+                .build()));
+    }
+
+    // connection events only know the ip, resolve the device on the publisher thread
+    public void onConnectionChanged(String ip, boolean connected) {
+        if (!enabled) return;
+
+        scheduler.execute(() -> {
+            try {
+                TcInfo tc = tcInfoRepository.findByIp(ip);
+                if (tc != null) {
+                    update(tc.getTcId(), state -> state.toBuilder().connected(connected).build());
+                }
+            } catch (Exception e) {
+                log.error("Failed to update connection state for {}", ip, e);
+            }
+        });
+    }
+
+    public TcStateDto getState(String deviceId) {
+        DeviceState deviceState = stateMap.get(deviceId);
+        return deviceState == null ? null : deviceState.current;
+    }
+
+    void update(String deviceId, UnaryOperator<TcStateDto> change) {
+        if (!enabled || deviceId == null) return;
+
+        DeviceState deviceState = stateMap.computeIfAbsent(deviceId, DeviceState::new);
+        synchronized (deviceState) {
+            deviceState.current = change.apply(deviceState.current);
+
+            if (deviceState.current.equals(deviceState.published) || deviceState.flushScheduled) {
+                return;     // nothing new, or a pending flush will pick this change up
+            }
+
+            long wait = deviceState.lastPublishTime + minIntervalMillis - System.currentTimeMillis();
+            deviceState.flushScheduled = true;
+            scheduler.schedule(() -> flush(deviceState), Math.max(wait, 0), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(DeviceState deviceState) {
+        TcStateDto snapshot;
+        synchronized (deviceState) {
+            deviceState.flushScheduled = false;
+            snapshot = deviceState.current;
+            if (snapshot.equals(deviceState.published)) return;
+
+            deviceState.published = snapshot;
+            deviceState.lastPublishTime = System.currentTimeMillis();
+        }
+
+        boolean success = false;
+        try {
+            String topic = topic_state_prefix + snapshot.getDeviceId();
+            success = mqttClientService.publish(1, true, topic, payloadCodec.encode(topic, snapshot));
+        } catch (Exception e) {
+            log.error("Failed to publish state for {}", snapshot.getDeviceId(), e);
+        }
+
+        if (!success) {
+            synchronized (deviceState) {
+                deviceState.published = null;  // publish again with the next update
+            }
+        }
+    }
+
+    private static TcStateDto withPlan(TcStateDto state, int planId, UnaryOperator<TcPlanStateDto> change) {
+        Map<Integer, TcPlanStateDto> plans = new TreeMap<>(state.getPlans());
+        TcPlanStateDto plan = plans.getOrDefault(planId, TcPlanStateDto.builder().planId(planId).build());
+        plans.put(planId, change.apply(plan));
+        return state.toBuilder().plans(plans).build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    private static class DeviceState {
+        private TcStateDto current;
+        private TcStateDto published;
+        private long lastPublishTime;
+        private boolean flushScheduled;
+
+        DeviceState(String deviceId) {
+            this.current = TcStateDto.builder().deviceId(deviceId).build();
+        }
+    }
+}
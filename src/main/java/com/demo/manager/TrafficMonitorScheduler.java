@@ -0,0 +1,260 @@
+package com.demo.manager;
+
+import com.demo.dto.TrafficMonitorDto;
+import com.demo.dto.TrafficPeriodDto;
+import com.demo.util.SimulationClock;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Owns every traffic-period monitor. One small timer pool only fires ticks, the (blocking) evaluation runs on a
+// bounded worker pool, so the thread count no longer grows with the number of active programs.
+// With a SimulationClock no timer runs, the simulation fires due ticks itself through runDue().
+@Component
+public class TrafficMonitorScheduler {
+    private static final Logger log = LoggerFactory.getLogger(TrafficMonitorScheduler.class);
+    private static final DateTimeFormatter PERIOD_TIME = DateTimeFormatter.ofPattern("HHmm");
+
+    @Value("${dynamic.monitor.timer-threads:1}")
+    private int timerThreads;
+
+    @Value("${dynamic.monitor.workers:8}")
+    private int workerThreads;
+
+    @Value("${dynamic.monitor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Autowired
+    private Clock clock;
+
+    private final Map<String, Monitor> monitors = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor timer;
+    private ThreadPoolExecutor workers;
+
+    @PostConstruct
+    public void init() {
+        timer = new ScheduledThreadPoolExecutor(timerThreads, namedThreads("traffic-monitor-timer-"));
+        timer.setRemoveOnCancelPolicy(true);    // cancelled monitors must not linger in the timer queue
+
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), namedThreads("traffic-monitor-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // starts (or replaces) the monitor of one traffic period, first tick runs immediately
+    public void schedule(TrafficPeriodDto period, long intervalMillis, Runnable tick) {
+        String key = keyOf(period);
+        Monitor monitor = new Monitor(period, intervalMillis, tick, clock.millis());
+
+        Monitor previous = monitors.put(key, monitor);
+        if (previous != null) {
+            previous.cancel();
+            log.info("Traffic monitor {} replaced", key);
+        }
+
+        if (isSimulation()) {
+            monitor.nextFireAt = clock.millis();    // first tick on the next runDue()
+        } else {
+            monitor.future = timer.scheduleAtFixedRate(() -> fire(key, monitor), 0, intervalMillis, TimeUnit.MILLISECONDS);
+            if (monitor.cancelled) monitor.cancel();    // first tick already ended the period before the future was set
+        }
+        log.info("Traffic monitor {} started, interval {} ms, {} active", key, intervalMillis, monitors.size());
+    }
+
+    // stops the monitor of this period only, one started since by another period object under the same key stays
+    public boolean cancel(TrafficPeriodDto period) {
+        String key = keyOf(period);
+        Monitor monitor = monitors.get(key);
+        if (monitor == null || monitor.period != period || !monitors.remove(key, monitor)) return false;
+
+        monitor.cancel();
+        log.info("Traffic monitor {} stopped, {} active", key, monitors.size());
+        return true;
+    }
+
+    public boolean isActive(TrafficPeriodDto period) {
+        Monitor monitor = monitors.get(keyOf(period));
+        return monitor != null && monitor.period == period;
+    }
+
+    // some period of the sub-condition is being monitored
+    public boolean isMonitored(String programId, int subId) {
+        for (Monitor monitor : monitors.values()) {
+            if (monitor.programId.equals(programId) && monitor.subId == subId) return true;
+        }
+        return false;
+    }
+
+    // programId-subId-HHmm-HHmm, periods of one sub-condition never share a monitor
+    static String keyOf(TrafficPeriodDto period) {
+        return period.getProgramId() + "-" + period.getSubId() + "-"
+                + PERIOD_TIME.format(period.getStartTime()) + "-" + PERIOD_TIME.format(period.getEndTime());
+    }
+
+    public List<TrafficMonitorDto> getActiveMonitors() {
+        List<TrafficMonitorDto> result = new ArrayList<>(monitors.size());
+        for (Map.Entry<String, Monitor> entry : monitors.entrySet()) {
+            Monitor monitor = entry.getValue();
+            ScheduledFuture<?> future = monitor.future;
+            long now = clock.millis();
+            LocalDateTime nextFireTime = isSimulation()
+                    ? toDateTime(monitor.nextFireAt)
+                    : future == null ? null : toDateTime(now + Math.max(future.getDelay(TimeUnit.MILLISECONDS), 0));
+
+            result.add(TrafficMonitorDto.builder()
+                    .key(entry.getKey())
+                    .programId(monitor.programId)
+                    .subId(monitor.subId)
+                    .intervalMillis(monitor.intervalMillis)
+                    .startedAt(toDateTime(monitor.startedAt))
+                    .lastRunAt(monitor.lastRunAt.get() == 0 ? null : toDateTime(monitor.lastRunAt.get()))
+                    .nextFireTime(nextFireTime)
+                    .runs(monitor.runs.get())
+                    .skipped(monitor.skipped.get())
+                    .running(monitor.running.get())
+                    .build());
+        }
+        result.sort(Comparator.comparing(TrafficMonitorDto::getKey));
+        return result;
+    }
+
+    public int getQueuedEvaluations() {
+        return workers.getQueue().size();
+    }
+
+    public boolean isSimulation() {
+        return clock instanceof SimulationClock;
+    }
+
+    // simulation: runs every tick due at the virtual now on the calling thread, earliest first
+    public int runDue() {
+        long now = clock.millis();
+        int ran = 0;
+        while (true) {
+            Monitor next = null;
+            for (Monitor monitor : monitors.values()) {
+                if (monitor.nextFireAt <= now && (next == null || monitor.nextFireAt < next.nextFireAt)) next = monitor;
+            }
+            if (next == null) return ran;
+
+            next.nextFireAt += next.intervalMillis;
+            next.lastRunAt.set(now);
+            next.runs.incrementAndGet();
+            try {
+                next.tick.run();
+            } catch (Exception e) {
+                log.error("Error in traffic monitor {}-{}: {}", next.programId, next.subId, e.getMessage());
+            }
+            ran++;
+        }
+    }
+
+    // simulation: virtual time of the earliest pending tick, Long.MAX_VALUE without monitors
+    public long nextDueMillis() {
+        long next = Long.MAX_VALUE;
+        for (Monitor monitor : monitors.values()) {
+            next = Math.min(next, monitor.nextFireAt);
+        }
+        return next;
+    }
+
+    // runs on the timer thread, must only hand over
+    private void fire(String key, Monitor monitor) {
+        if (monitor.cancelled) return;
+
+        // previous evaluation still running (slow DB or dynamic trigger in progress), skip instead of piling up
+        if (!monitor.running.compareAndSet(false, true)) {
+            monitor.skipped.incrementAndGet();
+            log.debug("Traffic monitor {} still running, tick skipped", key);
+            return;
+        }
+
+        try {
+            workers.execute(() -> {
+                try {
+                    monitor.lastRunAt.set(clock.millis());
+                    monitor.runs.incrementAndGet();
+                    monitor.tick.run();
+                } catch (Exception e) {
+                    log.error("Error in traffic monitor {}: {}", key, e.getMessage());
+                } finally {
+                    monitor.running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            monitor.running.set(false);
+            monitor.skipped.incrementAndGet();
+            log.warn("Traffic monitor workers saturated, tick of {} skipped", key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        monitors.values().forEach(Monitor::cancel);
+        monitors.clear();
+        if (timer != null) timer.shutdownNow();
+        if (workers != null) workers.shutdownNow();
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Monitor {
+        private final TrafficPeriodDto period;
+        private final String programId;
+        private final int subId;
+        private final long intervalMillis;
+        private final Runnable tick;
+        private final long startedAt;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong lastRunAt = new AtomicLong();
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+        private volatile long nextFireAt;   // simulation only
+
+        Monitor(TrafficPeriodDto period, long intervalMillis, Runnable tick, long startedAt) {
+            this.period = period;
+            this.programId = period.getProgramId();
+            this.subId = period.getSubId();
+            this.intervalMillis = intervalMillis;
+            this.tick = tick;
+            this.startedAt = startedAt;
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) f.cancel(false);     // never interrupt an evaluation halfway through a TC command
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.demo.manager;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.dto.TrafficPeriodDto;
+import com.demo.service.DynamicService;
+import com.demo.util.SimulationClock;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Starts and stops traffic-period monitoring exactly on time. Every period of the live config gets a one-shot
+// timer for its next start, and a running period one for its end, re-armed from the configured times on each
+// firing and on every config swap, so nothing scans the period list on a fixed cadence.
+// With a SimulationClock no timer runs, the simulation fires due events itself through runDue().
+@Component
+public class TrafficPeriodScheduler {
+    private static final Logger log = LoggerFactory.getLogger(TrafficPeriodScheduler.class);
+
+    @Autowired
+    private DynamicService dynamicService;
+
+    @Autowired
+    private DynamicControlManager dynamicControlManager;
+
+    @Autowired
+    private PeriodWarmupManager periodWarmupManager;
+
+    @Autowired
+    private Clock clock;
+
+    // programId-subId-HHmm-HHmm-weekday/weekend: a sub-condition may have several periods in each list
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final PriorityQueue<Event> due = new PriorityQueue<>();     // simulation only
+    private ScheduledThreadPoolExecutor timer;
+
+    @PostConstruct
+    public void init() {
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "traffic-period-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    // config loaded during startup is published before event listeners exist, arm once the context is ready
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rearm();
+    }
+
+    @EventListener
+    public void onConfigChanged(DynamicConfigSnapshot config) {
+        arm(config);
+    }
+
+    public void rearm() {
+        arm(dynamicService.getConfig());
+    }
+
+    // periods carried over unchanged keep their timers, replaced or removed ones are stopped, new ones are armed,
+    // and whatever is active right now but not running is started at once
+    public synchronized void arm(DynamicConfigSnapshot config) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Map<String, Entry> next = new HashMap<>();
+        config.getTrafficPeriodsMap().forEach((isWeekday, periods) -> {
+            for (TrafficPeriodDto period : periods) {
+                String key = TrafficMonitorScheduler.keyOf(period) + (isWeekday ? "-weekday" : "-weekend");
+                Entry entry = entries.remove(key);
+                if (entry == null || entry.period != period) {
+                    if (entry != null) retire(entry);
+                    entry = new Entry(period, isWeekday);
+                    armStart(entry, now);
+                } else {
+                    catchUp(entry, now);
+                }
+                // the same period listed twice: keep one, never leave a self re-arming timer behind
+                Entry replaced = next.put(key, entry);
+                if (replaced != null && replaced != entry) retire(replaced);
+            }
+        });
+        entries.values().forEach(this::retire);
+        entries.clear();
+        entries.putAll(next);
+
+        boolean isWeekday = isWeekday(now.toLocalDate());
+        List<TrafficPeriodDto> active = config.getActiveTrafficPeriods(isWeekday, now.toLocalTime());
+        for (Entry entry : entries.values()) {
+            if (entry.isWeekday == isWeekday && active.contains(entry.period)) begin(entry, now);
+        }
+        log.info("Traffic period timers armed for config version {}: {} periods", config.getVersion(), entries.size());
+    }
+
+    public boolean isSimulation() {
+        return clock instanceof SimulationClock;
+    }
+
+    // simulation: runs every start and stop due at the virtual now on the calling thread, earliest first
+    public int runDue() {
+        long now = clock.millis();
+        int ran = 0;
+        while (true) {
+            Event event;
+            synchronized (this) {
+                event = due.peek();
+                if (event == null || event.at > now) return ran;
+                due.poll();
+            }
+            if (event.cancelled) continue;
+            fire(event);
+            ran++;
+        }
+    }
+
+    // simulation: virtual time of the earliest pending start or stop, Long.MAX_VALUE without any
+    public synchronized long nextDueMillis() {
+        while (!due.isEmpty() && due.peek().cancelled) due.poll();
+        return due.isEmpty() ? Long.MAX_VALUE : due.peek().at;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        entries.values().forEach(this::retire);
+        entries.clear();
+        due.clear();
+        if (timer != null) timer.shutdownNow();
+    }
+
+    // next time after the given one at which the period becomes active: its start time on a day of its list,
+    // or midnight when a cross-midnight period begins a day whose previous day used the other list
+    static LocalDateTime nextStart(TrafficPeriodDto period, boolean isWeekday, LocalDateTime after) {
+        boolean crossesMidnight = !period.getStartTime().isBefore(period.getEndTime());
+        for (int days = 0; days <= 7; days++) {
+            LocalDate date = after.toLocalDate().plusDays(days);
+            if (isWeekday(date) != isWeekday) continue;
+
+            if (crossesMidnight && !period.getEndTime().equals(LocalTime.MIDNIGHT)
+                    && isWeekday(date.minusDays(1)) != isWeekday && date.atStartOfDay().isAfter(after)) {
+                return date.atStartOfDay();
+            }
+            LocalDateTime start = date.atTime(period.getStartTime());
+            if (start.isAfter(after)) return start;
+        }
+        return null;    // unreachable, both lists occur every week
+    }
+
+    // first end time after the given start, null for a whole-day period that never ends on its own
+    static LocalDateTime endAfter(TrafficPeriodDto period, LocalDateTime start) {
+        if (period.getStartTime().equals(period.getEndTime())) return null;
+
+        LocalDateTime end = start.toLocalDate().atTime(period.getEndTime());
+        return end.isAfter(start) ? end : end.plusDays(1);
+    }
+
+    private synchronized void fire(Event event) {
+        if (event.cancelled) return;
+        try {
+            event.action.run();
+        } catch (Exception e) {
+            log.error("Error in traffic period timer: {}", e.getMessage());
+        }
+    }
+
+    private void armStart(Entry entry, LocalDateTime after) {
+        LocalDateTime start = nextStart(entry.period, entry.isWeekday, after);
+        entry.start = schedule(start, () -> {
+            entry.start = null;
+            begin(entry, start);
+            armStart(entry, start);
+        });
+    }
+
+    private void begin(Entry entry, LocalDateTime at) {
+        TrafficPeriodDto period = entry.period;
+        if (!period.getInSchedule().compareAndSet(false, true)) return;    // running dynamic control, skip it
+
+        dynamicControlManager.startTrafficCalculation(period, entry.isWeekday);
+        periodWarmupManager.warmUp(period.getProgramId(), entry.isWeekday);
+        LocalDateTime end = endAfter(period, at);
+        if (end != null) {
+            entry.stop = schedule(end, () -> {
+                entry.stop = null;
+                dynamicControlManager.stopTrafficCalculation(period);
+            });
+        }
+    }
+
+    // timers left behind by a clock that jumped forward (simulation): end an overdue run, re-arm an overdue start
+    private void catchUp(Entry entry, LocalDateTime now) {
+        long nowMillis = clock.millis();
+        if (entry.stop != null && entry.stop.at <= nowMillis) {
+            cancel(entry.stop);
+            entry.stop = null;
+            dynamicControlManager.stopTrafficCalculation(entry.period);
+        }
+        if (entry.start != null && entry.start.at <= nowMillis) {
+            cancel(entry.start);
+            armStart(entry, now);
+        }
+    }
+
+    // period no longer in the config: drop its timers and end a run still going
+    private void retire(Entry entry) {
+        cancel(entry.start);
+        cancel(entry.stop);
+        if (entry.period.getInSchedule().get()) dynamicControlManager.stopTrafficCalculation(entry.period);
+    }
+
+    private Event schedule(LocalDateTime at, Runnable action) {
+        if (at == null) return null;
+
+        Event event = new Event(at.atZone(clock.getZone()).toInstant().toEpochMilli(), action);
+        if (isSimulation()) {
+            due.add(event);
+        } else {
+            event.future = timer.schedule(() -> fire(event), Math.max(event.at - clock.millis(), 0), TimeUnit.MILLISECONDS);
+        }
+        return event;
+    }
+
+    private static void cancel(Event event) {
+        if (event == null) return;
+
+        event.cancelled = true;
+        ScheduledFuture<?> f = event.future;
+        if (f != null) f.cancel(false);
+    }
+
+    private static boolean isWeekday(LocalDate date) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
+    }
+
+    private static class Entry {
+        private final TrafficPeriodDto period;
+        private final boolean isWeekday;
+        private Event start;
+        private Event stop;
+
+        Entry(TrafficPeriodDto period, boolean isWeekday) {
+            this.period = period;
+            this.isWeekday = isWeekday;
+        }
+    }
+
+    private static class Event implements Comparable<Event> {
+        private final long at;
+        private final Runnable action;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> future;
+
+        Event(long at, Runnable action) {
+            this.at = at;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Long.compare(at, other.at);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.demo.manager;
+
+import com.demo.dto.CommandTraceDto;
+import com.demo.dto.TcTraceDto;
+import com.demo.dto.TriggerTraceDto;
+import com.demo.enums.TcApplyResult;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Timeline of one dynamic trigger while it runs. The trigger threads append the commands of their TC,
+// the finished trace becomes a TriggerTraceDto.
+final class TriggerTrace {
+    private static final long NOT_SENT = Long.MIN_VALUE;
+
+    private final String traceId = UUID.randomUUID().toString();
+    private final String programId;
+    private final String mode;
+    private final LocalDateTime startedAt;
+    private final long beginNanos = System.nanoTime();
+    private final Cause cause;
+    private final AtomicLong firstCommandNanos = new AtomicLong(NOT_SENT);
+    private final Map<String, List<CommandTraceDto>> commands = new ConcurrentHashMap<>();
+
+    // what the monitor measured right before the condition turned true, null for triggers it did not cause
+    record Cause(Double carflowFetchMillis, Double conditionEvalMillis, long conditionTrueNanos) {
+    }
+
+    TriggerTrace(String programId, String mode, LocalDateTime startedAt, Cause cause) {
+        this.programId = programId;
+        this.mode = mode;
+        this.startedAt = startedAt;
+        this.cause = cause;
+    }
+
+    String getProgramId() {
+        return programId;
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    boolean hasCause() {
+        return cause != null;
+    }
+
+    // a command is about to be sent, returns its offset from the trigger start in ms
+    long commandSent() {
+        long now = System.nanoTime();
+        firstCommandNanos.compareAndSet(NOT_SENT, now);
+        return TimeUnit.NANOSECONDS.toMillis(now - beginNanos);
+    }
+
+    void addCommand(String tcId, CommandTraceDto command) {
+        commands.computeIfAbsent(tcId, k -> Collections.synchronizedList(new ArrayList<>())).add(command);
+    }
+
+    // condition true (or trigger start) until the first command, null when nothing was sent
+    Long reactionMillis() {
+        long first = firstCommandNanos.get();
+        if (first == NOT_SENT) return null;
+        return TimeUnit.NANOSECONDS.toMillis(first - (cause != null ? cause.conditionTrueNanos() : beginNanos));
+    }
+
+    TriggerTraceDto toDto(Map<String, Integer> tcPlanMap, Map<String, TcApplyResult> results,
+                          Map<String, Long> elapsed, long totalMillis) {
+        List<TcTraceDto> tcs = new ArrayList<>(tcPlanMap.size());
+        int applied = 0;
+        for (Map.Entry<String, Integer> entry : tcPlanMap.entrySet()) {
+            String tc = entry.getKey();
+            TcApplyResult result = results.get(tc);
+            if (result == TcApplyResult.APPLIED) applied++;
+
+            List<CommandTraceDto> sent = commands.getOrDefault(tc, List.of());
+            synchronized (sent) {
+                tcs.add(TcTraceDto.builder()
+                        .tcId(tc)
+                        .planId(entry.getValue())
+                        .result(result == null ? null : result.name())
+                        .totalMillis(elapsed.get(tc))
+                        .commands(List.copyOf(sent))
+                        .build());
+            }
+        }
+
+        return TriggerTraceDto.builder()
+                .traceId(traceId)
+                .programId(programId)
+                .mode(mode)
+                .startedAt(startedAt)
+                .carflowFetchMillis(cause == null ? null : cause.carflowFetchMillis())
+                .conditionEvalMillis(cause == null ? null : cause.conditionEvalMillis())
+                .reactionMillis(reactionMillis())
+                .totalMillis(totalMillis)
+                .applied(applied)
+                .total(tcPlanMap.size())
+                .tcs(tcs)
+                .build();
+    }
+}
@@ -1,7 +1,6 @@
 package com.demo.message;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.demo.dto.*;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -10,103 +9,78 @@ import java.util.List;
 @Component
 public class MessageBuilder {
 
-    public Message5F10 buildMessage5F10(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
-
-        int controlStrategy = value.getInt("controlStrategy");
-        int effectTime = value.getInt("effectTime");
-
+    public Message5F10 buildMessage5F10(Command5F10Dto command) {
         return Message5F10.builder()
-                .controlStrategy(controlStrategy)
-                .effecTime(effectTime)
+                .controlStrategy(command.getControlStrategy())
+                .effecTime(command.getEffectTime())
                 .build();
     }
 
-    public Message5F14 buildMessage5F14(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
-
-        int planId = value.getInt("planId");
-        int subPhaseCount = value.getInt("subPhaseCount");
-        JSONArray subPhasesJsonArray = value.getJSONArray("subPhases");
+    public Message5F14 buildMessage5F14(Command5F15Dto command) {
+        int subPhaseCount = command.getSubPhaseCount();
+        List<CommandSubPhaseDto> subPhases = command.getSubPhases();
 
-        List<MessageSubPhases> dynamicArray_14 = new ArrayList<>();
+        List<MessageSubPhases> dynamicArray_14 = new ArrayList<>(subPhaseCount);
         for (int i = 0; i < subPhaseCount; i++) {
+            CommandSubPhaseDto subPhase = subPhases.get(i);
             MessageSubPhases subPhasesMessage = MessageSubPhases.builder()
-                    .minGreen(subPhasesJsonArray.getJSONObject(i).getInt("minGreen"))
-                    .maxGreen(subPhasesJsonArray.getJSONObject(i).getInt("maxGreen"))
-                    .yellow(subPhasesJsonArray.getJSONObject(i).getInt("yellow"))
-                    .allRed(subPhasesJsonArray.getJSONObject(i).getInt("allRed"))
-                    .pedGreenFlash(subPhasesJsonArray.getJSONObject(i).getInt("pedGreenFlash"))
-                    .pedRed(subPhasesJsonArray.getJSONObject(i).getInt("pedRed"))
+                    .minGreen(subPhase.getMinGreen())
+                    .maxGreen(subPhase.getMaxGreen())
+                    .yellow(subPhase.getYellow())
+                    .allRed(subPhase.getAllRed())
+                    .pedGreenFlash(subPhase.getPedGreenFlash())
+                    .pedRed(subPhase.getPedRed())
                     .build();
 
             dynamicArray_14.add(subPhasesMessage);
         }
 
         return Message5F14.builder()
-                .planId(planId)
+                .planId(command.getPlanId())
                 .subPhaseCount(subPhaseCount)
                 .dynamicArray(dynamicArray_14)
                 .build();
     }
 
-    public Message5F15 buildMessage5F15(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
+    public Message5F15 buildMessage5F15(Command5F15Dto command) {
+        int subPhaseCount = command.getSubPhaseCount();
+        List<CommandSubPhaseDto> subPhases = command.getSubPhases();
 
-        int planId = value.getInt("planId");
-        int direct = value.getInt("direct");
-        String phaseOrder = value.getString("phaseOrder");
-        int subPhaseCount = value.getInt("subPhaseCount");
-        int cycleTime = value.getInt("cycleTime");
-        int offset = value.getInt("offset");
-        JSONArray subPhasesJsonArray = value.getJSONArray("subPhases");
-
-        List<Integer> dynamicArray_15 = new ArrayList<>();
+        List<Integer> dynamicArray_15 = new ArrayList<>(subPhaseCount);
         for (int i = 0; i < subPhaseCount; i++) {
-            dynamicArray_15.add(subPhasesJsonArray.getJSONObject(i).getInt("green"));
+            dynamicArray_15.add(subPhases.get(i).getGreen());
         }
 
         return Message5F15.builder()
-                .planId(planId)
-                .direct(direct)
-                .phaseOrder(phaseOrder)
+                .planId(command.getPlanId())
+                .direct(command.getDirect())
+                .phaseOrder(command.getPhaseOrder())
                 .subPhaseCount(subPhaseCount)
                 .dynamicArray(dynamicArray_15)
-                .cycleTime(cycleTime)
-                .offset(offset)
+                .cycleTime(command.getCycleTime())
+                .offset(command.getOffset())
                 .build();
     }
 
-    public Message5F18 buildMessage5F18(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
-        int planId = value.getInt("planId");
-
+    public Message5F18 buildMessage5F18(Command5F18Dto command) {
         return Message5F18.builder()
-                .planId(planId)
+                .planId(command.getPlanId())
                 .build();
     }
 
-    public Message5F40 buildMessage5F40(JSONObject obj) {
+    public Message5F40 buildMessage5F40(Command5F40Dto command) {
         return Message5F40.builder().build();
     }
 
-    public Message5F44 buildMessage5F44(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
-
-        int planId = value.getInt("planId");
-
+    public Message5F44 buildMessage5F44(Command5F45Dto command) {
         return Message5F44.builder()
-                .planId(planId)
+                .planId(command.getPlanId())
                 .build();
     }
 
-    public Message5F45 buildMessage5F45(JSONObject obj) {
-        JSONObject value = obj.getJSONObject("value");
-
-        int planId = value.getInt("planId");
-
+    public Message5F45 buildMessage5F45(Command5F45Dto command) {
         return Message5F45.builder()
-                .planId(planId)
+                .planId(command.getPlanId())
                 .build();
     }
 }
@@ -39,6 +39,10 @@ public class DynamicThreshold {
     @Column(name = "threshold_value", nullable = false)
     private Integer thresholdValue;
 
+    // also match on the flow forecast this many minutes ahead, null or 0 compares observed flow only
+    @Column(name = "forecast_horizon_minutes")
+    private Integer forecastHorizonMinutes;
+
     @Column(name = "log_time", nullable = false, insertable = false, updatable = false,
             columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
     private LocalDateTime logTime;
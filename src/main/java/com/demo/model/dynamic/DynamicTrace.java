@@ -0,0 +1,48 @@
+package com.demo.model.dynamic;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "dynamic_trace")
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class DynamicTrace {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "trace_id", length = 36, nullable = false, unique = true)
+    private String traceId;
+
+    @Column(name = "program_id", length = 10, nullable = false)
+    private String programId;
+
+    @Column(name = "applied", nullable = false)
+    private Integer applied;
+
+    @Column(name = "total", nullable = false)
+    private Integer total;
+
+    @Column(name = "reaction_ms")
+    private Long reactionMillis;
+
+    @Column(name = "total_ms", nullable = false)
+    private Long totalMillis;
+
+    // the whole TriggerTraceDto as JSON
+    @Lob
+    @Column(name = "detail", nullable = false, columnDefinition = "TEXT")
+    private String detail;
+
+    @Column(name = "trace_time", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime traceTime;
+}
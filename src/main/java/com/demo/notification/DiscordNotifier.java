@@ -14,7 +14,7 @@ import org.springframework.web.client.RestTemplate;
 import java.util.Map;
 
 @Component
-public class DiscordNotifier {
+public class DiscordNotifier implements NotificationSender {
     private static final Logger log = LoggerFactory.getLogger(DiscordNotifier.class);
 
     @Value("${discord.notify.token}")
@@ -34,6 +34,15 @@ public class DiscordNotifier {
             return;
         }
 
+        try {
+            send(message);
+        } catch (Exception e) {
+            log.error("Error sending Discord message", e);
+        }
+    }
+
+    @Override
+    public void send(String message) {
         String url = discordUrl + channelId + "/messages";
         Map<String, String> payload = Map.of("content", message);
 
@@ -44,14 +53,10 @@ public class DiscordNotifier {
 
         HttpEntity<Map<String, String>> entity = new HttpEntity<>(payload, headers);
 
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.warn("Failed to send Discord message. StatusCode: {}, Response: {}",
-                        response.getStatusCode(), response.getBody());
-            }
-        } catch (Exception e) {
-            log.error("Error sending Discord message", e);
+        ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Failed to send Discord message. StatusCode: "
+                    + response.getStatusCode() + ", Response: " + response.getBody());
         }
     }
 }
@@ -0,0 +1,192 @@
+package com.demo.notification;
+
+import com.demo.enums.NotificationType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Takes notifications off the caller's thread. Events are queued (bounded), merged per type within one window,
+// rate limited and retried with backoff by a single background worker, so a flapping link or a large program
+// trigger never waits for the notification channel.
+@Component
+public class NotificationDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_LISTED_SUBJECTS = 20;
+
+    @Value("${notify.queue.capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${notify.window-ms:5000}")
+    private long windowMillis;
+
+    @Value("${notify.rate.per-minute:20}")
+    private int ratePerMinute;
+
+    @Value("${notify.retry.max:3}")
+    private int maxRetries;
+
+    @Value("${notify.retry.backoff-ms:2000}")
+    private long retryBackoffMillis;
+
+    @Autowired
+    private NotificationSender notificationSender;
+
+    private BlockingQueue<Event> queue;
+    private final Map<NotificationType, Batch> pending = new EnumMap<>(NotificationType.class);
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "notification-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // token bucket, refilled continuously up to ratePerMinute
+    private double tokens;
+    private long lastRefill;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        tokens = ratePerMinute;
+        lastRefill = System.currentTimeMillis();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // never blocks; subject identifies the source (ip, TC id) and is listed in merged summaries
+    public void dispatch(NotificationType type, String subject, String message) {
+        if (message == null || message.trim().isEmpty()) {
+            log.warn("Message is null or empty.");
+            return;
+        }
+
+        if (!queue.offer(new Event(type, subject, message, LocalDateTime.now()))) {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 100 == 0) {
+                log.warn("Notification queue full, {} notifications dropped so far", count);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Notification dispatch failed", e);
+        }
+    }
+
+    synchronized void flush() {
+        List<Event> events = new ArrayList<>();
+        queue.drainTo(events);
+        for (Event event : events) {
+            pending.computeIfAbsent(event.type, t -> new Batch()).add(event);
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<NotificationType, Batch>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<NotificationType, Batch> entry = iterator.next();
+            Batch batch = entry.getValue();
+            if (batch.nextAttemptAt > now) continue;
+
+            if (!tryAcquire(now)) {
+                log.debug("Notification rate limit reached, {} types kept for the next window", pending.size());
+                return;     // keep everything pending, later events are merged into the same batches
+            }
+
+            try {
+                notificationSender.send(batch.render(entry.getKey()));
+                iterator.remove();
+            } catch (Exception e) {
+                batch.attempts++;
+                if (batch.attempts > maxRetries) {
+                    log.error("Dropping {} notification after {} attempts", entry.getKey(), batch.attempts, e);
+                    iterator.remove();
+                } else {
+                    batch.nextAttemptAt = now + retryBackoffMillis * (1L << (batch.attempts - 1));
+                    log.warn("Failed to send {} notification, retry {} of {}", entry.getKey(), batch.attempts, maxRetries);
+                }
+            }
+        }
+    }
+
+    private boolean tryAcquire(long now) {
+        tokens = Math.min(ratePerMinute, tokens + (now - lastRefill) * ratePerMinute / 60000.0);
+        lastRefill = now;
+
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // last chance to deliver what is queued, no retry
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(windowMillis, TimeUnit.MILLISECONDS);   // let a running flush finish
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // same lock as flush, in case the running one outlived the wait
+        synchronized (this) {
+            maxRetries = 0;
+            tokens = Math.max(tokens, pending.size() + queue.size());
+            flushSafely();
+        }
+    }
+
+    private record Event(NotificationType type, String subject, String message, LocalDateTime time) {
+    }
+
+    private static class Batch {
+        private final Set<String> subjects = new LinkedHashSet<>();
+        private Event first;
+        private Event last;
+        private int count;
+        private boolean truncated;
+        private int attempts;
+        private long nextAttemptAt;
+
+        void add(Event event) {
+            if (first == null) first = event;
+            last = event;
+            count++;
+            if (event.subject != null && !subjects.contains(event.subject)) {
+                if (subjects.size() < MAX_LISTED_SUBJECTS) {
+                    subjects.add(event.subject);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+
+        String render(NotificationType type) {
+            if (count == 1) return first.message;
+
+            StringBuilder sb = new StringBuilder(type.getSummaryFormat().formatted(count));
+            if (!subjects.isEmpty()) {
+                sb.append(": ").append(String.join(", ", subjects));
+                if (truncated) sb.append(", ...");
+            }
+            sb.append(" (").append(first.time.format(formatter)).append(" ~ ").append(last.time.format(formatter)).append(")");
+            return sb.toString();
+        }
+    }
+}
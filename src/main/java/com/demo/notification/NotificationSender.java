@@ -0,0 +1,6 @@
+package com.demo.notification;
+
+// Delivery channel behind NotificationDispatcher, throws when the message was not accepted so it can be retried.
+public interface NotificationSender {
+    void send(String message) throws Exception;
+}
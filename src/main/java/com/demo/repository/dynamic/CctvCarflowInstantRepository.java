@@ -1,12 +1,14 @@
 package com.demo.repository.dynamic;
 
 import com.demo.model.dynamic.CctvCarflowInstant;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface CctvCarflowInstantRepository extends JpaRepository<CctvCarflowInstant, Long> {
@@ -25,4 +27,11 @@ public interface CctvCarflowInstantRepository extends JpaRepository<CctvCarflowI
             @Param("startPos") String startPos,
             @Param("endPos") String endPos
     );
+
+    // tailing by id for the in-memory aggregator
+    List<CctvCarflowInstant> findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(
+            Long id,
+            LocalDateTime startTime,
+            Pageable pageable
+    );
 }
@@ -0,0 +1,12 @@
+package com.demo.repository.dynamic;
+
+import com.demo.model.dynamic.DynamicTrace;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface DynamicTraceRepository extends JpaRepository<DynamicTrace, Long> {
+    Optional<DynamicTrace> findByTraceId(String traceId);
+}
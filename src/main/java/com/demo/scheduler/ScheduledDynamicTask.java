@@ -1,9 +1,9 @@
 package com.demo.scheduler;
 
-import com.demo.manager.DynamicControlManager;
 import com.demo.model.dynamic.DynamicCondition;
 import com.demo.model.dynamic.DynamicThreshold;
-import com.demo.dto.TrafficPeriodDto;
+import com.demo.service.CarflowAggregator;
+import com.demo.service.DynamicPlanCache;
 import com.demo.service.DynamicService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
@@ -12,9 +12,6 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.DayOfWeek;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
 
 @Component
@@ -29,30 +26,21 @@ public class ScheduledDynamicTask {
     private ObjectMapper objectMapper;
 
     @Autowired
-    private DynamicControlManager dynamicControlManager;
+    private CarflowAggregator carflowAggregator;
 
-    // every 10 minutes check if time periods matches or not
-    // if matches, then apply dynamic controls
-    @Async
-    @Scheduled(cron = "0 0/10 * * * ?")
-    //@Scheduled(fixedRate = 30 * 60 * 1000, initialDelay = 3000)
-    public void checkTrafficPeriods() {
-        LocalDateTime now = LocalDateTime.now();
-        DayOfWeek dayOfWeek = now.getDayOfWeek();
-        boolean isWeekday = (dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY);
-
-        List<TrafficPeriodDto> activePeriods = dynamicService.getTrafficPeriodsMap().get(isWeekday);
-        for (TrafficPeriodDto period : activePeriods) {
-            if (period.getInSchedule().get()) continue;     // running dynamic control, skip it
+    @Autowired
+    private DynamicPlanCache dynamicPlanCache;
 
-            LocalTime start = period.getStartTime();
-            LocalTime end = period.getEndTime();
+    // the cache reloads with every config change, this only catches plans and parameters edited outside the app
+    @Scheduled(fixedDelayString = "${dynamic.plan-cache.refresh-ms:300000}", initialDelayString = "${dynamic.plan-cache.refresh-ms:300000}")
+    public void refreshPlanCache() {
+        dynamicPlanCache.refresh();
+    }
 
-            if (dynamicService.isInTrafficPeriod(start, end)) {
-                if(period.getInSchedule().compareAndSet(false, true))
-                    dynamicControlManager.startTrafficCalculation(period, isWeekday);
-            }
-        }
+    // tail new car-flow rows into the in-memory aggregator, no-op unless it is enabled
+    @Scheduled(fixedDelayString = "${dynamic.carflow.aggregator.poll-ms:10000}", initialDelay = 5000)
+    public void pollCarflow() {
+        carflowAggregator.poll();
     }
 
     @Async
@@ -61,7 +49,6 @@ public class ScheduledDynamicTask {
     public void readDynamicInfo() {
         List<DynamicCondition> allDynamicCondition = dynamicService.getAllDynamicConditions();
         List<DynamicThreshold> allDynamicThreshold = dynamicService.getAllDynamicThresholds();
-        dynamicService.createConditionMap(allDynamicCondition);
-        dynamicService.createTrafficAndThresholdMap(allDynamicThreshold);
+        dynamicService.reloadDynamicConfig(allDynamicCondition, allDynamicThreshold);   // the plan cache follows the new config
     }
 }
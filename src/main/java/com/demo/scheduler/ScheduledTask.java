@@ -1,6 +1,7 @@
 package com.demo.scheduler;
 
 import com.demo.config.AsyncConfig;
+import com.demo.manager.ControllerStateCrawler;
 import com.demo.service.SocketService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,6 +22,9 @@ public class ScheduledTask {
     @Autowired
     private AsyncConfig asyncConfig;
 
+    @Autowired
+    private ControllerStateCrawler controllerStateCrawler;
+
     // check TC connection every minute
     @Scheduled(fixedRate = ONE_Minute, initialDelay = ONE_Minute)
     public void checkTcConnection() {
@@ -40,4 +44,10 @@ public class ScheduledTask {
             log.error("Error checking and refreshing thread pool: {}", e.getMessage(), e);
         }
     }
+
+    // read the state of every connected TC in the background
+    @Scheduled(fixedDelayString = "${tc.crawler.interval-ms:900000}", initialDelayString = "${tc.crawler.interval-ms:900000}")
+    public void crawlControllerStates() {
+        controllerStateCrawler.crawlAll();
+    }
 }
@@ -0,0 +1,447 @@
+package com.demo.service;
+
+import com.demo.dto.*;
+import com.demo.enums.ComparisonOperator;
+import com.demo.exception.CustomException;
+import com.demo.exception.DynamicException;
+import com.demo.model.dynamic.DynamicCondition;
+import com.demo.model.dynamic.DynamicThreshold;
+import com.demo.util.CompiledCondition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Replays stored car flow through the same thresholds, condition and cooldown rules the live monitors use, to see
+// when a program would have triggered. The flow of the range is read once into per-minute prefix sums, so a
+// window sum is two array reads; every (program, day) is then simulated on its own in a fork-join pool. A threshold
+// with a forecast horizon also matches on the forecast, replayed on a detached forecaster fed from the same minutes.
+@Service
+public class BacktestService {
+    private static final Logger log = LoggerFactory.getLogger(BacktestService.class);
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int SPLIT_THRESHOLD = 8;       // (program, day) items a fork-join task runs itself
+
+    // 0 uses every available processor
+    @Value("${dynamic.backtest.parallelism:0}")
+    private int parallelism;
+
+    @Value("${dynamic.backtest.max-days:62}")
+    private int maxDays;
+
+    @Autowired
+    private DynamicService dynamicService;
+
+    @Autowired
+    private CarflowForecaster carflowForecaster;
+
+    @Autowired
+    @Qualifier("dynamicJdbcTemplate")
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    public BacktestReportDto run(BacktestRequestDto request) {
+        LocalDate startDate = request.getStartDate();
+        LocalDate endDate = request.getEndDate();
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            throw new CustomException("Backtest needs a start date not after the end date", HttpStatus.BAD_REQUEST);
+        }
+        int days = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days > maxDays) {
+            throw new CustomException("Backtest range is limited to " + maxDays + " days", HttpStatus.BAD_REQUEST);
+        }
+
+        DynamicConfigSnapshot config = buildConfig(request);
+        List<String> programs = config.getConditionMap().keySet().stream()
+                .filter(p -> request.getProgramIds() == null || request.getProgramIds().isEmpty() || request.getProgramIds().contains(p))
+                .sorted()
+                .toList();
+
+        // only the cctv totals and segments the selected thresholds read are kept
+        Set<String> cctvs = new HashSet<>();
+        Set<String> seriesKeys = new HashSet<>();
+        int maxInterval = 0;
+        for (Map.Entry<String, ThresholdDto> entry : config.getThresholdMap().entrySet()) {
+            if (!programs.contains(programOf(entry.getKey()))) continue;
+
+            ThresholdDto threshold = entry.getValue();
+            maxInterval = Math.max(maxInterval, threshold.getTimeInterval());
+            for (String cctv : threshold.getCctvList()) {
+                cctvs.add(cctv);
+                for (String direction : threshold.getCarflowDirectionList()) {
+                    seriesKeys.add(seriesKey(cctv, direction));
+                }
+            }
+        }
+
+        // evening runs of the last day last into the next one
+        LocalDateTime origin = startDate.atStartOfDay().minusMinutes(maxInterval);
+        LocalDateTime until = endDate.plusDays(2).atStartOfDay();
+
+        long loadStart = System.nanoTime();
+        FlowStore store = new FlowStore(origin, (int) Duration.between(origin, until).toMinutes(), seriesKeys);
+        if (!cctvs.isEmpty()) load(store, cctvs, until);
+        store.accumulate();
+        long loadMillis = (System.nanoTime() - loadStart) / 1_000_000;
+
+        List<ProgramDay> work = new ArrayList<>();
+        for (String programId : programs) {
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                work.add(new ProgramDay(programId, date));
+            }
+        }
+
+        long simulateStart = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        List<DayResult> dayResults;
+        try {
+            dayResults = pool.invoke(new SimulateTask(work, 0, work.size(), config, store));
+        } finally {
+            pool.shutdown();
+        }
+        long simulateMillis = (System.nanoTime() - simulateStart) / 1_000_000;
+
+        Map<String, BacktestResultDto> results = new LinkedHashMap<>();
+        for (String programId : programs) {
+            results.put(programId, BacktestResultDto.builder()
+                    .programId(programId)
+                    .evaluations(0)
+                    .triggers(0)
+                    .triggerTimes(new ArrayList<>())
+                    .build());
+        }
+        for (DayResult day : dayResults) {
+            BacktestResultDto result = results.get(day.programId);
+            result.setEvaluations(result.getEvaluations() + day.evaluations);
+            result.getTriggerTimes().addAll(day.triggerTimes);
+        }
+        results.values().forEach(r -> {
+            Collections.sort(r.getTriggerTimes());
+            r.setTriggers(r.getTriggerTimes().size());
+        });
+
+        log.info("Backtest {} to {}: {} programs, {} rows in {} ms, simulated in {} ms", startDate, endDate,
+                programs.size(), store.rows, loadMillis, simulateMillis);
+
+        return BacktestReportDto.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .days(days)
+                .rowsLoaded(store.rows)
+                .seriesLoaded(store.prefix.size())
+                .loadMillis(loadMillis)
+                .simulateMillis(simulateMillis)
+                .results(new ArrayList<>(results.values()))
+                .build();
+    }
+
+    // stored rows with the candidate rows of the request in place of the ones they share a key with
+    private DynamicConfigSnapshot buildConfig(BacktestRequestDto request) {
+        Map<String, DynamicCondition> conditions = new LinkedHashMap<>();
+        dynamicService.getAllDynamicConditions().forEach(c -> conditions.putIfAbsent(c.getProgramId(), c));
+        Map<String, DynamicThreshold> thresholds = new LinkedHashMap<>();
+        dynamicService.getAllDynamicThresholds().forEach(t -> thresholds.putIfAbsent(thresholdKey(t), t));
+
+        if (request.getConditions() != null) {
+            request.getConditions().forEach(c -> conditions.put(c.getProgramId(), c));
+        }
+        if (request.getThresholds() != null) {
+            for (DynamicThreshold t : request.getThresholds()) {
+                if (t.getId() == null) {
+                    throw new CustomException("Candidate threshold without programId and subId", HttpStatus.BAD_REQUEST);
+                }
+                thresholds.put(thresholdKey(t), t);
+            }
+        }
+
+        try {
+            return dynamicService.buildDetachedConfig(new ArrayList<>(conditions.values()), new ArrayList<>(thresholds.values()));
+        } catch (RuntimeException e) {
+            throw new CustomException("Invalid dynamic config: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // one pass over the range, rows are folded into the per-minute series as they stream in
+    private void load(FlowStore store, Set<String> cctvs, LocalDateTime until) {
+        String sql = "SELECT cctv_id, start_position, end_position, start_time, motor + car + truck AS flow"
+                + " FROM cctv_carflow_instant WHERE cctv_id IN ("
+                + String.join(",", Collections.nCopies(cctvs.size(), "?"))
+                + ") AND start_time >= ? AND start_time < ?";
+        List<Object> args = new ArrayList<>(cctvs);
+        args.add(Timestamp.valueOf(store.origin));
+        args.add(Timestamp.valueOf(until));
+
+        dynamicJdbcTemplate.query(sql, rs -> {
+            LocalDateTime startTime = rs.getTimestamp("start_time").toLocalDateTime();
+            int minute = (int) Duration.between(store.origin, startTime).toMinutes();
+            if (minute < 0 || minute >= store.minutes) return;
+
+            String cctvId = rs.getString("cctv_id");
+            double flow = rs.getDouble("flow");
+            store.add(seriesKey(cctvId, "ALL"), minute, flow);
+            store.add(seriesKey(cctvId, rs.getString("start_position") + "-" + rs.getString("end_position")), minute, flow);
+            store.rows++;
+        }, args.toArray());
+    }
+
+    // mirrors DynamicControlManager: a period's start timer starts its monitor, each threshold then ticks every
+    // timeInterval minutes until the end timer stops it, and every tick re-checks the program condition
+    private DayResult simulate(ProgramDay item, DynamicConfigSnapshot config, FlowStore store) {
+        String programId = item.programId;
+        boolean isWeekday = isWeekday(item.date);
+        ConditionDto condition = config.getConditionMap().get(programId);
+
+        // sub-condition results are per replay, kept in a local mask over the compiled condition's bits
+        Map<String, ThresholdDto> thresholds = config.getThresholdMap();
+        CompiledCondition compiled;
+        try {
+            compiled = CompiledCondition.compile(programId, condition.getConditionExpression(), thresholds);
+        } catch (DynamicException e) {
+            compiled = CompiledCondition.compile(programId, "false", thresholds);
+        }
+
+        int dayStart = (int) Duration.between(store.origin, item.date.atStartOfDay()).toMinutes();
+        List<Tick> ticks = new ArrayList<>();
+        for (TrafficPeriodDto period : config.getTrafficPeriodsMap().getOrDefault(isWeekday, List.of())) {
+            ThresholdDto threshold = thresholds.get(programId + "-" + period.getSubId());
+            if (!period.getProgramId().equals(programId) || threshold == null) continue;
+
+            long bit = compiled.bitOf(period.getSubId());
+            int start = period.getStartTime().getHour() * 60 + period.getStartTime().getMinute();
+            int end = period.getEndTime().getHour() * 60 + period.getEndTime().getMinute();
+            if (start < end) {
+                addRun(ticks, threshold, bit, dayStart + start, dayStart + end);
+            } else {
+                // cross midnight: the evening run lasts into the next day, the morning part is only started on
+                // its own when the day before used the other period list
+                if (isWeekday(item.date.minusDays(1)) != isWeekday) {
+                    addRun(ticks, threshold, bit, dayStart, dayStart + end);
+                }
+                addRun(ticks, threshold, bit, dayStart + start, dayStart + MINUTES_PER_DAY + end);
+            }
+        }
+        ticks.sort(Comparator.comparingInt(Tick::minute));
+
+        // the replayed forecast starts from the day's first minute, like a live forecaster warming up after a restart
+        Forecast forecast = new Forecast(carflowForecaster.detached(), store, Math.max(0, dayStart));
+        DayResult result = new DayResult(programId);
+        long results = 0L;
+        int consecutiveCounts = 0;
+        int lastTriggered = Integer.MIN_VALUE / 2;
+        for (Tick tick : ticks) {
+            ThresholdDto threshold = tick.threshold();
+            if (tick.stop()) {
+                results &= ~tick.bit();
+                continue;
+            }
+
+            result.evaluations++;
+            ComparisonOperator operator = threshold.getOperator() != null
+                    ? threshold.getOperator()
+                    : ComparisonOperator.fromSymbol(threshold.getComparisonOperator());
+            int horizon = threshold.getForecastHorizonMinutes() != null ? Math.max(0, threshold.getForecastHorizonMinutes()) : 0;
+            boolean matched = false;
+            if (operator != null && operator.test(flow(store, threshold, tick.minute()), threshold.getThresholdValue())) {
+                matched = true;
+            } else if (operator != null && horizon > 0) {
+                Double predicted = forecast.flow(threshold, tick.minute(), horizon);
+                matched = predicted != null && operator.test(predicted, threshold.getThresholdValue());
+            }
+            if (matched) {
+                results |= tick.bit();
+            } else {
+                results &= ~tick.bit();
+            }
+
+            if (compiled.evaluate(results)) {
+                consecutiveCounts++;
+                if (consecutiveCounts == condition.getConsecutiveMatches()
+                        && tick.minute() - lastTriggered >= threshold.getTimeInterval()) {
+                    lastTriggered = tick.minute();
+                    consecutiveCounts = 0;
+                    result.triggerTimes.add(store.origin.plusMinutes(tick.minute()));
+                }
+            } else {
+                consecutiveCounts = 0;
+            }
+        }
+        return result;
+    }
+
+    private static void addRun(List<Tick> ticks, ThresholdDto threshold, long bit, int from, int to) {
+        if (from >= to) return;
+
+        int step = threshold.getTimeInterval();
+        for (int minute = from; minute < to; minute += step) {
+            ticks.add(new Tick(minute, threshold, bit, false));
+        }
+        ticks.add(new Tick(to, threshold, bit, true));   // the end timer stops the monitor
+    }
+
+    private static double flow(FlowStore store, ThresholdDto threshold, int minute) {
+        double total = 0.0;
+        for (String cctv : threshold.getCctvList()) {
+            for (String direction : threshold.getCarflowDirectionList()) {
+                total += store.window(seriesKey(cctv, direction), minute, threshold.getTimeInterval());
+            }
+        }
+        return total;
+    }
+
+    // DynamicService.forecastWindow over the stored minutes: the observed part of the shifted window plus the
+    // forecast of the rest, null unless every cctv and direction can be forecast
+    private static final class Forecast {
+        private final CarflowForecaster forecaster;
+        private final FlowStore store;
+        private final int firstMinute;
+        private final Map<String, Integer> fed = new HashMap<>();
+
+        Forecast(CarflowForecaster forecaster, FlowStore store, int firstMinute) {
+            this.forecaster = forecaster;
+            this.store = store;
+            this.firstMinute = firstMinute;
+        }
+
+        Double flow(ThresholdDto threshold, int minute, int horizon) {
+            int length = threshold.getTimeInterval();
+            int observed = Math.max(0, length - horizon);
+            double total = 0.0;
+            for (String cctv : threshold.getCctvList()) {
+                for (String direction : threshold.getCarflowDirectionList()) {
+                    String key = seriesKey(cctv, direction);
+                    feed(key, minute);
+                    Double predicted = forecaster.predict(key, Math.max(minute, minute + horizon - length), minute + horizon);
+                    if (predicted == null) return null;
+                    total += store.window(key, minute, observed) + predicted;
+                }
+            }
+            return total;
+        }
+
+        // the minutes before the tick, in order, as the aggregator would have handed them over
+        private void feed(String key, int minute) {
+            int from = fed.getOrDefault(key, firstMinute);
+            for (int m = from; m < minute; m++) {
+                double flow = store.window(key, m + 1, 1);
+                if (flow > 0) forecaster.observe(key, m, flow);
+            }
+            fed.put(key, Math.max(from, minute));
+        }
+    }
+
+    private static boolean isWeekday(LocalDate date) {
+        return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+    }
+
+    private static String seriesKey(String cctv, String direction) {
+        return direction.equalsIgnoreCase("ALL") ? cctv : cctv + "|" + direction;
+    }
+
+    private static String thresholdKey(DynamicThreshold t) {
+        return t.getId().getProgramId() + "-" + t.getId().getSubId();
+    }
+
+    private static String programOf(String thresholdKey) {
+        return thresholdKey.substring(0, thresholdKey.lastIndexOf('-'));
+    }
+
+    private final class SimulateTask extends RecursiveTask<List<DayResult>> {
+        private final List<ProgramDay> work;
+        private final int from;
+        private final int to;
+        private final DynamicConfigSnapshot config;
+        private final FlowStore store;
+
+        SimulateTask(List<ProgramDay> work, int from, int to, DynamicConfigSnapshot config, FlowStore store) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+            this.config = config;
+            this.store = store;
+        }
+
+        @Override
+        protected List<DayResult> compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                List<DayResult> results = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    results.add(simulate(work.get(i), config, store));
+                }
+                return results;
+            }
+
+            int mid = (from + to) >>> 1;
+            SimulateTask left = new SimulateTask(work, from, mid, config, store);
+            left.fork();
+            List<DayResult> right = new SimulateTask(work, mid, to, config, store).compute();
+            List<DayResult> results = new ArrayList<>(left.join());
+            results.addAll(right);
+            return results;
+        }
+    }
+
+    // per-minute flow of each series as prefix sums over the whole range, read-only once accumulated
+    private static final class FlowStore {
+        private final LocalDateTime origin;
+        private final int minutes;
+        private final Map<String, double[]> prefix = new HashMap<>();
+        private long rows;
+
+        FlowStore(LocalDateTime origin, int minutes, Set<String> seriesKeys) {
+            this.origin = origin;
+            this.minutes = minutes;
+            for (String key : seriesKeys) {
+                prefix.put(key, new double[minutes + 1]);
+            }
+        }
+
+        void add(String key, int minute, double flow) {
+            double[] values = prefix.get(key);
+            if (values != null) values[minute + 1] += flow;
+        }
+
+        void accumulate() {
+            for (double[] values : prefix.values()) {
+                for (int i = 1; i < values.length; i++) {
+                    values[i] += values[i - 1];
+                }
+            }
+        }
+
+        // flow of the rows that start in [end - length, end), as CarflowAggregator windows it
+        double window(String key, int end, int length) {
+            double[] values = prefix.get(key);
+            if (values == null) return 0.0;
+
+            int to = Math.max(0, Math.min(end, minutes));
+            int from = Math.max(0, Math.min(end - length, minutes));
+            return values[to] - values[from];
+        }
+    }
+
+    private record ProgramDay(String programId, LocalDate date) {
+    }
+
+    private record Tick(int minute, ThresholdDto threshold, long bit, boolean stop) {
+    }
+
+    private static final class DayResult {
+        private final String programId;
+        private final List<LocalDateTime> triggerTimes = new ArrayList<>();
+        private int evaluations;
+
+        DayResult(String programId) {
+            this.programId = programId;
+        }
+    }
+}
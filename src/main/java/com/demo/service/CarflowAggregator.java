@@ -0,0 +1,172 @@
+package com.demo.service;
+
+import com.demo.model.dynamic.CctvCarflowInstant;
+import com.demo.repository.dynamic.CctvCarflowInstantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Rolling car-flow sums kept in memory, one minute-bucket ring per cctv and per (cctv, start, end) segment.
+// New cctv_carflow_instant rows are tailed by id, so reading a window costs no query no matter how many
+// thresholds watch the same camera or how often they tick.
+@Service
+public class CarflowAggregator {
+    private static final Logger log = LoggerFactory.getLogger(CarflowAggregator.class);
+
+    @Value("${dynamic.carflow.aggregator.enabled:false}")
+    private boolean enabled;
+
+    // longest window that can be answered from memory, longer ones go to the database
+    @Value("${dynamic.carflow.aggregator.retention-minutes:180}")
+    private int retentionMinutes;
+
+    @Value("${dynamic.carflow.aggregator.batch-size:5000}")
+    private int batchSize;
+
+    // sums are not trusted once tailing falls behind this much
+    @Value("${dynamic.carflow.aggregator.max-lag-ms:120000}")
+    private long maxLagMillis;
+
+    @Autowired
+    private CctvCarflowInstantRepository cctvCarflowInstantRepository;
+
+    @Autowired
+    private CarflowForecaster carflowForecaster;
+
+    // retention and lag follow domain time, so a simulation replays the window of its virtual clock
+    @Autowired
+    private Clock clock;
+
+    private final Map<String, MinuteRing> totals = new ConcurrentHashMap<>();      // cctvId
+    private final Map<String, MinuteRing> segments = new ConcurrentHashMap<>();    // cctvId|start|end
+
+    private volatile long watermark = 0;    // highest row id applied
+    private volatile long lastPollAt = 0;
+
+    // applies every row newer than the watermark, returns the number of rows read
+    public synchronized int poll() {
+        if (!enabled) return 0;
+
+        int total = 0;
+        try {
+            LocalDateTime since = LocalDateTime.now(clock).minusMinutes(retentionMinutes);
+            List<CctvCarflowInstant> rows;
+            do {
+                rows = cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(
+                        watermark, since, PageRequest.of(0, batchSize));
+                for (CctvCarflowInstant row : rows) {
+                    add(row);
+                    watermark = Math.max(watermark, row.getId());
+                }
+                total += rows.size();
+            } while (rows.size() == batchSize);
+
+            lastPollAt = clock.millis();
+        } catch (Exception e) {
+            log.error("Car-flow tailing failed at id {}: {}", watermark, e.getMessage());
+        }
+
+        if (total > 0) log.debug("Car-flow aggregator applied {} rows, watermark {}", total, watermark);
+        return total;
+    }
+
+    // in-memory sums can be used for this window
+    public boolean canServe(int minutes) {
+        return enabled
+                && lastPollAt > 0
+                && minutes <= retentionMinutes
+                && clock.millis() - lastPollAt <= maxLagMillis;
+    }
+
+    // same window as findCarflowSumByCctvIdAndEndTime, at minute resolution
+    public double getTotal(String cctvId, LocalDateTime endTime, int minutes) {
+        MinuteRing ring = totals.get(cctvId);
+        return ring == null ? 0.0 : sum(ring, endTime, minutes);
+    }
+
+    public double getSegment(String cctvId, LocalDateTime endTime, int minutes, String startPosition, String endPosition) {
+        MinuteRing ring = segments.get(segmentKey(cctvId, startPosition, endPosition));
+        return ring == null ? 0.0 : sum(ring, endTime, minutes);
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    private void add(CctvCarflowInstant row) {
+        double flow = value(row.getMotor()) + value(row.getCar()) + value(row.getTruck());
+        long minute = epochMinute(row.getStartTime());
+
+        String segmentKey = segmentKey(row.getCctvId(), row.getStartPosition(), row.getEndPosition());
+
+        totals.computeIfAbsent(row.getCctvId(), k -> new MinuteRing(retentionMinutes + 1)).add(minute, flow);
+        segments.computeIfAbsent(segmentKey, k -> new MinuteRing(retentionMinutes + 1)).add(minute, flow);
+
+        carflowForecaster.observe(row.getCctvId(), minute, flow);
+        carflowForecaster.observe(segmentKey, minute, flow);
+    }
+
+    // rows starting in [endTime - minutes, endTime), the minute still in progress is not counted
+    private static double sum(MinuteRing ring, LocalDateTime endTime, int minutes) {
+        long endSecond = endTime.toEpochSecond(ZoneOffset.UTC);
+        long from = Math.ceilDiv(endSecond - minutes * 60L, 60);
+        long to = Math.floorDiv(endSecond, 60);
+        return ring.sum(from, to);
+    }
+
+    static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // also the forecaster's stream key, a cctv total is keyed by the cctv id alone
+    static String segmentKey(String cctvId, String startPosition, String endPosition) {
+        return cctvId + "|" + startPosition + "|" + endPosition;
+    }
+
+    private static double value(Double d) {
+        return d == null ? 0.0 : d;
+    }
+
+    // fixed ring of minute buckets, a slot is reused once its minute falls out of the retention
+    private static final class MinuteRing {
+        private final long[] minutes;
+        private final double[] sums;
+
+        MinuteRing(int size) {
+            minutes = new long[size];
+            sums = new double[size];
+            Arrays.fill(minutes, Long.MIN_VALUE);
+        }
+
+        synchronized void add(long minute, double value) {
+            int idx = (int) Math.floorMod(minute, (long) minutes.length);
+            if (minutes[idx] != minute) {
+                if (minutes[idx] > minute) return;  // older than what the slot already holds
+                minutes[idx] = minute;
+                sums[idx] = 0.0;
+            }
+            sums[idx] += value;
+        }
+
+        synchronized double sum(long fromMinute, long toMinute) {
+            double total = 0.0;
+            long start = Math.max(fromMinute, toMinute - minutes.length);
+            for (long m = start; m < toMinute; m++) {
+                int idx = (int) Math.floorMod(m, (long) minutes.length);
+                if (minutes[idx] == m) total += sums[idx];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.demo.service;
+
+import com.demo.util.HoltEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Short-horizon car-flow forecast per cctv and per (cctv, start, end) segment, fed by CarflowAggregator as rows
+// are tailed. Each stream keeps the minute still filling plus a Holt estimator over the closed minutes, so an
+// update is O(1) and memory per stream is constant regardless of how many cameras are watched.
+@Service
+public class CarflowForecaster {
+    private static final Logger log = LoggerFactory.getLogger(CarflowForecaster.class);
+
+    @Value("${dynamic.forecast.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dynamic.forecast.alpha:0.3}")
+    private double alpha;
+
+    // 0 turns the estimator into a plain EWMA
+    @Value("${dynamic.forecast.beta:0.1}")
+    private double beta;
+
+    // closed minutes a stream needs before it is trusted
+    @Value("${dynamic.forecast.min-samples:10}")
+    private int minSamples;
+
+    // a longer silence restarts the stream instead of smoothing in that many empty minutes
+    @Value("${dynamic.forecast.max-gap-minutes:30}")
+    private int maxGapMinutes;
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // one row of flow starting in the given epoch minute
+    public void observe(String key, long minute, double flow) {
+        if (!enabled) return;
+
+        Stream stream = streams.computeIfAbsent(key, k -> new Stream(new HoltEstimator(alpha, beta)));
+        synchronized (stream) {
+            if (stream.openMinute == Long.MIN_VALUE) {
+                stream.open(minute, flow);
+            } else if (minute == stream.openMinute) {
+                stream.openSum += flow;
+            } else if (minute > stream.openMinute) {
+                // a later minute closes the open one, minutes without rows in between carried no flow
+                stream.estimator.update(stream.openSum);
+                long gap = minute - stream.openMinute - 1;
+                if (gap > maxGapMinutes) {
+                    log.debug("Car-flow forecast for {} restarted after {} silent minutes", key, gap);
+                    stream.estimator.reset();
+                } else {
+                    for (long i = 0; i < gap; i++) stream.estimator.update(0.0);
+                }
+                stream.open(minute, flow);
+            }
+            // rows for a minute already closed are late, the estimator has moved past them
+        }
+    }
+
+    // expected flow over minutes [fromMinute, toMinute), null while the stream is unknown, warming up or stale
+    public Double predict(String key, long fromMinute, long toMinute) {
+        if (!enabled) return null;
+
+        Stream stream = streams.get(key);
+        if (stream == null) return null;
+
+        synchronized (stream) {
+            if (stream.estimator.getSamples() < minSamples || fromMinute - stream.openMinute > maxGapMinutes) {
+                return null;
+            }
+
+            long lastClosed = stream.openMinute - 1;
+            double total = 0.0;
+            for (long m = fromMinute; m < toMinute; m++) {
+                total += Math.max(0.0, stream.estimator.forecast(m - lastClosed));    // flow never goes negative
+            }
+            return total;
+        }
+    }
+
+    // an empty forecaster with the same settings, for replays that must not touch the live streams
+    public CarflowForecaster detached() {
+        CarflowForecaster copy = new CarflowForecaster();
+        copy.enabled = enabled;
+        copy.alpha = alpha;
+        copy.beta = beta;
+        copy.minSamples = minSamples;
+        copy.maxGapMinutes = maxGapMinutes;
+        return copy;
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    private static final class Stream {
+        private final HoltEstimator estimator;
+        private long openMinute = Long.MIN_VALUE;
+        private double openSum;
+
+        Stream(HoltEstimator estimator) {
+            this.estimator = estimator;
+        }
+
+        void open(long minute, double flow) {
+            openMinute = minute;
+            openSum = flow;
+        }
+    }
+}
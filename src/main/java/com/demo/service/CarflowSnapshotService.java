@@ -0,0 +1,157 @@
+package com.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Answers car-flow sums for every monitored cctv and window from one grouped query per tick instead of one
+// native SUM per threshold × cctv × direction. The cctvs and windows asked for recently form the demand; a
+// request outside the current snapshot (new cctv, new window, or another window end) refreshes it for all of them.
+// By default a snapshot only serves the tick that built it, so its sums are never older than the tick's window end.
+@Service
+public class CarflowSnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(CarflowSnapshotService.class);
+
+    @Value("${dynamic.carflow.batch.enabled:true}")
+    private boolean enabled;
+
+    // 0: only calls for the snapshot's own window end (one tick) share it. Above 0, ticks of other programs
+    // within this distance share it too and read sums up to that much older than their own window end
+    @Value("${dynamic.carflow.batch.max-age-ms:0}")
+    private long maxAgeMillis;
+
+    // cctvs/windows not asked for this long are dropped from the query
+    @Value("${dynamic.carflow.batch.demand-ttl-ms:7200000}")
+    private long demandTtlMillis;
+
+    @Autowired
+    @Qualifier("dynamicJdbcTemplate")
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    private final Map<String, Long> cctvDemand = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> windowDemand = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    // null when the batch path is disabled or failed, the caller then queries on its own
+    public Double getTotal(String cctvId, LocalDateTime endTime, int minutes) {
+        Snapshot s = lookup(cctvId, endTime, minutes);
+        return s == null ? null : s.value(s.totals.get(cctvId), minutes);
+    }
+
+    public Double getSegment(String cctvId, LocalDateTime endTime, int minutes, String startPosition, String endPosition) {
+        Snapshot s = lookup(cctvId, endTime, minutes);
+        return s == null ? null : s.value(s.segments.get(segmentKey(cctvId, startPosition, endPosition)), minutes);
+    }
+
+    private Snapshot lookup(String cctvId, LocalDateTime endTime, int minutes) {
+        if (!enabled) return null;
+
+        long now = System.currentTimeMillis();
+        cctvDemand.put(cctvId, now);
+        windowDemand.put(minutes, now);
+
+        Snapshot s = snapshot;
+        if (covers(s, cctvId, endTime, minutes)) return s;
+        return refresh(cctvId, endTime, minutes);
+    }
+
+    private boolean covers(Snapshot s, String cctvId, LocalDateTime endTime, int minutes) {
+        return s != null
+                && s.cctvs.contains(cctvId)
+                && s.windowIndex.containsKey(minutes)
+                && Math.abs(Duration.between(s.endTime, endTime).toMillis()) <= maxAgeMillis;
+    }
+
+    private synchronized Snapshot refresh(String cctvId, LocalDateTime endTime, int minutes) {
+        Snapshot current = snapshot;
+        if (covers(current, cctvId, endTime, minutes)) return current;  // refreshed while waiting for the lock
+
+        long expiry = System.currentTimeMillis() - demandTtlMillis;
+        cctvDemand.values().removeIf(t -> t < expiry);
+        windowDemand.values().removeIf(t -> t < expiry);
+        cctvDemand.putIfAbsent(cctvId, System.currentTimeMillis());
+        windowDemand.putIfAbsent(minutes, System.currentTimeMillis());
+
+        List<String> cctvs = new ArrayList<>(cctvDemand.keySet());
+        List<Integer> windows = new ArrayList<>(windowDemand.keySet());
+        Collections.sort(windows);
+
+        try {
+            Snapshot s = query(cctvs, windows, endTime);
+            snapshot = s;
+            log.debug("Car-flow snapshot refreshed: {} cctvs, windows {}, {} segments", cctvs.size(), windows, s.segments.size());
+            return s;
+        } catch (Exception e) {
+            log.error("Batched car-flow query failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // one SUM(CASE ...) column per window, grouped by segment
+    private Snapshot query(List<String> cctvs, List<Integer> windows, LocalDateTime endTime) {
+        StringBuilder sql = new StringBuilder("SELECT cctv_id, start_position, end_position");
+        List<Object> args = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            sql.append(", COALESCE(SUM(CASE WHEN start_time >= ? THEN motor + car + truck ELSE 0 END), 0) AS w").append(i);
+            args.add(Timestamp.valueOf(endTime.minusMinutes(windows.get(i))));
+        }
+        sql.append(" FROM cctv_carflow_instant WHERE cctv_id IN (")
+                .append(String.join(",", Collections.nCopies(cctvs.size(), "?")))
+                .append(") AND start_time >= ? AND end_time < ?")
+                .append(" GROUP BY cctv_id, start_position, end_position");
+        args.addAll(cctvs);
+        args.add(Timestamp.valueOf(endTime.minusMinutes(windows.getLast())));
+        args.add(Timestamp.valueOf(endTime));
+
+        Snapshot s = new Snapshot(endTime, new HashSet<>(cctvs), windows);
+        dynamicJdbcTemplate.query(sql.toString(), rs -> {
+            String cctvId = rs.getString("cctv_id");
+            double[] sums = new double[windows.size()];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = rs.getDouble("w" + i);
+            }
+
+            s.segments.put(segmentKey(cctvId, rs.getString("start_position"), rs.getString("end_position")), sums);
+            double[] total = s.totals.computeIfAbsent(cctvId, k -> new double[windows.size()]);
+            for (int i = 0; i < sums.length; i++) {
+                total[i] += sums[i];
+            }
+        }, args.toArray());
+        return s;
+    }
+
+    private static String segmentKey(String cctvId, String startPosition, String endPosition) {
+        return cctvId + "|" + startPosition + "|" + endPosition;
+    }
+
+    private static final class Snapshot {
+        private final LocalDateTime endTime;
+        private final Set<String> cctvs;
+        private final Map<Integer, Integer> windowIndex = new HashMap<>();
+        private final Map<String, double[]> segments = new HashMap<>();
+        private final Map<String, double[]> totals = new HashMap<>();
+
+        Snapshot(LocalDateTime endTime, Set<String> cctvs, List<Integer> windows) {
+            this.endTime = endTime;
+            this.cctvs = cctvs;
+            for (int i = 0; i < windows.size(); i++) {
+                windowIndex.put(windows.get(i), i);
+            }
+        }
+
+        // a segment without rows in the window sums to 0, as the single query does
+        double value(double[] sums, int minutes) {
+            return sums == null ? 0.0 : sums[windowIndex.get(minutes)];
+        }
+    }
+}
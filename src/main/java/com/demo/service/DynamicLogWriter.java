@@ -0,0 +1,193 @@
+package com.demo.service;
+
+import com.demo.model.dynamic.DynamicLog;
+import com.demo.repository.dynamic.DynamicLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Takes dynamic_log rows off the trigger threads: rows go into a bounded buffer and one writer thread inserts
+// whatever has piled up as a single JDBC batch. A full buffer makes the caller write a batch itself instead of
+// dropping rows, and shutdown drains the buffer before the dynamic datasource goes away.
+// MySQL only sends a batch in one round trip with rewriteBatchedStatements=true on the datasource url.
+@Service
+public class DynamicLogWriter {
+    private static final Logger log = LoggerFactory.getLogger(DynamicLogWriter.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO dynamic_log (program_id, tc_id, plan_id, status, message, log_time) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // false writes every row through the repository on the caller thread
+    @Value("${dynamic.log.async:true}")
+    private boolean async;
+
+    @Value("${dynamic.log.batch-size:200}")
+    private int batchSize;
+
+    @Value("${dynamic.log.capacity:10000}")
+    private int capacity;
+
+    @Value("${dynamic.log.flush-ms:200}")
+    private long flushMillis;
+
+    @Autowired
+    @Qualifier("dynamicJdbcTemplate")
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    @Autowired
+    private DynamicLogRepository dynamicLogRepository;
+
+    private BlockingQueue<DynamicLog> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!async) return;
+
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(this::drainLoop, "dynamic-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void write(DynamicLog entry) {
+        if (!running) {
+            dynamicLogRepository.save(entry);   // synchronous mode, or already shut down
+            return;
+        }
+
+        accepted.incrementAndGet();
+        if (!queue.offer(entry)) {
+            // buffer full, the caller writes one batch so the buffer stays bounded and nothing is dropped
+            List<DynamicLog> batch = new ArrayList<>(batchSize);
+            batch.add(entry);
+            queue.drainTo(batch, batchSize - 1);
+            insert(batch);
+        }
+        if (!running) drainAll();   // shut down while this row was queued, do not leave it behind
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) return;
+
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainAll();
+        log.info("Dynamic log writer stopped, {} rows written, {} failed", written.get(), failed.get());
+    }
+
+    // waits until every row handed over before the call is written or given up, false on timeout
+    public boolean flush(long timeoutMillis) {
+        if (queue == null) return true;
+
+        long target = accepted.get();
+        drainAll();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (written.get() + failed.get() < target) {
+                if (System.currentTimeMillis() >= deadline) return false;
+                Thread.sleep(10);   // the writer thread still holds a batch
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    public int getPending() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                DynamicLog first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                List<DynamicLog> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                insert(batch);
+            } catch (InterruptedException e) {
+                return;     // shutdown drains what is left
+            } catch (Exception e) {
+                log.error("Dynamic log writer error: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void drainAll() {
+        List<DynamicLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            insert(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void insert(List<DynamicLog> batch) {
+        try {
+            dynamicJdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, entry) -> {
+                ps.setString(1, entry.getProgramId());
+                ps.setString(2, entry.getTcId());
+                ps.setInt(3, entry.getPlanId());
+                ps.setString(4, entry.getStatus());
+                ps.setString(5, entry.getMessage());
+                ps.setTimestamp(6, timestamp(entry));
+            });
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            // one bad row must not cost the whole batch, insert them one by one
+            log.warn("Dynamic log batch of {} rows failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (DynamicLog entry : batch) {
+                try {
+                    dynamicJdbcTemplate.update(INSERT_SQL, entry.getProgramId(), entry.getTcId(), entry.getPlanId(),
+                            entry.getStatus(), entry.getMessage(), timestamp(entry));
+                    written.incrementAndGet();
+                } catch (Exception rowError) {
+                    failed.incrementAndGet();
+                    log.error("Dynamic log row lost for program {} TC {}: {}", entry.getProgramId(), entry.getTcId(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    // rows keep the time they were logged, not the time the batch reached the database
+    private static Timestamp timestamp(DynamicLog entry) {
+        return Timestamp.valueOf(entry.getLogTime() != null ? entry.getLogTime() : LocalDateTime.now());
+    }
+}
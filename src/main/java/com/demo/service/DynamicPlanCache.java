@@ -0,0 +1,148 @@
+package com.demo.service;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.model.dynamic.DynamicParameters;
+import com.demo.model.dynamic.DynamicPlanid;
+import com.demo.repository.dynamic.DynamicParametersRepository;
+import com.demo.repository.dynamic.DynamicPlanidRepository;
+import com.demo.util.MinuteOfDayIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Immutable in-memory copy of dynamic_planid and dynamic_parameters, so a trigger resolves TC→plan and the
+// sub-phase rows without touching the database. Every refresh builds a new model and swaps it in whole. It is
+// rebuilt whenever a new dynamic config is swapped in, so a trigger right after a config update resolves the
+// plans of that update; the scheduled refresh only catches rows edited outside the app.
+@Service
+public class DynamicPlanCache {
+    private static final Logger log = LoggerFactory.getLogger(DynamicPlanCache.class);
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HHmm");
+
+    @Value("${dynamic.plan-cache.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private DynamicPlanidRepository dynamicPlanidRepository;
+
+    @Autowired
+    private DynamicParametersRepository dynamicParametersRepository;
+
+    private volatile Model model;
+
+    public boolean isLoaded() {
+        return enabled && model != null;
+    }
+
+    // config loaded during startup is published before event listeners exist, load once the context is ready
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        refresh();
+    }
+
+    @EventListener
+    public void onConfigChanged(DynamicConfigSnapshot config) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        if (!enabled) return;
+
+        try {
+            List<DynamicPlanid> planIds = dynamicPlanidRepository.findAll();
+            List<DynamicParameters> parameters = dynamicParametersRepository.findAll();
+            model = build(planIds, parameters);
+            log.info("Dynamic plan cache loaded: {} plan entries, {} parameter rows", planIds.size(), parameters.size());
+        } catch (Exception e) {
+            // keep serving the previous model, or let callers fall back to the database
+            log.error("Dynamic plan cache refresh failed: {}", e.getMessage());
+        }
+    }
+
+    // TC→plan for the program at the given time, a later row for the same TC overrides an earlier one
+    public Map<String, Integer> getPlanIds(String programId, boolean isWeekday, LocalTime time) {
+        MinuteOfDayIndex<DynamicPlanid> index = model.planIndex.get(dayKey(programId, isWeekday));
+        Map<String, Integer> tcPlanIdMap = new HashMap<>();
+        if (index == null) return tcPlanIdMap;
+
+        for (DynamicPlanid entry : index.at(time)) {
+            tcPlanIdMap.put(entry.getTcId(), entry.getPlanId());
+        }
+        return tcPlanIdMap;
+    }
+
+    // sub-phase rows of the plan ordered by sub-phase id, empty when the plan has none
+    public List<DynamicParameters> getParameters(String programId, String deviceId, int planId) {
+        return model.parameters.getOrDefault(parameterKey(programId, deviceId, planId), List.of());
+    }
+
+    // every plan id any program maps the TC to, empty until the cache is loaded
+    public Set<Integer> getPlanIdsOfTc(String tcId) {
+        Model current = model;
+        return current == null ? Set.of() : current.tcPlanIds.getOrDefault(tcId, Set.of());
+    }
+
+    private static Model build(List<DynamicPlanid> planIds, List<DynamicParameters> parameters) {
+        Map<String, MinuteOfDayIndex.Builder<DynamicPlanid>> builders = new LinkedHashMap<>();
+        Map<String, Set<Integer>> tcPlans = new HashMap<>();
+        for (DynamicPlanid entry : planIds) {
+            tcPlans.computeIfAbsent(entry.getTcId(), k -> new TreeSet<>()).add(entry.getPlanId());
+
+            Boolean isWeekday = switch (entry.getDay()) {
+                case "平日" -> true;
+                case "假日" -> false;
+                default -> null;
+            };
+            String[] times = entry.getTime().split("-");  // e.g. "0000-0630"
+            if (isWeekday == null || times.length != 2) {
+                log.warn("Skip dynamic plan entry {} with day '{}' and time '{}'", entry.getId(), entry.getDay(), entry.getTime());
+                continue;
+            }
+
+            LocalTime startTime = LocalTime.parse(times[0].strip(), timeFormatter);
+            LocalTime endTime = LocalTime.parse(times[1].strip(), timeFormatter);
+            builders.computeIfAbsent(dayKey(entry.getProgramId(), isWeekday), k -> MinuteOfDayIndex.builder())
+                    .add(startTime, endTime, entry);
+        }
+
+        Map<String, MinuteOfDayIndex<DynamicPlanid>> planIndex = new HashMap<>();
+        builders.forEach((key, builder) -> planIndex.put(key, builder.build()));
+
+        Map<String, List<DynamicParameters>> grouped = new HashMap<>();
+        for (DynamicParameters p : parameters) {
+            grouped.computeIfAbsent(parameterKey(p.getId().getProgramId(), p.getId().getDeviceId(), p.getId().getPlanId()),
+                    k -> new ArrayList<>()).add(p);
+        }
+        Map<String, List<DynamicParameters>> parameterMap = new HashMap<>();
+        grouped.forEach((key, rows) -> {
+            rows.sort(Comparator.comparing(p -> p.getId().getSubphaseId()));
+            parameterMap.put(key, List.copyOf(rows));
+        });
+
+        Map<String, Set<Integer>> tcPlanIds = new HashMap<>();
+        tcPlans.forEach((tcId, plans) -> tcPlanIds.put(tcId, Collections.unmodifiableSet(plans)));
+
+        return new Model(Map.copyOf(planIndex), Map.copyOf(parameterMap), Map.copyOf(tcPlanIds));
+    }
+
+    private static String dayKey(String programId, boolean isWeekday) {
+        return programId + "|" + (isWeekday ? "平日" : "假日");
+    }
+
+    private static String parameterKey(String programId, String deviceId, int planId) {
+        return programId + "|" + deviceId + "|" + planId;
+    }
+
+    private record Model(Map<String, MinuteOfDayIndex<DynamicPlanid>> planIndex,
+                         Map<String, List<DynamicParameters>> parameters,
+                         Map<String, Set<Integer>> tcPlanIds) {
+    }
+}
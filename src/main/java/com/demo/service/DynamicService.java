@@ -1,39 +1,40 @@
 package com.demo.service;
 
+import com.demo.enums.ComparisonOperator;
 import com.demo.enums.ErrorDefine;
 import com.demo.exception.CustomException;
+import com.demo.exception.DynamicException;
 import com.demo.model.dynamic.*;
 import com.demo.dto.ConditionDto;
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.dto.ProgramMatchState;
 import com.demo.dto.ThresholdDto;
 import com.demo.dto.TrafficPeriodDto;
 import com.demo.repository.dynamic.*;
-import lombok.Getter;
+import com.demo.util.CompiledCondition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntToDoubleFunction;
 
 @Service
 public class DynamicService {
+    private static final Logger log = LoggerFactory.getLogger(DynamicService.class);
     private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HHmm");
 
-    // String: programId
-    @Getter
-    private final Map<String, ConditionDto> conditionMap = new ConcurrentHashMap<>();
-    // Boolean: weekday:1 or weekend:0
-    @Getter
-    private final Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap = new ConcurrentHashMap<>();
-    // Integer: programId-subId
-    @Getter
-    private final Map<String, ThresholdDto> thresholdMap = new ConcurrentHashMap<>();
+    // conditions, thresholds and periods of one load, replaced as a whole by reloads and threshold updates
+    private final AtomicReference<DynamicConfigSnapshot> config = new AtomicReference<>(DynamicConfigSnapshot.EMPTY);
 
     @Autowired
     private DynamicConditionRepository dynamicConditionRepository;
@@ -48,11 +49,49 @@ public class DynamicService {
     private DynamicPlanidRepository dynamicPlanidRepository;
 
     @Autowired
-    private DynamicLogRepository dynamicLogRepository;
+    private DynamicLogWriter dynamicLogWriter;
 
     @Autowired
     private DynamicParametersRepository dynamicParametersRepository;
 
+    @Autowired
+    private CarflowAggregator carflowAggregator;
+
+    @Autowired
+    private CarflowSnapshotService carflowSnapshotService;
+
+    @Autowired
+    private CarflowForecaster carflowForecaster;
+
+    @Autowired
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Autowired
+    private Clock clock;
+
+    // announces every swapped-in config, TrafficPeriodScheduler re-arms its period timers from it
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+
+    public DynamicConfigSnapshot getConfig() {
+        return config.get();
+    }
+
+    // String: programId
+    public Map<String, ConditionDto> getConditionMap() {
+        return config.get().getConditionMap();
+    }
+
+    // Boolean: weekday:1 or weekend:0
+    public Map<Boolean, List<TrafficPeriodDto>> getTrafficPeriodsMap() {
+        return config.get().getTrafficPeriodsMap();
+    }
+
+    // String: programId-subId
+    public Map<String, ThresholdDto> getThresholdMap() {
+        return config.get().getThresholdMap();
+    }
 
     public List<DynamicCondition> getAllDynamicConditions() {
         return dynamicConditionRepository.findAll();
@@ -63,6 +102,10 @@ public class DynamicService {
     }
 
     public Map<String, Integer> getAllDynamicPlanIds(String program_id, boolean isWeekday) {
+        if (dynamicPlanCache.isLoaded()) {
+            return dynamicPlanCache.getPlanIds(program_id, isWeekday, LocalTime.now(clock));
+        }
+
         List<DynamicPlanid> entries = dynamicPlanidRepository.findByProgramIdAndDay(program_id, isWeekday ? "平日" : "假日");
         Map<String, Integer> tcPlanIdMap = new HashMap<>();
 
@@ -94,13 +137,19 @@ public class DynamicService {
             existingThreshold.setTimeInterval(dynamicThreshold.getTimeInterval());
             existingThreshold.setComparisonOperator(dynamicThreshold.getComparisonOperator());
             existingThreshold.setThresholdValue(dynamicThreshold.getThresholdValue());
-            return dynamicThresholdRepository.save(existingThreshold);
+            existingThreshold.setForecastHorizonMinutes(dynamicThreshold.getForecastHorizonMinutes());
+            DynamicThreshold saved = dynamicThresholdRepository.save(existingThreshold);
+            applyThresholdUpdate(saved);
+            return saved;
         } else {
             throw new CustomException(ErrorDefine.DataNotFound.getDescription(), HttpStatus.NOT_FOUND);
         }
     }
 
     public List<DynamicParameters> getEntriesByProgramIdAndDeviceIdAndPlanId(String programId, String deviceId, int planId) {
+        if (dynamicPlanCache.isLoaded()) {
+            return dynamicPlanCache.getParameters(programId, deviceId, planId);
+        }
         return dynamicParametersRepository.findByIdProgramIdAndIdDeviceIdAndIdPlanId(programId, deviceId, planId);
     }
 
@@ -111,83 +160,272 @@ public class DynamicService {
                 .planId(planId)
                 .status(status)
                 .message(message)
+                .logTime(LocalDateTime.now(clock))
                 .build();
-        dynamicLogRepository.save(log);
+        dynamicLogWriter.write(log);
     }
 
-    public void createConditionMap(List<DynamicCondition> conditions) {
+    // full reload: builds the next snapshot next to the live one and swaps it in one step
+    public synchronized void reloadDynamicConfig(List<DynamicCondition> conditions, List<DynamicThreshold> thresholds) {
+        DynamicConfigSnapshot current = config.get();
+        Map<String, ThresholdDto> thresholdMap = new HashMap<>();
+        Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap = new HashMap<>();
+        for (DynamicThreshold entry : thresholds) {
+            addThreshold(entry, current, thresholdMap, trafficPeriodsMap);
+        }
+        swap(current, buildConditions(conditions, current), thresholdMap, trafficPeriodsMap);
+    }
+
+    public synchronized void createConditionMap(List<DynamicCondition> conditions) {
         if (conditions == null) return;
 
-        conditionMap.clear();
-        for (DynamicCondition entry : conditions) {
-            if (entry == null) continue;
+        DynamicConfigSnapshot current = config.get();
+        swap(current, buildConditions(conditions, current), current.getThresholdMap(), current.getTrafficPeriodsMap());
+    }
 
-            ConditionDto conditionDto = ConditionDto.builder()
-                    .conditionExpression(entry.getConditionExpression())
-                    .consecutiveMatches(entry.getConsecutiveMatches())
-                    .consecutiveCounts(new AtomicInteger(0))
-                    .lastTriggeredTime(new AtomicLong(0))
-                    .build();
+    public synchronized void createTrafficAndThresholdMap(List<DynamicThreshold> dynamicThreshold) {
+        DynamicConfigSnapshot current = config.get();
+        Map<String, ThresholdDto> thresholdMap = new HashMap<>();
+        Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap = new HashMap<>();
+        for (DynamicThreshold entry : dynamicThreshold) {
+            addThreshold(entry, current, thresholdMap, trafficPeriodsMap);
+        }
+        swap(current, current.getConditionMap(), thresholdMap, trafficPeriodsMap);
+    }
 
-            conditionMap.putIfAbsent(entry.getProgramId(), conditionDto);
+    // incremental refresh after an API update, only the periods and threshold of this programId-subId change
+    public synchronized void applyThresholdUpdate(DynamicThreshold entry) {
+        try {
+            DynamicConfigSnapshot current = config.get();
+            String programId = entry.getId().getProgramId();
+            Integer subId = entry.getId().getSubId();
+
+            Map<String, ThresholdDto> thresholdMap = new HashMap<>(current.getThresholdMap());
+            thresholdMap.remove(programId + "-" + subId);
+            Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap = new HashMap<>();
+            current.getTrafficPeriodsMap().forEach((isWeekday, periods) -> trafficPeriodsMap.put(isWeekday,
+                    new ArrayList<>(periods.stream()
+                            .filter(p -> !(p.getProgramId().equals(programId) && p.getSubId().equals(subId)))
+                            .toList())));
+
+            addThreshold(entry, current, thresholdMap, trafficPeriodsMap);
+            swap(current, current.getConditionMap(), thresholdMap, trafficPeriodsMap);
+        } catch (Exception e) {
+            // the row is saved, the running config picks it up with the next full reload
+            log.warn("Threshold update saved but not applied: {}", e.getMessage());
         }
     }
 
-    public void createTrafficAndThresholdMap(List<DynamicThreshold> dynamicThreshold) {
-        trafficPeriodsMap.clear();
-        thresholdMap.clear();
-        for (DynamicThreshold entry : dynamicThreshold) {
-            // 平日0600-0630,平日0900-1230,平日1300-1400,平日1900-0600,假日1800-1030,假日1200-1600
-            String[] timePeriods = entry.getTimeLabel().split(",");
+    // parses one threshold row into the maps, reusing the live objects when nothing changed so a running
+    // monitor keeps its inSchedule state
+    private void addThreshold(DynamicThreshold entry, DynamicConfigSnapshot current,
+                              Map<String, ThresholdDto> thresholdMap, Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap) {
+        String programId = entry.getId().getProgramId();
+        Integer subId = entry.getId().getSubId();
+
+        // 平日0600-0630,平日0900-1230,平日1300-1400,平日1900-0600,假日1800-1030,假日1200-1600
+        String[] timePeriods = entry.getTimeLabel().split(",");
 
-            for (String timePeriod : timePeriods) {
-                Boolean isWeekday = timePeriod.startsWith("平日");
+        for (String timePeriod : timePeriods) {
+            Boolean isWeekday = timePeriod.startsWith("平日");
 
-                String[] timeRange = timePeriod.substring(2).split("-");
-                LocalTime startTime = LocalTime.parse(timeRange[0], DateTimeFormatter.ofPattern("HHmm"));
-                LocalTime endTime = LocalTime.parse(timeRange[1], DateTimeFormatter.ofPattern("HHmm"));
+            String[] timeRange = timePeriod.substring(2).split("-");
+            LocalTime startTime = LocalTime.parse(timeRange[0], timeFormatter);
+            LocalTime endTime = LocalTime.parse(timeRange[1], timeFormatter);
 
-                TrafficPeriodDto trafficPeriodDto = TrafficPeriodDto.builder()
-                        .programId(entry.getId().getProgramId())
-                        .subId(entry.getId().getSubId())
+            TrafficPeriodDto trafficPeriodDto = findPeriod(current, isWeekday, programId, subId, startTime, endTime);
+            if (trafficPeriodDto == null) {
+                trafficPeriodDto = TrafficPeriodDto.builder()
+                        .programId(programId)
+                        .subId(subId)
                         .startTime(startTime)
                         .endTime(endTime)
                         .inSchedule(new AtomicBoolean(false))
                         .build();
+            }
+
+            trafficPeriodsMap.computeIfAbsent(isWeekday, k -> new ArrayList<>()).add(trafficPeriodDto);
+        }
+
+        String[] cctvIds = entry.getCctvId().split(",");
+        List<String> cctvList = Arrays.stream(cctvIds).map(String::strip).toList();
+
+        String[] carflowDirection = entry.getCarflowDirection().split(",");
+        List<String> carflowDirectionList = Arrays.stream(carflowDirection).map(String::strip).toList();
 
-                trafficPeriodsMap.computeIfAbsent(isWeekday, k -> new java.util.ArrayList<>()).add(trafficPeriodDto);
+        ThresholdDto thresholdDto = ThresholdDto.builder()
+                .cctvList(cctvList)
+                .timeInterval(entry.getTimeInterval())
+                .carflowDirectionList(carflowDirectionList)
+                .comparisonOperator(entry.getComparisonOperator())
+                .operator(parseOperator(entry))
+                .thresholdValue(entry.getThresholdValue())
+                .forecastHorizonMinutes(entry.getForecastHorizonMinutes())
+                .build();
+
+        String id = programId + "-" + subId;
+        ThresholdDto live = current.getThresholdMap().get(id);
+        thresholdMap.putIfAbsent(id, sameThreshold(live, thresholdDto) ? live : thresholdDto);
+    }
+
+    private static TrafficPeriodDto findPeriod(DynamicConfigSnapshot current, Boolean isWeekday, String programId,
+                                               Integer subId, LocalTime startTime, LocalTime endTime) {
+        for (TrafficPeriodDto p : current.getTrafficPeriodsMap().getOrDefault(isWeekday, List.of())) {
+            if (p.getProgramId().equals(programId) && p.getSubId().equals(subId)
+                    && p.getStartTime().equals(startTime) && p.getEndTime().equals(endTime)) {
+                return p;
             }
+        }
+        return null;
+    }
 
-            String[] cctvIds = entry.getCctvId().split(",");
-            List<String> cctvList = Arrays.stream(cctvIds).map(String::strip).toList();
+    private static boolean sameThreshold(ThresholdDto a, ThresholdDto b) {
+        return a != null
+                && Objects.equals(a.getCctvList(), b.getCctvList())
+                && Objects.equals(a.getTimeInterval(), b.getTimeInterval())
+                && Objects.equals(a.getCarflowDirectionList(), b.getCarflowDirectionList())
+                && Objects.equals(a.getComparisonOperator(), b.getComparisonOperator())
+                && Objects.equals(a.getThresholdValue(), b.getThresholdValue())
+                && Objects.equals(a.getForecastHorizonMinutes(), b.getForecastHorizonMinutes());
+    }
 
-            String[] carflowDirection = entry.getCarflowDirection().split(",");
-            List<String> carflowDirectionList = Arrays.stream(carflowDirection).map(String::strip).toList();
+    // an unchanged condition keeps its match state, its sub-condition bits only depend on the expression
+    private Map<String, ConditionDto> buildConditions(List<DynamicCondition> conditions, DynamicConfigSnapshot current) {
+        Map<String, ConditionDto> conditionMap = new HashMap<>();
+        for (DynamicCondition entry : conditions) {
+            if (entry == null || conditionMap.containsKey(entry.getProgramId())) continue;
+
+            ConditionDto live = current.getConditionMap().get(entry.getProgramId());
+            ConditionDto conditionDto;
+            if (live != null && Objects.equals(live.getConditionExpression(), entry.getConditionExpression())
+                    && Objects.equals(live.getConsecutiveMatches(), entry.getConsecutiveMatches())) {
+                conditionDto = live;
+            } else {
+                conditionDto = ConditionDto.builder()
+                        .conditionExpression(entry.getConditionExpression())
+                        .consecutiveMatches(entry.getConsecutiveMatches())
+                        .matchState(new AtomicReference<>(ProgramMatchState.INITIAL))
+                        .build();
+            }
+            conditionMap.put(entry.getProgramId(), conditionDto);
+        }
+        return conditionMap;
+    }
+
+    // binds every condition to the thresholds of the next snapshot, the match state stays shared with the live one
+    private void swap(DynamicConfigSnapshot current, Map<String, ConditionDto> conditions,
+                      Map<String, ThresholdDto> thresholdMap, Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap) {
+        Map<String, ConditionDto> conditionMap = compileAll(conditions, thresholdMap);
+        DynamicConfigSnapshot next = new DynamicConfigSnapshot(current.getVersion() + 1, conditionMap, thresholdMap, trafficPeriodsMap);
+        config.set(next);
+        log.info("Dynamic config version {} active: {} conditions, {} thresholds", next.getVersion(),
+                conditionMap.size(), thresholdMap.size());
+        eventPublisher.publishEvent(next);
+    }
+
+    private Map<String, ConditionDto> compileAll(Map<String, ConditionDto> conditions, Map<String, ThresholdDto> thresholdMap) {
+        Map<String, ConditionDto> conditionMap = new HashMap<>();
+        conditions.forEach((programId, condition) -> conditionMap.put(programId, condition.toBuilder()
+                .compiledCondition(compileCondition(programId, condition.getConditionExpression(), thresholdMap))
+                .build()));
+        return conditionMap;
+    }
 
-            ThresholdDto thresholdDto = ThresholdDto.builder()
-                    .cctvList(cctvList)
-                    .timeInterval(entry.getTimeInterval())
-                    .carflowDirectionList(carflowDirectionList)
-                    .comparisonOperator(entry.getComparisonOperator())
-                    .thresholdValue(entry.getThresholdValue())
-                    .isMatch(false)
-                    .build();
+    // snapshot of the given rows with fresh match state that is never swapped in, e.g. to replay candidate settings
+    public DynamicConfigSnapshot buildDetachedConfig(List<DynamicCondition> conditions, List<DynamicThreshold> thresholds) {
+        DynamicConfigSnapshot empty = DynamicConfigSnapshot.EMPTY;
+        Map<String, ThresholdDto> thresholdMap = new HashMap<>();
+        Map<Boolean, List<TrafficPeriodDto>> trafficPeriodsMap = new HashMap<>();
+        for (DynamicThreshold entry : thresholds) {
+            addThreshold(entry, empty, thresholdMap, trafficPeriodsMap);
+        }
+        return new DynamicConfigSnapshot(0, compileAll(buildConditions(conditions, empty), thresholdMap),
+                thresholdMap, trafficPeriodsMap);
+    }
 
-            String id = entry.getId().getProgramId() + "-" + entry.getId().getSubId();
-            thresholdMap.putIfAbsent(id, thresholdDto);
+    public CompiledCondition compileCondition(String programId, ConditionDto condition) {
+        return compileCondition(programId, condition.getConditionExpression(), getThresholdMap());
+    }
+
+    private CompiledCondition compileCondition(String programId, String expression, Map<String, ThresholdDto> thresholdMap) {
+        try {
+            return CompiledCondition.compile(programId, expression, thresholdMap);
+        } catch (DynamicException e) {
+            log.warn("Invalid condition for program {}: {}", programId, e.getMessage());
+            return CompiledCondition.compile(programId, "false", thresholdMap);
         }
     }
 
+    // match state of every loaded program, each one value of a single tick
+    public Map<String, ProgramMatchState> getMatchStates() {
+        Map<String, ProgramMatchState> states = new TreeMap<>();
+        getConditionMap().forEach((programId, condition) -> states.put(programId, condition.getMatchState().get()));
+        return states;
+    }
+
+    // periods of the day type that cover the given time
+    public List<TrafficPeriodDto> getActiveTrafficPeriods(boolean isWeekday, LocalTime time) {
+        return config.get().getActiveTrafficPeriods(isWeekday, time);
+    }
+
+    private ComparisonOperator parseOperator(DynamicThreshold entry) {
+        ComparisonOperator operator = ComparisonOperator.fromSymbol(entry.getComparisonOperator());
+        if (operator == null) {
+            log.warn("Unsupported comparison operator '{}' for {}-{}", entry.getComparisonOperator(),
+                    entry.getId().getProgramId(), entry.getId().getSubId());
+        }
+        return operator;
+    }
+
     public double getTotalCarFlow(String cctvId, LocalDateTime endTime, int timeInterval_minute) {
+        if (carflowAggregator.canServe(timeInterval_minute)) {
+            return carflowAggregator.getTotal(cctvId, endTime, timeInterval_minute);
+        }
+
+        Double batched = carflowSnapshotService.getTotal(cctvId, endTime, timeInterval_minute);
+        if (batched != null) return batched;
+
         return CctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTime(cctvId, endTime, timeInterval_minute);
     }
 
     public double getSegmentCarFlow(String cctvId, LocalDateTime endTime, int timeInterval_minute, String startPosition, String endPosition) {
+        if (carflowAggregator.canServe(timeInterval_minute)) {
+            return carflowAggregator.getSegment(cctvId, endTime, timeInterval_minute, startPosition, endPosition);
+        }
+
+        Double batched = carflowSnapshotService.getSegment(cctvId, endTime, timeInterval_minute, startPosition, endPosition);
+        if (batched != null) return batched;
+
         return CctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTimeAndStartPositionAndEndPosition(cctvId, endTime, timeInterval_minute, startPosition, endPosition);
     }
 
+    // flow the window would hold horizonMinutes after endTime, null when the in-memory path cannot answer
+    public Double getForecastTotalCarFlow(String cctvId, LocalDateTime endTime, int timeInterval_minute, int horizonMinutes) {
+        return forecastWindow(cctvId, endTime, timeInterval_minute, horizonMinutes,
+                observed -> carflowAggregator.getTotal(cctvId, endTime, observed));
+    }
+
+    public Double getForecastSegmentCarFlow(String cctvId, LocalDateTime endTime, int timeInterval_minute, int horizonMinutes,
+                                            String startPosition, String endPosition) {
+        return forecastWindow(CarflowAggregator.segmentKey(cctvId, startPosition, endPosition), endTime, timeInterval_minute, horizonMinutes,
+                observed -> carflowAggregator.getSegment(cctvId, endTime, observed, startPosition, endPosition));
+    }
+
+    // closed minutes still inside the shifted window come from the aggregator, the rest from the forecaster
+    private Double forecastWindow(String key, LocalDateTime endTime, int minutes, int horizon, IntToDoubleFunction observedSum) {
+        int observedMinutes = Math.max(0, minutes - horizon);
+        if (observedMinutes > 0 && !carflowAggregator.canServe(observedMinutes)) return null;
+
+        long currentMinute = CarflowAggregator.epochMinute(endTime);    // still filling, counted as forecast
+        long toMinute = currentMinute + horizon;
+        Double predicted = carflowForecaster.predict(key, Math.max(currentMinute, toMinute - minutes), toMinute);
+        if (predicted == null) return null;
+
+        return observedMinutes > 0 ? observedSum.applyAsDouble(observedMinutes) + predicted : predicted;
+    }
+
     public Boolean isInTrafficPeriod(LocalTime start, LocalTime end) {
-        LocalTime now = LocalTime.now();
+        LocalTime now = LocalTime.now(clock);
 
         if (start.isBefore(end)) {   // normal case
             return !now.isBefore(start) && !now.isAfter(end);
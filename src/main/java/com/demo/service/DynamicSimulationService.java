@@ -0,0 +1,90 @@
+package com.demo.service;
+
+import com.demo.dto.SimulationReportDto;
+import com.demo.exception.CustomException;
+import com.demo.manager.DynamicControlManager;
+import com.demo.manager.TrafficMonitorScheduler;
+import com.demo.manager.TrafficPeriodScheduler;
+import com.demo.util.SimulationClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// Runs the dynamic-control loop on the virtual clock: jumps from event to event (period start or end, or the
+// next monitor tick) instead of waiting, so a day of period starts, ticks and triggers takes seconds.
+// Commands still go to whatever controllers are connected, e.g. simulated TCs.
+@Service
+public class DynamicSimulationService {
+    private static final Logger log = LoggerFactory.getLogger(DynamicSimulationService.class);
+
+    @Autowired
+    private Clock clock;
+
+    @Autowired
+    private TrafficPeriodScheduler trafficPeriodScheduler;
+
+    @Autowired
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+
+    @Autowired
+    private DynamicControlManager dynamicControlManager;
+
+    public synchronized SimulationReportDto run(LocalDateTime from, LocalDateTime to) {
+        if (!(clock instanceof SimulationClock simulationClock)) {
+            throw new CustomException("Simulation mode is off, set dynamic.simulation.enabled", HttpStatus.BAD_REQUEST);
+        }
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new CustomException("Simulation needs a start not after the end", HttpStatus.BAD_REQUEST);
+        }
+
+        long start = toMillis(from);
+        long end = toMillis(to);
+        if (start < clock.millis() && trafficMonitorScheduler.nextDueMillis() != Long.MAX_VALUE) {
+            throw new CustomException("Simulation cannot go back in time while monitors are running", HttpStatus.BAD_REQUEST);
+        }
+
+        long wallStart = System.nanoTime();
+        long triggersBefore = dynamicControlManager.getTriggerCount();
+        int periodEvents = 0;
+        int monitorTicks = 0;
+
+        simulationClock.set(Instant.ofEpochMilli(start));
+        trafficPeriodScheduler.rearm();     // timers from the virtual start, periods already active start now
+        periodEvents += trafficPeriodScheduler.runDue();
+        monitorTicks += trafficMonitorScheduler.runDue();
+        while (true) {
+            long next = Math.min(trafficPeriodScheduler.nextDueMillis(), trafficMonitorScheduler.nextDueMillis());
+            if (next > end) break;
+
+            simulationClock.set(Instant.ofEpochMilli(next));
+            periodEvents += trafficPeriodScheduler.runDue();   // an end stops its monitor before a tick at the same time
+            monitorTicks += trafficMonitorScheduler.runDue();
+        }
+        simulationClock.set(Instant.ofEpochMilli(end));
+
+        long wallMillis = Math.max((System.nanoTime() - wallStart) / 1_000_000, 1);
+        long triggers = dynamicControlManager.getTriggerCount() - triggersBefore;
+        log.info("Simulated {} to {} in {} ms: {} period starts and ends, {} monitor ticks, {} triggers",
+                from, to, wallMillis, periodEvents, monitorTicks, triggers);
+
+        return SimulationReportDto.builder()
+                .from(from)
+                .to(to)
+                .periodEvents(periodEvents)
+                .monitorTicks(monitorTicks)
+                .triggers(triggers)
+                .wallMillis(wallMillis)
+                .speedup((double) (end - start) / wallMillis)
+                .build();
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,92 @@
+package com.demo.service;
+
+import com.demo.dto.TriggerTraceDto;
+import com.demo.enums.ErrorDefine;
+import com.demo.exception.CustomException;
+import com.demo.model.dynamic.DynamicTrace;
+import com.demo.repository.dynamic.DynamicTraceRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Trigger timelines: the latest ones stay in memory for the REST API, every one is also written to dynamic_trace
+// next to the dynamic_log rows of the same trigger.
+@Service
+public class DynamicTraceService {
+    private static final Logger log = LoggerFactory.getLogger(DynamicTraceService.class);
+
+    @Value("${dynamic.trace.retained:200}")
+    private int retained;
+
+    @Value("${dynamic.trace.persist:true}")
+    private boolean persist;
+
+    @Autowired
+    private DynamicTraceRepository dynamicTraceRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Deque<TriggerTraceDto> recent = new ArrayDeque<>();   // newest first
+
+    public void record(TriggerTraceDto trace) {
+        synchronized (recent) {
+            recent.addFirst(trace);
+            while (recent.size() > retained) recent.removeLast();
+        }
+
+        if (!persist) return;
+        try {
+            dynamicTraceRepository.save(DynamicTrace.builder()
+                    .traceId(trace.getTraceId())
+                    .programId(trace.getProgramId())
+                    .applied(trace.getApplied())
+                    .total(trace.getTotal())
+                    .reactionMillis(trace.getReactionMillis())
+                    .totalMillis(trace.getTotalMillis())
+                    .detail(objectMapper.writeValueAsString(trace))
+                    .build());
+        } catch (Exception e) {
+            // the trigger itself already happened, losing its trace must not fail it
+            log.error("Saving trace {} of program {} failed: {}", trace.getTraceId(), trace.getProgramId(), e.getMessage());
+        }
+    }
+
+    // newest first, all programs when programId is null
+    public List<TriggerTraceDto> getRecentTraces(String programId, int limit) {
+        List<TriggerTraceDto> traces = new ArrayList<>();
+        synchronized (recent) {
+            for (TriggerTraceDto trace : recent) {
+                if (traces.size() >= limit) break;
+                if (programId == null || programId.equals(trace.getProgramId())) traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    // from memory while retained, otherwise from dynamic_trace
+    public TriggerTraceDto getTrace(String traceId) {
+        synchronized (recent) {
+            for (TriggerTraceDto trace : recent) {
+                if (trace.getTraceId().equals(traceId)) return trace;
+            }
+        }
+
+        DynamicTrace stored = dynamicTraceRepository.findByTraceId(traceId)
+                .orElseThrow(() -> new CustomException(ErrorDefine.DataNotFound.getDescription(), HttpStatus.NOT_FOUND));
+        try {
+            return objectMapper.readValue(stored.getDetail(), TriggerTraceDto.class);
+        } catch (Exception e) {
+            throw new CustomException("Trace " + traceId + " cannot be read: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.service;
 
+import com.demo.dto.*;
 import com.demo.message.*;
 import com.demo.model.its.TcMessageLog;
 import com.demo.repository.its.TcMessageLogRepository;
@@ -24,15 +25,15 @@ public class MessageService {
     @Autowired
     private MessageGenerator messageGenerator;
 
-    public MessageObject buildMessage(JSONObject obj, String command) {
+    public MessageObject buildMessage(TcCommandDto obj, String command) {
         return switch (command) {
-            case "5f10" -> messageBuilder.buildMessage5F10(obj);
-            case "5f14" -> messageBuilder.buildMessage5F14(obj);
-            case "5f15" -> messageBuilder.buildMessage5F15(obj);
-            case "5f18" -> messageBuilder.buildMessage5F18(obj);
-            case "5f40" -> messageBuilder.buildMessage5F40(obj);
-            case "5f44" -> messageBuilder.buildMessage5F44(obj);
-            case "5f45" -> messageBuilder.buildMessage5F45(obj);
+            case "5f10" -> messageBuilder.buildMessage5F10((Command5F10Dto) obj);
+            case "5f14" -> messageBuilder.buildMessage5F14((Command5F15Dto) obj);
+            case "5f15" -> messageBuilder.buildMessage5F15((Command5F15Dto) obj);
+            case "5f18" -> messageBuilder.buildMessage5F18((Command5F18Dto) obj);
+            case "5f40" -> messageBuilder.buildMessage5F40((Command5F40Dto) obj);
+            case "5f44" -> messageBuilder.buildMessage5F44((Command5F45Dto) obj);
+            case "5f45" -> messageBuilder.buildMessage5F45((Command5F45Dto) obj);
             default -> null;
         };
     }
@@ -55,6 +56,11 @@ public class MessageService {
         String messageId = obj.getString("messageId").toUpperCase();
         String jsonValue = obj.getJSONObject("value").toString();
 
+        return saveMessageLog(deviceId, messageId, jsonValue, rawValue, returnResult, noteCode);
+    }
+
+    // for typed commands/results, jsonValue is the already serialized "value" part
+    public TcMessageLog saveMessageLog(String deviceId, String messageId, String jsonValue, String rawValue, String returnResult, int noteCode) {
         TcMessageLog tcLog = null;
         try {
             tcLog = TcMessageLog.builder()
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -170,11 +171,15 @@ public class MqttClientService implements MqttCallback {
     }
 
     public boolean publish(int qos, boolean retained, String topic, String message) {
+        return publish(qos, retained, topic, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean publish(int qos, boolean retained, String topic, byte[] payload) {
 
         MqttMessage mqttMessage = new MqttMessage();
         mqttMessage.setQos(qos);
         mqttMessage.setRetained(retained);
-        mqttMessage.setPayload(message.getBytes());
+        mqttMessage.setPayload(payload);
 
         MqttTopic mqttTopic = mqttClient.getTopic(topic);
 
@@ -221,13 +226,13 @@ public class MqttClientService implements MqttCallback {
     @Override
     public void messageArrived(String topic, MqttMessage message) {
         log.info("Topic : {}", topic);
-        log.info("Message : {}", new String(message.getPayload()));
+        log.info("Message : {}", MqttPayloadCodec.describe(message.getPayload()));
         log.info("Qos : {}", message.getQos());
         log.info("isRetained : {}", message.isRetained());
 
         try {
             if (topic.startsWith(topic_tc_subscribe_prefix)) {
-                tcSendMessageManager.run(new String(message.getPayload()));
+                tcSendMessageManager.run(topic, message.getPayload());
             }
         } catch (Exception e) {
             log.error("messageArrived processing failed. ", e);
@@ -0,0 +1,61 @@
+package com.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Encodes MQTT payloads as JSON by default, or CBOR for topics under the configured prefixes.
+// Inbound payloads are detected from their first byte, so publishers can switch format without coordination.
+@Component
+public class MqttPayloadCodec {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("cborMapper")
+    private CBORMapper cborMapper;
+
+    // e.g. mqtt.payload.cbor.topic.prefixes=tc/state/,tc/result/
+    @Value("${mqtt.payload.cbor.topic.prefixes:}")
+    private List<String> cborTopicPrefixes;
+
+    public byte[] encode(String topic, Object value) throws IOException {
+        return isCborTopic(topic) ? cborMapper.writeValueAsBytes(value) : objectMapper.writeValueAsBytes(value);
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        return isCbor(payload) ? cborMapper.readValue(payload, type) : objectMapper.readValue(payload, type);
+    }
+
+    public boolean isCborTopic(String topic) {
+        if (topic == null || cborTopicPrefixes == null) return false;
+
+        for (String prefix : cborTopicPrefixes) {
+            if (!prefix.isBlank() && topic.startsWith(prefix.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // CBOR map (major type 5) or self-describe tag 55799, a JSON object always starts with '{' or whitespace
+    public static boolean isCbor(byte[] payload) {
+        if (payload == null || payload.length == 0) return false;
+
+        int first = payload[0] & 0xFF;
+        return (first & 0xE0) == 0xA0 || first == 0xD9;
+    }
+
+    // readable form for logs, binary payloads are summarized
+    public static String describe(byte[] payload) {
+        if (payload == null) return "null";
+        return isCbor(payload) ? "CBOR(" + payload.length + " bytes)" : new String(payload, StandardCharsets.UTF_8);
+    }
+}
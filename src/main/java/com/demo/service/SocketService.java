@@ -1,8 +1,11 @@
 package com.demo.service;
 
 import com.demo.manager.TcReceiveMessageManager;
+import com.demo.manager.ControllerStateCrawler;
+import com.demo.manager.TcStatePublisher;
 import com.demo.model.its.TcInfo;
-import com.demo.notification.DiscordNotifier;
+import com.demo.enums.NotificationType;
+import com.demo.notification.NotificationDispatcher;
 import com.demo.repository.its.TcInfoRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,12 +35,19 @@ public class SocketService {
     private TcReceiveMessageManager tcReceiveMessageManager;
 
     @Autowired
-    private DiscordNotifier discordNotifier;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private TcStatePublisher tcStatePublisher;
 
     @Autowired
     @Lazy
     private MqttClientService mqttClientService;
 
+    @Autowired
+    @Lazy
+    private ControllerStateCrawler controllerStateCrawler;
+
     public void socketConnect() {
         List<TcInfo> tcDevices = tcInfoRepository.findByEnable((byte) 1);
         for (TcInfo tc : tcDevices) {
@@ -61,6 +71,8 @@ public class SocketService {
 
             log.info("Connected to TC: {}", ip);
             tcReceiveMessageManager.run(socket);
+            tcStatePublisher.onConnectionChanged(ip, true);
+            controllerStateCrawler.onConnected(ip);
 
             Thread.sleep(100);  // wait a bit for connecting next tc
         } catch (UnknownHostException e) {
@@ -106,9 +118,10 @@ public class SocketService {
             }
         }
         socketMap.remove(ip);
+        tcStatePublisher.onConnectionChanged(ip, false);
 
         String notify = "Connection removed for TC IP: " + ip + " at " + LocalDateTime.now().format(formatter);
-        discordNotifier.sendMessage(notify);
+        notificationDispatcher.dispatch(NotificationType.TC_DISCONNECTED, ip, notify);
     }
 
     public boolean isHostConnected(String ip) {
@@ -0,0 +1,212 @@
+package com.demo.util;
+
+import com.demo.dto.ThresholdDto;
+import com.demo.exception.DynamicException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Program condition such as "(1 && (2 || 3))" parsed once into a boolean tree over sub-condition bits.
+// Bit i stands for the i-th distinct sub id of the expression, so the mapping only depends on the expression
+// and a result mask stays valid across threshold reloads. Evaluation walks the tree over the caller's mask,
+// no parsing or allocation per tick.
+public class CompiledCondition {
+    private static final int MAX_SUB_CONDITIONS = 64;
+
+    private final String expression;
+    private final int[] subIds;     // bit index -> sub id
+    private final Node root;
+
+    private CompiledCondition(String expression, int[] subIds, Node root) {
+        this.expression = expression;
+        this.subIds = subIds;
+        this.root = root;
+    }
+
+    // supports ids, true/false, parentheses, && / and / &, || / or / |, ! / not
+    public static CompiledCondition compile(String programId, String expression, Map<String, ThresholdDto> thresholdMap) {
+        if (expression == null || expression.isBlank()) {
+            throw new DynamicException("Empty condition expression for program " + programId);
+        }
+
+        Parser parser = new Parser(programId, expression, thresholdMap);
+        Node root = parser.parseOr();
+        if (parser.pos < parser.tokens.size()) {
+            throw new DynamicException("Unexpected '" + parser.tokens.get(parser.pos) + "' in condition " + expression);
+        }
+
+        return new CompiledCondition(expression, parser.boundIds.stream().mapToInt(Integer::intValue).toArray(), root);
+    }
+
+    // value of the expression when exactly the sub-conditions whose bits are set in results match
+    public boolean evaluate(long results) {
+        return root.eval(results);
+    }
+
+    // bit of the sub-condition in a result mask, 0 when the expression does not use it
+    public long bitOf(int subId) {
+        for (int i = 0; i < subIds.length; i++) {
+            if (subIds[i] == subId) return 1L << i;
+        }
+        return 0L;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public int getSubConditionCount() {
+        return subIds.length;
+    }
+
+    // sub ids in bit order
+    public List<Integer> getSubIds() {
+        return Arrays.stream(subIds).boxed().toList();
+    }
+
+    private interface Node {
+        boolean eval(long mask);
+    }
+
+    private record Bit(long bit) implements Node {
+        public boolean eval(long mask) {
+            return (mask & bit) != 0;
+        }
+    }
+
+    private record Constant(boolean value) implements Node {
+        public boolean eval(long mask) {
+            return value;
+        }
+    }
+
+    private record Not(Node child) implements Node {
+        public boolean eval(long mask) {
+            return !child.eval(mask);
+        }
+    }
+
+    private record And(Node left, Node right) implements Node {
+        public boolean eval(long mask) {
+            return left.eval(mask) && right.eval(mask);
+        }
+    }
+
+    private record Or(Node left, Node right) implements Node {
+        public boolean eval(long mask) {
+            return left.eval(mask) || right.eval(mask);
+        }
+    }
+
+    // recursive descent: or := and (OR and)*, and := unary (AND unary)*, unary := NOT unary | '(' or ')' | atom
+    private static class Parser {
+        private final String programId;
+        private final String expression;
+        private final Map<String, ThresholdDto> thresholdMap;
+        private final List<String> tokens;
+        private final List<Integer> boundIds = new ArrayList<>();
+        private int pos = 0;
+
+        Parser(String programId, String expression, Map<String, ThresholdDto> thresholdMap) {
+            this.programId = programId;
+            this.expression = expression;
+            this.thresholdMap = thresholdMap;
+            this.tokens = tokenize(expression);
+        }
+
+        Node parseOr() {
+            Node node = parseAnd();
+            while (accept("||", "|", "or")) {
+                node = new Or(node, parseAnd());
+            }
+            return node;
+        }
+
+        Node parseAnd() {
+            Node node = parseUnary();
+            while (accept("&&", "&", "and")) {
+                node = new And(node, parseUnary());
+            }
+            return node;
+        }
+
+        Node parseUnary() {
+            if (accept("!", "not")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Node node = parseOr();
+                if (!accept(")")) {
+                    throw new DynamicException("Missing ')' in condition " + expression);
+                }
+                return node;
+            }
+            if (pos >= tokens.size()) {
+                throw new DynamicException("Unexpected end of condition " + expression);
+            }
+
+            String token = tokens.get(pos++);
+            if (token.equalsIgnoreCase("true")) return new Constant(true);
+            if (token.equalsIgnoreCase("false")) return new Constant(false);
+            if (!token.chars().allMatch(Character::isDigit)) {
+                throw new DynamicException("Unexpected '" + token + "' in condition " + expression);
+            }
+
+            return bind(Integer.parseInt(token));
+        }
+
+        // every distinct id takes a bit, unknown sub ids never match
+        private Node bind(int subId) {
+            int index = boundIds.indexOf(subId);
+            if (index < 0) {
+                if (boundIds.size() == MAX_SUB_CONDITIONS) {
+                    throw new DynamicException("More than " + MAX_SUB_CONDITIONS + " sub-conditions in " + expression);
+                }
+                index = boundIds.size();
+                boundIds.add(subId);
+            }
+
+            if (!thresholdMap.containsKey(programId + "-" + subId)) return new Constant(false);
+            return new Bit(1L << index);
+        }
+
+        private boolean accept(String... candidates) {
+            if (pos >= tokens.size()) return false;
+
+            for (String candidate : candidates) {
+                if (tokens.get(pos).equalsIgnoreCase(candidate)) {
+                    pos++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<String> tokenize(String expression) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if ((c == '&' || c == '|') && i + 1 < expression.length() && expression.charAt(i + 1) == c) {
+                    tokens.add(expression.substring(i, i + 2));
+                    i += 2;
+                } else if (c == '(' || c == ')' || c == '!' || c == '&' || c == '|') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < expression.length() && Character.isLetterOrDigit(expression.charAt(i))) i++;
+                    if (start == i) {
+                        throw new DynamicException("Unexpected '" + c + "' in condition " + expression);
+                    }
+                    tokens.add(expression.substring(start, i));
+                }
+            }
+            return tokens;
+        }
+    }
+}
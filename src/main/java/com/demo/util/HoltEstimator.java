@@ -0,0 +1,55 @@
+package com.demo.util;
+
+// Holt linear-trend smoothing over a per-minute series, O(1) per update and three numbers of state.
+// beta 0 keeps the trend at zero, which reduces it to a plain EWMA. Not thread safe, callers synchronize.
+public final class HoltEstimator {
+    private final double alpha;     // level smoothing, 0 < alpha <= 1
+    private final double beta;      // trend smoothing, 0 <= beta <= 1
+
+    private double level;
+    private double trend;
+    private long samples;
+
+    public HoltEstimator(double alpha, double beta) {
+        if (!(alpha > 0 && alpha <= 1) || !(beta >= 0 && beta <= 1)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1] and beta in [0, 1], got " + alpha + ", " + beta);
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    public void update(double value) {
+        if (samples == 0) {
+            level = value;
+            trend = 0.0;
+        } else {
+            double previousLevel = level;
+            level = alpha * value + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+        }
+        samples++;
+    }
+
+    // value expected the given number of steps after the last update
+    public double forecast(long steps) {
+        return level + steps * trend;
+    }
+
+    public void reset() {
+        level = 0.0;
+        trend = 0.0;
+        samples = 0;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public double getTrend() {
+        return trend;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,93 @@
+package com.demo.util;
+
+import java.time.LocalTime;
+import java.util.*;
+
+// Immutable interval index over the minutes of a day. The day is cut at every interval boundary and each
+// segment keeps the values covering it, so a lookup is one binary search. Intervals are [start, end) at
+// minute resolution; start after end crosses midnight, start equal to end covers the whole day.
+public final class MinuteOfDayIndex<T> {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int[] starts;             // ascending, starts[0] == 0
+    private final List<List<T>> segments;   // values active from starts[i] until starts[i + 1]
+
+    private MinuteOfDayIndex(int[] starts, List<List<T>> segments) {
+        this.starts = starts;
+        this.segments = segments;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    // values active at the given time, in the order they were added
+    public List<T> at(LocalTime time) {
+        int minute = time.getHour() * 60 + time.getMinute();
+        int idx = Arrays.binarySearch(starts, minute);
+        if (idx < 0) idx = -idx - 2;    // segment that starts before minute
+        return segments.get(idx);
+    }
+
+    public int getSegmentCount() {
+        return starts.length;
+    }
+
+    public static final class Builder<T> {
+        private final List<int[]> ranges = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+
+        public Builder<T> add(LocalTime start, LocalTime end, T value) {
+            int from = start.getHour() * 60 + start.getMinute();
+            int to = end.getHour() * 60 + end.getMinute();
+
+            if (from == to) {
+                addRange(0, MINUTES_PER_DAY, value);
+            } else if (from < to) {
+                addRange(from, to, value);
+            } else {    // cross midnight
+                addRange(from, MINUTES_PER_DAY, value);
+                addRange(0, to, value);
+            }
+            return this;
+        }
+
+        private void addRange(int from, int to, T value) {
+            if (from < to) {
+                ranges.add(new int[]{from, to});
+                values.add(value);
+            }
+        }
+
+        public MinuteOfDayIndex<T> build() {
+            TreeSet<Integer> cuts = new TreeSet<>();
+            cuts.add(0);
+            for (int[] range : ranges) {
+                cuts.add(range[0]);
+                if (range[1] < MINUTES_PER_DAY) cuts.add(range[1]);
+            }
+
+            int[] starts = cuts.stream().mapToInt(Integer::intValue).toArray();
+            List<List<T>> segments = new ArrayList<>(starts.length);
+            for (int start : starts) {
+                List<T> active = new ArrayList<>();
+                for (int i = 0; i < ranges.size(); i++) {
+                    int[] range = ranges.get(i);
+                    if (range[0] <= start && start < range[1] && !containsSame(active, values.get(i))) {
+                        active.add(values.get(i));
+                    }
+                }
+                segments.add(List.copyOf(active));
+            }
+            return new MinuteOfDayIndex<>(starts, List.copyOf(segments));
+        }
+
+        // a midnight-crossing interval is stored as two ranges, list its value once
+        private static <T> boolean containsSame(List<T> list, T value) {
+            for (T t : list) {
+                if (t == value) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.demo.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Virtual clock for simulation mode, time only moves when the simulation sets or advances it.
+public class SimulationClock extends Clock {
+    private final AtomicLong millis;
+    private final ZoneId zone;
+
+    public SimulationClock(Instant start, ZoneId zone) {
+        this(new AtomicLong(start.toEpochMilli()), zone);
+    }
+
+    private SimulationClock(AtomicLong millis, ZoneId zone) {
+        this.millis = millis;
+        this.zone = zone;
+    }
+
+    public void set(Instant instant) {
+        millis.set(instant.toEpochMilli());
+    }
+
+    public void advance(Duration duration) {
+        millis.addAndGet(duration.toMillis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // shares the virtual time, only the zone differs
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new SimulationClock(millis, zone);
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis.get());
+    }
+}
@@ -0,0 +1,53 @@
+package com.demo.bench;
+
+import lombok.*;
+
+import java.util.Map;
+
+// Machine-readable result of one load run, written as JSON so runs with different gateway settings can be diffed.
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BenchReport {
+    private String label;
+    private String startedAt;
+    private Map<String, Object> config;
+
+    private long sent;
+    private long completed;
+    private long timeouts;
+    private long saturated;     // ticks skipped because every TC already had a command in flight
+    private double throughputPerSec;
+
+    // MQTT in -> first TC frame -> last TC response -> MQTT out, plus the whole round trip
+    private Map<String, LatencyRecorder.Summary> latencyMillis;
+
+    private Resources resources;
+    private Dynamic dynamic;
+
+    @Builder
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Resources {
+        private double maxProcessCpuLoad;
+        private double avgProcessCpuLoad;
+        private long maxHeapUsedBytes;
+        private int maxThreads;
+        private int maxAsyncActive;
+        private int maxAsyncQueue;
+    }
+
+    @Builder
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Dynamic {
+        private int triggers;
+        private int tcs;
+        private long successLogs;
+        private LatencyRecorder.Summary triggerMillis;
+    }
+}
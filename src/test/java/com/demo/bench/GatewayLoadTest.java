@@ -0,0 +1,506 @@
+package com.demo.bench;
+
+import com.demo.config.AsyncConfig;
+import com.demo.enums.DynamicStatus;
+import com.demo.itsproject.ItsProjectApplication;
+import com.demo.manager.DynamicControlManager;
+import com.demo.model.dynamic.DynamicParameters;
+import com.demo.model.dynamic.DynamicParametersId;
+import com.demo.model.dynamic.DynamicPlanid;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.dynamic.DynamicLogRepository;
+import com.demo.repository.dynamic.DynamicParametersRepository;
+import com.demo.repository.dynamic.DynamicPlanidRepository;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.DynamicLogWriter;
+import com.demo.service.MqttClientService;
+import com.demo.service.SocketService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// End-to-end load run on one box: embedded broker, simulated TCs on 127.0.0.x and H2 behind every datasource.
+// Drives MQTT commands at a fixed rate, then dynamic-control triggers, and writes a JSON report to target/bench.
+// mvn test -Pload-test -Dbench.tcs=50 -Dbench.rate=100 -Dbench.duration-seconds=60 -Dbench.label=baseline
+@Tag("load")
+@ActiveProfiles({"test", "bench"})
+@SpringBootTest(classes = ItsProjectApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class GatewayLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(GatewayLoadTest.class);
+    private static final DateTimeFormatter fileFormatter = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PROGRAM_ID = "BENCH";
+
+    @Value("${mqtt.port}")
+    private int mqttPort;
+
+    @Value("${mqtt.tc.subscribe.topic.prefix}")
+    private String topic_tc_subscribe_prefix;
+
+    @Value("${mqtt.tc.publish.topic.prefix}")
+    private String topic_tc_publish_prefix;
+
+    @Value("${bench.label:default}")
+    private String label;
+
+    @Value("${bench.tcs:20}")
+    private int tcCount;
+
+    @Value("${bench.tc.base-port:17000}")
+    private int tcBasePort;
+
+    @Value("${bench.tc.response-delay-ms:20}")
+    private long responseDelayMillis;
+
+    @Value("${bench.rate:50}")
+    private double commandsPerSecond;
+
+    @Value("${bench.warmup-seconds:5}")
+    private int warmupSeconds;
+
+    @Value("${bench.duration-seconds:30}")
+    private int durationSeconds;
+
+    @Value("${bench.command.timeout-ms:20000}")
+    private long commandTimeoutMillis;
+
+    @Value("${bench.commands:5F10,5F15,5F18,5F40}")
+    private List<String> commandMix;
+
+    @Value("${bench.dynamic.triggers:1}")
+    private int dynamicTriggers;
+
+    @Value("${bench.report.dir:target/bench}")
+    private String reportDir;
+
+    @Autowired
+    private MqttClientService mqttClientService;
+
+    @Autowired
+    private SocketService socketService;
+
+    @Autowired
+    private DynamicControlManager dynamicControlManager;
+
+    @Autowired
+    private TcInfoRepository tcInfoRepository;
+
+    @Autowired
+    private DynamicPlanidRepository dynamicPlanidRepository;
+
+    @Autowired
+    private DynamicParametersRepository dynamicParametersRepository;
+
+    @Autowired
+    private DynamicLogRepository dynamicLogRepository;
+
+    @Autowired
+    private DynamicLogWriter dynamicLogWriter;
+
+    @Autowired
+    private AsyncConfig asyncConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Server broker = new Server();
+    private final List<SimulatedTc> simulatedTcs = new ArrayList<>();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong saturated = new AtomicLong();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+    private MqttClient loadClient;
+
+    private static class InFlight {
+        private final String messageId;
+        private final long sentNanos;
+        private volatile long frameNanos;
+        private volatile long responseNanos;
+
+        InFlight(String messageId, long sentNanos) {
+            this.messageId = messageId;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    @Test
+    void runLoad() throws Exception {
+        for (String stage : List.of("mqttToFrame", "frameToResponse", "responseToMqtt", "endToEnd")) {
+            latencies.put(stage, new LatencyRecorder());
+        }
+
+        String startedAt = LocalDateTime.now().toString();
+        List<TcInfo> tcs = startFleet();
+        connectGateway(tcs);
+
+        ResourceSampler sampler = new ResourceSampler();
+        sampler.start();
+
+        long measuredNanos = driveCommands(tcs);
+        BenchReport.Dynamic dynamic = driveDynamicTriggers(tcs);
+
+        sampler.stop();
+
+        BenchReport report = BenchReport.builder()
+                .label(label)
+                .startedAt(startedAt)
+                .config(config())
+                .sent(sent.get())
+                .completed(completed.get())
+                .timeouts(timeouts.get())
+                .saturated(saturated.get())
+                .throughputPerSec(completed.get() / (measuredNanos / 1e9))
+                .latencyMillis(summaries())
+                .resources(sampler.summary())
+                .dynamic(dynamic)
+                .build();
+
+        File file = new File(reportDir, "gateway-%s-%s.json".formatted(label, LocalDateTime.now().format(fileFormatter)));
+        file.getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        log.info("Load report written to {}", file.getAbsolutePath());
+
+        assertTrue(file.exists());
+        assertTrue(completed.get() > 0, "no command completed end to end");
+    }
+
+    private List<TcInfo> startFleet() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("host", "127.0.0.1");
+        props.setProperty("port", String.valueOf(mqttPort));
+        props.setProperty("websocket_port", "disabled");
+        props.setProperty("allow_anonymous", "true");
+        props.setProperty("persistence_enabled", "false");
+        broker.startServer(new MemoryConfig(props));
+
+        SimulatedTc.Listener listener = new SimulatedTc.Listener() {
+            @Override
+            public void onCommand(String tcId, int command, long nanos) {
+                InFlight f = inFlight.get(tcId);
+                if (f != null && f.frameNanos == 0) f.frameNanos = nanos;
+            }
+
+            @Override
+            public void onResponse(String tcId, int command, long nanos) {
+                InFlight f = inFlight.get(tcId);
+                if (f != null) f.responseNanos = nanos;
+            }
+        };
+
+        // one loopback address per TC, the gateway keys its sockets by ip
+        List<TcInfo> tcs = new ArrayList<>();
+        for (int i = 0; i < tcCount; i++) {
+            TcInfo tc = TcInfo.builder()
+                    .tcId("SIM%03d".formatted(i + 1))
+                    .name("simulated " + (i + 1))
+                    .groupNumber(1)
+                    .ip("127.0.%d.%d".formatted(1 + i / 250, 1 + i % 250))
+                    .port(tcBasePort + i)
+                    .addr(1000 + i)
+                    .enable((byte) 1)
+                    .dynamicEnable((byte) 1)
+                    .positionLon(0.0)
+                    .positionLat(0.0)
+                    .build();
+
+            SimulatedTc simulatedTc = new SimulatedTc(tc.getTcId(), tc.getIp(), tc.getPort(), tc.getAddr(), responseDelayMillis, listener);
+            simulatedTc.start();
+            simulatedTcs.add(simulatedTc);
+            tcs.add(tc);
+        }
+        tcInfoRepository.saveAll(tcs);
+
+        return tcs;
+    }
+
+    private void connectGateway(List<TcInfo> tcs) throws Exception {
+        mqttClientService.connect();
+        socketService.socketConnect();
+
+        for (TcInfo tc : tcs) {
+            assertNotNull(socketService.getConnection(tc.getIp()), "gateway not connected to " + tc.getTcId());
+        }
+
+        loadClient = new MqttClient("tcp://127.0.0.1:" + mqttPort, "load-driver", new MemoryPersistence());
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(1000);
+        loadClient.connect(options);
+
+        loadClient.subscribe(topic_tc_publish_prefix + "#", 1, (topic, message) -> {
+            long now = System.nanoTime();
+            InFlight f = inFlight.remove(topic.substring(topic_tc_publish_prefix.length()));
+            if (f == null || f.sentNanos < measureFromNanos) return;
+
+            completed.incrementAndGet();
+            latencies.get("endToEnd").record(now - f.sentNanos);
+            if (f.frameNanos > 0) latencies.get("mqttToFrame").record(f.frameNanos - f.sentNanos);
+            if (f.frameNanos > 0 && f.responseNanos > 0) latencies.get("frameToResponse").record(f.responseNanos - f.frameNanos);
+            if (f.responseNanos > 0) latencies.get("responseToMqtt").record(now - f.responseNanos);
+        });
+    }
+
+    // open loop at a fixed rate, at most one command in flight per TC so responses can be correlated by device
+    private long driveCommands(List<TcInfo> tcs) throws Exception {
+        ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger next = new AtomicInteger();
+        long periodNanos = (long) (1e9 / commandsPerSecond);
+
+        long start = System.nanoTime();
+        measureFromNanos = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+
+        ScheduledFuture<?> task = driver.scheduleAtFixedRate(() -> {
+            try {
+                expireTimeouts();
+
+                for (int i = 0; i < tcs.size(); i++) {
+                    int n = next.getAndIncrement();
+                    String deviceId = tcs.get(n % tcs.size()).getTcId();
+                    String messageId = commandMix.get(n % commandMix.size()).trim();
+
+                    InFlight f = new InFlight(messageId, System.nanoTime());
+                    if (inFlight.putIfAbsent(deviceId, f) == null) {
+                        loadClient.publish(topic_tc_subscribe_prefix + deviceId, command(deviceId, messageId).toString().getBytes(), 1, false);
+                        if (f.sentNanos >= measureFromNanos) sent.incrementAndGet();
+                        return;
+                    }
+                }
+                if (System.nanoTime() >= measureFromNanos) saturated.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("Failed to publish load command", e);
+            }
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds + durationSeconds));
+        task.cancel(false);
+        driver.shutdown();
+
+        // let in-flight commands drain, they count towards completion but not towards the measured window
+        long drainUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commandTimeoutMillis);
+        while (!inFlight.isEmpty() && System.nanoTime() < drainUntil) {
+            Thread.sleep(100);
+        }
+        timeouts.addAndGet(inFlight.values().stream().filter(f -> f.sentNanos >= measureFromNanos).count());
+        inFlight.clear();
+
+        return TimeUnit.SECONDS.toNanos(durationSeconds);
+    }
+
+    private void expireTimeouts() {
+        long now = System.nanoTime();
+        inFlight.entrySet().removeIf(entry -> {
+            boolean expired = now - entry.getValue().sentNanos > TimeUnit.MILLISECONDS.toNanos(commandTimeoutMillis);
+            if (expired && entry.getValue().sentNanos >= measureFromNanos) timeouts.incrementAndGet();
+            return expired;
+        });
+    }
+
+    private JSONObject command(String deviceId, String messageId) throws JSONException {
+        JSONObject value = new JSONObject().put("deviceId", deviceId);
+        switch (messageId.toUpperCase()) {
+            case "5F10" -> value.put("controlStrategy", 1).put("effectTime", 5);
+            case "5F15" -> {
+                JSONArray subPhases = new JSONArray();
+                for (int i = 1; i <= 2; i++) {
+                    subPhases.put(new JSONObject().put("subPhaseId", i).put("green", 40).put("yellow", 3)
+                            .put("allRed", 2).put("pedGreenFlash", 5).put("pedRed", 3)
+                            .put("minGreen", 10).put("maxGreen", 60));
+                }
+                value.put("planId", 1).put("direct", 1).put("phaseOrder", "b1").put("subPhaseCount", 2)
+                        .put("cycleTime", 100).put("offset", 0).put("subPhases", subPhases);
+            }
+            case "5F18", "5F45" -> value.put("planId", 1);
+            default -> { }
+        }
+
+        return new JSONObject()
+                .put("messageId", messageId)
+                .put("messageTime", LocalDateTime.now().toString())
+                .put("value", value);
+    }
+
+    // every TC in one program, plan parameters echoed back by the simulator so 5FC5 checks pass
+    private BenchReport.Dynamic driveDynamicTriggers(List<TcInfo> tcs) {
+        if (dynamicTriggers <= 0) return null;
+
+        DayOfWeek dayOfWeek = LocalDate.now().getDayOfWeek();
+        boolean isWeekday = (dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY);
+
+        List<DynamicPlanid> planIds = new ArrayList<>();
+        List<DynamicParameters> parameters = new ArrayList<>();
+        for (TcInfo tc : tcs) {
+            planIds.add(DynamicPlanid.builder()
+                    .programId(PROGRAM_ID)
+                    .tcId(tc.getTcId())
+                    .day(isWeekday ? "平日" : "假日")
+                    .time("0000-2359")
+                    .planId(1)
+                    .logTime(LocalDateTime.now())
+                    .build());
+
+            for (int subPhase = 1; subPhase <= 2; subPhase++) {
+                parameters.add(DynamicParameters.builder()
+                        .id(DynamicParametersId.builder()
+                                .programId(PROGRAM_ID).deviceId(tc.getTcId()).planId(1).subphaseId(subPhase)
+                                .build())
+                        .location("bench")
+                        .phaseOrder("b1")
+                        .cycleTime(100)
+                        .offset(0)
+                        .green(40)
+                        .pedGreenFlash(5)
+                        .pedRed(3)
+                        .yellow(3)
+                        .allRed(2)
+                        .minGreen(10)
+                        .maxGreen(60)
+                        .direct(1)
+                        .build());
+            }
+        }
+        dynamicPlanidRepository.saveAll(planIds);
+        dynamicParametersRepository.saveAll(parameters);
+
+        LatencyRecorder triggerLatency = new LatencyRecorder();
+        for (int i = 0; i < dynamicTriggers; i++) {
+            long start = System.nanoTime();
+            dynamicControlManager.dynamicTrigger(PROGRAM_ID, LocalTime.MIN, LocalTime.MAX, isWeekday);
+            triggerLatency.record(System.nanoTime() - start);
+        }
+
+        dynamicLogWriter.flush(10_000);    // rows are written in the background
+        long successLogs = dynamicLogRepository.findAll().stream()
+                .filter(entry -> PROGRAM_ID.equals(entry.getProgramId()))
+                .filter(entry -> DynamicStatus.SUCCESS.getCode().equals(entry.getStatus()))
+                .filter(entry -> entry.getMessage().equals("apply dynamic control success"))
+                .count();
+
+        return BenchReport.Dynamic.builder()
+                .triggers(dynamicTriggers)
+                .tcs(tcs.size())
+                .successLogs(successLogs)
+                .triggerMillis(triggerLatency.summary())
+                .build();
+    }
+
+    private Map<String, LatencyRecorder.Summary> summaries() {
+        Map<String, LatencyRecorder.Summary> result = new LinkedHashMap<>();
+        latencies.forEach((stage, recorder) -> result.put(stage, recorder.summary()));
+        return result;
+    }
+
+    private Map<String, Object> config() {
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.getAsyncExecutor();
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("tcs", tcCount);
+        config.put("ratePerSec", commandsPerSecond);
+        config.put("warmupSeconds", warmupSeconds);
+        config.put("durationSeconds", durationSeconds);
+        config.put("commands", commandMix);
+        config.put("tcResponseDelayMs", responseDelayMillis);
+        config.put("commandTimeoutMs", commandTimeoutMillis);
+        config.put("dynamicTriggers", dynamicTriggers);
+        config.put("asyncCorePoolSize", executor.getCorePoolSize());
+        config.put("asyncMaxPoolSize", executor.getMaxPoolSize());
+        config.put("asyncQueueCapacity", executor.getQueueCapacity());
+        config.put("cpuCores", Runtime.getRuntime().availableProcessors());
+        config.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        config.put("javaVersion", System.getProperty("java.version"));
+        config.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        return config;
+    }
+
+    // samples process cpu, heap, thread count and async pool pressure once per second
+    private class ResourceSampler {
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        private double maxCpu, sumCpu;
+        private int samples, maxThreads, maxAsyncActive, maxAsyncQueue;
+        private long maxHeap;
+
+        void start() {
+            ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.getAsyncExecutor();
+
+            scheduler.scheduleAtFixedRate(() -> {
+                synchronized (this) {
+                    double cpu = Math.max(os.getProcessCpuLoad(), 0);
+                    maxCpu = Math.max(maxCpu, cpu);
+                    sumCpu += cpu;
+                    samples++;
+                    maxHeap = Math.max(maxHeap, memory.getHeapMemoryUsage().getUsed());
+                    maxThreads = Math.max(maxThreads, threads.getThreadCount());
+                    maxAsyncActive = Math.max(maxAsyncActive, executor.getActiveCount());
+                    maxAsyncQueue = Math.max(maxAsyncQueue, executor.getThreadPoolExecutor().getQueue().size());
+                }
+            }, 0, 1, TimeUnit.SECONDS);
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+        }
+
+        synchronized BenchReport.Resources summary() {
+            return BenchReport.Resources.builder()
+                    .maxProcessCpuLoad(maxCpu)
+                    .avgProcessCpuLoad(samples == 0 ? 0 : sumCpu / samples)
+                    .maxHeapUsedBytes(maxHeap)
+                    .maxThreads(maxThreads)
+                    .maxAsyncActive(maxAsyncActive)
+                    .maxAsyncQueue(maxAsyncQueue)
+                    .build();
+        }
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        if (loadClient != null && loadClient.isConnected()) {
+            loadClient.disconnect();
+        }
+        for (TcInfo tc : tcInfoRepository.findAll()) {
+            socketService.closeConnection(tc.getIp());
+        }
+        for (SimulatedTc simulatedTc : simulatedTcs) {
+            simulatedTc.close();
+        }
+        broker.stopServer();
+    }
+}
@@ -0,0 +1,61 @@
+package com.demo.bench;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Collects raw samples in nanoseconds and summarizes them as millisecond percentiles.
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count = 0;
+
+    public synchronized void record(long nanos) {
+        if (nanos < 0) return;
+
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized Summary summary() {
+        if (count == 0) {
+            return new Summary(0, 0, 0, 0, 0, 0, 0);
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        return new Summary(count,
+                toMillis(percentile(sorted, 50)),
+                toMillis(percentile(sorted, 90)),
+                toMillis(percentile(sorted, 99)),
+                toMillis(percentile(sorted, 99.9)),
+                toMillis(sorted[count - 1]),
+                toMillis(mean));
+    }
+
+    // nearest-rank percentile
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / 1_000) / 1_000.0;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Summary {
+        private int count;
+        private double p50;
+        private double p90;
+        private double p99;
+        private double p999;
+        private double max;
+        private double mean;
+    }
+}
@@ -0,0 +1,191 @@
+package com.demo.bench;
+
+import com.demo.message.MessageHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Traffic controller stand-in listening on its own loopback address, the gateway connects to it like a real TC.
+// ACKs every frame, answers 5F10/5F14/5F15/5F18 with 0F80, 5F40 with 5FC0, and echoes the stored plan for 5F44/5F45.
+public class SimulatedTc implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SimulatedTc.class);
+
+    public interface Listener {
+        void onCommand(String tcId, int command, long nanos);
+
+        void onResponse(String tcId, int command, long nanos);
+    }
+
+    private final String tcId;
+    private final String ip;
+    private final int port;
+    private final int addr;
+    private final long responseDelayMillis;
+    private final Listener listener;
+
+    // only the static framing helpers are used, no repository needed
+    private final MessageHandler messageHandler = new MessageHandler();
+
+    private final Map<Integer, List<Integer>> plan5FC4 = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Integer>> plan5FC5 = new ConcurrentHashMap<>();
+    private volatile int controlStrategy;
+    private volatile int effectTime;
+    private int seq = 0;
+
+    private ServerSocket serverSocket;
+    private volatile Socket connection;
+    private volatile boolean closed;
+
+    public SimulatedTc(String tcId, String ip, int port, int addr, long responseDelayMillis, Listener listener) {
+        this.tcId = tcId;
+        this.ip = ip;
+        this.port = port;
+        this.addr = addr;
+        this.responseDelayMillis = responseDelayMillis;
+        this.listener = listener;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(ip, port));
+
+        Thread acceptThread = new Thread(this::acceptLoop, "sim-tc-" + tcId);
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try (Socket socket = serverSocket.accept()) {
+                connection = socket;
+                serve(socket);
+            } catch (SocketException e) {
+                if (!closed) log.warn("Simulated TC {} connection dropped", tcId);
+            } catch (IOException e) {
+                log.warn("Simulated TC {} I/O error", tcId, e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+        while (!closed) {
+            if (in.readUnsignedByte() != MessageHandler.DLE) continue;
+
+            int type = in.readUnsignedByte();
+            if (type == MessageHandler.ACK) {
+                in.skipNBytes(6);
+                continue;
+            } else if (type == MessageHandler.NAK) {
+                in.skipNBytes(7);
+                continue;
+            } else if (type != MessageHandler.STX) {
+                continue;
+            }
+
+            List<Integer> raw = new ArrayList<>(List.of(MessageHandler.DLE, MessageHandler.STX));
+            byte[] header = in.readNBytes(5);
+            for (byte b : header) raw.add(b & 0xFF);
+
+            int length = raw.get(5) * 256 + raw.get(6);
+            for (byte b : in.readNBytes(length - raw.size())) raw.add(b & 0xFF);
+
+            handle(messageHandler.recvNormalize(raw), out);
+        }
+    }
+
+    private void handle(List<Integer> frame, OutputStream out) throws IOException {
+        int command = (frame.get(7) << 8) | frame.get(8);
+        List<Integer> data = frame.subList(9, frame.size() - 3);   // without DLE ETX CKS
+
+        listener.onCommand(tcId, command, System.nanoTime());
+        write(out, List.of(MessageHandler.DLE, MessageHandler.ACK, frame.get(2), addr >> 8, addr % 256, 0x00, 0x08), true);
+
+        if (responseDelayMillis > 0) {
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        List<Integer> body = new ArrayList<>();
+        switch (command) {
+            case 0x5F10 -> {
+                controlStrategy = data.get(0);
+                effectTime = data.get(1);
+                body.addAll(List.of(0x0F, 0x80, 0x5F, 0x10));
+            }
+            case 0x5F14 -> {
+                plan5FC4.put(data.get(0), new ArrayList<>(data));
+                body.addAll(List.of(0x0F, 0x80, 0x5F, 0x14));
+            }
+            case 0x5F15 -> {
+                plan5FC5.put(data.get(0), new ArrayList<>(data));
+                body.addAll(List.of(0x0F, 0x80, 0x5F, 0x15));
+            }
+            case 0x5F18 -> body.addAll(List.of(0x0F, 0x80, 0x5F, 0x18));
+            case 0x5F40 -> body.addAll(List.of(0x5F, 0xC0, controlStrategy, effectTime));
+            case 0x5F44 -> {
+                body.addAll(List.of(0x5F, 0xC4));
+                body.addAll(plan5FC4.getOrDefault(data.get(0), List.of(data.get(0), 0)));
+            }
+            case 0x5F45 -> {
+                body.addAll(List.of(0x5F, 0xC5));
+                body.addAll(plan5FC5.getOrDefault(data.get(0), List.of(data.get(0), 0, 0, 0, 0, 0, 0, 0)));
+            }
+            default -> body.addAll(List.of(0x0F, 0x81, frame.get(7), frame.get(8), 0x01, 0x00));
+        }
+
+        write(out, frame(body), false);
+        listener.onResponse(tcId, command, System.nanoTime());
+    }
+
+    // same layout as MessageGenerator: DLE STX SEQ ADDR(2) LEN(2) body DLE ETX CKS, DLE stuffed
+    private List<Integer> frame(List<Integer> body) {
+        List<Integer> msg = new ArrayList<>(List.of(MessageHandler.DLE, MessageHandler.STX, nextSeq(), addr >> 8, addr % 256, 0, 0));
+        msg.addAll(body);
+        msg.add(MessageHandler.DLE);
+        msg.add(MessageHandler.ETX);
+
+        int length = msg.size() + 1;
+        msg.set(5, length >> 8);
+        msg.set(6, length % 256);
+        msg.add(messageHandler.genCKS(msg));
+
+        return messageHandler.sendNormalize(msg);
+    }
+
+    private synchronized int nextSeq() {
+        seq = seq >= 255 ? 1 : seq + 1;
+        return seq;
+    }
+
+    private void write(OutputStream out, List<Integer> msg, boolean appendCks) throws IOException {
+        synchronized (out) {
+            for (int b : msg) out.write(b);
+            if (appendCks) out.write(messageHandler.genCKS(msg));
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (connection != null) connection.close();
+        if (serverSocket != null) serverSocket.close();
+    }
+}
@@ -1,9 +1,23 @@
 package com.demo.controller;
 
+import com.demo.dto.BacktestReportDto;
+import com.demo.dto.BacktestRequestDto;
+import com.demo.dto.BacktestResultDto;
+import com.demo.dto.ProgramMatchState;
+import com.demo.dto.SimulationReportDto;
+import com.demo.dto.TrafficMonitorDto;
+import com.demo.dto.TriggerTraceDto;
+import com.demo.dto.WarmupReportDto;
+import com.demo.exception.CustomException;
 import com.demo.exception.GlobalExceptionHandler;
+import com.demo.manager.PeriodWarmupManager;
+import com.demo.manager.TrafficMonitorScheduler;
 import com.demo.model.dynamic.DynamicThreshold;
 import com.demo.model.dynamic.DynamicThresholdId;
+import com.demo.service.BacktestService;
 import com.demo.service.DynamicService;
+import com.demo.service.DynamicSimulationService;
+import com.demo.service.DynamicTraceService;
 import com.demo.service.JwtTokenService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,6 +27,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
@@ -37,6 +52,21 @@ public class DynamicControllerTest {
     @Mock
     private JwtTokenService jwtTokenService;
 
+    @Mock
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+
+    @Mock
+    private BacktestService backtestService;
+
+    @Mock
+    private DynamicSimulationService dynamicSimulationService;
+
+    @Mock
+    private DynamicTraceService dynamicTraceService;
+
+    @Mock
+    private PeriodWarmupManager periodWarmupManager;
+
     @Mock
     private HttpServletRequest request;
 
@@ -134,4 +164,155 @@ public class DynamicControllerTest {
 
         verify(dynamicService, never()).updateDynamicThreshold(any());
     }
+
+    @Test
+    void testGetActiveMonitors_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+
+        TrafficMonitorDto monitor = TrafficMonitorDto.builder()
+                .key("p1-1")
+                .programId("p1")
+                .subId(1)
+                .intervalMillis(60_000L)
+                .runs(3L)
+                .skipped(0L)
+                .running(false)
+                .build();
+        when(trafficMonitorScheduler.getActiveMonitors()).thenReturn(List.of(monitor));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-monitors"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].key").value("p1-1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].intervalMillis").value(60000))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].runs").value(3));
+    }
+
+    @Test
+    void testGetActiveMonitors_Unauthorized() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-monitors"))
+                .andExpect(status().isUnauthorized());
+
+        verify(trafficMonitorScheduler, never()).getActiveMonitors();
+    }
+
+    @Test
+    void testRunBacktest_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+
+        BacktestReportDto report = BacktestReportDto.builder()
+                .days(30)
+                .rowsLoaded(1000L)
+                .results(List.of(BacktestResultDto.builder().programId("p1").evaluations(12).triggers(2).build()))
+                .build();
+        when(backtestService.run(any(BacktestRequestDto.class))).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/dynamic-backtests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"startDate\":\"2025-06-01\",\"endDate\":\"2025-06-30\",\"programIds\":[\"p1\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.days").value(30))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].programId").value("p1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].triggers").value(2));
+    }
+
+    @Test
+    void testRunBacktest_Unauthorized() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/dynamic-backtests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isUnauthorized());
+
+        verify(backtestService, never()).run(any());
+    }
+
+    @Test
+    void testRunSimulation_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(dynamicSimulationService.run(any(), any())).thenReturn(SimulationReportDto.builder()
+                .periodEvents(4)
+                .monitorTicks(300)
+                .triggers(4L)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/dynamic-simulations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.periodEvents").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.triggers").value(4));
+    }
+
+    @Test
+    void testGetRecentTraces_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(dynamicTraceService.getRecentTraces("p1", 5)).thenReturn(List.of(TriggerTraceDto.builder()
+                .traceId("t-1")
+                .programId("p1")
+                .reactionMillis(120L)
+                .totalMillis(2300L)
+                .build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-traces")
+                        .param("programId", "p1")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].traceId").value("t-1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].reactionMillis").value(120));
+    }
+
+    @Test
+    void testGetTrace_NotFound() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(dynamicTraceService.getTrace("missing")).thenThrow(new CustomException("Data not found", HttpStatus.NOT_FOUND));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-traces/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetRecentTraces_Unauthorized() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-traces"))
+                .andExpect(status().isUnauthorized());
+
+        verify(dynamicTraceService, never()).getRecentTraces(any(), anyInt());
+    }
+
+    @Test
+    void testGetWarmupReports_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(periodWarmupManager.getReports()).thenReturn(List.of(WarmupReportDto.builder()
+                .programId("p1")
+                .total(3)
+                .ready(2)
+                .notReady(List.of("TC003: no 5FC0"))
+                .build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-warmups"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].programId").value("p1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].ready").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].notReady[0]").value("TC003: no 5FC0"));
+    }
+
+    @Test
+    void testGetMatchStates_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(dynamicService.getMatchStates()).thenReturn(Map.of("p1", ProgramMatchState.INITIAL.toBuilder()
+                .results(0b101)
+                .matched(true)
+                .consecutiveCount(2)
+                .build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/dynamic-match-states"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.p1.results").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.p1.matched").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.p1.consecutiveCount").value(2));
+    }
 }
@@ -1,6 +1,8 @@
 package com.demo.controller;
 
 import com.demo.dto.TcMessageLogDto;
+import com.demo.dto.TcSnapshotDto;
+import com.demo.manager.ControllerStateCrawler;
 import com.demo.model.its.TcInfo;
 import com.demo.service.TcService;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -38,6 +40,9 @@ public class TcRestControllerTest {
     @Mock
     private JwtTokenService jwtTokenService;
 
+    @Mock
+    private ControllerStateCrawler controllerStateCrawler;
+
     @InjectMocks
     private TcRestController tcRestController;
 
@@ -129,4 +134,16 @@ public class TcRestControllerTest {
         verify(tcService, never()).getTCInfo();
         verify(jwtTokenService, times(1)).needsAuthentication(any(HttpServletRequest.class));
     }
+
+    @Test
+    void testGetTCStates_Success() throws Exception {
+        when(jwtTokenService.needsAuthentication(any(HttpServletRequest.class))).thenReturn(false);
+        when(controllerStateCrawler.getSnapshots()).thenReturn(List.of(
+                TcSnapshotDto.builder().deviceId("TC001").controlStrategy(1).build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/tc/states"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].deviceId").value("TC001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].controlStrategy").value(1));
+    }
 }
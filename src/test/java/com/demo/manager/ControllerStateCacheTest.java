@@ -0,0 +1,82 @@
+package com.demo.manager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ControllerStateCacheTest {
+    private ControllerStateCache cache;
+
+    @BeforeEach
+    void setup() {
+        cache = new ControllerStateCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L);
+    }
+
+    @Test
+    void testGetPlan_requiresBothPartsOfSamePlan() throws JSONException {
+        cache.on5FC4("TC001", new JSONObject().put("planId", 0));
+        assertNull(cache.getPlan("TC001", 0));
+
+        cache.on5FC5("TC001", new JSONObject().put("planId", 0));
+        assertNotNull(cache.getPlan("TC001", 0));
+        assertNull(cache.getPlan("TC001", 1));
+
+        cache.on5FC5("TC001", new JSONObject().put("planId", 1));
+        assertNull(cache.getPlan("TC001", 0));
+    }
+
+    @Test
+    void testInvalidatePlan_keepsStrategy() throws JSONException {
+        cache.on5FC0("TC001", new JSONObject().put("ControlStrategy", 1));
+        cache.on5FC4("TC001", new JSONObject().put("planId", 0));
+        cache.on5FC5("TC001", new JSONObject().put("planId", 0));
+
+        cache.invalidatePlan("TC001");
+
+        assertNull(cache.getPlan("TC001", 0));
+        assertNotNull(cache.getStrategy("TC001"));
+
+        cache.invalidateStrategy("TC001");
+        assertNull(cache.getStrategy("TC001"));
+    }
+
+    @Test
+    void testInvalidate_onReconnect() throws JSONException {
+        cache.on5FC0("TC001", new JSONObject().put("ControlStrategy", 1));
+        cache.invalidate("TC001");
+
+        assertNull(cache.getStrategy("TC001"));
+    }
+
+    @Test
+    void testExpiredOrDisabled() throws JSONException {
+        cache.on5FC0("TC001", new JSONObject().put("ControlStrategy", 1));
+
+        ReflectionTestUtils.setField(cache, "ttlMillis", -1L);
+        assertNull(cache.getStrategy("TC001"));
+
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L);
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        assertNull(cache.getStrategy("TC001"));
+    }
+
+    @Test
+    void testGetSince_onlyReportsReceivedAfterTheQuery() throws JSONException {
+        long before = System.currentTimeMillis();
+        cache.on5FC0("TC001", new JSONObject().put("ControlStrategy", 1));
+        cache.on5FC4("TC001", new JSONObject().put("planId", 3));
+        cache.on5FC5("TC001", new JSONObject().put("planId", 3));
+
+        assertNotNull(cache.getStrategySince("TC001", before));
+        assertNotNull(cache.getPlanSince("TC001", 3, before));
+        assertNull(cache.getPlanSince("TC001", 0, before));
+        assertNull(cache.getStrategySince("TC001", System.currentTimeMillis() + 1_000));
+        assertNull(cache.getPlanSince("TC002", 3, before));
+    }
+}
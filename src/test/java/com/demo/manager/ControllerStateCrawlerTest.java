@@ -0,0 +1,238 @@
+package com.demo.manager;
+
+import com.demo.dto.TcPlanStateDto;
+import com.demo.dto.TcSnapshotDto;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.DynamicPlanCache;
+import com.demo.service.SocketService;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ControllerStateCrawlerTest {
+    @InjectMocks
+    private ControllerStateCrawler crawler;
+
+    @Mock
+    private TcInfoRepository tcInfoRepository;
+
+    @Mock
+    private SocketService socketService;
+
+    @Mock
+    private TcSendMessageManager tcSendMessageManager;
+
+    @Mock
+    private TcReceiveMessageManager tcReceiveMessageManager;
+
+    @Mock
+    private ControllerStateCache controllerStateCache;
+
+    @Mock
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Mock
+    private DynamicControlManager dynamicControlManager;
+
+    private final TcExchangeLock tcExchangeLock = new TcExchangeLock();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(crawler, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(crawler, "tcExchangeLock", tcExchangeLock);
+        ReflectionTestUtils.setField(crawler, "enabled", true);
+        ReflectionTestUtils.setField(crawler, "concurrency", 2);
+        ReflectionTestUtils.setField(crawler, "ratePerSecond", 0.0);
+        ReflectionTestUtils.setField(crawler, "readTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(crawler, "afterConnectDelayMillis", 0L);
+        ReflectionTestUtils.setField(crawler, "yieldMillis", 10L);
+        crawler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        crawler.shutdown();
+    }
+
+    private TcSnapshotDto awaitSnapshot(String tc) throws InterruptedException {
+        for (int i = 0; i < 200 && crawler.getSnapshot(tc) == null; i++) Thread.sleep(10);
+        assertNotNull(crawler.getSnapshot(tc));
+        return crawler.getSnapshot(tc);
+    }
+
+    private static JSONObject[] plan(int planId) throws JSONException {
+        return new JSONObject[]{
+                new JSONObject().put("planId", planId).put("subPhaseCount", 2)
+                        .put("minGreen", new JSONArray(List.of(10, 12))).put("yellow", new JSONArray(List.of(3, 3))),
+                new JSONObject().put("planId", planId).put("subPhaseCount", 2).put("phaseOrder", "30")
+                        .put("green", new JSONArray(List.of(40, 30))).put("cycleTime", 80).put("offset", 5)};
+    }
+
+    // a trigger applying to the TC on another thread, holds its exchange lock for holdMillis
+    private Thread holdTc(String tc, long holdMillis, AtomicLong releasedAt) throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        Thread trigger = new Thread(() -> {
+            try {
+                tcExchangeLock.lock(tc);
+                try {
+                    held.countDown();
+                    Thread.sleep(holdMillis);
+                } finally {
+                    releasedAt.set(System.nanoTime());
+                    tcExchangeLock.unlock(tc);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        trigger.start();
+        held.await();
+        return trigger;
+    }
+
+    @Test
+    void testCrawlAll_disabledDoesNothing() {
+        ReflectionTestUtils.setField(crawler, "enabled", false);
+
+        assertFalse(crawler.crawlAll());
+        crawler.onConnected("10.0.0.1");
+        verifyNoInteractions(tcInfoRepository, tcSendMessageManager);
+    }
+
+    @Test
+    void testCrawlAll_readsStrategyAndPlansOfConnectedTcs() throws Exception {
+        when(tcInfoRepository.findByEnable((byte) 1)).thenReturn(List.of(
+                TcInfo.builder().tcId("TC001").ip("10.0.0.1").enable((byte) 1).build(),
+                TcInfo.builder().tcId("TC002").ip("10.0.0.2").enable((byte) 1).build()));
+        when(socketService.isHostConnected("10.0.0.1")).thenReturn(true);
+        when(socketService.isHostConnected("10.0.0.2")).thenReturn(false);
+        when(dynamicPlanCache.getPlanIdsOfTc("TC001")).thenReturn(Set.of(3));
+
+        JSONObject value5FC0 = new JSONObject().put("ControlStrategy", 1).put("EffectTime", 60);
+        JSONObject[] plan0 = plan(0);
+        JSONObject[] plan3 = plan(3);
+        Map<String, JSONObject> map5FC0 = new ConcurrentHashMap<>(Map.of("TC001", value5FC0));
+        Map<String, JSONObject> map5FC4 = new ConcurrentHashMap<>(Map.of("TC001", plan0[0]));
+        Map<String, JSONObject> map5FC5 = new ConcurrentHashMap<>(Map.of("TC001", plan0[1]));
+        when(tcSendMessageManager.handle5F40Message(any())).thenReturn(true);
+        when(tcSendMessageManager.handle5F45Message(any())).thenReturn(true);
+        when(controllerStateCache.getStrategySince(eq("TC001"), anyLong())).thenReturn(value5FC0);
+        when(controllerStateCache.getPlanSince(eq("TC001"), eq(3), anyLong())).thenReturn(plan3);
+        when(controllerStateCache.getPlanSince(eq("TC001"), eq(0), anyLong())).thenReturn(plan0);
+        when(tcReceiveMessageManager.getValueMap5FC0()).thenReturn(map5FC0);
+        when(tcReceiveMessageManager.getValueMap5FC4()).thenReturn(map5FC4);
+        when(tcReceiveMessageManager.getValueMap5FC5()).thenReturn(map5FC5);
+
+        assertTrue(crawler.crawlAll());
+        TcSnapshotDto snapshot = awaitSnapshot("TC001");
+
+        assertEquals(1, snapshot.getControlStrategy());
+        assertEquals(60, snapshot.getEffectTime());
+        assertNotNull(snapshot.getStrategyAt());
+        assertEquals(Set.of(0, 3), snapshot.getPlans().keySet());
+        assertEquals(Set.of(0, 3), snapshot.getPlanAt().keySet());
+        assertNull(snapshot.getLastError());
+
+        TcPlanStateDto decoded = snapshot.getPlans().get(3);
+        assertEquals(List.of(40, 30), decoded.getGreen());
+        assertEquals(List.of(10, 12), decoded.getMinGreen());
+        assertEquals(80, decoded.getCycleTime());
+        assertEquals("30", decoded.getPhaseOrder());
+
+        // plan 0 is read last so the state cache ends up holding it
+        InOrder inOrder = inOrder(tcSendMessageManager);
+        inOrder.verify(tcSendMessageManager).handle5F40Message(argThat(command -> command.getDeviceId().equals("TC001")));
+        inOrder.verify(tcSendMessageManager).handle5F45Message(argThat(command -> command.getPlanId() == 3));
+        inOrder.verify(tcSendMessageManager).handle5F45Message(argThat(command -> command.getPlanId() == 0));
+        verify(tcSendMessageManager, never()).handle5F40Message(argThat(command -> command.getDeviceId().equals("TC002")));
+        // the crawl's replies do not linger for a trigger's verify step
+        assertTrue(map5FC0.isEmpty() && map5FC4.isEmpty() && map5FC5.isEmpty());
+        assertNull(crawler.getSnapshot("TC002"));
+    }
+
+    @Test
+    void testCrawl_waitsForRunningTriggerAndRecordsMissingReply() throws JSONException {
+        when(dynamicControlManager.isTriggerRunning()).thenReturn(true, true, false);
+        when(dynamicPlanCache.getPlanIdsOfTc("TC001")).thenReturn(Set.of());
+        when(tcSendMessageManager.handle5F40Message(any())).thenReturn(true);
+        when(tcSendMessageManager.handle5F45Message(any())).thenReturn(false);     // link dropped
+        JSONObject value5FC0 = new JSONObject().put("ControlStrategy", 1).put("EffectTime", 60);
+        when(controllerStateCache.getStrategySince(eq("TC001"), anyLong())).thenReturn(value5FC0);
+        when(tcReceiveMessageManager.getValueMap5FC0()).thenReturn(new ConcurrentHashMap<>());
+
+        crawler.crawl("TC001");
+
+        verify(dynamicControlManager, atLeast(3)).isTriggerRunning();
+        TcSnapshotDto snapshot = crawler.getSnapshot("TC001");
+        assertEquals(1, snapshot.getControlStrategy());
+        assertTrue(snapshot.getPlans().isEmpty());
+        assertEquals("no 5FC4/5FC5 of plan 0", snapshot.getLastError());
+    }
+
+    @Test
+    void testCrawl_queriesOnlyAfterTheTriggerReleasedTheTc() throws Exception {
+        when(dynamicPlanCache.getPlanIdsOfTc("TC001")).thenReturn(Set.of());
+        AtomicLong releasedAt = new AtomicLong();
+        AtomicLong sentAt = new AtomicLong();
+        when(tcSendMessageManager.handle5F40Message(any())).thenAnswer(invocation -> {
+            sentAt.set(System.nanoTime());
+            return false;
+        });
+        Thread trigger = holdTc("TC001", 100, releasedAt);
+
+        crawler.crawl("TC001");
+        trigger.join();
+
+        assertTrue(sentAt.get() >= releasedAt.get());
+        assertFalse(tcExchangeLock.isLocked("TC001"));
+    }
+
+    @Test
+    void testCrawl_skipsQueriesWhileTheTriggerKeepsTheTcBusy() throws Exception {
+        when(dynamicPlanCache.getPlanIdsOfTc("TC001")).thenReturn(Set.of());
+        Thread trigger = holdTc("TC001", 1_000, new AtomicLong());
+
+        crawler.crawl("TC001");
+        trigger.interrupt();
+        trigger.join();
+
+        verify(tcSendMessageManager, never()).handle5F40Message(any());
+        verify(tcSendMessageManager, never()).handle5F45Message(any());
+        assertEquals("no 5FC0", crawler.getSnapshot("TC001").getLastError());
+    }
+
+    @Test
+    void testOnConnected_crawlsTheTcAfterTheDelay() throws Exception {
+        when(tcInfoRepository.findByIp("10.0.0.1")).thenReturn(TcInfo.builder().tcId("TC001").ip("10.0.0.1").enable((byte) 1).build());
+        when(socketService.isHostConnected("10.0.0.1")).thenReturn(true);
+        when(dynamicPlanCache.getPlanIdsOfTc("TC001")).thenReturn(Set.of());
+
+        crawler.onConnected("10.0.0.1");
+        TcSnapshotDto snapshot = awaitSnapshot("TC001");
+
+        assertEquals("no 5FC0", snapshot.getLastError());
+        verify(tcSendMessageManager).handle5F40Message(argThat(command -> command.getDeviceId().equals("TC001")));
+    }
+}
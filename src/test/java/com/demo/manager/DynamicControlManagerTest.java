@@ -1,21 +1,35 @@
 package com.demo.manager;
 
+import com.demo.dto.Command5F15Dto;
+import com.demo.dto.CommandTraceDto;
 import com.demo.dto.ConditionDto;
+import com.demo.dto.ProgramMatchState;
+import com.demo.dto.TcTraceDto;
 import com.demo.dto.ThresholdDto;
 import com.demo.dto.TrafficPeriodDto;
+import com.demo.dto.TriggerTraceDto;
+import com.demo.enums.ComparisonOperator;
 import com.demo.enums.ControlStrategy;
 import com.demo.model.dynamic.DynamicParameters;
 import com.demo.model.dynamic.DynamicParametersId;
 import com.demo.model.its.TcInfo;
-import com.demo.notification.DiscordNotifier;
+import com.demo.enums.NotificationType;
+import com.demo.notification.NotificationDispatcher;
 import com.demo.repository.its.TcInfoRepository;
 import com.demo.service.DynamicService;
+import com.demo.service.DynamicTraceService;
 import com.demo.service.SocketService;
+import com.demo.util.CompiledCondition;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -23,12 +37,13 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -57,17 +72,144 @@ public class DynamicControlManagerTest {
     private SocketService socketService;
 
     @Mock
-    private DiscordNotifier discordNotifier;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private ControllerStateCache controllerStateCache;
+
+    @Mock
+    private DynamicTraceService dynamicTraceService;
+
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+
+    private final TcExchangeLock tcExchangeLock = new TcExchangeLock();
 
     @BeforeEach
     void setup() {
+        ReflectionTestUtils.setField(dynamicControlManager, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(dynamicControlManager, "tcExchangeLock", tcExchangeLock);
+        ReflectionTestUtils.setField(dynamicControlManager, "meterRegistry", new SimpleMeterRegistry());
         ReflectionTestUtils.setField(dynamicControlManager, "debugMode", false);
+        ReflectionTestUtils.setField(dynamicControlManager, "triggerParallelism", 4);
+        ReflectionTestUtils.setField(dynamicControlManager, "triggerDeadlineMillis", 60_000L);
+        ReflectionTestUtils.setField(dynamicControlManager, "maxApplyFailures", 3);
+        ReflectionTestUtils.setField(dynamicControlManager, "strategyVerifyTimeoutMillis", 2_000L);
+        ReflectionTestUtils.setField(dynamicControlManager, "parametersVerifyTimeoutMillis", 2_000L);
+        dynamicControlManager.init();
+
+        trafficMonitorScheduler = new TrafficMonitorScheduler();
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "timerThreads", 1);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "workerThreads", 2);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "queueCapacity", 10);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "clock", Clock.systemDefaultZone());
+        trafficMonitorScheduler.init();
+        ReflectionTestUtils.setField(dynamicControlManager, "trafficMonitorScheduler", trafficMonitorScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trafficMonitorScheduler.shutdown();
+        dynamicControlManager.shutdown();
+    }
+
+    @Test
+    void testComparisonOperator() {
+        assertTrue(ComparisonOperator.fromSymbol(">").test(5, 2));
+        assertFalse(ComparisonOperator.fromSymbol(">").test(1, 2));
+        assertTrue(ComparisonOperator.fromSymbol(" <= ").test(2, 2));
+        assertNull(ComparisonOperator.fromSymbol("=>"));
+    }
+
+    @Test
+    void testCheckConditionMatch_falseBranch_resetsCount() {
+        String programId = "21001";
+        ConditionDto condition = ConditionDto.builder()
+                .conditionExpression("1 && 2")
+                .consecutiveMatches(2)
+                .build();
+        condition.getMatchState().set(ProgramMatchState.INITIAL.toBuilder().results(0b1).consecutiveCount(1).build());
+
+        when(dynamicService.getConditionMap()).thenReturn(Map.of(programId, condition));
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", new ThresholdDto(), "21001-2", new ThresholdDto()));
+
+        dynamicControlManager.checkConditionMatch(programId, 2, false, LocalTime.now(), LocalTime.now().plusMinutes(1), true, 0L);
+
+        ProgramMatchState state = condition.getMatchState().get();
+        assertEquals(0, state.getConsecutiveCount());
+        assertFalse(state.isMatched());
+        assertEquals(1, state.getTicks());
+        assertNotNull(condition.getCompiledCondition());    // compiled on first use, reused afterwards
+    }
+
+    @Test
+    void testCheckConditionMatch_subResultIsCurrentNotSticky() {
+        String programId = "21001";
+        ConditionDto condition = ConditionDto.builder()
+                .conditionExpression("1 && 2")
+                .consecutiveMatches(3)
+                .build();
+        when(dynamicService.getConditionMap()).thenReturn(Map.of(programId, condition));
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", new ThresholdDto(), "21001-2", new ThresholdDto()));
+        LocalTime start = LocalTime.now();
+
+        dynamicControlManager.checkConditionMatch(programId, 1, true, start, start.plusMinutes(1), true, 0L);
+        dynamicControlManager.checkConditionMatch(programId, 2, true, start, start.plusMinutes(1), true, 0L);
+        assertTrue(condition.getMatchState().get().isMatched());
+        assertEquals(1, condition.getMatchState().get().getConsecutiveCount());
+
+        // sub-condition 1 falls below its threshold on its next tick, the program no longer matches
+        dynamicControlManager.checkConditionMatch(programId, 1, false, start, start.plusMinutes(1), true, 0L);
+        ProgramMatchState state = condition.getMatchState().get();
+        long bit2 = condition.getCompiledCondition().bitOf(2);
+        assertEquals(bit2, state.getResults());
+        assertFalse(state.isMatched());
+        assertEquals(0, state.getConsecutiveCount());
+        assertEquals(3, state.getTicks());
     }
 
     @Test
-    void testEvaluateCondition() {
-        assertTrue(DynamicControlManager.evaluateCondition("5 > 2"));
-        assertFalse(DynamicControlManager.evaluateCondition("1 > 2"));
+    void testCheckConditionMatch_concurrentTicksTriggerOnce() throws Exception {
+        String programId = "21001";
+        ConditionDto condition = ConditionDto.builder()
+                .conditionExpression("1 || 2")
+                .consecutiveMatches(1)
+                .build();
+        when(dynamicService.getConditionMap()).thenReturn(Map.of(programId, condition));
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", new ThresholdDto(), "21001-2", new ThresholdDto()));
+        DynamicControlManager spyManager = spy(dynamicControlManager);
+        doNothing().when(spyManager).dynamicTrigger(anyString(), any(), any(), anyBoolean());
+
+        // every tick matches, after the first trigger the cooldown holds the rest back
+        int threads = 8;
+        int ticksPerThread = 500;
+        LocalTime start = LocalTime.now();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int subId = t % 2 + 1;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < ticksPerThread; i++) {
+                    spyManager.checkConditionMatch(programId, subId, true, start, start.plusMinutes(1), true, 3_600_000L);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) worker.join();
+
+        ProgramMatchState state = condition.getMatchState().get();
+        assertEquals((long) threads * ticksPerThread, state.getTicks());   // no tick lost between racing monitors
+        assertTrue(state.getLastTriggeredTime() > 0);
+        verify(spyManager, times(1)).dynamicTrigger(eq(programId), any(), any(), eq(true));
+    }
+
+    // program "1" whose sub-condition 1 matched on its last tick
+    private static ConditionDto matchedCondition(ThresholdDto threshold) {
+        ConditionDto condition = ConditionDto.builder()
+                .conditionExpression("1")
+                .consecutiveMatches(1)
+                .compiledCondition(CompiledCondition.compile("21001", "1", Map.of("21001-1", threshold)))
+                .build();
+        condition.getMatchState().set(ProgramMatchState.INITIAL.toBuilder().results(1L).matched(true).build());
+        return condition;
     }
 
     @Test
@@ -172,10 +314,230 @@ public class DynamicControlManagerTest {
         when(tcReceiveMessageManager.getValueMap5FC4()).thenReturn(map5FC4);
         when(tcReceiveMessageManager.getValueMap5FC5()).thenReturn(map5FC5);
 
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(dynamicControlManager, "meterRegistry", meterRegistry);
+
         dynamicControlManager.dynamicTrigger(programId, startTime, endTime, isWeekday);
 
         String notify = "Dynamic control applied successfully for TC " + tcInfo.getTcId() + " at ";
-        verify(discordNotifier, atLeastOnce()).sendMessage(contains(notify));
+        verify(notificationDispatcher, atLeastOnce()).dispatch(eq(NotificationType.DYNAMIC_APPLIED), eq(tcInfo.getTcId()), contains(notify));
+
+        // one trace with the whole command sequence of the TC
+        ArgumentCaptor<TriggerTraceDto> captor = ArgumentCaptor.forClass(TriggerTraceDto.class);
+        verify(dynamicTraceService).record(captor.capture());
+        TriggerTraceDto trace = captor.getValue();
+        assertEquals(programId, trace.getProgramId());
+        assertEquals(1, trace.getApplied());
+        assertNotNull(trace.getReactionMillis());
+        TcTraceDto tcTrace = trace.getTcs().getFirst();
+        assertEquals("APPLIED", tcTrace.getResult());
+        assertEquals(List.of("5F10", "5F40", "5F15", "5F45", "5F18"),
+                tcTrace.getCommands().stream().map(CommandTraceDto::getCommand).toList());
+        assertNotNull(tcTrace.getCommands().get(1).getVerifyWaitMillis());
+        assertNull(tcTrace.getCommands().get(0).getVerifyWaitMillis());
+
+        assertEquals(5, meterRegistry.find("dynamic.command").tag("outcome", "success").timers().stream()
+                .mapToLong(Timer::count).sum());
+        assertEquals(1, meterRegistry.get("dynamic.switch.program").tag("program", programId).timer().count());
+        assertEquals(2, meterRegistry.find("dynamic.verify.wait").timers().size());
+    }
+
+    @Test
+    void testDynamicTrigger_fansOutAndWritesSummary() {
+        String programId = "P1";
+        Map<String, Integer> planMap = new LinkedHashMap<>();
+        planMap.put("TC001", 1);
+        planMap.put("TC002", 1);
+        planMap.put("TC003", 2);
+
+        when(dynamicService.getAllDynamicPlanIds(programId, true)).thenReturn(planMap);
+        when(tcInfoRepository.findByTcId(anyString())).thenAnswer(inv -> TcInfo.builder().tcId(inv.getArgument(0)).ip("127.0.0.1").build());
+        when(socketService.isHostConnected(anyString())).thenReturn(false);
+
+        dynamicControlManager.dynamicTrigger(programId, LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        verify(dynamicService, times(3)).saveDynamicLog(eq(programId), anyString(), anyInt(), eq("N"), eq("socket is not connected"));
+        verify(dynamicService).saveDynamicLog(eq(programId), eq("ALL"), eq(0), eq("N"), startsWith("dynamic trigger summary: 0/3 applied, 3 not connected"));
+    }
+
+    @Test
+    void testDynamicTrigger_deadlineExceeded() throws Exception {
+        ReflectionTestUtils.setField(dynamicControlManager, "triggerDeadlineMillis", 200L);
+        String programId = "P1";
+        TcInfo tcInfo = TcInfo.builder().tcId("TC001").ip("127.0.0.1").enable((byte) 1).build();
+
+        when(dynamicService.getAllDynamicPlanIds(programId, true)).thenReturn(Map.of("TC001", 1));
+        when(tcInfoRepository.findByTcId("TC001")).thenReturn(tcInfo);
+        when(tcInfoRepository.findById("TC001")).thenReturn(Optional.of(tcInfo));
+        when(socketService.isHostConnected(anyString())).thenReturn(true);
+        when(tcSendMessageManager.handle5F10Message(any())).thenAnswer(inv -> {
+            Thread.sleep(1000);     // TC does not answer in time
+            return true;
+        });
+
+        long begin = System.currentTimeMillis();
+        dynamicControlManager.dynamicTrigger(programId, LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        assertTrue(System.currentTimeMillis() - begin < 1000);
+        verify(dynamicService).saveDynamicLog(programId, "TC001", 1, "N", "apply dynamic control failed: program deadline exceeded");
+        verify(dynamicService).saveDynamicLog(eq(programId), eq("ALL"), eq(0), eq("N"), contains("1 deadline exceeded"));
+    }
+
+    // every TC connected, enabled and echoing back exactly what was written
+    private void stubHealthyTcs(String programId, String... tcs) throws JSONException {
+        Map<String, Integer> planMap = new LinkedHashMap<>();
+        Map<String, JSONObject> map5FC4 = new ConcurrentHashMap<>();
+        Map<String, JSONObject> map5FC5 = new ConcurrentHashMap<>();
+        for (String tc : tcs) {
+            planMap.put(tc, 1);
+            TcInfo tcInfo = TcInfo.builder().tcId(tc).ip("127.0.0.1").enable((byte) 1).build();
+            lenient().when(tcInfoRepository.findByTcId(tc)).thenReturn(tcInfo);
+            lenient().when(tcInfoRepository.findById(tc)).thenReturn(Optional.of(tcInfo));
+
+            DynamicParameters entry = DynamicParameters.builder()
+                    .id(DynamicParametersId.builder().programId(programId).deviceId(tc).planId(0).subphaseId(1).build())
+                    .phaseOrder("1").cycleTime(60).offset(0).direct(0)
+                    .green(30).pedGreenFlash(5).pedRed(25).yellow(5).allRed(2).minGreen(10).maxGreen(40)
+                    .build();
+            lenient().when(dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId(programId, tc, 1)).thenReturn(List.of(entry));
+
+            map5FC4.put(tc, new JSONObject().put("planId", 0).put("subPhaseCount", 1)
+                    .put("minGreen", new JSONArray(List.of(10))).put("maxGreen", new JSONArray(List.of(40)))
+                    .put("yellow", new JSONArray(List.of(5))).put("allRed", new JSONArray(List.of(2)))
+                    .put("pedGreenFlash", new JSONArray(List.of(5))).put("pedRed", new JSONArray(List.of(25))));
+            map5FC5.put(tc, new JSONObject().put("planId", 0).put("cycleTime", 60).put("direct", 0)
+                    .put("phaseOrder", "1").put("subPhaseCount", 1).put("offset", 0)
+                    .put("green", new JSONArray(List.of(30))));
+        }
+
+        when(dynamicService.getAllDynamicPlanIds(programId, true)).thenReturn(planMap);
+        when(socketService.isHostConnected(anyString())).thenReturn(true);
+        lenient().when(tcSendMessageManager.handle5F10Message(any())).thenReturn(true);
+        lenient().when(tcSendMessageManager.handle5F40Message(any())).thenReturn(true);
+        lenient().when(tcSendMessageManager.handle5F15Message(any())).thenReturn(true);
+        lenient().when(tcSendMessageManager.handle5F45Message(any())).thenReturn(true);
+        lenient().when(tcSendMessageManager.handle5F18Message(any())).thenReturn(true);
+
+        // fresh maps per call, verified entries are removed by the manager
+        lenient().when(tcReceiveMessageManager.getValueMap5FC0()).thenAnswer(inv -> {
+            Map<String, JSONObject> map = new ConcurrentHashMap<>();
+            for (String tc : tcs) {
+                map.put(tc, new JSONObject().put("ControlStrategy", ControlStrategy.Dynamic.getCode()).put("EffectTime", 5));
+            }
+            return map;
+        });
+        lenient().when(tcReceiveMessageManager.getValueMap5FC4()).thenAnswer(inv -> new ConcurrentHashMap<>(map5FC4));
+        lenient().when(tcReceiveMessageManager.getValueMap5FC5()).thenAnswer(inv -> new ConcurrentHashMap<>(map5FC5));
+    }
+
+    @Test
+    void testDynamicTrigger_retryResumesFromFailedStep() throws Exception {
+        stubHealthyTcs("P1", "TC001");
+        Map<String, JSONObject> good5FC5 = tcReceiveMessageManager.getValueMap5FC5();
+        JSONObject wrong = new JSONObject(good5FC5.get("TC001").toString()).put("green", new JSONArray(List.of(99)));
+        AtomicBoolean firstRead = new AtomicBoolean(true);
+        when(tcReceiveMessageManager.getValueMap5FC5()).thenAnswer(inv -> firstRead.getAndSet(false)
+                ? new ConcurrentHashMap<>(Map.of("TC001", wrong))
+                : new ConcurrentHashMap<>(good5FC5));
+
+        dynamicControlManager.dynamicTrigger("P1", LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        // strategy was set and verified once, only the parameters were written and checked again
+        verify(tcSendMessageManager, times(1)).handle5F10Message(any());
+        verify(tcSendMessageManager, times(1)).handle5F40Message(any());
+        verify(tcSendMessageManager, times(2)).handle5F15Message(any());
+        verify(tcSendMessageManager, times(2)).handle5F45Message(any());
+        verify(tcSendMessageManager, times(1)).handle5F18Message(any());
+        verify(dynamicService).saveDynamicLog(eq("P1"), eq("TC001"), eq(1), eq("N"), contains("resume from 5F15"));
+        verify(dynamicService).saveDynamicLog("P1", "TC001", 1, "Y", "apply dynamic control success");
+    }
+
+    @Test
+    void testDynamicTrigger_skipsParameterWriteWhenAlreadyLoaded() throws Exception {
+        stubHealthyTcs("P1", "TC001");
+        JSONObject[] cached = {
+                tcReceiveMessageManager.getValueMap5FC4().get("TC001"),
+                tcReceiveMessageManager.getValueMap5FC5().get("TC001")
+        };
+        when(controllerStateCache.getPlan("TC001", 0)).thenReturn(cached);
+
+        dynamicControlManager.dynamicTrigger("P1", LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        verify(tcSendMessageManager, never()).handle5F15Message(any());
+        verify(tcSendMessageManager, never()).handle5F45Message(any());
+        verify(tcSendMessageManager, times(1)).handle5F18Message(any());
+        verify(dynamicService).saveDynamicLog("P1", "TC001", 1, "Y", "5F15 write plan parameters skipped, controller already runs these parameters");
+        verify(dynamicService).saveDynamicLog("P1", "TC001", 1, "Y", "apply dynamic control success");
+    }
+
+    @Test
+    void testDynamicTrigger_waitsForBackgroundReadOfTheTc() throws Exception {
+        stubHealthyTcs("P1", "TC001");
+        AtomicLong releasedAt = new AtomicLong();
+        AtomicLong sentAt = new AtomicLong();
+        AtomicBoolean heldWhileApplying = new AtomicBoolean();
+        when(tcSendMessageManager.handle5F10Message(any())).thenAnswer(invocation -> {
+            sentAt.set(System.nanoTime());
+            heldWhileApplying.set(tcExchangeLock.isLocked("TC001"));
+            return true;
+        });
+
+        // a background read of TC001 is waiting for its report on another thread
+        CountDownLatch held = new CountDownLatch(1);
+        Thread read = new Thread(() -> {
+            try {
+                tcExchangeLock.lock("TC001");
+                try {
+                    held.countDown();
+                    Thread.sleep(100);
+                } finally {
+                    releasedAt.set(System.nanoTime());
+                    tcExchangeLock.unlock("TC001");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        read.start();
+        held.await();
+
+        dynamicControlManager.dynamicTrigger("P1", LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+        read.join();
+
+        assertTrue(sentAt.get() >= releasedAt.get());
+        assertTrue(heldWhileApplying.get());
+        assertFalse(tcExchangeLock.isLocked("TC001"));
+        verify(dynamicService).saveDynamicLog("P1", "TC001", 1, "Y", "apply dynamic control success");
+    }
+
+    @Test
+    void testStagedTrigger_activatesAllAfterVerification() throws Exception {
+        ReflectionTestUtils.setField(dynamicControlManager, "stagedDeployment", true);
+        ReflectionTestUtils.setField(dynamicControlManager, "stagedMaxFailureRatio", 0.5);
+        stubHealthyTcs("P1", "TC001", "TC002", "TC003");
+
+        dynamicControlManager.dynamicTrigger("P1", LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        verify(tcSendMessageManager, times(3)).handle5F45Message(any());
+        verify(tcSendMessageManager, times(3)).handle5F18Message(any());
+        verify(dynamicService, times(3)).saveDynamicLog(eq("P1"), anyString(), eq(1), eq("Y"), eq("dynamic parameters verified"));
+        verify(dynamicService).saveDynamicLog(eq("P1"), eq("ALL"), eq(0), eq("Y"), startsWith("staged trigger summary: 3/3 applied"));
+    }
+
+    @Test
+    void testStagedTrigger_tooManyFailuresRollsBackProgram() throws Exception {
+        ReflectionTestUtils.setField(dynamicControlManager, "stagedDeployment", true);
+        ReflectionTestUtils.setField(dynamicControlManager, "stagedMaxFailureRatio", 0.0);
+        stubHealthyTcs("P1", "TC001", "TC002");
+        when(tcSendMessageManager.handle5F15Message(any()))
+                .thenAnswer(inv -> !((Command5F15Dto) inv.getArgument(0)).getDeviceId().equals("TC002"));
+
+        dynamicControlManager.dynamicTrigger("P1", LocalTime.of(8, 0), LocalTime.of(9, 0), true);
+
+        verify(tcSendMessageManager, never()).handle5F18Message(any());
+        verify(dynamicService).saveDynamicLog("P1", "TC001", 1, "Y", "5F10 disable dynamic control success");
+        verify(dynamicService).saveDynamicLog("P1", "TC002", 1, "Y", "5F10 disable dynamic control success");
+        verify(dynamicService).saveDynamicLog(eq("P1"), eq("ALL"), eq(0), eq("N"), contains("rolled back to TOD"));
     }
 
     @Test
@@ -196,7 +558,6 @@ public class DynamicControlManagerTest {
                 .carflowDirectionList(List.of("ALL"))
                 .comparisonOperator(">")
                 .thresholdValue(0)
-                .isMatch(false)
                 .build();
 
         Map<String, ThresholdDto> thresholdMap = new HashMap<>();
@@ -209,14 +570,164 @@ public class DynamicControlManagerTest {
 
         // spy 監控 dynamicControlManager
         DynamicControlManager spyManager = spy(dynamicControlManager);
-        doNothing().when(spyManager).checkConditionMatch(any(), any(), any(), anyBoolean(), anyLong());
+        doNothing().when(spyManager).checkConditionMatch(any(), anyInt(), anyBoolean(), any(), any(), anyBoolean(), anyLong());
 
         spyManager.startTrafficCalculation(period, true);
 
         // 等待 scheduler 執行一次
         Thread.sleep(500);
 
-        assertTrue(threshold.getIsMatch()); // totalCarFlow > thresholdValue => match
+        // totalCarFlow > thresholdValue => match
+        verify(spyManager, atLeastOnce()).checkConditionMatch(eq("21001"), eq(1), eq(true), any(), any(), eq(true), anyLong());
+        assertTrue(trafficMonitorScheduler.isActive(period));
+        assertEquals(1, trafficMonitorScheduler.getActiveMonitors().size());
+    }
+
+    @Test
+    void testStartTrafficCalculation_periodEnded_cancelsMonitor() throws Exception {
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(1)
+                .startTime(LocalTime.now().minusMinutes(2))
+                .endTime(LocalTime.now().minusMinutes(1))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+
+        ThresholdDto threshold = ThresholdDto.builder()
+                .timeInterval(1)
+                .comparisonOperator(">")
+                .thresholdValue(0)
+                .build();
+        ConditionDto condition = matchedCondition(threshold);
+
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", threshold));
+        when(dynamicService.getConditionMap()).thenReturn(Map.of("21001", condition));
+        when(dynamicService.isInTrafficPeriod(any(), any())).thenReturn(false);
+
+        dynamicControlManager.startTrafficCalculation(period, true);
+
+        Thread.sleep(500);
+
+        assertFalse(condition.getMatchState().get().isMatch(1L));
+        assertFalse(period.getInSchedule().get());
+        assertFalse(trafficMonitorScheduler.isActive(period));
+        verify(dynamicService, never()).getTotalCarFlow(any(), any(), anyInt());
+    }
+
+    @Test
+    void testStopTrafficCalculation_cancelsMonitorAndReleasesPeriod() {
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(1)
+                .startTime(LocalTime.of(7, 0))
+                .endTime(LocalTime.of(9, 0))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+        ConditionDto condition = matchedCondition(new ThresholdDto());
+        when(dynamicService.getConditionMap()).thenReturn(Map.of("21001", condition));
+        trafficMonitorScheduler.schedule(period, 60_000, () -> {});
+
+        dynamicControlManager.stopTrafficCalculation(period);
+
+        assertFalse(trafficMonitorScheduler.isActive(period));
+        assertFalse(condition.getMatchState().get().isMatch(1L));
+        assertFalse(period.getInSchedule().get());
+    }
+
+    @Test
+    void testStopTrafficCalculation_keepsAdjacentPeriodOfSameSub() {
+        TrafficPeriodDto early = TrafficPeriodDto.builder()
+                .programId("21001").subId(1)
+                .startTime(LocalTime.of(6, 0)).endTime(LocalTime.of(6, 30))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+        TrafficPeriodDto late = early.toBuilder()
+                .startTime(LocalTime.of(6, 30)).endTime(LocalTime.of(9, 0))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+        ConditionDto condition = matchedCondition(new ThresholdDto());
+        when(dynamicService.getConditionMap()).thenReturn(Map.of("21001", condition));
+        trafficMonitorScheduler.schedule(early, 60_000, () -> {});
+        trafficMonitorScheduler.schedule(late, 60_000, () -> {});
+
+        // the end timer of the early period fires after the late one already started
+        dynamicControlManager.stopTrafficCalculation(early);
+
+        assertFalse(trafficMonitorScheduler.isActive(early));
+        assertTrue(trafficMonitorScheduler.isActive(late));
+        assertTrue(condition.getMatchState().get().isMatch(1L));   // still reported by the late period's ticks
+        assertFalse(early.getInSchedule().get());
+        assertTrue(late.getInSchedule().get());
+    }
+
+    @Test
+    void testStartTrafficCalculation_matchesOnForecast() throws Exception {
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(1)
+                .startTime(LocalTime.now().minusMinutes(1))
+                .endTime(LocalTime.now().plusMinutes(1))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+
+        ThresholdDto threshold = ThresholdDto.builder()
+                .timeInterval(1)
+                .cctvList(List.of("CCTV1"))
+                .carflowDirectionList(List.of("ALL", "A-B"))
+                .comparisonOperator(">")
+                .thresholdValue(50)
+                .forecastHorizonMinutes(5)
+                .build();
+
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", threshold));
+        when(dynamicService.isInTrafficPeriod(any(), any())).thenReturn(true);
+        when(dynamicService.getTotalCarFlow(any(), any(), anyInt())).thenReturn(10.0);
+        when(dynamicService.getSegmentCarFlow(any(), any(), anyInt(), any(), any())).thenReturn(10.0);
+        when(dynamicService.getForecastTotalCarFlow(eq("CCTV1"), any(), eq(1), eq(5))).thenReturn(40.0);
+        when(dynamicService.getForecastSegmentCarFlow(eq("CCTV1"), any(), eq(1), eq(5), eq("A"), eq("B"))).thenReturn(20.0);
+
+        DynamicControlManager spyManager = spy(dynamicControlManager);
+        doNothing().when(spyManager).checkConditionMatch(any(), anyInt(), anyBoolean(), any(), any(), anyBoolean(), anyLong());
+
+        spyManager.startTrafficCalculation(period, true);
+
+        Thread.sleep(500);
+
+        // observed 20 is below 50, forecast 60 is above
+        verify(spyManager, atLeastOnce()).checkConditionMatch(eq("21001"), eq(1), eq(true), any(), any(), eq(true), anyLong());
+    }
+
+    @Test
+    void testStartTrafficCalculation_noHorizonComparesObservedOnly() throws Exception {
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(1)
+                .startTime(LocalTime.now().minusMinutes(1))
+                .endTime(LocalTime.now().plusMinutes(1))
+                .inSchedule(new AtomicBoolean(true))
+                .build();
+
+        ThresholdDto threshold = ThresholdDto.builder()
+                .timeInterval(1)
+                .cctvList(List.of("CCTV1"))
+                .carflowDirectionList(List.of("ALL"))
+                .comparisonOperator(">")
+                .thresholdValue(50)
+                .build();
+
+        when(dynamicService.getThresholdMap()).thenReturn(Map.of("21001-1", threshold));
+        when(dynamicService.isInTrafficPeriod(any(), any())).thenReturn(true);
+        when(dynamicService.getTotalCarFlow(any(), any(), anyInt())).thenReturn(10.0);
+
+        DynamicControlManager spyManager = spy(dynamicControlManager);
+        doNothing().when(spyManager).checkConditionMatch(any(), anyInt(), anyBoolean(), any(), any(), anyBoolean(), anyLong());
+
+        spyManager.startTrafficCalculation(period, true);
+
+        Thread.sleep(500);
+
+        verify(spyManager, atLeastOnce()).checkConditionMatch(eq("21001"), eq(1), eq(false), any(), any(), eq(true), anyLong());
+        verify(dynamicService, never()).getForecastTotalCarFlow(any(), any(), anyInt(), anyInt());
     }
 
     @Test
@@ -225,12 +736,9 @@ public class DynamicControlManagerTest {
         ConditionDto condition = ConditionDto.builder()
                 .conditionExpression("1 || 0")
                 .consecutiveMatches(1)
-                .consecutiveCounts(new AtomicInteger(0))
-                .lastTriggeredTime(new AtomicLong(0))
                 .build();
 
         ThresholdDto threshold = new ThresholdDto();
-        threshold.setIsMatch(true);
 
         Map<String, ConditionDto> conditionMap = new HashMap<>();
         conditionMap.put(programId, condition);
@@ -245,9 +753,12 @@ public class DynamicControlManagerTest {
         DynamicControlManager spyManager = spy(dynamicControlManager);
         doNothing().when(spyManager).dynamicTrigger(anyString(), any(), any(), anyBoolean());
 
-        spyManager.checkConditionMatch(programId, LocalTime.now(), LocalTime.now().plusMinutes(1), true, 0L);
+        spyManager.checkConditionMatch(programId, 1, true, LocalTime.now(), LocalTime.now().plusMinutes(1), true, 0L);
 
-        assertEquals(0, condition.getConsecutiveCounts().get()); // should reset after trigger
+        ProgramMatchState state = condition.getMatchState().get();
+        assertEquals(0, state.getConsecutiveCount()); // should reset after trigger
+        assertTrue(state.isTriggered());
+        verify(spyManager, times(1)).dynamicTrigger(eq(programId), any(), any(), eq(true));
     }
 
     @Test
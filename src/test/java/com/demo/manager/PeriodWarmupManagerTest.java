@@ -0,0 +1,191 @@
+package com.demo.manager;
+
+import com.demo.dto.WarmupReportDto;
+import com.demo.model.dynamic.DynamicParameters;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.DynamicPlanCache;
+import com.demo.service.DynamicService;
+import com.demo.service.SocketService;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PeriodWarmupManagerTest {
+    @InjectMocks
+    private PeriodWarmupManager warmupManager;
+
+    @Mock
+    private DynamicService dynamicService;
+
+    @Mock
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Mock
+    private TcInfoRepository tcInfoRepository;
+
+    @Mock
+    private SocketService socketService;
+
+    @Mock
+    private TcSendMessageManager tcSendMessageManager;
+
+    @Mock
+    private TcReceiveMessageManager tcReceiveMessageManager;
+
+    @Mock
+    private ControllerStateCache controllerStateCache;
+
+    private final TcExchangeLock tcExchangeLock = new TcExchangeLock();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(warmupManager, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(warmupManager, "tcExchangeLock", tcExchangeLock);
+        ReflectionTestUtils.setField(warmupManager, "enabled", true);
+        ReflectionTestUtils.setField(warmupManager, "parallelism", 2);
+        ReflectionTestUtils.setField(warmupManager, "readTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(warmupManager, "minIntervalMillis", 60_000L);
+        warmupManager.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        warmupManager.shutdown();
+    }
+
+    private WarmupReportDto awaitReport() throws InterruptedException {
+        for (int i = 0; i < 200 && warmupManager.getReports().isEmpty(); i++) Thread.sleep(10);
+        assertEquals(1, warmupManager.getReports().size());
+        return warmupManager.getReports().getFirst();
+    }
+
+    @Test
+    void testWarmUp_disabledDoesNothing() {
+        ReflectionTestUtils.setField(warmupManager, "enabled", false);
+
+        assertFalse(warmupManager.warmUp("P1", true));
+        verifyNoInteractions(dynamicService, tcSendMessageManager);
+    }
+
+    @Test
+    void testWarmUp_readsStateOfConnectedTcsAndReportsCoverage() throws Exception {
+        Map<String, Integer> tcPlanMap = new LinkedHashMap<>();
+        tcPlanMap.put("TC001", 1);
+        tcPlanMap.put("TC002", 1);
+        when(dynamicPlanCache.isLoaded()).thenReturn(true);
+        when(dynamicService.getAllDynamicPlanIds("P1", true)).thenReturn(tcPlanMap);
+        when(dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId(eq("P1"), anyString(), eq(1)))
+                .thenReturn(List.of(new DynamicParameters()));
+        when(tcInfoRepository.findByTcId("TC001")).thenReturn(TcInfo.builder().tcId("TC001").ip("10.0.0.1").enable((byte) 1).build());
+        when(tcInfoRepository.findByTcId("TC002")).thenReturn(TcInfo.builder().tcId("TC002").ip("10.0.0.2").enable((byte) 1).build());
+        when(socketService.isHostConnected("10.0.0.1")).thenReturn(true);
+        when(socketService.isHostConnected("10.0.0.2")).thenReturn(false);
+
+        // TC001 answers both reads, the replies reach the receive maps and ControllerStateCache
+        JSONObject value5FC0 = new JSONObject().put("ControlStrategy", 1);
+        JSONObject value5FC4 = new JSONObject().put("planId", 0);
+        JSONObject value5FC5 = new JSONObject().put("planId", 0);
+        Map<String, JSONObject> map5FC0 = new ConcurrentHashMap<>(Map.of("TC001", value5FC0));
+        Map<String, JSONObject> map5FC4 = new ConcurrentHashMap<>(Map.of("TC001", value5FC4));
+        Map<String, JSONObject> map5FC5 = new ConcurrentHashMap<>(Map.of("TC001", value5FC5));
+        when(tcSendMessageManager.handle5F40Message(any())).thenReturn(true);
+        when(tcSendMessageManager.handle5F45Message(any())).thenReturn(true);
+        when(controllerStateCache.getStrategy("TC001")).thenReturn(null, value5FC0);
+        when(controllerStateCache.getPlan("TC001", 0)).thenReturn(null, new JSONObject[]{value5FC4, value5FC5});
+        when(tcReceiveMessageManager.getValueMap5FC0()).thenReturn(map5FC0);
+        when(tcReceiveMessageManager.getValueMap5FC4()).thenReturn(map5FC4);
+        when(tcReceiveMessageManager.getValueMap5FC5()).thenReturn(map5FC5);
+
+        assertTrue(warmupManager.warmUp("P1", true));
+        WarmupReportDto report = awaitReport();
+
+        assertEquals(2, report.getTotal());
+        assertEquals(2, report.getParametersLoaded());
+        assertEquals(1, report.getConnected());
+        assertEquals(1, report.getStrategyKnown());
+        assertEquals(1, report.getPlanKnown());
+        assertEquals(1, report.getReady());
+        assertEquals(List.of("TC002: not connected or not enabled"), report.getNotReady());
+        verify(tcSendMessageManager).handle5F45Message(argThat(command -> command.getPlanId() == 0));
+        verify(tcSendMessageManager, never()).handle5F40Message(argThat(command -> command.getDeviceId().equals("TC002")));
+        // the warm-up's replies do not linger for a trigger's verify step
+        assertTrue(map5FC0.isEmpty() && map5FC4.isEmpty() && map5FC5.isEmpty());
+    }
+
+    @Test
+    void testWarmUp_freshCacheSkipsReadsAndProgramRunsOncePerInterval() throws Exception {
+        when(dynamicPlanCache.isLoaded()).thenReturn(true);
+        when(dynamicService.getAllDynamicPlanIds("P1", true)).thenReturn(Map.of("TC001", 1));
+        when(dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId("P1", "TC001", 1)).thenReturn(List.of());
+        when(tcInfoRepository.findByTcId("TC001")).thenReturn(TcInfo.builder().tcId("TC001").ip("10.0.0.1").enable((byte) 1).build());
+        when(socketService.isHostConnected("10.0.0.1")).thenReturn(true);
+        when(controllerStateCache.getStrategy("TC001")).thenReturn(new JSONObject());
+        when(controllerStateCache.getPlan("TC001", 0)).thenReturn(new JSONObject[]{new JSONObject(), new JSONObject()});
+
+        assertTrue(warmupManager.warmUp("P1", true));
+        assertFalse(warmupManager.warmUp("P1", true));   // second sub-condition of the same program
+        WarmupReportDto report = awaitReport();
+
+        assertEquals(0, report.getReady());
+        assertEquals(1, report.getPlanKnown());
+        assertEquals(List.of("TC001: no dynamic parameters"), report.getNotReady());
+        verifyNoInteractions(tcSendMessageManager);
+        verify(dynamicService, times(1)).getAllDynamicPlanIds("P1", true);
+    }
+
+    @Test
+    void testWarmUp_skipsReadsWhileATriggerKeepsTheTcBusy() throws Exception {
+        ReflectionTestUtils.setField(warmupManager, "readTimeoutMillis", 100L);
+        when(dynamicPlanCache.isLoaded()).thenReturn(true);
+        when(dynamicService.getAllDynamicPlanIds("P1", true)).thenReturn(Map.of("TC001", 1));
+        when(dynamicService.getEntriesByProgramIdAndDeviceIdAndPlanId("P1", "TC001", 1)).thenReturn(List.of(new DynamicParameters()));
+        when(tcInfoRepository.findByTcId("TC001")).thenReturn(TcInfo.builder().tcId("TC001").ip("10.0.0.1").enable((byte) 1).build());
+        when(socketService.isHostConnected("10.0.0.1")).thenReturn(true);
+
+        // a trigger applying to TC001 on another thread
+        CountDownLatch held = new CountDownLatch(1);
+        Thread trigger = new Thread(() -> {
+            try {
+                tcExchangeLock.lock("TC001");
+                try {
+                    held.countDown();
+                    Thread.sleep(5_000);
+                } finally {
+                    tcExchangeLock.unlock("TC001");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        trigger.start();
+        held.await();
+
+        assertTrue(warmupManager.warmUp("P1", true));
+        WarmupReportDto report = awaitReport();
+        trigger.interrupt();
+        trigger.join();
+
+        assertEquals(1, report.getConnected());
+        assertEquals(0, report.getStrategyKnown());
+        assertEquals(0, report.getPlanKnown());
+        verifyNoInteractions(tcSendMessageManager);
+    }
+}
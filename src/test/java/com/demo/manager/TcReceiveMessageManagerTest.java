@@ -53,6 +53,12 @@ public class TcReceiveMessageManagerTest {
     @Mock
     private SocketService socketService;
 
+    @Mock
+    private TcStatePublisher tcStatePublisher;
+
+    @Mock
+    private ControllerStateCache controllerStateCache;
+
     @Mock
     private Socket socket;
 
@@ -1,10 +1,13 @@
 package com.demo.manager;
 
+import com.demo.dto.*;
 import com.demo.message.*;
 import com.demo.service.MqttClientService;
+import com.demo.service.MqttPayloadCodec;
 import com.demo.service.SocketService;
 import nl.altindag.log.LogCaptor;
-import org.json.JSONException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
@@ -15,10 +18,12 @@ import com.demo.service.MessageService;
 import com.demo.repository.its.TcInfoRepository;
 
 import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.BufferedOutputStream;
@@ -56,9 +61,24 @@ public class TcSendMessageManagerTest {
     @Mock
     private TcReceiveMessageManager tcReceiveMessageManager;
 
+    @Mock
+    private ControllerStateCache controllerStateCache;
+
     @Mock
     private Socket socket;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private MqttPayloadCodec payloadCodec = new MqttPayloadCodec();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(payloadCodec, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(payloadCodec, "cborMapper", new CBORMapper());
+    }
+
     @Test
     void testRun_all5FxxMessages_success() throws Exception {
         List<String> messageIds = List.of("5F10", "5F15", "5F18", "5F40", "5F45");
@@ -72,22 +92,22 @@ public class TcSendMessageManagerTest {
             msg.put("value", value);
 
             switch (messageId) {
-                case "5F10" -> when(messageService.buildMessage(any(JSONObject.class), eq("5f10")))
+                case "5F10" -> when(messageService.buildMessage(any(TcCommandDto.class), eq("5f10")))
                         .thenReturn(mock(Message5F10.class));
                 case "5F15" -> {
-                    when(messageService.buildMessage(any(JSONObject.class), eq("5f15")))
+                    when(messageService.buildMessage(any(TcCommandDto.class), eq("5f15")))
                             .thenReturn(mock(Message5F15.class));
-                    when(messageService.buildMessage(any(JSONObject.class), eq("5f14")))
+                    when(messageService.buildMessage(any(TcCommandDto.class), eq("5f14")))
                             .thenReturn(mock(Message5F14.class));
                 }
-                case "5F18" -> when(messageService.buildMessage(any(JSONObject.class), eq("5f18")))
+                case "5F18" -> when(messageService.buildMessage(any(TcCommandDto.class), eq("5f18")))
                         .thenReturn(mock(Message5F18.class));
-                case "5F40" -> when(messageService.buildMessage(any(JSONObject.class), eq("5f40")))
+                case "5F40" -> when(messageService.buildMessage(any(TcCommandDto.class), eq("5f40")))
                         .thenReturn(mock(Message5F40.class));
                 case "5F45" -> {
-                    when(messageService.buildMessage(any(JSONObject.class), eq("5f45")))
+                    when(messageService.buildMessage(any(TcCommandDto.class), eq("5f45")))
                             .thenReturn(mock(Message5F45.class));
-                    when(messageService.buildMessage(any(JSONObject.class), eq("5f44")))
+                    when(messageService.buildMessage(any(TcCommandDto.class), eq("5f44")))
                             .thenReturn(mock(Message5F44.class));
                 }
             }
@@ -108,25 +128,83 @@ public class TcSendMessageManagerTest {
             doReturn(false).when(spyManager)
                     .retrySendWithResponse(any(Socket.class), anyList(), anyString(), anyString(), anyString(), anyString());
 
-            spyManager.run(msg.toString());
+            spyManager.run("tc/TC001", msg.toString().getBytes());
 
-            verify(messageService, times(1)).buildMessage(any(JSONObject.class), eq(messageId.toLowerCase()));
+            verify(messageService, times(1)).buildMessage(any(TcCommandDto.class), eq(messageId.toLowerCase()));
             verify(socketService, times(1)).isHostConnected("127.0.0.1");
 
             clearInvocations(messageService, socketService, spyManager);
         }
     }
 
+    @Test
+    void testRun_bindsTypedCommand() {
+        String message = "{\"messageId\":\"5f15\",\"messageTime\":\"2025-08-28T10:00:00+0800\",\"value\":{"
+                + "\"deviceId\":\"TC001\",\"planId\":3,\"direct\":1,\"phaseOrder\":\"b1\",\"subPhaseCount\":1,"
+                + "\"cycleTime\":120,\"offset\":10,\"subPhases\":[{\"subPhaseId\":1,\"green\":30,\"yellow\":3,"
+                + "\"allRed\":2,\"pedGreenFlash\":5,\"pedRed\":3,\"minGreen\":10,\"maxGreen\":60}]}}";
+
+        TcSendMessageManager spyManager = spy(manager);
+        doReturn(true).when(spyManager).handle5F15Message(any(Command5F15Dto.class));
+
+        spyManager.run("tc/TC001", message.getBytes());
+
+        ArgumentCaptor<Command5F15Dto> captor = ArgumentCaptor.forClass(Command5F15Dto.class);
+        verify(spyManager).handle5F15Message(captor.capture());
+
+        Command5F15Dto command = captor.getValue();
+        assertEquals("TC001", command.getDeviceId());
+        assertEquals(3, command.getPlanId());
+        assertEquals("b1", command.getPhaseOrder());
+        assertEquals(1, command.getSubPhases().size());
+        assertEquals(60, command.getSubPhases().getFirst().getMaxGreen());
+        verify(messageService).saveMessageLog(eq("TC001"), eq("5F15"), anyString(), isNull(), isNull(), anyInt());
+    }
+
+    @Test
+    void testRun_bindsCborCommand() throws Exception {
+        String json = "{\"messageId\":\"5F18\",\"value\":{\"deviceId\":\"TC001\",\"planId\":4}}";
+        byte[] cbor = new CBORMapper().writeValueAsBytes(objectMapper.readTree(json));
+
+        TcSendMessageManager spyManager = spy(manager);
+        doReturn(true).when(spyManager).handle5F18Message(any(Command5F18Dto.class));
+
+        spyManager.run("tc/TC001", cbor);
+
+        ArgumentCaptor<Command5F18Dto> captor = ArgumentCaptor.forClass(Command5F18Dto.class);
+        verify(spyManager).handle5F18Message(captor.capture());
+        assertEquals(4, captor.getValue().getPlanId());
+    }
+
+    @Test
+    void testPublish5FC0Message_cborTopic() throws Exception {
+        ReflectionTestUtils.setField(manager, "topic_tc_publish_prefix", "topic/");
+        ReflectionTestUtils.setField(payloadCodec, "cborTopicPrefixes", List.of("topic/"));
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
+
+        manager.publish5FC0Message("TC001", List.of(0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4));
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(mqttClientService).publish(anyInt(), anyBoolean(), eq("topic/TC001"), captor.capture());
+        assertTrue(MqttPayloadCodec.isCbor(captor.getValue()));
+        assertEquals("5FC0", new CBORMapper().readTree(captor.getValue()).get("messageId").asText());
+    }
+
+    @Test
+    void testRun_unknownCommand_ignored() {
+        manager.run("tc/TC001", "{\"messageId\":\"5F99\",\"value\":{\"deviceId\":\"TC001\"}}".getBytes());
+
+        verifyNoInteractions(messageService, socketService);
+    }
+
     @Test
     void testHandle5F10Message_failure() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F10");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC001");
-        msg.put("value", value);
+        Command5F10Dto msg = Command5F10Dto.builder()
+                .deviceId("TC001")
+                .build();
 
         // buildMessage throw exception
-        when(messageService.buildMessage(any(JSONObject.class), eq("5f10"))).thenThrow(new RuntimeException("fail"));
+        when(messageService.buildMessage(any(TcCommandDto.class), eq("5f10"))).thenThrow(new RuntimeException("fail"));
 
         boolean result = manager.handle5F10Message(msg);
 
@@ -135,11 +213,9 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F15Message_success() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F15");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC001");
-        msg.put("value", value);
+        Command5F15Dto msg = Command5F15Dto.builder()
+                .deviceId("TC001")
+                .build();
 
         Message5F14 msg14 = mock(Message5F14.class);
         Message5F15 msg15 = mock(Message5F15.class);
@@ -155,11 +231,9 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F15Message_failureOnFirstSend() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F15");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC001");
-        msg.put("value", value);
+        Command5F15Dto msg = Command5F15Dto.builder()
+                .deviceId("TC001")
+                .build();
 
         Message5F14 msg14 = mock(Message5F14.class);
         Message5F15 msg15 = mock(Message5F15.class);
@@ -175,25 +249,21 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F15Message_exception() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F15");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC003");
-        msg.put("value", value);
+        Command5F15Dto msg = Command5F15Dto.builder()
+                .deviceId("TC003")
+                .build();
 
-        when(messageService.buildMessage(any(), eq("5f15"))).thenThrow(new RuntimeException("fail"));
+        when(messageService.buildMessage(any(), eq("5f14"))).thenThrow(new RuntimeException("fail"));
 
-        boolean result = manager.handle5F18Message(msg);
+        boolean result = manager.handle5F15Message(msg);
         assertFalse(result);
     }
 
     @Test
     void testHandle5F18Message_success() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F18");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC002");
-        msg.put("value", value);
+        Command5F18Dto msg = Command5F18Dto.builder()
+                .deviceId("TC002")
+                .build();
 
         Message5F18 msgObj = mock(Message5F18.class);
         when(messageService.buildMessage(any(), eq("5f18"))).thenReturn(msgObj);
@@ -207,11 +277,9 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F18Message_failureOnFirstSend() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F18");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC002");
-        msg.put("value", value);
+        Command5F18Dto msg = Command5F18Dto.builder()
+                .deviceId("TC002")
+                .build();
 
         Message5F18 msgObj = mock(Message5F18.class);
         when(messageService.buildMessage(any(), eq("5f18"))).thenReturn(msgObj);
@@ -225,11 +293,9 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F18Message_exception() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F18");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC003");
-        msg.put("value", value);
+        Command5F18Dto msg = Command5F18Dto.builder()
+                .deviceId("TC003")
+                .build();
 
         when(messageService.buildMessage(any(), eq("5f18"))).thenThrow(new RuntimeException("fail"));
 
@@ -239,11 +305,9 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F40Message_exception() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F40");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC003");
-        msg.put("value", value);
+        Command5F40Dto msg = Command5F40Dto.builder()
+                .deviceId("TC003")
+                .build();
 
         when(messageService.buildMessage(any(), eq("5f40"))).thenThrow(new RuntimeException("fail"));
 
@@ -253,12 +317,10 @@ public class TcSendMessageManagerTest {
 
     @Test
     void testHandle5F45Message_success() throws Exception {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F45");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC004");
-        value.put("planId", 2);
-        msg.put("value", value);
+        Command5F45Dto msg = Command5F45Dto.builder()
+                .deviceId("TC004")
+                .planId(2)
+                .build();
 
         Message5F44 msg44 = mock(Message5F44.class);
         Message5F45 msg45 = mock(Message5F45.class);
@@ -274,13 +336,11 @@ public class TcSendMessageManagerTest {
     }
 
     @Test
-    void testHandle5F45Message_buildMessageThrows() throws JSONException {
-        JSONObject msg = new JSONObject();
-        msg.put("messageId", "5F45");
-        JSONObject value = new JSONObject();
-        value.put("deviceId", "TC004");
-        value.put("planId", 3);
-        msg.put("value", value);
+    void testHandle5F45Message_buildMessageThrows() {
+        Command5F45Dto msg = Command5F45Dto.builder()
+                .deviceId("TC004")
+                .planId(3)
+                .build();
 
         when(messageService.buildMessage(any(), anyString())).thenThrow(new RuntimeException("error"));
         boolean result = manager.handle5F45Message(msg);
@@ -365,35 +425,35 @@ public class TcSendMessageManagerTest {
     @Test
     void testPublish5FC0Message_success() {
         ReflectionTestUtils.setField(manager, "topic_tc_publish_prefix", "topic/");
-        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), anyString())).thenReturn(true);
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
 
         manager.publish5FC0Message("TC001", List.of(0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4));
-        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("topic/TC001"), anyString());
+        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("topic/TC001"), any(byte[].class));
     }
 
     @Test
     void testPublish0F80or0F81Message_with0F80() {
         ReflectionTestUtils.setField(manager, "topic_tc_publish_prefix", "prefix/");
-        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), anyString())).thenReturn(true);
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
 
         List<Integer> message = List.of(0, 0, 0, 0, 0, 0, 0, 0x0F, 0x80, 0x5F, 0x10);
         manager.publish0F80or0F81Message("TC001", message);
-        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("prefix/TC001"), anyString());
+        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("prefix/TC001"), any(byte[].class));
     }
 
     @Test
     void testPublish0F80or0F81Message_with0F81() {
         ReflectionTestUtils.setField(manager, "topic_tc_publish_prefix", "prefix/");
-        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), anyString())).thenReturn(true);
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
 
         List<Integer> message = List.of(0, 0, 0, 0, 0, 0, 0, 0x0F, 0x81, 0x5F, 0x14, 0xCC, 0xDD);
         manager.publish0F80or0F81Message("TC001", message);
-        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("prefix/TC001"), anyString());
+        verify(mqttClientService).publish(anyInt(), anyBoolean(), contains("prefix/TC001"), any(byte[].class));
 
-        ArgumentCaptor<String> jsonCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> jsonCaptor = ArgumentCaptor.forClass(byte[].class);
         Mockito.verify(mqttClientService).publish(Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyString(), jsonCaptor.capture());
 
-        String jsonStr = jsonCaptor.getValue();
+        String jsonStr = new String(jsonCaptor.getValue());
         assertTrue(jsonStr.contains("\"errorCode\":\"cc\""));          // resData.substring(8,10)
         assertTrue(jsonStr.contains("\"parameterNumber\":\"dd\""));    // resData.substring(10,12)
         assertTrue(jsonStr.contains("\"messageId\":\"0F81\""));
@@ -402,7 +462,7 @@ public class TcSendMessageManagerTest {
     @Test
     void testPublish0F80or0F81Message_exception() {
         ReflectionTestUtils.setField(manager, "topic_tc_publish_prefix", "prefix/");
-        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), anyString())).thenThrow(new RuntimeException("fail"));
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenThrow(new RuntimeException("fail"));
 
         List<Integer> message = List.of(0, 0, 0, 0, 0, 0, 0, 0x0F, 0x81, 0x5F, 0x14, 0xCC, 0xDD);
 
@@ -0,0 +1,130 @@
+package com.demo.manager;
+
+import com.demo.dto.TcPlanStateDto;
+import com.demo.model.its.TcInfo;
+import com.demo.repository.its.TcInfoRepository;
+import com.demo.service.MqttClientService;
+import com.demo.service.MqttPayloadCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TcStatePublisherTest {
+    @InjectMocks
+    private TcStatePublisher publisher;
+
+    @Mock
+    private TcInfoRepository tcInfoRepository;
+
+    @Mock
+    private MqttClientService mqttClientService;
+
+    @Spy
+    private MqttPayloadCodec payloadCodec = new MqttPayloadCodec();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(payloadCodec, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(payloadCodec, "cborMapper", new CBORMapper());
+        ReflectionTestUtils.setField(publisher, "enabled", true);
+        ReflectionTestUtils.setField(publisher, "topic_state_prefix", "state/");
+        ReflectionTestUtils.setField(publisher, "minIntervalMillis", 0L);
+        publisher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void testDisabled_startsNoThreadAndPublishesNothing() {
+        publisher.shutdown();
+        ReflectionTestUtils.setField(publisher, "enabled", false);
+        ReflectionTestUtils.setField(publisher, "scheduler", null);
+        publisher.init();
+
+        publisher.on5FC0("TC001", 6, 5);
+        publisher.onConnectionChanged("10.0.0.1", true);
+
+        assertNull(ReflectionTestUtils.getField(publisher, "scheduler"));
+        assertNull(publisher.getState("TC001"));
+        verifyNoInteractions(tcInfoRepository, mqttClientService);
+    }
+
+    @Test
+    void testOn5FC0_publishesOnlyChanges() throws Exception {
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
+
+        publisher.on5FC0("TC001", 6, 5);
+        verify(mqttClientService, timeout(1000).times(1)).publish(eq(1), eq(true), eq("state/TC001"), any(byte[].class));
+
+        // same state again, nothing to publish
+        publisher.on5FC0("TC001", 6, 5);
+        Thread.sleep(200);
+        verify(mqttClientService, times(1)).publish(anyInt(), anyBoolean(), anyString(), any(byte[].class));
+
+        publisher.on5FC0("TC001", 5, 5);
+        verify(mqttClientService, timeout(1000).times(2)).publish(eq(1), eq(true), eq("state/TC001"), any(byte[].class));
+    }
+
+    @Test
+    void testPlanParts_coalescedWithinInterval() throws Exception {
+        ReflectionTestUtils.setField(publisher, "minIntervalMillis", 300L);
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
+
+        publisher.on5FC0("TC001", 6, 5);
+        verify(mqttClientService, timeout(1000).times(1)).publish(anyInt(), anyBoolean(), anyString(), any(byte[].class));
+
+        publisher.on5FC4("TC001", TcPlanStateDto.builder().planId(0).subPhaseCount(1).minGreen(List.of(10)).build());
+        publisher.on5FC5("TC001", TcPlanStateDto.builder().planId(0).subPhaseCount(1).green(List.of(30)).build());
+
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(mqttClientService, timeout(1500).times(2)).publish(anyInt(), anyBoolean(), anyString(), payload.capture());
+
+        String last = new String(payload.getAllValues().get(1));
+        assertTrue(last.contains("\"minGreen\":[10]"));
+        assertTrue(last.contains("\"green\":[30]"));
+    }
+
+    @Test
+    void testOnConnectionChanged_resolvesDevice() {
+        TcInfo tcInfo = new TcInfo();
+        tcInfo.setTcId("TC002");
+        when(tcInfoRepository.findByIp("10.0.0.2")).thenReturn(tcInfo);
+        when(mqttClientService.publish(anyInt(), anyBoolean(), anyString(), any(byte[].class))).thenReturn(true);
+
+        publisher.onConnectionChanged("10.0.0.2", false);
+
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(mqttClientService, timeout(1000)).publish(eq(1), eq(true), eq("state/TC002"), payload.capture());
+        assertTrue(new String(payload.getValue()).contains("\"connected\":false"));
+        assertFalse(publisher.getState("TC002").getConnected());
+    }
+
+    @Test
+    void testDisabled_noPublish() {
+        ReflectionTestUtils.setField(publisher, "enabled", false);
+
+        publisher.on5FC0("TC001", 6, 5);
+
+        assertNull(publisher.getState("TC001"));
+        verifyNoInteractions(mqttClientService);
+    }
+}
@@ -0,0 +1,188 @@
+package com.demo.manager;
+
+import com.demo.dto.TrafficMonitorDto;
+import com.demo.dto.TrafficPeriodDto;
+import com.demo.util.SimulationClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrafficMonitorSchedulerTest {
+    private TrafficMonitorScheduler scheduler;
+
+    @BeforeEach
+    void setup() {
+        scheduler = new TrafficMonitorScheduler();
+        ReflectionTestUtils.setField(scheduler, "timerThreads", 1);
+        ReflectionTestUtils.setField(scheduler, "workerThreads", 2);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 10);
+        ReflectionTestUtils.setField(scheduler, "clock", Clock.systemDefaultZone());
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private static TrafficPeriodDto period(String programId, int subId, int startHour, int endHour) {
+        return TrafficPeriodDto.builder()
+                .programId(programId)
+                .subId(subId)
+                .startTime(LocalTime.of(startHour, 0))
+                .endTime(LocalTime.of(endHour, 0))
+                .build();
+    }
+
+    @Test
+    void testSchedule_firstTickImmediate() throws Exception {
+        TrafficPeriodDto period = period("21001", 1, 7, 9);
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(period, 60_000, latch::countDown);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.isActive(period));
+        assertTrue(scheduler.isMonitored("21001", 1));
+    }
+
+    @Test
+    void testSchedule_repeatsOnWorkerThread() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+        StringBuilder threadName = new StringBuilder();
+        scheduler.schedule(period("21001", 1, 7, 9), 20, () -> {
+            if (threadName.isEmpty()) threadName.append(Thread.currentThread().getName());
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(threadName.toString().startsWith("traffic-monitor-worker-"));
+    }
+
+    @Test
+    void testCancel_stopsTicks() throws Exception {
+        TrafficPeriodDto period = period("21001", 1, 7, 9);
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule(period, 20, runs::incrementAndGet);
+        Thread.sleep(100);
+
+        assertTrue(scheduler.cancel(period));
+        Thread.sleep(50);
+        int afterCancel = runs.get();
+        Thread.sleep(100);
+
+        assertEquals(afterCancel, runs.get());
+        assertFalse(scheduler.isActive(period));
+        assertFalse(scheduler.isMonitored("21001", 1));
+        assertFalse(scheduler.cancel(period));
+    }
+
+    @Test
+    void testSchedule_replacesExistingMonitor() throws Exception {
+        AtomicInteger oldRuns = new AtomicInteger();
+        TrafficPeriodDto period = period("21001", 1, 7, 9);
+        scheduler.schedule(period, 20, oldRuns::incrementAndGet);
+        Thread.sleep(50);
+
+        scheduler.schedule(period, 60_000, () -> { });
+        Thread.sleep(50);
+        int afterReplace = oldRuns.get();
+        Thread.sleep(100);
+
+        assertEquals(afterReplace, oldRuns.get());
+        assertEquals(1, scheduler.getActiveMonitors().size());
+    }
+
+    @Test
+    void testPeriodsOfOneSub_haveTheirOwnMonitors() {
+        TrafficPeriodDto morning = period("21001", 1, 6, 9);
+        TrafficPeriodDto noon = period("21001", 1, 9, 12);
+        scheduler.schedule(morning, 60_000, () -> { });
+        scheduler.schedule(noon, 60_000, () -> { });
+        assertEquals(2, scheduler.getActiveMonitors().size());
+
+        // a late stop of the morning period leaves the noon monitor running
+        assertTrue(scheduler.cancel(morning));
+        assertFalse(scheduler.cancel(morning));
+        assertTrue(scheduler.isActive(noon));
+        assertTrue(scheduler.isMonitored("21001", 1));
+
+        // a removed period object with the same times does not stop the monitor of the one replacing it
+        TrafficPeriodDto reloaded = period("21001", 1, 9, 12);
+        scheduler.schedule(reloaded, 60_000, () -> { });
+        assertFalse(scheduler.cancel(noon));
+        assertTrue(scheduler.isActive(reloaded));
+        assertFalse(scheduler.isActive(noon));
+    }
+
+    @Test
+    void testSlowTick_skippedNotStacked() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule(period("21001", 1, 7, 9), 10, () -> {
+            runs.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+
+        TrafficMonitorDto monitor = scheduler.getActiveMonitors().getFirst();
+        assertEquals(1, runs.get());
+        assertTrue(monitor.getRunning());
+        assertTrue(monitor.getSkipped() > 0);
+        release.countDown();
+    }
+
+    @Test
+    void testGetActiveMonitors_reportsNextFireTime() {
+        scheduler.schedule(period("21002", 2, 7, 9), 60_000, () -> { });
+        scheduler.schedule(period("21001", 1, 7, 9), 60_000, () -> { });
+
+        List<TrafficMonitorDto> monitors = scheduler.getActiveMonitors();
+
+        assertEquals(2, monitors.size());
+        assertEquals("21001-1-0700-0900", monitors.get(0).getKey());
+        assertEquals(60_000L, monitors.get(0).getIntervalMillis());
+        assertNotNull(monitors.get(0).getNextFireTime());
+        assertTrue(monitors.get(0).getNextFireTime().isBefore(LocalDateTime.now().plusMinutes(2)));
+    }
+
+    @Test
+    void testSimulationClock_ticksOnlyWhenRunDue() {
+        LocalDateTime start = LocalDateTime.of(2025, 6, 2, 8, 0);
+        SimulationClock clock = new SimulationClock(start.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        ReflectionTestUtils.setField(scheduler, "clock", clock);
+        AtomicInteger runs = new AtomicInteger();
+
+        TrafficPeriodDto period = period("21001", 1, 8, 9);
+        scheduler.schedule(period, 300_000, runs::incrementAndGet);
+        assertEquals(0, runs.get());
+        assertEquals(clock.millis(), scheduler.nextDueMillis());
+
+        assertEquals(1, scheduler.runDue());
+        assertEquals(0, scheduler.runDue());    // nothing due until the clock moves
+
+        clock.advance(Duration.ofMinutes(12));
+        assertEquals(2, scheduler.runDue());    // 08:05 and 08:10 caught up in order
+        assertEquals(3, runs.get());
+        assertEquals(start.plusMinutes(15), scheduler.getActiveMonitors().getFirst().getNextFireTime());
+
+        scheduler.cancel(period);
+        assertEquals(Long.MAX_VALUE, scheduler.nextDueMillis());
+    }
+}
@@ -0,0 +1,203 @@
+package com.demo.manager;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.dto.TrafficPeriodDto;
+import com.demo.service.DynamicService;
+import com.demo.util.SimulationClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TrafficPeriodSchedulerTest {
+    @InjectMocks
+    private TrafficPeriodScheduler scheduler;
+
+    @Mock
+    private DynamicService dynamicService;
+
+    @Mock
+    private DynamicControlManager dynamicControlManager;
+
+    @Mock
+    private PeriodWarmupManager periodWarmupManager;
+
+    private SimulationClock clock;
+
+    // 2025-06-06 is a Friday
+    private final LocalDateTime friday = LocalDateTime.of(2025, 6, 6, 0, 0);
+
+    @BeforeEach
+    void setup() {
+        clock = new SimulationClock(friday.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        ReflectionTestUtils.setField(scheduler, "clock", clock);
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private static TrafficPeriodDto period(int subId, LocalTime start, LocalTime end) {
+        return TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(subId)
+                .startTime(start)
+                .endTime(end)
+                .inSchedule(new AtomicBoolean(false))
+                .build();
+    }
+
+    private void moveTo(LocalDateTime time) {
+        clock.set(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private LocalDateTime nextDue() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(scheduler.nextDueMillis()), ZoneId.systemDefault());
+    }
+
+    @Test
+    void testNextStart_sameDayAndFridayToMonday() {
+        TrafficPeriodDto morning = period(1, LocalTime.of(7, 0), LocalTime.of(9, 0));
+
+        assertEquals(friday.withHour(7), TrafficPeriodScheduler.nextStart(morning, true, friday));
+        // after Friday's start the next weekday start is Monday, Saturday and Sunday use the weekend list
+        assertEquals(friday.plusDays(3).withHour(7), TrafficPeriodScheduler.nextStart(morning, true, friday.withHour(7)));
+        assertEquals(friday.plusDays(1).withHour(7), TrafficPeriodScheduler.nextStart(morning, false, friday));
+        assertEquals(friday.withHour(9), TrafficPeriodScheduler.endAfter(morning, friday.withHour(7)));
+    }
+
+    @Test
+    void testNextStart_crossMidnight() {
+        TrafficPeriodDto night = period(1, LocalTime.of(22, 0), LocalTime.of(2, 0));
+
+        // Friday evening runs into Saturday and ends there
+        assertEquals(friday.withHour(22), TrafficPeriodScheduler.nextStart(night, true, friday));
+        assertEquals(friday.plusDays(1).withHour(2), TrafficPeriodScheduler.endAfter(night, friday.withHour(22)));
+
+        // the weekday list takes over on Monday, its morning part starts on its own at midnight
+        LocalDateTime monday = friday.plusDays(3);
+        assertEquals(monday, TrafficPeriodScheduler.nextStart(night, true, friday.withHour(22)));
+        assertEquals(monday.withHour(2), TrafficPeriodScheduler.endAfter(night, monday));
+        assertEquals(monday.withHour(22), TrafficPeriodScheduler.nextStart(night, true, monday));
+
+        // the weekend list starts at Saturday midnight, Sunday's morning is covered by Saturday's evening run
+        LocalDateTime saturday = friday.plusDays(1);
+        assertEquals(saturday, TrafficPeriodScheduler.nextStart(night, false, friday));
+        assertEquals(saturday.withHour(22), TrafficPeriodScheduler.nextStart(night, false, saturday));
+        assertEquals(saturday.plusDays(1).withHour(22), TrafficPeriodScheduler.nextStart(night, false, saturday.withHour(22)));
+    }
+
+    @Test
+    void testEndAfter_wholeDayHasNoEnd() {
+        TrafficPeriodDto allDay = period(1, LocalTime.of(6, 0), LocalTime.of(6, 0));
+
+        assertNull(TrafficPeriodScheduler.endAfter(allDay, friday.withHour(6)));
+    }
+
+    @Test
+    void testRunDue_startsAndStopsOnTime() {
+        TrafficPeriodDto morning = period(1, LocalTime.of(7, 0), LocalTime.of(9, 0));
+        doAnswer(invocation -> {
+            morning.getInSchedule().set(false);
+            return null;
+        }).when(dynamicControlManager).stopTrafficCalculation(morning);
+
+        scheduler.arm(new DynamicConfigSnapshot(1, Map.of(), Map.of(), Map.of(true, List.of(morning))));
+        assertEquals(friday.withHour(7), nextDue());
+        assertEquals(0, scheduler.runDue());
+
+        moveTo(friday.withHour(7));
+        assertEquals(1, scheduler.runDue());
+        verify(dynamicControlManager).startTrafficCalculation(morning, true);
+        verify(periodWarmupManager).warmUp("21001", true);
+        assertTrue(morning.getInSchedule().get());
+        assertEquals(friday.withHour(9), nextDue());
+
+        moveTo(friday.withHour(9));
+        assertEquals(1, scheduler.runDue());
+        verify(dynamicControlManager).stopTrafficCalculation(morning);
+        assertFalse(morning.getInSchedule().get());
+        assertEquals(friday.plusDays(3).withHour(7), nextDue());
+    }
+
+    @Test
+    void testArm_startsActivePeriodAndKeepsUnchangedOnes() {
+        TrafficPeriodDto morning = period(1, LocalTime.of(7, 0), LocalTime.of(9, 0));
+        moveTo(friday.withHour(8));
+
+        scheduler.arm(new DynamicConfigSnapshot(1, Map.of(), Map.of(), Map.of(true, List.of(morning))));
+        verify(dynamicControlManager).startTrafficCalculation(morning, true);
+        assertEquals(friday.withHour(9), nextDue());
+
+        // the same period object carried into the next version keeps running
+        scheduler.arm(new DynamicConfigSnapshot(2, Map.of(), Map.of(), Map.of(true, List.of(morning))));
+        verify(dynamicControlManager, times(1)).startTrafficCalculation(any(), anyBoolean());
+        verify(dynamicControlManager, never()).stopTrafficCalculation(any());
+
+        // removed from the config, its run ends now
+        scheduler.arm(new DynamicConfigSnapshot(3, Map.of(), Map.of(), Map.of()));
+        verify(dynamicControlManager).stopTrafficCalculation(morning);
+        assertEquals(Long.MAX_VALUE, scheduler.nextDueMillis());
+    }
+
+    @Test
+    void testArm_severalPeriodsOfOneSubKeepTheirOwnTimers() {
+        // timeLabel "平日0600-0630,平日0900-1230" gives sub-condition 1 two weekday periods
+        TrafficPeriodDto early = period(1, LocalTime.of(6, 0), LocalTime.of(6, 30));
+        TrafficPeriodDto late = period(1, LocalTime.of(9, 0), LocalTime.of(12, 30));
+        doAnswer(invocation -> {
+            invocation.<TrafficPeriodDto>getArgument(0).getInSchedule().set(false);
+            return null;
+        }).when(dynamicControlManager).stopTrafficCalculation(any());
+
+        scheduler.arm(new DynamicConfigSnapshot(1, Map.of(), Map.of(), Map.of(true, List.of(early, late))));
+        assertEquals(friday.withHour(6), nextDue());
+
+        moveTo(friday.withHour(9));
+        assertEquals(3, scheduler.runDue());    // early start and stop, late start
+        verify(dynamicControlManager).startTrafficCalculation(early, true);
+        verify(dynamicControlManager).stopTrafficCalculation(early);
+        verify(dynamicControlManager).startTrafficCalculation(late, true);
+
+        // the early period is removed from the config, its timer must not start it again on Monday
+        scheduler.arm(new DynamicConfigSnapshot(2, Map.of(), Map.of(), Map.of(true, List.of(late))));
+        moveTo(friday.withHour(12).withMinute(30));
+        assertEquals(1, scheduler.runDue());
+        verify(dynamicControlManager).stopTrafficCalculation(late);
+        assertEquals(friday.plusDays(3).withHour(9), nextDue());
+
+        // nothing left behind once the config is empty
+        scheduler.arm(new DynamicConfigSnapshot(3, Map.of(), Map.of(), Map.of()));
+        assertEquals(Long.MAX_VALUE, scheduler.nextDueMillis());
+        verify(dynamicControlManager, times(1)).startTrafficCalculation(early, true);
+    }
+
+    @Test
+    void testOnReady_armsLiveConfig() {
+        TrafficPeriodDto morning = period(1, LocalTime.of(7, 0), LocalTime.of(9, 0));
+        when(dynamicService.getConfig()).thenReturn(new DynamicConfigSnapshot(1, Map.of(), Map.of(), Map.of(true, List.of(morning))));
+
+        scheduler.onReady();
+
+        assertEquals(friday.withHour(7), nextDue());
+        verifyNoInteractions(dynamicControlManager);
+    }
+}
@@ -0,0 +1,111 @@
+package com.demo.notification;
+
+import com.demo.enums.NotificationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationDispatcherTest {
+    @InjectMocks
+    private NotificationDispatcher dispatcher;
+
+    @Mock
+    private NotificationSender notificationSender;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 10);
+        ReflectionTestUtils.setField(dispatcher, "windowMillis", 60_000L);    // flushed manually
+        ReflectionTestUtils.setField(dispatcher, "ratePerMinute", 20);
+        ReflectionTestUtils.setField(dispatcher, "maxRetries", 2);
+        ReflectionTestUtils.setField(dispatcher, "retryBackoffMillis", 0L);
+        dispatcher.init();
+    }
+
+    @Test
+    void testDispatch_doesNotCallSenderOnCallerThread() {
+        dispatcher.dispatch(NotificationType.SYSTEM, null, "System started");
+
+        verifyNoInteractions(notificationSender);
+    }
+
+    @Test
+    void testFlush_singleEventSentAsIs() throws Exception {
+        dispatcher.dispatch(NotificationType.SYSTEM, null, "System started");
+        dispatcher.flush();
+
+        verify(notificationSender).send("System started");
+    }
+
+    @Test
+    void testFlush_coalescesSameType() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.dispatch(NotificationType.TC_DISCONNECTED, "10.0.0." + i, "Connection removed for TC IP: 10.0.0." + i);
+        }
+        dispatcher.dispatch(NotificationType.DYNAMIC_APPLIED, "TC001", "Dynamic control applied successfully for TC TC001");
+
+        dispatcher.flush();
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(notificationSender, times(2)).send(captor.capture());
+        assertTrue(captor.getAllValues().get(0).startsWith("3 TC connections removed: 10.0.0.1, 10.0.0.2, 10.0.0.3"));
+        assertEquals("Dynamic control applied successfully for TC TC001", captor.getAllValues().get(1));
+    }
+
+    @Test
+    void testFlush_retriesThenDrops() throws Exception {
+        doThrow(new IllegalStateException("503")).when(notificationSender).send(anyString());
+        dispatcher.dispatch(NotificationType.SYSTEM, null, "System started");
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.flush();
+        }
+
+        verify(notificationSender, times(3)).send("System started");     // first attempt + 2 retries
+    }
+
+    @Test
+    void testFlush_rateLimitedKeepsPending() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "tokens", 0.0);
+        dispatcher.dispatch(NotificationType.SYSTEM, null, "System started");
+
+        dispatcher.flush();
+        verifyNoInteractions(notificationSender);
+
+        ReflectionTestUtils.setField(dispatcher, "tokens", 1.0);
+        dispatcher.flush();
+        verify(notificationSender).send("System started");
+    }
+
+    @Test
+    void testDispatch_queueFullDrops() {
+        for (int i = 0; i < 15; i++) {
+            dispatcher.dispatch(NotificationType.TC_DISCONNECTED, "ip" + i, "removed " + i);
+        }
+
+        assertEquals(5, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    void testShutdown_sendsWhatIsLeftOnceDespiteRateLimit() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "tokens", 0.0);
+        doThrow(new IllegalStateException("503")).when(notificationSender).send(anyString());
+        dispatcher.dispatch(NotificationType.SYSTEM, null, "System started");
+        dispatcher.dispatch(NotificationType.DYNAMIC_APPLIED, "TC001", "Dynamic control applied successfully for TC TC001");
+
+        dispatcher.shutdown();
+
+        verify(notificationSender).send("System started");
+        verify(notificationSender).send("Dynamic control applied successfully for TC TC001");
+    }
+}
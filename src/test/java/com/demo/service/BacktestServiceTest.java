@@ -0,0 +1,171 @@
+package com.demo.service;
+
+import com.demo.dto.*;
+import com.demo.enums.ComparisonOperator;
+import com.demo.exception.CustomException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BacktestServiceTest {
+    @InjectMocks
+    private BacktestService backtestService;
+
+    @Mock
+    private DynamicService dynamicService;
+
+    @Mock
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    @Spy
+    private CarflowForecaster carflowForecaster = new CarflowForecaster();
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 6, 2);
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(backtestService, "parallelism", 2);
+        ReflectionTestUtils.setField(backtestService, "maxDays", 62);
+    }
+
+    // P1: condition "1", 2 consecutive matches, C1 total over 10 minutes > 50, weekdays 08:00-09:00
+    private void stubConfig() {
+        stubConfig(null);
+    }
+
+    private void stubConfig(Integer forecastHorizonMinutes) {
+        ThresholdDto threshold = ThresholdDto.builder()
+                .cctvList(List.of("C1"))
+                .carflowDirectionList(List.of("ALL"))
+                .timeInterval(10)
+                .comparisonOperator(">")
+                .operator(ComparisonOperator.fromSymbol(">"))
+                .thresholdValue(50)
+                .forecastHorizonMinutes(forecastHorizonMinutes)
+                .build();
+        ConditionDto condition = ConditionDto.builder()
+                .conditionExpression("1")
+                .consecutiveMatches(2)
+                .build();
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("P1")
+                .subId(1)
+                .startTime(LocalTime.of(8, 0))
+                .endTime(LocalTime.of(9, 0))
+                .inSchedule(new AtomicBoolean(false))
+                .build();
+
+        when(dynamicService.getAllDynamicConditions()).thenReturn(List.of());
+        when(dynamicService.getAllDynamicThresholds()).thenReturn(List.of());
+        when(dynamicService.buildDetachedConfig(anyList(), anyList())).thenReturn(new DynamicConfigSnapshot(0,
+                Map.of("P1", condition), Map.of("P1-1", threshold), Map.of(true, List.of(period))));
+    }
+
+    // one row of 100 vehicles starting at each given time
+    private void stubRows(LocalDateTime... startTimes) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (LocalDateTime startTime : startTimes) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getTimestamp("start_time")).thenReturn(Timestamp.valueOf(startTime));
+                when(rs.getString("cctv_id")).thenReturn("C1");
+                when(rs.getString("start_position")).thenReturn("A");
+                when(rs.getString("end_position")).thenReturn("B");
+                when(rs.getDouble("flow")).thenReturn(100.0);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(dynamicJdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testRun_triggersAfterConsecutiveMatchesWithCooldown() {
+        stubConfig();
+        LocalDateTime eight = MONDAY.atTime(8, 0);
+        stubRows(eight, eight.plusMinutes(10), eight.plusMinutes(20), eight.plusMinutes(30), eight.plusMinutes(40), eight.plusMinutes(50));
+
+        BacktestReportDto report = backtestService.run(BacktestRequestDto.builder()
+                .startDate(MONDAY)
+                .endDate(MONDAY.plusDays(6))    // the weekend has no weekday periods
+                .build());
+
+        // ticks 08:00..08:50, the 08:00 window is empty; matches from 08:10 trigger on every second tick
+        BacktestResultDto result = report.getResults().getFirst();
+        assertEquals("P1", result.getProgramId());
+        assertEquals(6 * 5, result.getEvaluations());
+        assertEquals(List.of(eight.plusMinutes(20), eight.plusMinutes(40)), result.getTriggerTimes().subList(0, 2));
+        assertEquals(2, result.getTriggers());
+        assertEquals(6L, report.getRowsLoaded());
+        assertEquals(7, report.getDays());
+        verify(dynamicJdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testRun_forecastMatchesOnlyWithHorizon() {
+        ReflectionTestUtils.setField(carflowForecaster, "enabled", true);
+        ReflectionTestUtils.setField(carflowForecaster, "alpha", 0.3);
+        ReflectionTestUtils.setField(carflowForecaster, "minSamples", 10);
+        ReflectionTestUtils.setField(carflowForecaster, "maxGapMinutes", 30);
+        // a row every minute from 07:00 to 07:49, nothing observed inside the 08:00-09:00 period
+        LocalDateTime seven = MONDAY.atTime(7, 0);
+        LocalDateTime[] rows = new LocalDateTime[50];
+        for (int i = 0; i < rows.length; i++) rows[i] = seven.plusMinutes(i);
+        stubRows(rows);
+        BacktestRequestDto request = BacktestRequestDto.builder().startDate(MONDAY).endDate(MONDAY).build();
+
+        stubConfig();
+        assertEquals(0, backtestService.run(request).getResults().getFirst().getTriggers());
+
+        // 08:00 and 08:10 match on the forecast, from 08:20 the stream is stale
+        stubConfig(10);
+        BacktestResultDto result = backtestService.run(request).getResults().getFirst();
+        assertEquals(List.of(MONDAY.atTime(8, 10)), result.getTriggerTimes());
+    }
+
+    @Test
+    void testRun_programFilterSkipsLoading() {
+        stubConfig();
+
+        BacktestReportDto report = backtestService.run(BacktestRequestDto.builder()
+                .startDate(MONDAY)
+                .endDate(MONDAY)
+                .programIds(List.of("P9"))
+                .build());
+
+        assertTrue(report.getResults().isEmpty());
+        verifyNoInteractions(dynamicJdbcTemplate);
+    }
+
+    @Test
+    void testRun_invalidRange() {
+        BacktestRequestDto reversed = BacktestRequestDto.builder().startDate(MONDAY).endDate(MONDAY.minusDays(1)).build();
+        assertThrows(CustomException.class, () -> backtestService.run(reversed));
+
+        BacktestRequestDto tooLong = BacktestRequestDto.builder().startDate(MONDAY).endDate(MONDAY.plusDays(62)).build();
+        assertThrows(CustomException.class, () -> backtestService.run(tooLong));
+        verifyNoInteractions(dynamicService);
+    }
+}
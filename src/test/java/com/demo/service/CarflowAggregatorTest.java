@@ -0,0 +1,148 @@
+package com.demo.service;
+
+import com.demo.model.dynamic.CctvCarflowInstant;
+import com.demo.repository.dynamic.CctvCarflowInstantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CarflowAggregatorTest {
+    @InjectMocks
+    private CarflowAggregator aggregator;
+
+    @Mock
+    private CctvCarflowInstantRepository cctvCarflowInstantRepository;
+
+    @Mock
+    private CarflowForecaster carflowForecaster;
+
+    private final LocalDateTime now = LocalDateTime.now().withSecond(30).withNano(0);
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(aggregator, "enabled", true);
+        ReflectionTestUtils.setField(aggregator, "retentionMinutes", 60);
+        ReflectionTestUtils.setField(aggregator, "batchSize", 2);
+        ReflectionTestUtils.setField(aggregator, "maxLagMillis", 60_000L);
+        ReflectionTestUtils.setField(aggregator, "clock", clockAt(now));
+    }
+
+    private static Clock clockAt(LocalDateTime time) {
+        return Clock.fixed(time.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+
+    private CctvCarflowInstant row(long id, String cctv, String start, String end, int minutesAgo, double car) {
+        LocalDateTime startTime = now.withSecond(0).minusMinutes(minutesAgo);
+        return CctvCarflowInstant.builder()
+                .id(id)
+                .cctvId(cctv)
+                .startPosition(start)
+                .endPosition(end)
+                .startTime(startTime)
+                .endTime(startTime.plusMinutes(1))
+                .motor(1.0)
+                .car(car)
+                .truck(0.0)
+                .build();
+    }
+
+    @Test
+    void testPoll_pagesUntilShortBatchAndAdvancesWatermark() {
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(eq(0L), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(1, "C1", "A", "B", 3, 10), row(2, "C1", "B", "A", 2, 20)));
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(eq(2L), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(3, "C2", "A", "B", 1, 5)));
+
+        assertEquals(3, aggregator.poll());
+        assertEquals(3L, aggregator.getWatermark());
+        assertTrue(aggregator.canServe(5));
+    }
+
+    @Test
+    void testSums_matchWindowPerCctvAndSegment() {
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(1, "C1", "A", "B", 10, 10), row(2, "C1", "A", "B", 3, 20)))
+                .thenReturn(List.of(row(3, "C1", "B", "A", 1, 30)));
+
+        aggregator.poll();
+
+        // motor(1) + car for each row inside the window
+        assertEquals(21 + 31, aggregator.getTotal("C1", now, 5));
+        assertEquals(11 + 21 + 31, aggregator.getTotal("C1", now, 15));
+        assertEquals(21, aggregator.getSegment("C1", now, 5, "A", "B"));
+        assertEquals(31, aggregator.getSegment("C1", now, 5, "B", "A"));
+        assertEquals(0, aggregator.getTotal("unknown", now, 5));
+    }
+
+    @Test
+    void testCanServe_falseWhenDisabledOrWindowTooLong() {
+        assertFalse(aggregator.canServe(5));    // nothing polled yet
+
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+        aggregator.poll();
+
+        assertTrue(aggregator.canServe(60));
+        assertFalse(aggregator.canServe(61));
+
+        ReflectionTestUtils.setField(aggregator, "enabled", false);
+        assertFalse(aggregator.canServe(5));
+        assertEquals(0, aggregator.poll());
+    }
+
+    @Test
+    void testPoll_failureKeepsWatermark() {
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(anyLong(), any(), any(Pageable.class)))
+                .thenThrow(new RuntimeException("db down"));
+
+        assertEquals(0, aggregator.poll());
+        assertEquals(0L, aggregator.getWatermark());
+        assertFalse(aggregator.canServe(5));
+    }
+
+    @Test
+    void testPoll_feedsForecasterPerCctvAndSegment() {
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(1, "C1", "A", "B", 2, 10)));
+
+        aggregator.poll();
+
+        long minute = CarflowAggregator.epochMinute(now.withSecond(0).minusMinutes(2));
+        verify(carflowForecaster).observe("C1", minute, 11.0);
+        verify(carflowForecaster).observe("C1|A|B", minute, 11.0);
+    }
+
+    @Test
+    void testVirtualClock_loadsAndAgesItsOwnWindow() {
+        LocalDateTime virtual = LocalDateTime.of(2025, 8, 28, 7, 30);
+        ReflectionTestUtils.setField(aggregator, "clock", clockAt(virtual));
+        when(cctvCarflowInstantRepository.findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        aggregator.poll();
+
+        verify(cctvCarflowInstantRepository).findByIdGreaterThanAndStartTimeGreaterThanEqualOrderByIdAsc(
+                eq(0L), eq(virtual.minusMinutes(60)), any(Pageable.class));
+        assertTrue(aggregator.canServe(5));
+
+        // virtual time moved on without a poll
+        ReflectionTestUtils.setField(aggregator, "clock", clockAt(virtual.plusMinutes(2)));
+        assertFalse(aggregator.canServe(5));
+    }
+}
@@ -0,0 +1,68 @@
+package com.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarflowForecasterTest {
+    private CarflowForecaster forecaster;
+
+    @BeforeEach
+    void setup() {
+        forecaster = new CarflowForecaster();
+        ReflectionTestUtils.setField(forecaster, "enabled", true);
+        ReflectionTestUtils.setField(forecaster, "alpha", 0.5);
+        ReflectionTestUtils.setField(forecaster, "beta", 0.0);
+        ReflectionTestUtils.setField(forecaster, "minSamples", 3);
+        ReflectionTestUtils.setField(forecaster, "maxGapMinutes", 10);
+    }
+
+    @Test
+    void testPredict_nullUntilWarmedUp() {
+        forecaster.observe("C1", 100, 10);
+        forecaster.observe("C1", 101, 10);
+        forecaster.observe("C1", 102, 10);
+        assertNull(forecaster.predict("C1", 103, 105));     // two closed minutes
+
+        forecaster.observe("C1", 103, 10);
+        assertEquals(20.0, forecaster.predict("C1", 103, 105), 1e-9);
+        assertNull(forecaster.predict("unknown", 103, 105));
+    }
+
+    @Test
+    void testObserve_sumsRowsOfSameMinuteAndIgnoresLateRows() {
+        for (long m = 100; m < 104; m++) {
+            forecaster.observe("C1", m, 4);
+            forecaster.observe("C1", m, 6);     // second direction of the same minute
+        }
+        forecaster.observe("C1", 101, 50);      // late, minute 101 is closed
+
+        assertEquals(10.0, forecaster.predict("C1", 104, 105), 1e-9);
+    }
+
+    @Test
+    void testObserve_silentMinutesCountAsZeroAndLongGapRestarts() {
+        for (long m = 100; m < 104; m++) forecaster.observe("C1", m, 8);
+        forecaster.observe("C1", 106, 8);       // 104 and 105 carried no flow
+
+        // level 8, then 8 -> 4 -> 2 after the two empty minutes
+        assertEquals(2.0, forecaster.predict("C1", 106, 107), 1e-9);
+
+        forecaster.observe("C1", 130, 8);       // silence longer than max-gap-minutes
+        assertNull(forecaster.predict("C1", 130, 131));
+    }
+
+    @Test
+    void testPredict_staleStreamAndDisabled() {
+        for (long m = 100; m < 105; m++) forecaster.observe("C1", m, 8);
+
+        assertNull(forecaster.predict("C1", 120, 125));     // nothing heard for too long
+
+        ReflectionTestUtils.setField(forecaster, "enabled", false);
+        assertNull(forecaster.predict("C1", 105, 106));
+        forecaster.observe("C2", 100, 1);
+        assertEquals(1, forecaster.getStreamCount());
+    }
+}
@@ -0,0 +1,121 @@
+package com.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CarflowSnapshotServiceTest {
+    @InjectMocks
+    private CarflowSnapshotService snapshotService;
+
+    @Mock
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(snapshotService, "enabled", true);
+        ReflectionTestUtils.setField(snapshotService, "maxAgeMillis", 0L);
+        ReflectionTestUtils.setField(snapshotService, "demandTtlMillis", 3_600_000L);
+    }
+
+    // each row: cctv, start, end, then one sum per requested window
+    private void stubRows(Object[]... rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                lenient().when(rs.getString("cctv_id")).thenReturn((String) row[0]);
+                lenient().when(rs.getString("start_position")).thenReturn((String) row[1]);
+                lenient().when(rs.getString("end_position")).thenReturn((String) row[2]);
+                for (int i = 3; i < row.length; i++) {
+                    lenient().when(rs.getDouble("w" + (i - 3))).thenReturn((Double) row[i]);
+                }
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(dynamicJdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testSegmentsAndTotalsFromOneQuery() {
+        stubRows(new Object[]{"C1", "A", "B", 10.0}, new Object[]{"C1", "B", "A", 5.0});
+
+        assertEquals(10.0, snapshotService.getSegment("C1", now, 5, "A", "B"));
+        assertEquals(5.0, snapshotService.getSegment("C1", now, 5, "B", "A"));
+        assertEquals(15.0, snapshotService.getTotal("C1", now, 5));
+        assertEquals(0.0, snapshotService.getSegment("C1", now, 5, "C", "D"));   // no rows in the window
+
+        verify(dynamicJdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testNewWindow_refreshesWithAllDemandedWindows() {
+        stubRows(new Object[]{"C1", "A", "B", 10.0, 30.0});
+
+        snapshotService.getTotal("C1", now, 5);
+        assertEquals(30.0, snapshotService.getTotal("C1", now, 15));
+        assertEquals(10.0, snapshotService.getTotal("C1", now, 5));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(dynamicJdbcTemplate, times(2)).query(sql.capture(), any(RowCallbackHandler.class), any(Object[].class));
+        assertTrue(sql.getValue().contains("AS w1"));
+        assertTrue(sql.getValue().contains("GROUP BY cctv_id, start_position, end_position"));
+    }
+
+    @Test
+    void testStaleSnapshot_refreshed() {
+        stubRows(new Object[]{"C1", "A", "B", 10.0});
+
+        snapshotService.getTotal("C1", now, 5);
+        snapshotService.getTotal("C1", now.plusMinutes(1), 5);
+
+        verify(dynamicJdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testOtherTick_sharesSnapshotOnlyWithinConfiguredMaxAge() {
+        stubRows(new Object[]{"C1", "A", "B", 10.0});
+
+        snapshotService.getTotal("C1", now, 5);
+        snapshotService.getTotal("C1", now.plusSeconds(10), 5);     // next tick, its own window end
+        verify(dynamicJdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        ReflectionTestUtils.setField(snapshotService, "maxAgeMillis", 30_000L);
+        snapshotService.getTotal("C1", now.plusSeconds(20), 5);
+        verify(dynamicJdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void testQueryFailure_returnsNullForFallback() {
+        doThrow(new RuntimeException("db down"))
+                .when(dynamicJdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        assertNull(snapshotService.getTotal("C1", now, 5));
+    }
+
+    @Test
+    void testDisabled_returnsNull() {
+        ReflectionTestUtils.setField(snapshotService, "enabled", false);
+
+        assertNull(snapshotService.getSegment("C1", now, 5, "A", "B"));
+        verifyNoInteractions(dynamicJdbcTemplate);
+    }
+}
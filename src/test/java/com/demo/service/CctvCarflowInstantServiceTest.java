@@ -17,6 +17,15 @@ public class CctvCarflowInstantServiceTest {
     @Mock
     private CctvCarflowInstantRepository cctvCarflowInstantRepository;
 
+    @Mock
+    private CarflowAggregator carflowAggregator;
+
+    @Mock
+    private CarflowSnapshotService carflowSnapshotService;
+
+    @Mock
+    private DynamicPlanCache dynamicPlanCache;
+
     @InjectMocks
     private DynamicService dynamicService;
 
@@ -26,6 +35,9 @@ public class CctvCarflowInstantServiceTest {
         LocalDateTime endTime = LocalDateTime.now();
         int interval = 5;
 
+        // the batch snapshot has no answer, the per-call query is used
+        Mockito.when(carflowSnapshotService.getTotal(cctvId, endTime, interval)).thenReturn(null);
+
         // Mock the repository return value
         Mockito.when(cctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTime(cctvId, endTime, interval))
                 .thenReturn(150.0);
@@ -49,6 +61,9 @@ public class CctvCarflowInstantServiceTest {
         String startPos = "D";
         String endPos = "A";
 
+        // the batch snapshot has no answer, the per-call query is used
+        Mockito.when(carflowSnapshotService.getSegment(cctvId, endTime, interval, startPos, endPos)).thenReturn(null);
+
         // Mock the repository return value
         Mockito.when(cctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTimeAndStartPositionAndEndPosition(
                         cctvId, endTime, interval, startPos, endPos))
@@ -0,0 +1,159 @@
+package com.demo.service;
+
+import com.demo.model.dynamic.DynamicLog;
+import com.demo.repository.dynamic.DynamicLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DynamicLogWriterTest {
+    @InjectMocks
+    private DynamicLogWriter writer;
+
+    @Mock
+    private JdbcTemplate dynamicJdbcTemplate;
+
+    @Mock
+    private DynamicLogRepository dynamicLogRepository;
+
+    // copies of every batch handed to batchUpdate
+    private final List<List<DynamicLog>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(writer, "async", true);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "capacity", 100);
+        ReflectionTestUtils.setField(writer, "flushMillis", 20L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    private static DynamicLog entry(String tcId) {
+        return DynamicLog.builder()
+                .programId("P1")
+                .tcId(tcId)
+                .planId(1)
+                .status("Y")
+                .message("apply dynamic control for TC")
+                .logTime(LocalDateTime.now())
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordBatches() {
+        when(dynamicJdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> {
+                    batches.add(new ArrayList<>((Collection<DynamicLog>) inv.getArgument(1)));
+                    return new int[0][];
+                });
+    }
+
+    private int rows() {
+        synchronized (batches) {
+            return batches.stream().mapToInt(List::size).sum();
+        }
+    }
+
+    @Test
+    void testWrite_synchronousWhenAsyncDisabled() {
+        ReflectionTestUtils.setField(writer, "async", false);
+        writer.init();
+
+        writer.write(entry("TC001"));
+
+        verify(dynamicLogRepository).save(any(DynamicLog.class));
+        verifyNoInteractions(dynamicJdbcTemplate);
+    }
+
+    @Test
+    void testWrite_batchesOffCallerAndShutdownFlushes() {
+        recordBatches();
+        writer.init();
+
+        for (int i = 0; i < 25; i++) writer.write(entry("TC" + i));
+        writer.shutdown();
+
+        assertEquals(25, rows());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 10));
+        assertEquals(25, writer.getWritten());
+        assertEquals(0, writer.getPending());
+        verifyNoInteractions(dynamicLogRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testWrite_fullBufferWritesOnCaller() throws Exception {
+        ReflectionTestUtils.setField(writer, "capacity", 2);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(dynamicJdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> {
+                    batches.add(new ArrayList<>((Collection<DynamicLog>) inv.getArgument(1)));
+                    if (first.getAndSet(false)) {
+                        writerBusy.countDown();
+                        release.await(5, TimeUnit.SECONDS);     // keep the writer thread stuck in its first batch
+                    }
+                    return new int[0][];
+                });
+        writer.init();
+
+        writer.write(entry("TC1"));
+        assertTrue(writerBusy.await(5, TimeUnit.SECONDS));
+        writer.write(entry("TC2"));
+        writer.write(entry("TC3"));     // buffer now full
+        writer.write(entry("TC4"));     // written by this thread together with the buffered rows
+
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(1).size());
+
+        release.countDown();
+        assertTrue(writer.flush(5_000));
+        assertEquals(4, writer.getWritten());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsert_batchFailureFallsBackToSingleRows() {
+        when(dynamicJdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new RuntimeException("Data too long for column 'tc_id'"));
+        when(dynamicJdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(inv -> {
+            Object tcId = inv.getArgument(2);
+            if ("TC-WAY-TOO-LONG".equals(tcId)) throw new RuntimeException("Data too long for column 'tc_id'");
+            return 1;
+        });
+        writer.init();
+
+        writer.write(entry("TC001"));
+        writer.write(entry("TC-WAY-TOO-LONG"));
+        writer.write(entry("TC002"));
+
+        assertTrue(writer.flush(5_000));
+        assertEquals(2, writer.getWritten());
+        assertEquals(1, writer.getFailed());
+    }
+}
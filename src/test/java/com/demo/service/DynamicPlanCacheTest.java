@@ -0,0 +1,111 @@
+package com.demo.service;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.model.dynamic.DynamicParameters;
+import com.demo.model.dynamic.DynamicParametersId;
+import com.demo.model.dynamic.DynamicPlanid;
+import com.demo.repository.dynamic.DynamicParametersRepository;
+import com.demo.repository.dynamic.DynamicPlanidRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DynamicPlanCacheTest {
+    @InjectMocks
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Mock
+    private DynamicPlanidRepository dynamicPlanidRepository;
+
+    @Mock
+    private DynamicParametersRepository dynamicParametersRepository;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(dynamicPlanCache, "enabled", true);
+    }
+
+    private DynamicPlanid plan(String tcId, String day, String time, int planId) {
+        return DynamicPlanid.builder().programId("P1").tcId(tcId).day(day).time(time).planId(planId).build();
+    }
+
+    private DynamicParameters parameters(String deviceId, int planId, int subphaseId) {
+        return DynamicParameters.builder()
+                .id(DynamicParametersId.builder()
+                        .programId("P1")
+                        .deviceId(deviceId)
+                        .planId(planId)
+                        .subphaseId(subphaseId)
+                        .build())
+                .build();
+    }
+
+    @Test
+    void testGetPlanIds_resolvesByDayTypeAndTime() {
+        when(dynamicPlanidRepository.findAll()).thenReturn(List.of(
+                plan("TC001", "平日", "0000-0630", 1),
+                plan("TC001", "平日", "0630-2200", 2),
+                plan("TC002", "平日", "2200-0630", 3),
+                plan("TC001", "假日", "0000-2359", 4)));
+        when(dynamicParametersRepository.findAll()).thenReturn(List.of());
+
+        dynamicPlanCache.refresh();
+
+        assertTrue(dynamicPlanCache.isLoaded());
+        assertEquals(Map.of("TC001", 1, "TC002", 3), dynamicPlanCache.getPlanIds("P1", true, LocalTime.of(6, 0)));
+        assertEquals(Map.of("TC001", 2), dynamicPlanCache.getPlanIds("P1", true, LocalTime.of(6, 30)));
+        assertEquals(Map.of("TC001", 4), dynamicPlanCache.getPlanIds("P1", false, LocalTime.of(6, 30)));
+        assertTrue(dynamicPlanCache.getPlanIds("P2", true, LocalTime.of(6, 30)).isEmpty());
+        assertEquals(List.of(1, 2, 4), List.copyOf(dynamicPlanCache.getPlanIdsOfTc("TC001")));
+        assertTrue(dynamicPlanCache.getPlanIdsOfTc("TC009").isEmpty());
+    }
+
+    @Test
+    void testGetParameters_groupedAndOrderedBySubphase() {
+        when(dynamicPlanidRepository.findAll()).thenReturn(List.of());
+        when(dynamicParametersRepository.findAll()).thenReturn(List.of(
+                parameters("TC001", 1, 2), parameters("TC001", 1, 1), parameters("TC002", 1, 1)));
+
+        dynamicPlanCache.refresh();
+
+        List<DynamicParameters> rows = dynamicPlanCache.getParameters("P1", "TC001", 1);
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).getId().getSubphaseId());
+        assertEquals(2, rows.get(1).getId().getSubphaseId());
+        assertTrue(dynamicPlanCache.getParameters("P1", "TC001", 9).isEmpty());
+    }
+
+    @Test
+    void testRefreshFailure_notLoaded() {
+        when(dynamicPlanidRepository.findAll()).thenThrow(new RuntimeException("db down"));
+
+        dynamicPlanCache.refresh();
+
+        assertFalse(dynamicPlanCache.isLoaded());
+    }
+
+    @Test
+    void testConfigChange_reloadsPlans() {
+        when(dynamicPlanidRepository.findAll()).thenReturn(
+                List.of(plan("TC001", "平日", "0000-2359", 1)),
+                List.of(plan("TC001", "平日", "0000-2359", 2)));
+        when(dynamicParametersRepository.findAll()).thenReturn(List.of());
+        dynamicPlanCache.onReady();
+
+        dynamicPlanCache.onConfigChanged(DynamicConfigSnapshot.EMPTY);
+
+        assertEquals(Map.of("TC001", 2), dynamicPlanCache.getPlanIds("P1", true, LocalTime.of(8, 0)));
+    }
+}
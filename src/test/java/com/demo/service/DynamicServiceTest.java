@@ -1,19 +1,25 @@
 package com.demo.service;
 
+import com.demo.dto.ProgramMatchState;
 import com.demo.dto.ThresholdDto;
 import com.demo.exception.CustomException;
 import com.demo.model.dynamic.*;
 import com.demo.repository.dynamic.*;
+import com.demo.util.CompiledCondition;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,7 +39,7 @@ public class DynamicServiceTest {
     private DynamicThresholdRepository dynamicThresholdRepository;
 
     @Mock
-    private DynamicLogRepository dynamicLogRepository;
+    private DynamicLogWriter dynamicLogWriter;
 
     @Mock
     private DynamicConditionRepository dynamicConditionRepository;
@@ -41,6 +47,62 @@ public class DynamicServiceTest {
     @Mock
     private DynamicPlanidRepository dynamicPlanidRepository;
 
+    @Mock
+    private CarflowAggregator carflowAggregator;
+
+    @Mock
+    private CarflowSnapshotService carflowSnapshotService;
+
+    @Mock
+    private DynamicPlanCache dynamicPlanCache;
+
+    @Mock
+    private CarflowForecaster carflowForecaster;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(dynamicService, "clock", Clock.systemDefaultZone());
+        ReflectionTestUtils.setField(dynamicService, "eventPublisher", (ApplicationEventPublisher) event -> {});
+    }
+
+    @Test
+    void testGetTotalCarFlow_servedFromAggregator() {
+        LocalDateTime endTime = LocalDateTime.now();
+        when(carflowAggregator.canServe(5)).thenReturn(true);
+        when(carflowAggregator.getTotal("CCTV1", endTime, 5)).thenReturn(42.0);
+
+        assertEquals(42.0, dynamicService.getTotalCarFlow("CCTV1", endTime, 5));
+        verifyNoInteractions(cctvCarflowInstantRepository);
+    }
+
+    @Test
+    void testGetSegmentCarFlow_servedFromBatchSnapshot() {
+        LocalDateTime endTime = LocalDateTime.now();
+        when(carflowSnapshotService.getSegment("CCTV1", endTime, 5, "A", "B")).thenReturn(7.0);
+
+        assertEquals(7.0, dynamicService.getSegmentCarFlow("CCTV1", endTime, 5, "A", "B"));
+        verifyNoInteractions(cctvCarflowInstantRepository);
+    }
+
+    @Test
+    void testGetForecastCarFlow_observedTailPlusForecast() {
+        LocalDateTime endTime = LocalDateTime.of(2025, 7, 1, 8, 0, 30);
+        long minute = CarflowAggregator.epochMinute(endTime);
+        when(carflowAggregator.canServe(5)).thenReturn(true);
+        when(carflowAggregator.getSegment("CCTV1", endTime, 5, "A", "B")).thenReturn(30.0);
+        when(carflowForecaster.predict("CCTV1|A|B", minute, minute + 5)).thenReturn(25.0);
+
+        // 10-minute window ending 5 minutes from now: 5 observed minutes and 5 forecast ones
+        assertEquals(55.0, dynamicService.getForecastSegmentCarFlow("CCTV1", endTime, 10, 5, "A", "B"));
+
+        // horizon beyond the window, nothing observed is left in it
+        when(carflowForecaster.predict("CCTV1", minute + 10, minute + 15)).thenReturn(40.0);
+        assertEquals(40.0, dynamicService.getForecastTotalCarFlow("CCTV1", endTime, 5, 15));
+
+        when(carflowForecaster.predict("CCTV2", minute, minute + 5)).thenReturn(null);
+        assertNull(dynamicService.getForecastTotalCarFlow("CCTV2", endTime, 10, 5));
+    }
+
 
     @Test
     void testGetTotalCarFlow() {
@@ -48,6 +110,9 @@ public class DynamicServiceTest {
         LocalDateTime endTime = LocalDateTime.now();
         int interval = 5;
 
+        // the batch snapshot has no answer, the per-call query is used
+        when(carflowSnapshotService.getTotal(cctvId, endTime, interval)).thenReturn(null);
+
         // Mock the repository return value
         when(cctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTime(cctvId, endTime, interval))
                 .thenReturn(150.0);
@@ -71,6 +136,9 @@ public class DynamicServiceTest {
         String startPos = "D";
         String endPos = "A";
 
+        // the batch snapshot has no answer, the per-call query is used
+        when(carflowSnapshotService.getSegment(cctvId, endTime, interval, startPos, endPos)).thenReturn(null);
+
         // Mock the repository return value
         when(cctvCarflowInstantRepository.findCarflowSumByCctvIdAndEndTimeAndStartPositionAndEndPosition(
                 cctvId, endTime, interval, startPos, endPos))
@@ -131,6 +199,87 @@ public class DynamicServiceTest {
         ThresholdDto dto = dynamicService.getThresholdMap().get(key);
         assertEquals(List.of("CCTV-1", "CCTV-2"), dto.getCctvList());
         assertEquals(List.of("A-D", "C-B"), dto.getCarflowDirectionList());
+
+        assertEquals(1, dynamicService.getActiveTrafficPeriods(true, LocalTime.of(6, 15)).size());
+        assertTrue(dynamicService.getActiveTrafficPeriods(true, LocalTime.of(6, 30)).isEmpty());
+        assertTrue(dynamicService.getActiveTrafficPeriods(false, LocalTime.of(6, 15)).isEmpty());
+    }
+
+    private DynamicThreshold threshold(String programId, int subId, String timeLabel, int value) {
+        DynamicThreshold threshold = new DynamicThreshold();
+        threshold.setId(new DynamicThresholdId(programId, subId));
+        threshold.setTimeLabel(timeLabel);
+        threshold.setCctvId("CCTV-1");
+        threshold.setCarflowDirection("ALL");
+        threshold.setTimeInterval(5);
+        threshold.setComparisonOperator(">");
+        threshold.setThresholdValue(value);
+        return threshold;
+    }
+
+    private DynamicCondition condition(String programId, String expression, int consecutiveMatches) {
+        DynamicCondition condition = new DynamicCondition();
+        condition.setProgramId(programId);
+        condition.setConditionExpression(expression);
+        condition.setConsecutiveMatches(consecutiveMatches);
+        return condition;
+    }
+
+    @Test
+    void testReloadDynamicConfig_carriesLiveStateForUnchangedEntries() {
+        dynamicService.reloadDynamicConfig(
+                List.of(condition("P1", "1 && 2", 2), condition("P2", "1", 1)),
+                List.of(threshold("P1", 1, "平日0600-0630", 100), threshold("P1", 2, "平日0600-0630", 50),
+                        threshold("P2", 1, "假日1200-1230", 10)));
+        long version = dynamicService.getConfig().getVersion();
+
+        // state the running monitors build up
+        long bit1 = dynamicService.getConditionMap().get("P1").getCompiledCondition().bitOf(1);
+        dynamicService.getConditionMap().get("P1").getMatchState()
+                .set(ProgramMatchState.INITIAL.toBuilder().results(bit1).consecutiveCount(1).build());
+        dynamicService.getConditionMap().get("P2").getMatchState()
+                .set(ProgramMatchState.INITIAL.toBuilder().consecutiveCount(1).build());
+        dynamicService.getTrafficPeriodsMap().get(true).getFirst().getInSchedule().set(true);
+
+        // P1-2 value and the P2 condition change
+        dynamicService.reloadDynamicConfig(
+                List.of(condition("P1", "1 && 2", 2), condition("P2", "1", 3)),
+                List.of(threshold("P1", 1, "平日0600-0630", 100), threshold("P1", 2, "平日0600-0630", 60),
+                        threshold("P2", 1, "假日1200-1230", 10)));
+
+        assertEquals(version + 1, dynamicService.getConfig().getVersion());
+        assertTrue(dynamicService.getMatchStates().get("P1").isMatch(bit1));
+        assertEquals(60, dynamicService.getThresholdMap().get("P1-2").getThresholdValue());
+        assertEquals(1, dynamicService.getMatchStates().get("P1").getConsecutiveCount());
+        assertEquals(0, dynamicService.getMatchStates().get("P2").getConsecutiveCount());
+        assertTrue(dynamicService.getActiveTrafficPeriods(true, LocalTime.of(6, 10)).stream()
+                .filter(p -> p.getSubId() == 1).findFirst().orElseThrow().getInSchedule().get());
+
+        // the recompiled condition is bound to the thresholds of the new snapshot, with the same bits
+        CompiledCondition compiled = dynamicService.getConditionMap().get("P1").getCompiledCondition();
+        assertEquals(bit1, compiled.bitOf(1));
+        assertTrue(compiled.evaluate(compiled.bitOf(1) | compiled.bitOf(2)));
+    }
+
+    @Test
+    void testUpdateDynamicThreshold_appliedWithoutReload() {
+        dynamicService.reloadDynamicConfig(List.of(condition("P1", "1", 1)),
+                List.of(threshold("P1", 1, "平日0600-0630", 100)));
+        long version = dynamicService.getConfig().getVersion();
+
+        DynamicThreshold stored = threshold("P1", 1, "平日0600-0630", 100);
+        when(dynamicThresholdRepository.findById(stored.getId())).thenReturn(Optional.of(stored));
+        when(dynamicThresholdRepository.save(stored)).thenReturn(stored);
+
+        dynamicService.updateDynamicThreshold(threshold("P1", 1, "平日0700-0730", 120));
+
+        assertEquals(version + 1, dynamicService.getConfig().getVersion());
+        assertEquals(120, dynamicService.getThresholdMap().get("P1-1").getThresholdValue());
+        assertTrue(dynamicService.getActiveTrafficPeriods(true, LocalTime.of(6, 10)).isEmpty());
+        assertEquals(1, dynamicService.getActiveTrafficPeriods(true, LocalTime.of(7, 10)).size());
+
+        CompiledCondition compiled = dynamicService.getConditionMap().get("P1").getCompiledCondition();
+        assertTrue(compiled.evaluate(compiled.bitOf(1)));
     }
 
     @Test
@@ -161,10 +310,17 @@ public class DynamicServiceTest {
 
     @Test
     void testSaveDynamicLog() {
+        // stamped with domain time, a simulation writes its virtual time
+        LocalDateTime virtual = LocalDateTime.of(2025, 8, 28, 7, 30);
+        ReflectionTestUtils.setField(dynamicService, "clock",
+                Clock.fixed(virtual.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+
         dynamicService.saveDynamicLog("prog1", "TestDevice", 41, "Y", "apply dynamic control for TC");
 
-        verify(dynamicLogRepository, times(1))
-                .save(Mockito.any(DynamicLog.class));
+        verify(dynamicLogWriter, times(1)).write(argThat(log -> "prog1".equals(log.getProgramId())
+                && "TestDevice".equals(log.getTcId())
+                && log.getPlanId() == 41
+                && virtual.equals(log.getLogTime())));
     }
 
     @Test
@@ -213,6 +369,15 @@ public class DynamicServiceTest {
         verify(dynamicPlanidRepository, times(1)).findByProgramIdAndDay("P1", "假日");
     }
 
+    @Test
+    void testGetAllDynamicPlanIds_servedFromPlanCache() {
+        when(dynamicPlanCache.isLoaded()).thenReturn(true);
+        when(dynamicPlanCache.getPlanIds(eq("P1"), eq(true), any(LocalTime.class))).thenReturn(Map.of("TC001", 10));
+
+        assertEquals(Map.of("TC001", 10), dynamicService.getAllDynamicPlanIds("P1", true));
+        verifyNoInteractions(dynamicPlanidRepository);
+    }
+
     @Test
     void testUpdateDynamicThreshold_success() {
         DynamicThresholdId id = new DynamicThresholdId("P1", 1);
@@ -0,0 +1,124 @@
+package com.demo.service;
+
+import com.demo.dto.DynamicConfigSnapshot;
+import com.demo.dto.SimulationReportDto;
+import com.demo.dto.TrafficPeriodDto;
+import com.demo.exception.CustomException;
+import com.demo.manager.DynamicControlManager;
+import com.demo.manager.PeriodWarmupManager;
+import com.demo.manager.TrafficMonitorScheduler;
+import com.demo.manager.TrafficPeriodScheduler;
+import com.demo.util.SimulationClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DynamicSimulationServiceTest {
+    @InjectMocks
+    private DynamicSimulationService simulationService;
+
+    @Mock
+    private DynamicService dynamicService;
+
+    @Mock
+    private DynamicControlManager dynamicControlManager;
+
+    @Mock
+    private PeriodWarmupManager periodWarmupManager;
+
+    private TrafficMonitorScheduler trafficMonitorScheduler;
+    private TrafficPeriodScheduler trafficPeriodScheduler;
+    private SimulationClock clock;
+
+    private final LocalDateTime eight = LocalDateTime.of(2025, 6, 2, 8, 0);
+
+    @BeforeEach
+    void setup() {
+        clock = new SimulationClock(eight.minusHours(1).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+
+        trafficMonitorScheduler = new TrafficMonitorScheduler();
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "timerThreads", 1);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "workerThreads", 1);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "queueCapacity", 10);
+        ReflectionTestUtils.setField(trafficMonitorScheduler, "clock", clock);
+        trafficMonitorScheduler.init();
+
+        trafficPeriodScheduler = new TrafficPeriodScheduler();
+        ReflectionTestUtils.setField(trafficPeriodScheduler, "dynamicService", dynamicService);
+        ReflectionTestUtils.setField(trafficPeriodScheduler, "dynamicControlManager", dynamicControlManager);
+        ReflectionTestUtils.setField(trafficPeriodScheduler, "periodWarmupManager", periodWarmupManager);
+        ReflectionTestUtils.setField(trafficPeriodScheduler, "clock", clock);
+        trafficPeriodScheduler.init();
+
+        ReflectionTestUtils.setField(simulationService, "clock", clock);
+        ReflectionTestUtils.setField(simulationService, "trafficMonitorScheduler", trafficMonitorScheduler);
+        ReflectionTestUtils.setField(simulationService, "trafficPeriodScheduler", trafficPeriodScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trafficPeriodScheduler.shutdown();
+        trafficMonitorScheduler.shutdown();
+    }
+
+    @Test
+    void testRun_drivesPeriodTimersAndTicksOnVirtualTime() {
+        // 2025-06-02 is a Monday, the weekday period 08:10-09:00 runs a 5-minute monitor recording each tick
+        TrafficPeriodDto period = TrafficPeriodDto.builder()
+                .programId("21001")
+                .subId(1)
+                .startTime(LocalTime.of(8, 10))
+                .endTime(LocalTime.of(9, 0))
+                .inSchedule(new AtomicBoolean(false))
+                .build();
+        when(dynamicService.getConfig()).thenReturn(new DynamicConfigSnapshot(1, Map.of(), Map.of(), Map.of(true, List.of(period))));
+
+        List<LocalDateTime> ticks = new ArrayList<>();
+        doAnswer(invocation -> {
+            trafficMonitorScheduler.schedule(period, 300_000, () -> ticks.add(LocalDateTime.now(clock)));
+            return null;
+        }).when(dynamicControlManager).startTrafficCalculation(period, true);
+        doAnswer(invocation -> {
+            trafficMonitorScheduler.cancel(period);
+            period.getInSchedule().set(false);
+            return null;
+        }).when(dynamicControlManager).stopTrafficCalculation(period);
+        when(dynamicControlManager.getTriggerCount()).thenReturn(3L, 5L);
+
+        SimulationReportDto report = simulationService.run(eight.plusSeconds(30), eight.plusHours(2));
+
+        assertEquals(2, report.getPeriodEvents());      // start 08:10, end 09:00
+        assertEquals(10, report.getMonitorTicks());     // 08:10 .. 08:55 every 5 minutes, the end comes first at 09:00
+        assertEquals(eight.plusMinutes(10), ticks.getFirst());
+        assertEquals(eight.plusMinutes(55), ticks.getLast());
+        assertFalse(trafficMonitorScheduler.isActive(period));
+        assertEquals(2L, report.getTriggers());
+        assertEquals(eight.plusHours(2), LocalDateTime.now(clock));
+    }
+
+    @Test
+    void testRun_rejectedWithoutSimulationClock() {
+        ReflectionTestUtils.setField(simulationService, "clock", Clock.systemDefaultZone());
+
+        assertThrows(CustomException.class, () -> simulationService.run(eight, eight.plusHours(1)));
+        verifyNoInteractions(dynamicService);
+    }
+}
@@ -0,0 +1,95 @@
+package com.demo.service;
+
+import com.demo.dto.TriggerTraceDto;
+import com.demo.exception.CustomException;
+import com.demo.model.dynamic.DynamicTrace;
+import com.demo.repository.dynamic.DynamicTraceRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DynamicTraceServiceTest {
+    @InjectMocks
+    private DynamicTraceService dynamicTraceService;
+
+    @Mock
+    private DynamicTraceRepository dynamicTraceRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(dynamicTraceService, "retained", 2);
+        ReflectionTestUtils.setField(dynamicTraceService, "persist", true);
+    }
+
+    private TriggerTraceDto trace(String traceId, String programId) {
+        return TriggerTraceDto.builder()
+                .traceId(traceId)
+                .programId(programId)
+                .startedAt(LocalDateTime.of(2025, 7, 1, 8, 0))
+                .reactionMillis(150L)
+                .totalMillis(2400L)
+                .applied(1)
+                .total(1)
+                .tcs(List.of())
+                .build();
+    }
+
+    @Test
+    void testRecord_keepsNewestFirstAndPersists() {
+        dynamicTraceService.record(trace("t1", "p1"));
+        dynamicTraceService.record(trace("t2", "p2"));
+        dynamicTraceService.record(trace("t3", "p1"));
+
+        List<TriggerTraceDto> all = dynamicTraceService.getRecentTraces(null, 10);
+        assertEquals(List.of("t3", "t2"), all.stream().map(TriggerTraceDto::getTraceId).toList());   // t1 dropped
+        assertEquals(List.of("t3"), dynamicTraceService.getRecentTraces("p1", 10).stream().map(TriggerTraceDto::getTraceId).toList());
+
+        ArgumentCaptor<DynamicTrace> captor = ArgumentCaptor.forClass(DynamicTrace.class);
+        verify(dynamicTraceRepository, times(3)).save(captor.capture());
+        DynamicTrace saved = captor.getValue();
+        assertEquals("t3", saved.getTraceId());
+        assertEquals(150L, saved.getReactionMillis());
+        assertTrue(saved.getDetail().contains("\"traceId\":\"t3\""));
+    }
+
+    @Test
+    void testRecord_saveFailureDoesNotPropagate() {
+        when(dynamicTraceRepository.save(any())).thenThrow(new RuntimeException("db down"));
+
+        assertDoesNotThrow(() -> dynamicTraceService.record(trace("t1", "p1")));
+        assertEquals(1, dynamicTraceService.getRecentTraces("p1", 10).size());
+    }
+
+    @Test
+    void testGetTrace_fallsBackToDatabase() throws Exception {
+        String detail = objectMapper.writeValueAsString(trace("old", "p1"));
+        when(dynamicTraceRepository.findByTraceId("old")).thenReturn(Optional.of(DynamicTrace.builder().traceId("old").detail(detail).build()));
+        when(dynamicTraceRepository.findByTraceId("missing")).thenReturn(Optional.empty());
+
+        TriggerTraceDto found = dynamicTraceService.getTrace("old");
+        assertEquals("p1", found.getProgramId());
+        assertEquals(LocalDateTime.of(2025, 7, 1, 8, 0), found.getStartedAt());
+
+        CustomException e = assertThrows(CustomException.class, () -> dynamicTraceService.getTrace("missing"));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatus());
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.service;
 
+import com.demo.dto.*;
 import com.demo.message.*;
 import com.demo.model.its.TcMessageLog;
 import com.demo.repository.its.TcMessageLogRepository;
@@ -34,7 +35,12 @@ public class MessageServiceTest {
 
     @Test
     void testBuildMessage() {
-        JSONObject obj = new JSONObject();
+        Command5F10Dto cmd5F10 = Command5F10Dto.builder().deviceId("TC001").build();
+        Command5F15Dto cmd5F15 = Command5F15Dto.builder().deviceId("TC001").build();
+        Command5F18Dto cmd5F18 = Command5F18Dto.builder().deviceId("TC001").build();
+        Command5F40Dto cmd5F40 = Command5F40Dto.builder().deviceId("TC001").build();
+        Command5F45Dto cmd5F45 = Command5F45Dto.builder().deviceId("TC001").build();
+
         Message5F10 mockMsg5F10 = mock(Message5F10.class);
         Message5F14 mockMsg5F14 = mock(Message5F14.class);
         Message5F15 mockMsg5F15 = mock(Message5F15.class);
@@ -43,36 +49,36 @@ public class MessageServiceTest {
         Message5F44 mockMsg5F44 = mock(Message5F44.class);
         Message5F45 mockMsg5F45 = mock(Message5F45.class);
 
-        when(messageBuilder.buildMessage5F10(obj)).thenReturn(mockMsg5F10);
-        when(messageBuilder.buildMessage5F14(obj)).thenReturn(mockMsg5F14);
-        when(messageBuilder.buildMessage5F15(obj)).thenReturn(mockMsg5F15);
-        when(messageBuilder.buildMessage5F18(obj)).thenReturn(mockMsg5F18);
-        when(messageBuilder.buildMessage5F40(obj)).thenReturn(mockMsg5F40);
-        when(messageBuilder.buildMessage5F44(obj)).thenReturn(mockMsg5F44);
-        when(messageBuilder.buildMessage5F45(obj)).thenReturn(mockMsg5F45);
+        when(messageBuilder.buildMessage5F10(cmd5F10)).thenReturn(mockMsg5F10);
+        when(messageBuilder.buildMessage5F14(cmd5F15)).thenReturn(mockMsg5F14);
+        when(messageBuilder.buildMessage5F15(cmd5F15)).thenReturn(mockMsg5F15);
+        when(messageBuilder.buildMessage5F18(cmd5F18)).thenReturn(mockMsg5F18);
+        when(messageBuilder.buildMessage5F40(cmd5F40)).thenReturn(mockMsg5F40);
+        when(messageBuilder.buildMessage5F44(cmd5F45)).thenReturn(mockMsg5F44);
+        when(messageBuilder.buildMessage5F45(cmd5F45)).thenReturn(mockMsg5F45);
 
-        MessageObject result = messageService.buildMessage(obj, "5f10");
+        MessageObject result = messageService.buildMessage(cmd5F10, "5f10");
         assertEquals(mockMsg5F10, result);
 
-        result = messageService.buildMessage(obj, "5f14");
+        result = messageService.buildMessage(cmd5F15, "5f14");
         assertEquals(mockMsg5F14, result);
 
-        result = messageService.buildMessage(obj, "5f15");
+        result = messageService.buildMessage(cmd5F15, "5f15");
         assertEquals(mockMsg5F15, result);
 
-        result = messageService.buildMessage(obj, "5f18");
+        result = messageService.buildMessage(cmd5F18, "5f18");
         assertEquals(mockMsg5F18, result);
 
-        result = messageService.buildMessage(obj, "5f40");
+        result = messageService.buildMessage(cmd5F40, "5f40");
         assertEquals(mockMsg5F40, result);
 
-        result = messageService.buildMessage(obj, "5f44");
+        result = messageService.buildMessage(cmd5F45, "5f44");
         assertEquals(mockMsg5F44, result);
 
-        result = messageService.buildMessage(obj, "5f45");
+        result = messageService.buildMessage(cmd5F45, "5f45");
         assertEquals(mockMsg5F45, result);
 
-        assertNull(messageService.buildMessage(obj, "unknown"));
+        assertNull(messageService.buildMessage(cmd5F10, "unknown"));
     }
 
     @Test
@@ -170,7 +176,7 @@ public class MessageServiceTest {
 
     @Test
     void testBuildMessage_withNullCommand_returnsNull() {
-        JSONObject obj = new JSONObject();
+        Command5F10Dto obj = Command5F10Dto.builder().build();
         assertNull(messageService.buildMessage(obj, "notExistCommand"));
     }
 
@@ -120,7 +120,7 @@ public class MqttClientServiceTest {
 
         mqttClientService.messageArrived(topic, msg);
 
-        verify(tcSendMessageManager).run("payload");
+        verify(tcSendMessageManager).run(topic, "payload".getBytes());
     }
 
     @Test
@@ -130,7 +130,7 @@ public class MqttClientServiceTest {
 
         mqttClientService.messageArrived(topic, msg);
 
-        verify(tcSendMessageManager, never()).run(anyString());
+        verify(tcSendMessageManager, never()).run(anyString(), any(byte[].class));
     }
 
     @Test
@@ -0,0 +1,56 @@
+package com.demo.service;
+
+import com.demo.dto.Command5F10Dto;
+import com.demo.dto.MqttCommandDto;
+import com.demo.dto.MqttResultDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttPayloadCodecTest {
+    private MqttPayloadCodec codec;
+
+    @BeforeEach
+    void setup() {
+        codec = new MqttPayloadCodec();
+        ReflectionTestUtils.setField(codec, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(codec, "cborMapper", new CBORMapper());
+        ReflectionTestUtils.setField(codec, "cborTopicPrefixes", List.of("tc/bin/"));
+    }
+
+    @Test
+    void testEncode_jsonByDefault() throws Exception {
+        byte[] payload = codec.encode("tc/result/TC001", MqttResultDto.builder().messageId("0F80").build());
+
+        assertFalse(MqttPayloadCodec.isCbor(payload));
+        assertTrue(new String(payload).contains("\"messageId\":\"0F80\""));
+    }
+
+    @Test
+    void testEncodeDecode_cborRoundTrip() throws Exception {
+        Object command = new ObjectMapper().readTree(
+                "{\"messageId\":\"5F10\",\"value\":{\"deviceId\":\"TC001\",\"controlStrategy\":6,\"effectTime\":5}}");
+
+        byte[] payload = codec.encode("tc/bin/TC001", command);
+        assertTrue(MqttPayloadCodec.isCbor(payload));
+
+        MqttCommandDto decoded = codec.decode(payload, MqttCommandDto.class);
+        Command5F10Dto value = (Command5F10Dto) decoded.getValue();
+        assertEquals("TC001", value.getDeviceId());
+        assertEquals(6, value.getControlStrategy());
+    }
+
+    @Test
+    void testDecode_detectsJson() throws Exception {
+        byte[] payload = " {\"messageId\":\"5F10\",\"value\":{\"deviceId\":\"TC002\"}}".getBytes();
+
+        assertFalse(MqttPayloadCodec.isCbor(payload));
+        assertEquals("TC002", codec.decode(payload, MqttCommandDto.class).getValue().getDeviceId());
+    }
+}
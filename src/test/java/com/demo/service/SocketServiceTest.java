@@ -1,8 +1,11 @@
 package com.demo.service;
 
 import com.demo.manager.TcReceiveMessageManager;
+import com.demo.manager.ControllerStateCrawler;
+import com.demo.manager.TcStatePublisher;
 import com.demo.model.its.TcInfo;
-import com.demo.notification.DiscordNotifier;
+import com.demo.enums.NotificationType;
+import com.demo.notification.NotificationDispatcher;
 import com.demo.repository.its.TcInfoRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -36,11 +39,17 @@ public class SocketServiceTest {
     private TcReceiveMessageManager tcReceiveMessageManager;
 
     @Mock
-    private DiscordNotifier discordNotifier;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private TcStatePublisher tcStatePublisher;
 
     @Mock
     private MqttClientService mqttClientService;
 
+    @Mock
+    private ControllerStateCrawler controllerStateCrawler;
+
     Map<String, Socket> socketMap;
 
     @BeforeEach
@@ -70,7 +79,7 @@ public class SocketServiceTest {
         socketService.removeConnection(ip);
 
         verify(mockSocket).close();
-        verify(discordNotifier).sendMessage(contains(ip));
+        verify(notificationDispatcher).dispatch(eq(NotificationType.TC_DISCONNECTED), eq(ip), contains(ip));
         assertFalse(socketMap.containsKey(ip));
     }
 
@@ -95,13 +104,12 @@ public class SocketServiceTest {
 
         socketMap.put(ip, mockSocket);
         doNothing().when(mockSocket).close();
-        doNothing().when(discordNotifier).sendMessage(anyString());
 
         boolean result = socketService.isHostConnected(ip);
 
         assertFalse(result);
         verify(mockSocket, atLeastOnce()).close();
-        verify(discordNotifier).sendMessage(contains(ip));
+        verify(notificationDispatcher).dispatch(eq(NotificationType.TC_DISCONNECTED), eq(ip), contains(ip));
     }
 
     @Test
@@ -114,7 +122,7 @@ public class SocketServiceTest {
         socketService.closeConnection(ip);
 
         verify(mockSocket, atLeastOnce()).close();
-        verify(discordNotifier).sendMessage(contains(ip));
+        verify(notificationDispatcher).dispatch(eq(NotificationType.TC_DISCONNECTED), eq(ip), contains(ip));
         assertFalse(socketMap.containsKey(ip));
     }
 
@@ -173,12 +181,11 @@ public class SocketServiceTest {
         doThrow(new IOException("close fail")).when(mockSocket).close();
 
         socketMap.put(ip, mockSocket);
-        doNothing().when(discordNotifier).sendMessage(anyString());
 
         boolean result = socketService.isHostConnected(ip);
 
         assertFalse(result);
-        verify(discordNotifier).sendMessage(contains(ip));
+        verify(notificationDispatcher).dispatch(eq(NotificationType.TC_DISCONNECTED), eq(ip), contains(ip));
     }
 
     @Test
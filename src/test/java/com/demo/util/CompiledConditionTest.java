@@ -0,0 +1,90 @@
+package com.demo.util;
+
+import com.demo.dto.ThresholdDto;
+import com.demo.exception.DynamicException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledConditionTest {
+
+    private static Map<String, ThresholdDto> thresholds(String programId, int count) {
+        Map<String, ThresholdDto> map = new HashMap<>();
+        for (int i = 1; i <= count; i++) {
+            map.put(programId + "-" + i, new ThresholdDto());
+        }
+        return map;
+    }
+
+    // result mask in which exactly the given sub ids match
+    private static long results(CompiledCondition condition, int... matchedSubIds) {
+        long results = 0L;
+        for (int subId : matchedSubIds) results |= condition.bitOf(subId);
+        return results;
+    }
+
+    @Test
+    void testEvaluate_nestedExpression() {
+        CompiledCondition condition = CompiledCondition.compile("21001", "(1 && (2 || 3))", thresholds("21001", 3));
+
+        assertTrue(condition.evaluate(results(condition, 1, 3)));
+        assertFalse(condition.evaluate(results(condition, 1)));
+        assertFalse(condition.evaluate(results(condition, 2, 3)));
+        assertEquals(3, condition.getSubConditionCount());
+        assertEquals(List.of(1, 2, 3), condition.getSubIds());
+    }
+
+    @Test
+    void testEvaluate_wordOperatorsAndNot() {
+        Map<String, ThresholdDto> map = thresholds("P1", 2);
+
+        CompiledCondition andNot = CompiledCondition.compile("P1", "1 and not 2", map);
+        assertFalse(andNot.evaluate(results(andNot, 1, 2)));
+        CompiledCondition orNot = CompiledCondition.compile("P1", "!(1 && !2) or 2", map);
+        assertTrue(orNot.evaluate(results(orNot, 1, 2)));
+    }
+
+    @Test
+    void testEvaluate_unknownSubIdNeverMatches() {
+        Map<String, ThresholdDto> map = thresholds("P1", 1);
+
+        CompiledCondition or = CompiledCondition.compile("P1", "1 || 9", map);
+        assertTrue(or.evaluate(results(or, 1, 9)));
+        CompiledCondition and = CompiledCondition.compile("P1", "1 && 9", map);
+        assertFalse(and.evaluate(results(and, 1, 9)));
+    }
+
+    @Test
+    void testBitOf_dependsOnExpressionOnly() {
+        // the bits stay the same whether or not a sub-condition has a threshold, so a kept match state stays valid
+        CompiledCondition complete = CompiledCondition.compile("P1", "2 || (1 && 2) || 3", thresholds("P1", 3));
+        CompiledCondition partial = CompiledCondition.compile("P1", "2 || (1 && 2) || 3", Map.of());
+
+        for (int subId = 1; subId <= 3; subId++) {
+            assertEquals(complete.bitOf(subId), partial.bitOf(subId));
+        }
+        assertEquals(1L, complete.bitOf(2));
+        assertEquals(0L, complete.bitOf(4));
+    }
+
+    @Test
+    void testCompile_doesNotBindOtherProgramsWithSamePrefix() {
+        CompiledCondition condition = CompiledCondition.compile("21001", "1", thresholds("210011", 1));
+
+        assertFalse(condition.evaluate(results(condition, 1)));
+    }
+
+    @Test
+    void testCompile_invalidExpression() {
+        Map<String, ThresholdDto> map = thresholds("P1", 2);
+
+        assertThrows(DynamicException.class, () -> CompiledCondition.compile("P1", "(1 && 2", map));
+        assertThrows(DynamicException.class, () -> CompiledCondition.compile("P1", "1 2", map));
+        assertThrows(DynamicException.class, () -> CompiledCondition.compile("P1", "1 > 2", map));
+        assertThrows(DynamicException.class, () -> CompiledCondition.compile("P1", " ", map));
+    }
+}
@@ -0,0 +1,49 @@
+package com.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HoltEstimatorTest {
+
+    @Test
+    void testForecast_followsLinearTrend() {
+        HoltEstimator estimator = new HoltEstimator(0.5, 0.3);
+        for (int t = 0; t < 200; t++) {
+            estimator.update(10 + 2.0 * t);
+        }
+
+        assertEquals(200, estimator.getSamples());
+        assertEquals(2.0, estimator.getTrend(), 0.01);
+        assertEquals(10 + 2.0 * 204, estimator.forecast(5), 0.1);
+    }
+
+    @Test
+    void testForecast_zeroBetaIsFlatEwma() {
+        HoltEstimator estimator = new HoltEstimator(0.5, 0.0);
+        estimator.update(10);
+        estimator.update(20);
+
+        assertEquals(15.0, estimator.getLevel(), 1e-9);
+        assertEquals(0.0, estimator.getTrend(), 1e-9);
+        assertEquals(15.0, estimator.forecast(10), 1e-9);
+    }
+
+    @Test
+    void testReset_startsFromNextValue() {
+        HoltEstimator estimator = new HoltEstimator(0.3, 0.1);
+        estimator.update(100);
+        estimator.update(120);
+        estimator.reset();
+        estimator.update(7);
+
+        assertEquals(1, estimator.getSamples());
+        assertEquals(7.0, estimator.forecast(3), 1e-9);
+    }
+
+    @Test
+    void testConstructor_rejectsInvalidFactors() {
+        assertThrows(IllegalArgumentException.class, () -> new HoltEstimator(0.0, 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new HoltEstimator(0.5, 1.5));
+    }
+}
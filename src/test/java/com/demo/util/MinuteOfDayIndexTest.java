@@ -0,0 +1,48 @@
+package com.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MinuteOfDayIndexTest {
+
+    @Test
+    void testAt_overlappingIntervalsInInsertionOrder() {
+        MinuteOfDayIndex<String> index = MinuteOfDayIndex.<String>builder()
+                .add(LocalTime.of(6, 0), LocalTime.of(9, 0), "a")
+                .add(LocalTime.of(7, 0), LocalTime.of(8, 0), "b")
+                .build();
+
+        assertEquals(List.of(), index.at(LocalTime.of(5, 59)));
+        assertEquals(List.of("a"), index.at(LocalTime.of(6, 0)));
+        assertEquals(List.of("a", "b"), index.at(LocalTime.of(7, 30, 45)));
+        assertEquals(List.of("a"), index.at(LocalTime.of(8, 0)));
+        assertEquals(List.of(), index.at(LocalTime.of(9, 0)));
+    }
+
+    @Test
+    void testAt_crossMidnightListedOnce() {
+        MinuteOfDayIndex<String> index = MinuteOfDayIndex.<String>builder()
+                .add(LocalTime.of(22, 0), LocalTime.of(6, 0), "night")
+                .build();
+
+        assertEquals(List.of("night"), index.at(LocalTime.of(23, 59)));
+        assertEquals(List.of("night"), index.at(LocalTime.of(0, 0)));
+        assertEquals(List.of("night"), index.at(LocalTime.of(5, 59)));
+        assertEquals(List.of(), index.at(LocalTime.of(12, 0)));
+    }
+
+    @Test
+    void testAt_sameStartAndEndCoversWholeDay() {
+        MinuteOfDayIndex<String> index = MinuteOfDayIndex.<String>builder()
+                .add(LocalTime.of(8, 0), LocalTime.of(8, 0), "all")
+                .build();
+
+        assertEquals(List.of("all"), index.at(LocalTime.MIDNIGHT));
+        assertEquals(List.of("all"), index.at(LocalTime.of(23, 59)));
+        assertEquals(1, index.getSegmentCount());
+    }
+}